@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of the accounts touched by a benchmark
+ */
+public enum AccessPattern {
+
+	/**
+	 * every account is equally likely
+	 */
+	UNIFORM {
+		@Override
+		int nextAccount(SplittableRandom random, double[] zipfCumulative) {
+			return random.nextInt(zipfCumulative.length);
+		}
+	},
+
+	/**
+	 * account i is picked with a probability proportional to 1 / (i + 1), a few hot accounts take
+	 * most of the traffic
+	 */
+	ZIPFIAN {
+		@Override
+		int nextAccount(SplittableRandom random, double[] zipfCumulative) {
+			int index = Arrays.binarySearch(zipfCumulative, random.nextDouble());
+			return Math.min(index < 0 ? -index - 1 : index, zipfCumulative.length - 1);
+		}
+	},
+
+	/**
+	 * every thread moves money back and forth between the same two accounts
+	 */
+	CONFLICTING_PAIR {
+		@Override
+		int nextAccount(SplittableRandom random, double[] zipfCumulative) {
+			return random.nextInt(2);
+		}
+	};
+
+	/**
+	 * @param random
+	 * @param zipfCumulative cumulative Zipf distribution, one entry per account
+	 * @return index of the next account to touch
+	 */
+	abstract int nextAccount(SplittableRandom random, double[] zipfCumulative);
+
+	/**
+	 * @param accounts
+	 * @return cumulative distribution of a Zipf law of exponent 1 over the given number of accounts
+	 */
+	static double[] zipfCumulative(int accounts) {
+		double[] cumulative = new double[accounts];
+		double sum = 0;
+		for (int i = 0; i < accounts; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < accounts; i++) {
+			cumulative[i] /= sum;
+		}
+		return cumulative;
+	}
+}
@@ -0,0 +1,130 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceEngine;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.service.AccountLockManager;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.ConflictAwareTransferScheduler;
+import com.db.awmd.challenge.service.HotAccounts;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.ShardedTransferExecutor;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import com.db.awmd.challenge.service.TransferCoalescer;
+import com.db.awmd.challenge.service.TransferLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+
+/**
+ * Accounts service wired the way the application wires it, without the web layer, over a set of
+ * accounts funded well enough for no transfer to be rejected during a run
+ */
+@State(Scope.Benchmark)
+public class AccountsServiceState {
+
+	static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000000");
+
+	@Param({ "10000" })
+	int accounts;
+
+	@Param({ "SYNCHRONIZED", "SCALED_LONG" })
+	BalanceEngine balanceEngine;
+
+	/**
+	 * in-memory, or off-heap or mapped together with -p balanceEngine=SCALED_LONG
+	 */
+	@Param({ "in-memory" })
+	String repository;
+
+	/**
+	 * comma separated ids of the accounts whose credits are striped, -p hotAccountIds=Id-0
+	 */
+	@Param({ "" })
+	String hotAccountIds;
+
+	/**
+	 * nets single transfers in micro-batches, -p coalescing=true with -p balanceEngine=SYNCHRONIZED
+	 */
+	@Param({ "false" })
+	boolean coalescing;
+
+	AccountsService accountsService;
+
+	AccountLockManager accountLockManager;
+
+	TransferLedger transferLedger;
+
+	String[] accountIds;
+
+	double[] zipfCumulative;
+
+	private ShardedTransferExecutor shardedTransferExecutor;
+
+	private AccountsRepository accountsRepository;
+
+	private Path mappedFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.setBalanceEngine(this.balanceEngine);
+		accountsProperties.setRepository(this.repository);
+		accountsProperties.getOffHeap().setExpectedAccounts(this.accounts);
+		if (!this.hotAccountIds.isEmpty()) {
+			accountsProperties.getHotAccounts().setIds(Arrays.asList(this.hotAccountIds.split(",")));
+		}
+		accountsProperties.getCoalescing().setEnabled(this.coalescing);
+		if ("mapped".equals(this.repository)) {
+			this.mappedFile = Files.createTempDirectory("accounts-benchmark").resolve("accounts.mapped");
+			accountsProperties.getMapped().setPath(this.mappedFile.toString());
+			this.accountsRepository = new AccountsRepositoryMapped(accountsProperties);
+		} else {
+			this.accountsRepository = "off-heap".equals(this.repository)
+					? new AccountsRepositoryOffHeap(accountsProperties)
+					: new AccountsRepositoryInMemory(accountsProperties);
+		}
+		this.shardedTransferExecutor = new ShardedTransferExecutor(accountsProperties);
+		this.accountLockManager = new AccountLockManager(accountsProperties);
+		this.transferLedger = new TransferLedger(accountsProperties);
+		this.accountsService = new AccountsService(this.accountsRepository, accountsProperties,
+				this.shardedTransferExecutor, new TransferMetrics(accountsProperties),
+				new TransferAuditLog(accountsProperties), new IdempotencyCache(accountsProperties),
+				new ConflictAwareTransferScheduler(accountsProperties), this.accountLockManager,
+				new HotAccounts(this.accountsRepository, accountsProperties, this.accountLockManager),
+				new TransferCoalescer(accountsProperties), this.transferLedger);
+		this.accountIds = new String[this.accounts];
+		for (int i = 0; i < this.accounts; i++) {
+			this.accountIds[i] = "Id-" + i;
+			this.accountsService.createAccount(new Account(this.accountIds[i], INITIAL_BALANCE));
+		}
+		this.zipfCumulative = AccessPattern.zipfCumulative(this.accounts);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.shardedTransferExecutor.shutdown();
+		if (this.accountsRepository instanceof AccountsRepositoryInMemory) {
+			((AccountsRepositoryInMemory) this.accountsRepository).closeJournal();
+		}
+		if (this.accountsRepository instanceof AccountsRepositoryMapped) {
+			((AccountsRepositoryMapped) this.accountsRepository).close();
+			Files.delete(this.mappedFile);
+			Files.delete(this.mappedFile.getParent());
+		}
+	}
+}
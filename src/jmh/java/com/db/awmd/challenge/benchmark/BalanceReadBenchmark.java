@@ -0,0 +1,94 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+
+/**
+ * Latency of balance reads of the two accounts a set of writer threads keeps transferring between,
+ * compared with the same reads while nothing is written. The optimistic read of
+ * {@link com.db.awmd.challenge.service.AccountsService#getAccount(String)} should keep about the
+ * same distribution in both groups. The read taking the account lock shows what it avoids, with the
+ * synchronized balance engine whose transfers hold that lock.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BalanceReadBenchmark {
+
+	private static final AmountTransferRequest FORWARD_TRANSFER = new AmountTransferRequest("Id-0", "Id-1",
+			BigDecimal.ONE);
+
+	private static final AmountTransferRequest BACKWARD_TRANSFER = new AmountTransferRequest("Id-1", "Id-0",
+			BigDecimal.ONE);
+
+	/**
+	 * direction of the next transfer of a writer thread, alternated so that neither account drains
+	 */
+	@State(Scope.Thread)
+	public static class Writer {
+
+		boolean forward;
+
+		@Setup
+		public void setUp() {
+			this.forward = Thread.currentThread().getId() % 2 == 0;
+		}
+
+		AmountTransferRequest next() {
+			this.forward = !this.forward;
+			return this.forward ? FORWARD_TRANSFER : BACKWARD_TRANSFER;
+		}
+	}
+
+	@Benchmark
+	@Group("idle")
+	@GroupThreads(1)
+	public Account readWithoutWriters(AccountsServiceState state) {
+		return state.accountsService.getAccount("Id-0");
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public Account readWhileTransferring(AccountsServiceState state) {
+		return state.accountsService.getAccount("Id-0");
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(3)
+	public void transfer(AccountsServiceState state, Writer writer) {
+		state.accountsService.transferAmount(writer.next());
+	}
+
+	@Benchmark
+	@Group("lockedContended")
+	@GroupThreads(1)
+	public BigDecimal lockedReadWhileTransferring(AccountsServiceState state) {
+		Account account = state.accountsService.getAccountsRepository().getAccount("Id-0");
+		BigDecimal[] balance = new BigDecimal[1];
+		state.accountLockManager.lockAll(Collections.singletonList("Id-0"),
+				() -> balance[0] = account.getBalance());
+		return balance[0];
+	}
+
+	@Benchmark
+	@Group("lockedContended")
+	@GroupThreads(3)
+	public void lockedTransfer(AccountsServiceState state, Writer writer) {
+		state.accountsService.transferAmount(writer.next());
+	}
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.db.awmd.challenge.domain.Account;
+
+/**
+ * Account creation through {@link com.db.awmd.challenge.service.AccountsService}, every thread
+ * creating accounts with ids of its own
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CreateAccountBenchmark {
+
+	private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class ThreadIds {
+
+		String prefix;
+
+		long next;
+
+		@Setup
+		public void setUp() {
+			this.prefix = "New-" + THREAD_IDS.getAndIncrement() + "-";
+		}
+	}
+
+	/**
+	 * drops the accounts created by the previous iteration so that every iteration starts from the
+	 * same map size
+	 */
+	@Setup(Level.Iteration)
+	public void clearAccounts(AccountsServiceState state) {
+		state.accountsService.getAccountsRepository().clearAccounts();
+	}
+
+	@Benchmark
+	public void createAccount(AccountsServiceState state, ThreadIds ids) {
+		state.accountsService.createAccount(new Account(ids.prefix + ids.next++, BigDecimal.TEN));
+	}
+}
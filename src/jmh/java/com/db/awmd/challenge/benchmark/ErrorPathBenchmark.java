@@ -0,0 +1,113 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ErrorMessage;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.RestResponseEntityExceptionHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of answering a transfer or a lookup that fails compared with one that succeeds, from the
+ * service call to the serialized response. The shared variants take the error path of the
+ * application, a shared stackless exception answered with its pre-serialized body; the allocated
+ * variants take the path it replaced, a fresh exception filling in its stack trace and an
+ * ErrorMessage serialized per response. The stacks here are far shallower than under a servlet
+ * container, which understates what the stack traces used to cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ErrorPathBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final RestResponseEntityExceptionHandler exceptionHandler = new RestResponseEntityExceptionHandler(
+			this.objectMapper);
+
+	private AmountTransferRequest[] transfers;
+
+	private AmountTransferRequest overdraft;
+
+	private int next;
+
+	@Setup
+	public void setUp(AccountsServiceState state) {
+		// back and forth between the same accounts, so that the transfers never run out of funds
+		this.transfers = new AmountTransferRequest[] {
+				new AmountTransferRequest(state.accountIds[0], state.accountIds[1], BigDecimal.ONE),
+				new AmountTransferRequest(state.accountIds[1], state.accountIds[0], BigDecimal.ONE) };
+		this.overdraft = new AmountTransferRequest(state.accountIds[2], state.accountIds[3],
+				AccountsServiceState.INITIAL_BALANCE.add(BigDecimal.ONE));
+	}
+
+	@Benchmark
+	public ResponseEntity<?> transferSucceeds(AccountsServiceState state) {
+		state.accountsService.transferAmount(this.transfers[this.next++ & 1]);
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	@Benchmark
+	public ResponseEntity<?> transferFailsShared(AccountsServiceState state) {
+		try {
+			state.accountsService.transferAmount(this.overdraft);
+			return new ResponseEntity<>(HttpStatus.OK);
+		} catch (InsufficientFundsException exception) {
+			return this.exceptionHandler.insufficientBalanceException(exception, null);
+		}
+	}
+
+	@Benchmark
+	public ResponseEntity<?> transferFailsAllocated(AccountsServiceState state) throws JsonProcessingException {
+		try {
+			state.accountsService.transferAmount(this.overdraft);
+			return new ResponseEntity<>(HttpStatus.OK);
+		} catch (InsufficientFundsException exception) {
+			return allocatedError(HttpStatus.BAD_REQUEST, new RuntimeException(exception.getMessage()));
+		}
+	}
+
+	@Benchmark
+	public byte[] lookupSucceeds(AccountsServiceState state) throws JsonProcessingException {
+		return this.objectMapper.writeValueAsBytes(state.accountsService.getAccount(state.accountIds[0]));
+	}
+
+	@Benchmark
+	public ResponseEntity<?> lookupFailsShared(AccountsServiceState state) throws JsonProcessingException {
+		try {
+			return ResponseEntity.ok(this.objectMapper.writeValueAsBytes(state.accountsService.getAccount("Id-missing")));
+		} catch (AccountInfoNotFoundException exception) {
+			return this.exceptionHandler.accountInfoNotFoundException(exception, null);
+		}
+	}
+
+	@Benchmark
+	public ResponseEntity<?> lookupFailsAllocated(AccountsServiceState state) throws JsonProcessingException {
+		try {
+			return ResponseEntity.ok(this.objectMapper.writeValueAsBytes(state.accountsService.getAccount("Id-missing")));
+		} catch (AccountInfoNotFoundException exception) {
+			return allocatedError(HttpStatus.NOT_FOUND, new RuntimeException(exception.getMessage()));
+		}
+	}
+
+	private ResponseEntity<byte[]> allocatedError(HttpStatus status, RuntimeException exception)
+			throws JsonProcessingException {
+		return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON_UTF8)
+				.body(this.objectMapper.writeValueAsBytes(new ErrorMessage(status, exception.getMessage())));
+	}
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+
+/**
+ * Many payers crediting the same merchant account, Id-0. Run with -p hotAccountIds=Id-0 and
+ * without it, at several thread counts, to compare striped credits with credits serialised on the
+ * merchant account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanInCreditBenchmark {
+
+	private static final AtomicInteger PAYERS = new AtomicInteger(1);
+
+	/**
+	 * payer of one benchmark thread, distinct from the payers of the other threads
+	 */
+	@State(Scope.Thread)
+	public static class Payer {
+
+		AmountTransferRequest transfer;
+
+		@Setup
+		public void setUp(AccountsServiceState state) {
+			int payer = 1 + (PAYERS.getAndIncrement() - 1) % (state.accounts - 1);
+			this.transfer = new AmountTransferRequest(state.accountIds[payer], state.accountIds[0], BigDecimal.ONE);
+		}
+	}
+
+	@Benchmark
+	public void creditMerchant(AccountsServiceState state, Payer payer) {
+		state.accountsService.transferAmount(payer.transfer);
+	}
+}
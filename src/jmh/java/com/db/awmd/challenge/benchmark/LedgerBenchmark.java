@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AccountStatement;
+import com.db.awmd.challenge.service.TransferLedger;
+
+/**
+ * Cost of recording a transfer in the ledger and latency of a statement page, read from a ledger
+ * already holding entries transfers between random accounts left. The page latency should not
+ * follow the number of entries, raise -p entries together with the heap to check it.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+	@Param({ "10000000" })
+	int entries;
+
+	@Param({ "100000" })
+	int accounts;
+
+	@Param({ "100" })
+	int pageSize;
+
+	private TransferLedger transferLedger;
+
+	private String[] accountIds;
+
+	@Setup
+	public void setUp() {
+		this.transferLedger = new TransferLedger(new AccountsProperties());
+		this.accountIds = new String[this.accounts];
+		for (int i = 0; i < this.accounts; i++) {
+			this.accountIds[i] = "Id-" + i;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < this.entries; i++) {
+			this.transferLedger.append(this.accountIds[random.nextInt(this.accounts)],
+					this.accountIds[random.nextInt(this.accounts)], AMOUNT);
+		}
+	}
+
+	@Benchmark
+	public void append() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		this.transferLedger.append(this.accountIds[random.nextInt(this.accounts)],
+				this.accountIds[random.nextInt(this.accounts)], AMOUNT);
+	}
+
+	@Benchmark
+	public AccountStatement statement() {
+		return this.transferLedger.statement(this.accountIds[ThreadLocalRandom.current().nextInt(this.accounts)], -1,
+				this.pageSize);
+	}
+}
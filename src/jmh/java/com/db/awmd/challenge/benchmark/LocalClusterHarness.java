@@ -0,0 +1,256 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Starts clusters of the application on localhost, one JVM per node on consecutive ports, and
+ * drives transfers between random accounts through random nodes, so that most transfers cross
+ * nodes. For each cluster size the transfer throughput and the answers are reported and the sum of
+ * the balances is checked to be unchanged. On the largest cluster a node is then killed and the
+ * transfers go on, showing the answers the surviving nodes give and checking the accounts they
+ * hold still sum up to what they held before.
+ *
+ * Arguments: cluster sizes (1,3 by default), accounts, client threads, seconds per run, first port.
+ * The logs of the nodes are written to a temporary directory printed at start.
+ */
+public class LocalClusterHarness {
+
+	private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000");
+
+	private static final long STARTUP_TIMEOUT_MILLIS = 120000;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	/**
+	 * shared by the nodes of every cluster started
+	 */
+	private static final String SECRET = UUID.randomUUID().toString();
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = (args.length > 0 ? args[0] : "1,3").split(",");
+		int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+		int basePort = args.length > 4 ? Integer.parseInt(args[4]) : 18080;
+		File logDirectory = Files.createTempDirectory("local-cluster").toFile();
+		System.out.println("Node logs in " + logDirectory);
+		for (int i = 0; i < sizes.length; i++) {
+			runCluster(Integer.parseInt(sizes[i].trim()), accounts, threads, seconds, basePort, logDirectory,
+					i == sizes.length - 1);
+		}
+	}
+
+	private static void runCluster(int size, int accounts, int threads, long seconds, int basePort,
+			File logDirectory, boolean killNode) throws Exception {
+		List<String> nodes = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			nodes.add("http://localhost:" + (basePort + i));
+		}
+		List<Process> processes = new ArrayList<>();
+		try {
+			for (int i = 0; i < size; i++) {
+				processes.add(startNode(basePort + i, nodes, new File(logDirectory, "node-" + size + "-" + i + ".log")));
+			}
+			for (String node : nodes) {
+				awaitNode(node);
+			}
+			String[] accountIds = new String[accounts];
+			for (int i = 0; i < accounts; i++) {
+				accountIds[i] = "Id-" + i;
+				int status = post(nodes.get(0) + "/v1/accounts",
+						"{\"accountId\":\"" + accountIds[i] + "\",\"balance\":" + INITIAL_BALANCE + "}");
+				if (status != 201) {
+					throw new IllegalStateException("Account " + accountIds[i] + " not created: " + status);
+				}
+			}
+			BigDecimal total = INITIAL_BALANCE.multiply(BigDecimal.valueOf(accounts));
+			report(size + " nodes", runTransfers(nodes, accountIds, threads, seconds), seconds);
+			check(size + " nodes", sumBalances(nodes.get(0), accountIds, null), total);
+			if (killNode && size > 1) {
+				String dead = nodes.get(size - 1);
+				processes.get(size - 1).destroyForcibly().waitFor();
+				Map<String, BigDecimal> before = new TreeMap<>();
+				BigDecimal survivors = sumBalances(nodes.get(0), accountIds, before);
+				List<String> alive = nodes.subList(0, size - 1);
+				report(size + " nodes, " + dead + " killed", runTransfers(alive, accountIds, threads, seconds), seconds);
+				check("surviving accounts", sumBalances(nodes.get(0), before.keySet().toArray(new String[0]), null),
+						survivors);
+			}
+		} finally {
+			for (Process process : processes) {
+				process.destroyForcibly().waitFor();
+			}
+		}
+	}
+
+	private static Process startNode(int port, List<String> nodes, File log) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("com.db.awmd.challenge.DevChallengeApplication");
+		command.add("--server.port=" + port);
+		command.add("--accounts.cluster.enabled=true");
+		command.add("--accounts.cluster.self=http://localhost:" + port);
+		command.add("--accounts.cluster.nodes=" + String.join(",", nodes));
+		command.add("--accounts.cluster.secret=" + SECRET);
+		command.add("--logging.level.root=WARN");
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+	}
+
+	private static void awaitNode(String node) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+		while (System.currentTimeMillis() < deadline) {
+			try {
+				if (get(node + "/v1/cluster/nodes", "X-Cluster-Secret", SECRET) != null) {
+					return;
+				}
+			} catch (IOException exception) {
+				// not listening yet
+			}
+			Thread.sleep(200);
+		}
+		throw new IllegalStateException("Node " + node + " did not start");
+	}
+
+	/**
+	 * @return number of answers by status, -1 counting the requests no node answered
+	 */
+	private static Map<Integer, LongAdder> runTransfers(List<String> nodes, String[] accountIds, int threads,
+			long seconds) throws Exception {
+		Map<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService clients = Executors.newFixedThreadPool(threads);
+		List<Future<?>> runs = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			runs.add(clients.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.nanoTime() < deadline) {
+					String node = nodes.get(random.nextInt(nodes.size()));
+					String body = "{\"accountFrom\":\"" + accountIds[random.nextInt(accountIds.length)]
+							+ "\",\"accountTo\":\"" + accountIds[random.nextInt(accountIds.length)] + "\",\"amount\":"
+							+ (1 + random.nextInt(100)) + "}";
+					int status;
+					try {
+						status = post(node + "/v1/accounts/transferAmount", body);
+					} catch (IOException exception) {
+						status = -1;
+					}
+					statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+				}
+			}));
+		}
+		for (Future<?> run : runs) {
+			run.get();
+		}
+		clients.shutdown();
+		return statuses;
+	}
+
+	/**
+	 * @param reachable receives the balance of every account a node answered for, null to require
+	 *        every account to be answered
+	 * @return sum of the balances read
+	 */
+	private static BigDecimal sumBalances(String node, String[] accountIds, Map<String, BigDecimal> reachable)
+			throws IOException {
+		BigDecimal sum = BigDecimal.ZERO;
+		for (String accountId : accountIds) {
+			String account = get(node + "/v1/accounts/" + accountId, null, null);
+			if (account == null) {
+				if (reachable == null) {
+					throw new IllegalStateException("Account " + accountId + " can not be read");
+				}
+				continue;
+			}
+			BigDecimal balance = OBJECT_MAPPER.readTree(account).get("balance").decimalValue();
+			if (reachable != null) {
+				reachable.put(accountId, balance);
+			}
+			sum = sum.add(balance);
+		}
+		return sum;
+	}
+
+	private static void report(String run, Map<Integer, LongAdder> statuses, long seconds) {
+		long requests = statuses.values().stream().mapToLong(LongAdder::sum).sum();
+		System.out.printf("%-40s %10d requests %10.0f/s   by status %s%n", run, requests, (double) requests / seconds,
+				statuses);
+	}
+
+	private static void check(String accounts, BigDecimal sum, BigDecimal expected) {
+		System.out.printf("%-40s balances sum to %s, %s%n", accounts, sum,
+				sum.compareTo(expected) == 0 ? "unchanged" : "expected " + expected);
+		if (sum.compareTo(expected) != 0) {
+			throw new IllegalStateException("Balances of the " + accounts + " changed");
+		}
+	}
+
+	/**
+	 * @return the status of the answer, its body read and dropped so the connection is kept alive
+	 */
+	private static int post(String url, String json) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream body = connection.getOutputStream()) {
+			body.write(json.getBytes(StandardCharsets.UTF_8));
+		}
+		int status = connection.getResponseCode();
+		drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+		return status;
+	}
+
+	/**
+	 * @param header name of a header to send, null for none
+	 * @param value
+	 * @return the body of a 200 answer, null for any other status
+	 */
+	private static String get(String url, String header, String value) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		if (header != null) {
+			connection.setRequestProperty(header, value);
+		}
+		int status = connection.getResponseCode();
+		String body = drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+		return status == 200 ? body : null;
+	}
+
+	private static String drain(InputStream stream) throws IOException {
+		if (stream == null) {
+			return "";
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream input = stream) {
+			byte[] buffer = new byte[4096];
+			for (int read; (read = input.read(buffer)) > 0;) {
+				bytes.write(buffer, 0, read);
+			}
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,119 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.BalanceEngine;
+
+/**
+ * Compares the heap footprint and garbage collection cost of the in-memory and off-heap
+ * repositories. For each repository the accounts are created through the accounts service and
+ * the direct memory they take is measured, the time of a full collection is taken, random
+ * transfers are run for a while counting the collections and their total time, and finally the
+ * heap the accounts retained is measured as the heap released by clearing them.
+ *
+ * Run in a fresh JVM with the heap and collector to compare, arguments: number of accounts,
+ * seconds of transfers, then the repositories (in-memory off-heap by default).
+ */
+public class RepositoryFootprintBenchmark {
+
+	private static final int FULL_COLLECTIONS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		long transferSeconds = args.length > 1 ? Long.parseLong(args[1]) : 20;
+		String[] repositories = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length)
+				: new String[] { "in-memory", "off-heap" };
+		System.out.printf("%-10s %10s %14s %14s %12s %12s %12s %14s%n", "repository", "accounts", "heap bytes",
+				"direct bytes", "heap/acct", "full gc ms", "gc count", "gc ms/s");
+		for (String repository : repositories) {
+			fullCollection();
+			long directBefore = usedDirect();
+
+			AccountsServiceState state = new AccountsServiceState();
+			state.accounts = accounts;
+			state.balanceEngine = BalanceEngine.SCALED_LONG;
+			state.repository = repository;
+			state.setUp();
+			long direct = usedDirect() - directBefore;
+
+			long fullCollectionNanos = 0;
+			for (int i = 0; i < FULL_COLLECTIONS; i++) {
+				long start = System.nanoTime();
+				System.gc();
+				fullCollectionNanos += System.nanoTime() - start;
+			}
+
+			long collectionsBefore = collectionCount();
+			long collectionMillisBefore = collectionMillis();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(transferSeconds);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			BigDecimal amount = BigDecimal.ONE;
+			while (System.nanoTime() < deadline) {
+				for (int i = 0; i < 1000; i++) {
+					int from = random.nextInt(accounts);
+					int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+					state.accountsService.transferAmount(
+							new AmountTransferRequest(state.accountIds[from], state.accountIds[to], amount));
+				}
+			}
+			long collections = collectionCount() - collectionsBefore;
+			long collectionMillis = collectionMillis() - collectionMillisBefore;
+
+			fullCollection();
+			long heapWithAccounts = usedHeap();
+			state.accountsService.getAccountsRepository().clearAccounts();
+			fullCollection();
+			long heap = heapWithAccounts - usedHeap();
+			state.tearDown();
+
+			System.out.printf("%-10s %10d %14d %14d %12.1f %12.1f %12d %14.2f%n", repository, accounts, heap, direct,
+					(double) heap / accounts, TimeUnit.NANOSECONDS.toMicros(fullCollectionNanos) / 1000.0 / FULL_COLLECTIONS,
+					collections, (double) collectionMillis / transferSeconds);
+		}
+	}
+
+	private static void fullCollection() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+	}
+
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static long usedDirect() {
+		List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+		for (BufferPoolMXBean pool : pools) {
+			if ("direct".equals(pool.getName())) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long collectionMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count, 1, 2, 4 ... up to the number of processors, writing
+ * one JSON result file per thread count. Throughput, average latency and the allocation rate
+ * reported by the GC profiler are kept in every file.
+ *
+ * Arguments: output directory, then optionally a regular expression selecting the benchmarks.
+ */
+public class ScalingBenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		File outputDirectory = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+		String include = args.length > 1 ? args[1] : ScalingBenchmarkRunner.class.getPackage().getName() + ".*";
+		outputDirectory.mkdirs();
+		for (int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+			Options options = new OptionsBuilder()
+					.include(include)
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.timeUnit(TimeUnit.MICROSECONDS)
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result(new File(outputDirectory, "threads-" + threads + ".json").getPath())
+					.build();
+			new Runner(options).run();
+		}
+	}
+
+	/**
+	 * @param processors
+	 * @return powers of two below the number of processors, then the number of processors
+	 */
+	static List<Integer> threadCounts(int processors) {
+		List<Integer> threadCounts = new ArrayList<>();
+		for (int threads = 1; threads < processors; threads <<= 1) {
+			threadCounts.add(threads);
+		}
+		threadCounts.add(processors);
+		return threadCounts;
+	}
+}
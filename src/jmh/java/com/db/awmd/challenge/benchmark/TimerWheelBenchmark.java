@@ -0,0 +1,65 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.db.awmd.challenge.service.TimerWheel;
+
+/**
+ * Cost of scheduling, cancelling and expiring timers in a wheel already holding millions of
+ * pending timers spread over a day of 10 ms ticks. None of them should follow the number of
+ * pending timers, raise -p pending together with the heap to check it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimerWheelBenchmark {
+
+	private static final long TICKS_PER_DAY = 8640000;
+
+	@Param({ "2000000" })
+	int pending;
+
+	private TimerWheel<Long> timerWheel;
+
+	private long tick;
+
+	@Setup
+	public void setUp() {
+		this.timerWheel = new TimerWheel<>(0);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < this.pending; i++) {
+			long deadline = random.nextLong(TICKS_PER_DAY);
+			this.timerWheel.schedule(deadline, deadline);
+		}
+	}
+
+	@Benchmark
+	public boolean scheduleAndCancel() {
+		long deadline = this.tick + ThreadLocalRandom.current().nextLong(TICKS_PER_DAY);
+		return this.timerWheel.cancel(this.timerWheel.schedule(deadline, deadline));
+	}
+
+	/**
+	 * one tick, with the timers it expires rescheduled a day later to keep the wheel as full
+	 */
+	@Benchmark
+	public void advance(Blackhole blackhole) {
+		long next = this.tick + 1;
+		this.timerWheel.advance(next, deadline -> {
+			blackhole.consume(deadline);
+			this.timerWheel.schedule(deadline + TICKS_PER_DAY, deadline + TICKS_PER_DAY);
+		});
+		this.tick = next;
+	}
+}
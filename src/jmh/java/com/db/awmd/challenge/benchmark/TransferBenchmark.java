@@ -0,0 +1,91 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+
+/**
+ * Transfers and lookups through {@link com.db.awmd.challenge.service.AccountsService} under the
+ * access patterns of {@link AccessPattern}
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransferBenchmark {
+
+	private static final int REQUESTS_PER_THREAD = 4096;
+
+	private static final AtomicLong SEEDS = new AtomicLong(42);
+
+	/**
+	 * requests of one benchmark thread, generated up front so that picking the accounts is not
+	 * part of the measurement
+	 */
+	@State(Scope.Thread)
+	public static class ThreadRequests {
+
+		@Param
+		AccessPattern accessPattern;
+
+		AmountTransferRequest[] transfers;
+
+		String[] lookups;
+
+		int next;
+
+		@Setup
+		public void setUp(AccountsServiceState state) {
+			SplittableRandom random = new SplittableRandom(SEEDS.getAndIncrement());
+			this.transfers = new AmountTransferRequest[REQUESTS_PER_THREAD];
+			this.lookups = new String[REQUESTS_PER_THREAD];
+			for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+				int from = this.accessPattern.nextAccount(random, state.zipfCumulative);
+				int to = this.accessPattern.nextAccount(random, state.zipfCumulative);
+				if (to == from) {
+					to = (from + 1) % (this.accessPattern == AccessPattern.CONFLICTING_PAIR ? 2 : state.accounts);
+				}
+				this.transfers[i] = new AmountTransferRequest(state.accountIds[from], state.accountIds[to],
+						BigDecimal.ONE);
+				this.lookups[i] = state.accountIds[from];
+			}
+		}
+
+		int nextIndex() {
+			int index = this.next;
+			this.next = (index + 1) & (REQUESTS_PER_THREAD - 1);
+			return index;
+		}
+	}
+
+	@Benchmark
+	public void transferAmount(AccountsServiceState state, ThreadRequests requests) {
+		state.accountsService.transferAmount(requests.transfers[requests.nextIndex()]);
+	}
+
+	@Benchmark
+	public Account getAccount(AccountsServiceState state, ThreadRequests requests) {
+		return state.accountsService.getAccount(requests.lookups[requests.nextIndex()]);
+	}
+
+	@Benchmark
+	public void transferAndRead(AccountsServiceState state, ThreadRequests requests, Blackhole blackhole) {
+		// what the transfer endpoint does: transfer, then read both accounts back to notify their owners
+		AmountTransferRequest transfer = requests.transfers[requests.nextIndex()];
+		state.accountsService.transferAmount(transfer);
+		blackhole.consume(state.accountsService.getAccount(transfer.getAccountFrom()));
+		blackhole.consume(state.accountsService.getAccount(transfer.getAccountTo()));
+	}
+}
@@ -0,0 +1,498 @@
+package com.db.awmd.challenge.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.domain.BalanceEngine;
+import com.db.awmd.challenge.domain.NotificationOverflowPolicy;
+import com.db.awmd.challenge.domain.RequestHandlingMode;
+
+import lombok.Data;
+
+/**
+ * Tuning knobs of the accounts service, bound from the {@code accounts.*} keys in application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts")
+public class AccountsProperties {
+
+	/**
+	 * representation of the account balances and the way transfers update them
+	 */
+	private BalanceEngine balanceEngine = BalanceEngine.SYNCHRONIZED;
+
+	/**
+	 * number of decimal places kept by the scaled-long balance engine
+	 */
+	private int balanceScale = 2;
+
+	/**
+	 * storage of the accounts, in-memory, off-heap or mapped
+	 */
+	private String repository = "in-memory";
+
+	private final OffHeap offHeap = new OffHeap();
+
+	private final Mapped mapped = new Mapped();
+
+	private final TransferBatch transferBatch = new TransferBatch();
+
+	private final Locking locking = new Locking();
+
+	private final HotAccounts hotAccounts = new HotAccounts();
+
+	private final Coalescing coalescing = new Coalescing();
+
+	private final Sharding sharding = new Sharding();
+
+	private final Journal journal = new Journal();
+
+	private final Snapshot snapshot = new Snapshot();
+
+	private final Notifications notifications = new Notifications();
+
+	private final Metrics metrics = new Metrics();
+
+	private final Audit audit = new Audit();
+
+	private final Idempotency idempotency = new Idempotency();
+
+	private final RequestHandling requestHandling = new RequestHandling();
+
+	private final BulkImport bulkImport = new BulkImport();
+
+	private final Listing listing = new Listing();
+
+	private final Ledger ledger = new Ledger();
+
+	private final ScheduledTransfers scheduledTransfers = new ScheduledTransfers();
+
+	private final Admission admission = new Admission();
+
+	private final Cluster cluster = new Cluster();
+
+	@Data
+	public static class OffHeap {
+		/**
+		 * number of accounts the off-heap index is sized for before it first grows
+		 */
+		private int expectedAccounts = 100000;
+	}
+
+	@Data
+	public static class Mapped {
+		/**
+		 * file of fixed-size account records, created on first start and mapped back on restart
+		 */
+		private String path = "data/accounts.mapped";
+
+		/**
+		 * forces the changed records to disk before a transfer returns, otherwise the operating
+		 * system writes them back in its own time
+		 */
+		private boolean forceOnSync = false;
+	}
+
+	@Data
+	public static class TransferBatch {
+		/**
+		 * maximum number of legs accepted in a single batch, every distinct account of
+		 * the batch is held locked while the legs are applied
+		 */
+		private int maxSize = 1000;
+
+		/**
+		 * number of fork-join workers applying the legs of parallel batches, 0 uses one per
+		 * available processor
+		 */
+		private int parallelism = 0;
+	}
+
+	@Data
+	public static class Locking {
+		/**
+		 * longest wait for an account locked by another transfer before the transfer fails, 0 waits
+		 * without limit
+		 */
+		private long timeoutMillis = 0;
+
+		/**
+		 * fails a transfer at once when one of its accounts is locked, without waiting
+		 */
+		private boolean failFast = false;
+
+		/**
+		 * number of locks the accounts are spread over, rounded up to a power of two
+		 */
+		private int stripes = 4096;
+	}
+
+	@Data
+	public static class HotAccounts {
+		/**
+		 * accounts whose credits are spread over stripes instead of serialising on the account
+		 */
+		private List<String> ids = new ArrayList<>();
+
+		/**
+		 * number of credit stripes of a hot account, rounded up to a power of two
+		 */
+		private int stripes = 16;
+
+		/**
+		 * also makes hot the accounts transfers keep waiting to lock
+		 */
+		private boolean adaptive = false;
+
+		/**
+		 * waits for the lock of an account within one check that make it hot
+		 */
+		private long promoteAfterWaits = 1000;
+
+		private long checkIntervalMillis = 1000;
+	}
+
+	@Data
+	public static class Coalescing {
+		/**
+		 * gathers single transfers into micro-batches, nets the transfers of every account pair and
+		 * moves each net amount under one acquisition of the pair's locks
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * time the first transfer of a batch waits for others to join
+		 */
+		private long maxDelayMicros = 300;
+
+		/**
+		 * number of transfers that closes a batch before the delay is over
+		 */
+		private int maxBatchSize = 64;
+	}
+
+	@Data
+	public static class Sharding {
+		/**
+		 * runs transfers on single-writer shard workers instead of locking the accounts on the
+		 * request thread
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * number of shard workers, 0 uses one per available processor
+		 */
+		private int shards = 0;
+
+		/**
+		 * maximum number of transfers queued on the shard workers before request threads wait
+		 */
+		private int maxPendingTransfers = 10000;
+	}
+
+	@Data
+	public static class Journal {
+		/**
+		 * appends every account creation, debit and credit to a journal replayed on startup
+		 */
+		private boolean enabled = false;
+
+		private String path = "data/accounts.journal";
+
+		/**
+		 * time the journal waits for concurrent transfers to join a group commit
+		 */
+		private long flushWindowMicros = 200;
+
+		/**
+		 * maximum number of records made durable by a single fsync
+		 */
+		private int maxBatchSize = 512;
+	}
+
+	@Data
+	public static class Snapshot {
+		/**
+		 * periodically writes a point-in-time image of the accounts so that startup only replays the
+		 * journal written after it, requires the journal
+		 */
+		private boolean enabled = false;
+
+		private String directory = "data/snapshots";
+
+		/**
+		 * delay between two snapshots, 0 only writes snapshots on demand
+		 */
+		private long intervalSeconds = 300;
+
+		/**
+		 * number of snapshots kept on disk
+		 */
+		private int retained = 2;
+	}
+
+	@Data
+	public static class Notifications {
+		/**
+		 * hands transfer notifications to dispatcher threads instead of sending them on the request
+		 * thread
+		 */
+		private boolean async = true;
+
+		/**
+		 * number of notifications queued in memory, rounded up to a power of two
+		 */
+		private int bufferCapacity = 8192;
+
+		private int dispatchers = 2;
+
+		/**
+		 * maximum number of notifications a dispatcher takes from the buffer at once
+		 */
+		private int batchSize = 64;
+
+		private NotificationOverflowPolicy overflowPolicy = NotificationOverflowPolicy.BLOCK;
+
+		/**
+		 * file receiving the overflow with the spill-to-disk policy
+		 */
+		private String spillPath = "data/notifications.spill";
+
+		/**
+		 * time an idle dispatcher sleeps before looking at the buffer again
+		 */
+		private long idleWaitMicros = 1000;
+	}
+
+	@Data
+	public static class Metrics {
+		/**
+		 * times the stages of the transfer path and counts the transfer outcomes
+		 */
+		private boolean enabled = true;
+	}
+
+	@Data
+	public static class Audit {
+		/**
+		 * replaces the per-transfer INFO messages with fixed-layout records written to the
+		 * transfer-audit logger by a background appender
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * number of records the ring holds before request threads wait for the appender, rounded
+		 * down to a power of two
+		 */
+		private int bufferCapacity = 16384;
+
+		/**
+		 * time the idle appender sleeps before looking at the ring again
+		 */
+		private long idleWaitMicros = 1000;
+	}
+
+	@Data
+	public static class Idempotency {
+		/**
+		 * number of idempotency keys remembered, the oldest key is forgotten to make room
+		 */
+		private int maxKeys = 100000;
+
+		/**
+		 * time a key is remembered after its transfer
+		 */
+		private long ttlSeconds = 600;
+	}
+
+	@Data
+	public static class RequestHandling {
+		private RequestHandlingMode mode = RequestHandlingMode.BLOCKING;
+
+		/**
+		 * runs handed off transfers on virtual threads when the JVM provides them, Java 21 and later
+		 */
+		private boolean virtualThreads = true;
+
+		/**
+		 * number of platform request workers used when virtual threads are not available
+		 */
+		private int workerThreads = 200;
+
+		/**
+		 * maximum number of transfers handed off at once, further transfers run on the container
+		 * thread
+		 */
+		private int maxInFlight = 10000;
+
+		/**
+		 * time after which a handed off transfer is answered with 503 Service Unavailable
+		 */
+		private long timeoutMillis = 30000;
+	}
+
+	@Data
+	public static class BulkImport {
+		/**
+		 * number of parsed lines inserted together, the repository is synced once per chunk
+		 */
+		private int chunkSize = 1000;
+
+		/**
+		 * number of chunks inserted at once, 0 uses one per available processor
+		 */
+		private int parallelism = 0;
+
+		/**
+		 * number of line errors listed in the summary, further errors are only counted
+		 */
+		private int maxErrors = 1000;
+	}
+
+	@Data
+	public static class Listing {
+		/**
+		 * largest number of accounts returned by a listing page
+		 */
+		private int maxPageSize = 1000;
+
+		/**
+		 * number of accounts the export reads from the repository and writes out at once
+		 */
+		private int exportChunkSize = 1000;
+	}
+
+	@Data
+	public static class Ledger {
+		/**
+		 * records every transfer made in the in-memory ledger the account statements are read from
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * largest number of transfers kept, rounded up to chunks of 65536, the oldest chunk is dropped
+		 * once it is exceeded. An entry takes 32 bytes of heap
+		 */
+		private long maxEntries = 4194304;
+
+		/**
+		 * largest number of transfers returned by a statement page
+		 */
+		private int maxPageSize = 1000;
+	}
+
+	@Data
+	public static class ScheduledTransfers {
+		/**
+		 * resolution of the execution times, due transfers are released once per tick
+		 */
+		private long tickMillis = 10;
+
+		/**
+		 * largest number of due transfers released per second, the rest wait for later ticks
+		 */
+		private int maxReleasePerSecond = 1000;
+
+		/**
+		 * largest number of pending transfers returned by a listing page
+		 */
+		private int maxPageSize = 1000;
+	}
+
+	@Data
+	public static class Admission {
+		/**
+		 * rejects the transfer requests over the limits below with 429 before they reach the accounts
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * transfer requests per second allowed to each client, told apart by the X-Client-Id header
+		 * or else by their address, 0 for no limit
+		 */
+		private int clientRatePerSecond = 1000;
+
+		/**
+		 * transfer requests a client may make at once on top of its rate
+		 */
+		private int clientBurst = 200;
+
+		/**
+		 * single transfers per second allowed to touch each account, 0 for no limit
+		 */
+		private int accountRatePerSecond = 500;
+
+		/**
+		 * single transfers an account may take at once on top of its rate
+		 */
+		private int accountBurst = 100;
+
+		/**
+		 * number of token buckets kept for the clients and as many for the accounts, keys sharing
+		 * a bucket share its limit
+		 */
+		private int buckets = 65536;
+
+		/**
+		 * transfer requests in flight allowed at first, the limit then follows the latency
+		 */
+		private int initialConcurrency = 64;
+
+		private int minConcurrency = 8;
+
+		private int maxConcurrency = 1024;
+
+		/**
+		 * average latency, as a multiple of the tenth percentile of the latest latencies, above which
+		 * the concurrency limit is lowered
+		 */
+		private double latencyTolerance = 2.0;
+	}
+
+	@Data
+	public static class Cluster {
+		/**
+		 * splits the accounts across the nodes, each node holding the accounts the ring assigns it
+		 * and forwarding the requests for the others to their owner
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * base URL of this node, one of the nodes
+		 */
+		private String self = "http://localhost:8080";
+
+		/**
+		 * base URLs of every node of the cluster, the same list on each node
+		 */
+		private List<String> nodes = new ArrayList<>();
+
+		/**
+		 * secret shared by the nodes, sent with every request between them and required by the
+		 * endpoints they call on each other, must be set when the cluster is enabled
+		 */
+		private String secret = "";
+
+		/**
+		 * points of every node on the consistent hash ring, more points spread the accounts more
+		 * evenly
+		 */
+		private int virtualNodes = 128;
+
+		/**
+		 * time a debit prepared for a transfer across nodes is held before it is refunded, when the
+		 * coordinator neither commits nor aborts it, and a credit waits before its node asks the node
+		 * of the payer what became of the debit
+		 */
+		private long reservationTimeoutSeconds = 30;
+
+		/**
+		 * connect and read timeout of the requests to the other nodes
+		 */
+		private int requestTimeoutMillis = 2000;
+	}
+}
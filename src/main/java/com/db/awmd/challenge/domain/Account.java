@@ -1,6 +1,8 @@
 package com.db.awmd.challenge.domain;
 
 import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -12,11 +14,31 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 
 @Data
+@ToString(exclude = { "balanceStamp", "creditStripes" })
 public class Account {
 
+	private static final AtomicLongFieldUpdater<Account> BALANCE_STAMP = AtomicLongFieldUpdater
+			.newUpdater(Account.class, "balanceStamp");
+
+	/**
+	 * added to the stamp by every completed balance update, the low bits count the updates in flight
+	 */
+	private static final long STAMP_VERSION = 1L << 32;
+
+	private static final long STAMP_IN_FLIGHT = STAMP_VERSION - 1;
+
+	private static final int READ_SPINS = 64;
+
+	/**
+	 * slots between two credit stripes, so that two stripes never share a cache line
+	 */
+	private static final int STRIPE_PADDING = 16;
+
 	@NotNull
 	@NotBlank
 	private final String accountId;
@@ -26,6 +48,17 @@ public class Account {
 	@Setter(AccessLevel.PRIVATE)
 	private volatile BigDecimal balance;
 
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private transient volatile long balanceStamp;
+
+	/**
+	 * credits not yet folded into the balance, null unless credits are striped
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private transient volatile AtomicReferenceArray<BigDecimal> creditStripes;
+
 	public Account(String accountId) {
 		this.accountId = accountId;
 		this.balance = BigDecimal.ZERO;
@@ -47,9 +80,164 @@ public class Account {
 
 	/**
 	 * @param amount
-	 * this method is synchronized to ensure multiple threads do not change the balance of an account simultaneously 
+	 * this method is synchronized to ensure multiple threads do not change the balance of an account simultaneously,
+	 * unless credits are striped: the amount is then added to a stripe without taking the monitor
+	 */
+	public void deposit(BigDecimal amount) {
+		AtomicReferenceArray<BigDecimal> stripes = this.creditStripes;
+		if (stripes == null) {
+			synchronized (this) {
+				this.balance = this.balance.add(amount);
+			}
+			return;
+		}
+		int stripe = creditStripe(stripes.length() / STRIPE_PADDING) * STRIPE_PADDING;
+		BigDecimal credited;
+		do {
+			credited = stripes.get(stripe);
+		} while (!stripes.compareAndSet(stripe, credited, credited.add(amount)));
+	}
+
+	/**
+	 * @return the balance, plus the credits not yet folded into it when credits are striped. A
+	 *         stripe folded while it is read may be missed, readBalance never misses it
+	 */
+	public BigDecimal getBalance() {
+		AtomicReferenceArray<BigDecimal> stripes = this.creditStripes;
+		BigDecimal balance = this.balance;
+		if (stripes != null) {
+			for (int i = 0; i < stripes.length(); i += STRIPE_PADDING) {
+				balance = balance.add(stripes.get(i));
+			}
+		}
+		return balance;
+	}
+
+	/**
+	 * @param stripes number of stripes, rounded up to a power of two
+	 * spreads the credits of the account over the given number of stripes, so that concurrent credits
+	 * rarely touch the same memory, debits fold the stripes back into the balance when it falls short.
+	 * Credits stay striped for the life of the account.
+	 */
+	public synchronized void stripeCredits(int stripes) {
+		if (this.creditStripes == null) {
+			AtomicReferenceArray<BigDecimal> creditStripes = new AtomicReferenceArray<>(
+					stripeCount(stripes) * STRIPE_PADDING);
+			for (int i = 0; i < creditStripes.length(); i += STRIPE_PADDING) {
+				creditStripes.set(i, BigDecimal.ZERO);
+			}
+			this.creditStripes = creditStripes;
+		}
+	}
+
+	/**
+	 * @return true if credits go to stripes instead of the balance
+	 */
+	public boolean hasStripedCredits() {
+		return this.creditStripes != null;
+	}
+
+	/**
+	 * @param amount
+	 * @return false, leaving the balance untouched, if the balance is lower than the amount
+	 * the balance check and the withdrawal happen atomically under the account monitor
+	 */
+	public synchronized boolean tryWithdraw(BigDecimal amount) {
+		if (this.balance.compareTo(amount) < 0 && (!foldCreditStripes() || this.balance.compareTo(amount) < 0)) {
+			return false;
+		}
+		this.balance = this.balance.subtract(amount);
+		return true;
+	}
+
+	/**
+	 * marks the balance as changing, readBalance waits until every begun update has ended
+	 */
+	public void beginBalanceUpdate() {
+		addToBalanceStamp(1);
+	}
+
+	/**
+	 * ends an update started with beginBalanceUpdate, from any thread
+	 */
+	public void endBalanceUpdate() {
+		addToBalanceStamp(STAMP_VERSION - 1);
+	}
+
+	/**
+	 * @return balance no update is half way through, read without the account monitor and retried
+	 *         if an update began or ended while it was read. Updates never wait for readers.
+	 */
+	public BigDecimal readBalance() {
+		for (int attempt = 0;; attempt++) {
+			long stamp = loadBalanceStamp();
+			if ((stamp & STAMP_IN_FLIGHT) == 0) {
+				BigDecimal balance = getBalance();
+				if (loadBalanceStamp() == stamp) {
+					return balance;
+				}
+			}
+			if (attempt >= READ_SPINS) {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * @return detached copy of the account, in the same balance representation, holding the
+	 *         balance given by readBalance
+	 */
+	public Account snapshot() {
+		return new Account(this.accountId, readBalance());
+	}
+
+	/**
+	 * @return true if credits were folded into the balance, must be called under the account monitor
+	 */
+	private boolean foldCreditStripes() {
+		AtomicReferenceArray<BigDecimal> stripes = this.creditStripes;
+		if (stripes == null) {
+			return false;
+		}
+		boolean folded = false;
+		for (int i = 0; i < stripes.length(); i += STRIPE_PADDING) {
+			BigDecimal credited = stripes.getAndSet(i, BigDecimal.ZERO);
+			if (credited.signum() != 0) {
+				this.balance = this.balance.add(credited);
+				folded = true;
+			}
+		}
+		return folded;
+	}
+
+	/**
+	 * @param stripes
+	 * @return power of two number of stripes, at least 2
+	 */
+	protected static int stripeCount(int stripes) {
+		return Math.max(2, Integer.highestOneBit(Math.max(1, stripes - 1)) << 1);
+	}
+
+	/**
+	 * @param stripes power of two
+	 * @return stripe credited by the current thread, the same on every call of a thread
+	 */
+	protected static int creditStripe(int stripes) {
+		long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) (id >>> 32) & (stripes - 1);
+	}
+
+	/**
+	 * @return stamp guarding the balance, read with volatile semantics
+	 */
+	protected long loadBalanceStamp() {
+		return this.balanceStamp;
+	}
+
+	/**
+	 * @param delta added atomically to the stamp guarding the balance
 	 */
-	public synchronized void deposit(BigDecimal amount) {
-		this.balance = this.balance.add(amount);
+	protected void addToBalanceStamp(long delta) {
+		BALANCE_STAMP.getAndAdd(this, delta);
 	}
 }
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Accounts of a listing page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPage {
+	private List<Account> accounts;
+	/**
+	 * cursor of the following page, null once the listing has reached the last account
+	 */
+	private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Transfers of an account in a statement page, the latest first
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountStatement {
+	private String accountId;
+	private List<StatementEntry> entries;
+	/**
+	 * cursor of the following, older page, null once the statement has reached the first transfer
+	 */
+	private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Point-in-time state of the admission control in front of the transfers
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdmissionStats {
+	private boolean enabled;
+	private int concurrencyLimit;
+	private int inFlight;
+	private long baselineLatencyMicros;
+	private long admitted;
+	private long rejectedByClient;
+	private long rejectedByAccount;
+	private long rejectedByConcurrency;
+}
@@ -26,4 +26,14 @@ public class AmountTransferRequest {
 	@Min(value = 0, message = "Initial balance must be positive.")
 	private BigDecimal amount;
 
+	/**
+	 * optional key chosen by the client, a retry carrying the key of an earlier transfer gets the
+	 * outcome of that transfer instead of moving the amount again
+	 */
+	private String idempotencyKey;
+
+	public AmountTransferRequest(String accountFrom, String accountTo, BigDecimal amount) {
+		this(accountFrom, accountTo, amount, null);
+	}
+
 }
@@ -0,0 +1,38 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Representation used for account balances and the way transfers update them, selected with
+ * the accounts.balance-engine property
+ */
+public enum BalanceEngine {
+
+	/**
+	 * BigDecimal balances, transfers hold the monitors of both accounts
+	 */
+	SYNCHRONIZED,
+
+	/**
+	 * fixed-scale long balances updated with compare-and-set, transfers never block
+	 */
+	SCALED_LONG;
+
+	/**
+	 * @return true if transfers rely on the atomic debit and credit of the accounts instead of
+	 *         their monitors
+	 */
+	public boolean isLockFree() {
+		return this == SCALED_LONG;
+	}
+
+	/**
+	 * @param account
+	 * @param scale decimal places kept by scaled balances
+	 * @return the account in the balance representation of this engine
+	 */
+	public Account adopt(Account account, int scale) {
+		if (this == SCALED_LONG && !(account instanceof ScaledBalanceAccount)) {
+			return new ScaledBalanceAccount(account.getAccountId(), account.getBalance(), scale);
+		}
+		return account;
+	}
+}
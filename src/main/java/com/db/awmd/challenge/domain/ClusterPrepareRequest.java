@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Leg of a transfer across nodes a participant is asked to prepare
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterPrepareRequest {
+	private ClusterTransferRole role;
+	private String accountFrom;
+	private String accountTo;
+	private BigDecimal amount;
+}
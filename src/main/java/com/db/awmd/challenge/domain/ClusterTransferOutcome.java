@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Outcome of a leg of a transfer across nodes as its participant knows it
+ */
+public enum ClusterTransferOutcome {
+	/**
+	 * prepared and neither committed nor aborted yet
+	 */
+	PREPARED,
+	/**
+	 * committed and not forgotten yet
+	 */
+	COMMITTED,
+	/**
+	 * aborted, expired or never prepared, a leg whose commit was forgotten is only asked about once
+	 * the other leg is committed as well
+	 */
+	ABORTED
+}
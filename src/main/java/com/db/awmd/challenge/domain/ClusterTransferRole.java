@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Part a node plays in a transfer between accounts of two nodes
+ */
+public enum ClusterTransferRole {
+	/**
+	 * owner of the payer account, holds the amount from the prepare on
+	 */
+	DEBIT,
+	/**
+	 * owner of the payee account, credits the amount on the commit
+	 */
+	CREDIT
+}
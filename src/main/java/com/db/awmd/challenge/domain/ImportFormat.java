@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Line formats read by the bulk account import and written by the account export
+ */
+public enum ImportFormat {
+
+	/**
+	 * one JSON object per line, {"accountId":"Id-1","balance":100}
+	 */
+	NDJSON,
+
+	/**
+	 * one accountId,balance pair per line, an optional accountId,balance header line is skipped
+	 */
+	CSV
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Line of a bulk import that did not create an account
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportLineError {
+	private long line;
+	private String accountId;
+	/**
+	 * simple name of the exception that rejected the line
+	 */
+	private String error;
+	private String message;
+}
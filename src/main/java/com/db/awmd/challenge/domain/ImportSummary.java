@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk account import
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportSummary {
+	private long lines;
+	private long created;
+	private long failed;
+	private long elapsedMillis;
+	/**
+	 * errors ordered by line, at most accounts.bulk-import.max-errors of them
+	 */
+	private List<ImportLineError> errors;
+	private boolean errorsTruncated;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Count and distribution of the latencies recorded by a histogram, in microseconds
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencySummary {
+	private long count;
+	private double meanMicros;
+	private double p50Micros;
+	private double p90Micros;
+	private double p99Micros;
+	private double p999Micros;
+	private double maxMicros;
+}
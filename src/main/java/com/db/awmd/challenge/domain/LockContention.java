@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Waits of the transfers that found an account locked, times in milliseconds
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LockContention {
+	private int stripe;
+	private String accountId;
+	private long contended;
+	private long timeouts;
+	private double totalWaitMillis;
+	private double maxWaitMillis;
+}
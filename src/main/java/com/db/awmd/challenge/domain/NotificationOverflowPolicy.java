@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * What happens to a notification raised while the dispatch buffer is full, selected with the
+ * accounts.notifications.overflow-policy property
+ */
+public enum NotificationOverflowPolicy {
+
+	/**
+	 * the request thread waits until a dispatcher frees a slot
+	 */
+	BLOCK,
+
+	/**
+	 * the oldest queued notification is discarded to make room
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * the notification is appended to a spill file, dispatched once the buffer has drained
+	 */
+	SPILL_TO_DISK
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Point-in-time counters of the asynchronous notification dispatch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationStats {
+	private int queueDepth;
+	private long spillDepth;
+	private long enqueued;
+	private long dispatched;
+	private long failed;
+	private long dropped;
+	private long spilled;
+	private long blocked;
+	private long lastLagMillis;
+	private long maxLagMillis;
+	private double averageLagMillis;
+}
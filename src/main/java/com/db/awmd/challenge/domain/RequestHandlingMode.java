@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Threads serving the transfer endpoints, selected with the accounts.request-handling.mode
+ * property
+ */
+public enum RequestHandlingMode {
+
+	/**
+	 * transfers run on the servlet container threads for their whole duration
+	 */
+	BLOCKING,
+
+	/**
+	 * transfers are handed to request workers and the container thread returns to the pool, so
+	 * a transfer waiting on a hot account does not hold a thread that could serve a read
+	 */
+	ASYNC
+}
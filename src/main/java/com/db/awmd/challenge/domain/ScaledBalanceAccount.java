@@ -0,0 +1,160 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Account whose balance is kept as a count of minor units (balance * 10^scale) in a single long.
+ * Debits and credits are compare-and-set loops on that long, so they never block and never
+ * allocate, the BigDecimal balance is only built when it is read. Striped credits are added to
+ * padded long cells and folded back into that long by the debits that find it short.
+ */
+public class ScaledBalanceAccount extends Account {
+
+	private static final AtomicLongFieldUpdater<ScaledBalanceAccount> UNITS = AtomicLongFieldUpdater
+			.newUpdater(ScaledBalanceAccount.class, "units");
+
+	private final int scale;
+
+	/**
+	 * longs between two credit stripes, so that two stripes never share a cache line
+	 */
+	private static final int STRIPE_PADDING = 8;
+
+	private volatile long units;
+
+	/**
+	 * credits in minor units not yet folded into units, null unless credits are striped
+	 */
+	private volatile AtomicLongArray creditStripes;
+
+	public ScaledBalanceAccount(String accountId, BigDecimal balance, int scale) {
+		super(accountId);
+		this.scale = scale;
+		this.units = toUnits(balance);
+	}
+
+	@Override
+	public BigDecimal getBalance() {
+		return BigDecimal.valueOf(getUnits(), this.scale);
+	}
+
+	@Override
+	public Account snapshot() {
+		return new ScaledBalanceAccount(getAccountId(), readBalance(), this.scale);
+	}
+
+	/**
+	 * @return balance in minor units
+	 */
+	@JsonIgnore
+	public long getUnits() {
+		AtomicLongArray stripes = this.creditStripes;
+		long units = this.units;
+		if (stripes != null) {
+			for (int i = 0; i < stripes.length(); i += STRIPE_PADDING) {
+				units += stripes.get(i);
+			}
+		}
+		return units;
+	}
+
+	@Override
+	public synchronized void stripeCredits(int stripes) {
+		if (this.creditStripes == null) {
+			this.creditStripes = new AtomicLongArray(stripeCount(stripes) * STRIPE_PADDING);
+		}
+	}
+
+	@Override
+	public boolean hasStripedCredits() {
+		return this.creditStripes != null;
+	}
+
+	@Override
+	public void withdraw(BigDecimal amount) {
+		UNITS.addAndGet(this, -toUnits(amount));
+	}
+
+	@Override
+	public void deposit(BigDecimal amount) {
+		creditUnits(toUnits(amount));
+	}
+
+	@Override
+	public boolean tryWithdraw(BigDecimal amount) {
+		return tryDebitUnits(toUnits(amount));
+	}
+
+	/**
+	 * @param amount in minor units
+	 * @return false, leaving the balance untouched, if the balance is lower than the amount
+	 */
+	public boolean tryDebitUnits(long amount) {
+		long current;
+		do {
+			current = this.units;
+			if (current < amount && !foldCreditStripes()) {
+				return false;
+			}
+		} while (current < amount || !UNITS.compareAndSet(this, current, current - amount));
+		return true;
+	}
+
+	/**
+	 * @param amount in minor units
+	 */
+	public void creditUnits(long amount) {
+		AtomicLongArray stripes = this.creditStripes;
+		if (stripes == null) {
+			UNITS.addAndGet(this, amount);
+		} else {
+			stripes.getAndAdd(creditStripe(stripes.length() / STRIPE_PADDING) * STRIPE_PADDING, amount);
+		}
+	}
+
+	/**
+	 * @return true if credits were moved from the stripes into units
+	 */
+	private boolean foldCreditStripes() {
+		AtomicLongArray stripes = this.creditStripes;
+		if (stripes == null) {
+			return false;
+		}
+		boolean folded = false;
+		for (int i = 0; i < stripes.length(); i += STRIPE_PADDING) {
+			long credited = stripes.getAndSet(i, 0);
+			if (credited != 0) {
+				UNITS.addAndGet(this, credited);
+				folded = true;
+			}
+		}
+		return folded;
+	}
+
+	/**
+	 * @param amount
+	 * @return the amount in minor units of this account
+	 */
+	public long toUnits(BigDecimal amount) {
+		return toUnits(amount, this.scale);
+	}
+
+	/**
+	 * @param amount
+	 * @param scale decimal places kept by the balance
+	 * @return the amount in minor units of a balance with the given scale
+	 */
+	public static long toUnits(BigDecimal amount, int scale) {
+		try {
+			return amount.movePointRight(scale).longValueExact();
+		} catch (ArithmeticException exception) {
+			throw new InvalidAmountException("Amount " + amount + " can not be represented with " + scale
+					+ " decimal places");
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Transfer waiting for its execution time
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledTransfer {
+	/**
+	 * given on scheduling, later schedulings have higher ids
+	 */
+	private long id;
+	private String accountFrom;
+	private String accountTo;
+	private BigDecimal amount;
+	/**
+	 * time the transfer is due, in milliseconds since the epoch
+	 */
+	private long executeAt;
+}
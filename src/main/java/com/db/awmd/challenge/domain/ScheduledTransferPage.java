@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pending scheduled transfers in a listing page, in the order they were scheduled
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledTransferPage {
+	private List<ScheduledTransfer> scheduledTransfers;
+	/**
+	 * cursor of the following page, null once the listing has reached the last pending transfer
+	 */
+	private String nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Transfer listed in the statement of one of its accounts
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementEntry {
+	/**
+	 * position of the transfer in the ledger, later transfers have higher sequences
+	 */
+	private long sequence;
+	/**
+	 * time the transfer was recorded, in milliseconds since the epoch
+	 */
+	private long timestamp;
+	private String accountFrom;
+	private String accountTo;
+	private BigDecimal amount;
+}
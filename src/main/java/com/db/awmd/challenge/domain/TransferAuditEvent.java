@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Kind of a record of the transfer audit log
+ */
+public enum TransferAuditEvent {
+
+	/**
+	 * transfer received by the transfer endpoint
+	 */
+	TRANSFER_REQUESTED,
+
+	/**
+	 * both accounts of a transfer are held and the amount is about to move
+	 */
+	TRANSFER_STARTED,
+
+	WITHDRAWN,
+
+	DEPOSITED
+}
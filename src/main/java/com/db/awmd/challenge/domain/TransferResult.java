@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+	private String accountFrom;
+	private String accountTo;
+	private BigDecimal amount;
+	private TransferStatus status;
+	private String message;
+
+	/**
+	 * @param transferRequest
+	 * @param status
+	 * @param message
+	 * @return outcome of the given transfer leg
+	 */
+	public static TransferResult of(AmountTransferRequest transferRequest, TransferStatus status, String message) {
+		return new TransferResult(transferRequest.getAccountFrom(), transferRequest.getAccountTo(),
+				transferRequest.getAmount(), status, message);
+	}
+}
@@ -0,0 +1,37 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Steps of the transfer path timed by {@link com.db.awmd.challenge.service.TransferMetrics}
+ */
+public enum TransferStage {
+
+	/**
+	 * transfer endpoint, from the request body to the response, notifications included
+	 */
+	REQUEST,
+
+	/**
+	 * AccountsService.transferAmount, lookups, balance change and journal sync included
+	 */
+	TRANSFER,
+
+	/**
+	 * time spent waiting for the monitors of both accounts, locking balance engine only
+	 */
+	LOCK_WAIT,
+
+	/**
+	 * balance check, balance change and repository update, while the accounts are held
+	 */
+	CRITICAL_SECTION,
+
+	/**
+	 * wait for the journal to make the transfer durable, after the accounts are released
+	 */
+	JOURNAL_SYNC,
+
+	/**
+	 * hand-off of the payer and payee notifications
+	 */
+	NOTIFICATION
+}
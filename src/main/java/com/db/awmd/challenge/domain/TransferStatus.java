@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.domain;
+
+public enum TransferStatus {
+	COMPLETED,
+	INSUFFICIENT_FUNDS,
+	ACCOUNT_NOT_FOUND,
+	REJECTED,
+	LOCK_TIMEOUT,
+	/**
+	 * the leg failed for a reason other than its accounts and amount, logged by the application
+	 */
+	FAILED
+}
@@ -1,10 +1,25 @@
 package com.db.awmd.challenge.exception;
 
+/**
+ * Unknown account id. The usual instance is shared and carries no stack trace, as lookups of unknown
+ * accounts are answered at the rate clients make them, the other instances wrap a fault and keep it
+ */
 public class AccountInfoNotFoundException extends RuntimeException {
 	
 	private static final long serialVersionUID = 1L;
 
+	public static final AccountInfoNotFoundException NOT_FOUND = new AccountInfoNotFoundException(
+			"This Account does not exist", false);
+
 	public AccountInfoNotFoundException(String message) {
 		super(message);
 	}
+
+	public AccountInfoNotFoundException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	private AccountInfoNotFoundException(String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+	}
 }
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class AccountLockTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public AccountLockTimeoutException(String message) {
+		super(message);
+	}
+}
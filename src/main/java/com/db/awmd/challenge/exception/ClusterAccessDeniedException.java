@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Request between nodes refused, the cluster is not enabled on this node or the request does not
+ * carry the secret shared by the nodes
+ */
+public class ClusterAccessDeniedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ClusterAccessDeniedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Node owning an account of the request did not answer
+ */
+public class ClusterNodeUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ClusterNodeUnavailableException(String message) {
+		super(message);
+	}
+}
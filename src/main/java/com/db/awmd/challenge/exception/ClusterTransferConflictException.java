@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Commit of a transfer across nodes whose prepared leg is gone, aborted or expired
+ */
+public class ClusterTransferConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ClusterTransferConflictException(String message) {
+		super(message);
+	}
+}
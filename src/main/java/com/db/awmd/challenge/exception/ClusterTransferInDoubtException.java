@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Transfer across nodes whose payer commit got no answer, it completes or is refunded once the
+ * node of the payer answers and must not be run again meanwhile
+ */
+public class ClusterTransferInDoubtException extends ClusterNodeUnavailableException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ClusterTransferInDoubtException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Leg of a transfer across nodes refused by the node of its account for a reason other than the
+ * balance or the account
+ */
+public class ClusterTransferRejectedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ClusterTransferRejectedException(String message) {
+		super(message);
+	}
+}
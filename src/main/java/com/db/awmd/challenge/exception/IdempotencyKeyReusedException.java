@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public IdempotencyKeyReusedException(String message) {
+		super(message);
+	}
+}
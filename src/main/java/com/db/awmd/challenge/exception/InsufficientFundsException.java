@@ -1,11 +1,23 @@
 package com.db.awmd.challenge.exception;
 
+/**
+ * Payer short of the amount of a transfer, a business outcome rather than a fault: the usual
+ * instance is shared and carries no stack trace, so a client retrying an overdraft at a high rate
+ * costs about as much as one whose transfers succeed.
+ */
 public class InsufficientFundsException extends RuntimeException {
 
 	private static final long serialVersionUID = 1L;
 
+	public static final InsufficientFundsException INSUFFICIENT_BALANCE = new InsufficientFundsException(
+			"Insufficient balance in the account!!", false);
+
 	public InsufficientFundsException(String message) {
 		super(message);
 	}
 
+	private InsufficientFundsException(String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+	}
+
 }
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class InvalidAccountIdException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidAccountIdException(String message) {
+		super(message);
+	}
+}
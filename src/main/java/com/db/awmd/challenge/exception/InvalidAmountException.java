@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class InvalidAmountException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidAmountException(String message) {
+		super(message);
+	}
+}
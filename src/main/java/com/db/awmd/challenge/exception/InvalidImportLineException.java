@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class InvalidImportLineException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidImportLineException(String message) {
+		super(message);
+	}
+}
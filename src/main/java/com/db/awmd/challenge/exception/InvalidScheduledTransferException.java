@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class InvalidScheduledTransferException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidScheduledTransferException(String message) {
+		super(message);
+	}
+}
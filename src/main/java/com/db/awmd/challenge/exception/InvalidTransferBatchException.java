@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class InvalidTransferBatchException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidTransferBatchException(String message) {
+		super(message);
+	}
+}
@@ -1,6 +1,8 @@
 package com.db.awmd.challenge.exception;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -9,18 +11,38 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import com.db.awmd.challenge.domain.ErrorMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @ControllerAdvice
 @ResponseStatus
 public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionHandler{
 
+	/**
+	 * responses to the shared business exceptions, serialized once and reused as they are immutable
+	 */
+	private final ResponseEntity<byte[]> insufficientBalance;
+
+	private final ResponseEntity<byte[]> accountNotFound;
+
+	@Autowired
+	public RestResponseEntityExceptionHandler(ObjectMapper objectMapper) {
+		this.insufficientBalance = preSerialized(objectMapper, HttpStatus.BAD_REQUEST,
+				InsufficientFundsException.INSUFFICIENT_BALANCE.getMessage());
+		this.accountNotFound = preSerialized(objectMapper, HttpStatus.NOT_FOUND,
+				AccountInfoNotFoundException.NOT_FOUND.getMessage());
+	}
+
 	/**
 	 * @param exception
 	 * @param request
-	 * @return ErrorMessage containing HttpStatus and message
+	 * @return ErrorMessage containing HttpStatus and message, pre-serialized for the shared exception
 	 */
 	@ExceptionHandler(InsufficientFundsException.class)
-	public ResponseEntity<ErrorMessage> insufficientBalanceException(InsufficientFundsException exception, WebRequest request){
+	public ResponseEntity<?> insufficientBalanceException(InsufficientFundsException exception, WebRequest request){
+		if (exception == InsufficientFundsException.INSUFFICIENT_BALANCE) {
+			return this.insufficientBalance;
+		}
 		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
 				exception.getMessage());
 		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
@@ -29,13 +51,187 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
 	/**
 	 * @param exception
 	 * @param request
-	 * @return ErrorMessage containing HttpStatus and message
+	 * @return ErrorMessage containing HttpStatus and message, pre-serialized for the shared exception
 	 */
 	@ExceptionHandler(AccountInfoNotFoundException.class)
-	public ResponseEntity<ErrorMessage> accountInfoNotFoundException(AccountInfoNotFoundException exception, WebRequest request){
+	public ResponseEntity<?> accountInfoNotFoundException(AccountInfoNotFoundException exception, WebRequest request){
+		if (exception == AccountInfoNotFoundException.NOT_FOUND) {
+			return this.accountNotFound;
+		}
+		ErrorMessage message = new ErrorMessage(HttpStatus.NOT_FOUND,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(InvalidAmountException.class)
+	public ResponseEntity<ErrorMessage> invalidAmountException(InvalidAmountException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(InvalidTransferBatchException.class)
+	public ResponseEntity<ErrorMessage> invalidTransferBatchException(InvalidTransferBatchException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(IdempotencyKeyReusedException.class)
+	public ResponseEntity<ErrorMessage> idempotencyKeyReusedException(IdempotencyKeyReusedException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.UNPROCESSABLE_ENTITY,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(InvalidCursorException.class)
+	public ResponseEntity<ErrorMessage> invalidCursorException(InvalidCursorException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(InvalidAccountIdException.class)
+	public ResponseEntity<ErrorMessage> invalidAccountIdException(InvalidAccountIdException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(AccountLockTimeoutException.class)
+	public ResponseEntity<ErrorMessage> accountLockTimeoutException(AccountLockTimeoutException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(InvalidScheduledTransferException.class)
+	public ResponseEntity<ErrorMessage> invalidScheduledTransferException(InvalidScheduledTransferException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(ScheduledTransferNotFoundException.class)
+	public ResponseEntity<ErrorMessage> scheduledTransferNotFoundException(ScheduledTransferNotFoundException exception, WebRequest request){
 		ErrorMessage message = new ErrorMessage(HttpStatus.NOT_FOUND,
 				exception.getMessage());
 		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message);
 	}
 	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(TransferRateLimitedException.class)
+	public ResponseEntity<ErrorMessage> transferRateLimitedException(TransferRateLimitedException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.TOO_MANY_REQUESTS,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(ClusterNodeUnavailableException.class)
+	public ResponseEntity<ErrorMessage> clusterNodeUnavailableException(ClusterNodeUnavailableException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(ClusterTransferConflictException.class)
+	public ResponseEntity<ErrorMessage> clusterTransferConflictException(ClusterTransferConflictException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.CONFLICT,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(ClusterTransferRejectedException.class)
+	public ResponseEntity<ErrorMessage> clusterTransferRejectedException(ClusterTransferRejectedException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+	}
+	
+	/**
+	 * @param exception
+	 * @param request
+	 * @return ErrorMessage containing HttpStatus and message
+	 */
+	@ExceptionHandler(ClusterAccessDeniedException.class)
+	public ResponseEntity<ErrorMessage> clusterAccessDeniedException(ClusterAccessDeniedException exception, WebRequest request){
+		ErrorMessage message = new ErrorMessage(HttpStatus.FORBIDDEN,
+				exception.getMessage());
+		return ResponseEntity.status(HttpStatus.FORBIDDEN).body(message);
+	}
+	
+	/**
+	 * @param objectMapper
+	 * @param status
+	 * @param message
+	 * @return response carrying the ErrorMessage as the JSON the message converters would write
+	 */
+	private static ResponseEntity<byte[]> preSerialized(ObjectMapper objectMapper, HttpStatus status, String message) {
+		try {
+			return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON_UTF8)
+					.body(objectMapper.writeValueAsBytes(new ErrorMessage(status, message)));
+		} catch (JsonProcessingException exception) {
+			throw new IllegalStateException("Error message " + message + " can not be serialized", exception);
+		}
+	}
+
 }
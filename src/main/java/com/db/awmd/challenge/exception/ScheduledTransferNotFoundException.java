@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.exception;
+
+public class ScheduledTransferNotFoundException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ScheduledTransferNotFoundException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * Transfer request over a limit of the admission control, thrown without a stack trace as
+ * rejecting excess work has to stay cheaper than doing it
+ */
+public class TransferRateLimitedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TransferRateLimitedException(String message) {
+		super(message, null, false, false);
+	}
+}
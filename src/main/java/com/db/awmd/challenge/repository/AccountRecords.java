@@ -0,0 +1,314 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+
+/**
+ * Fixed-size account records addressed by account number, read and changed in place by the
+ * {@link OffHeapAccount} views handed out by the repository. Every account gets a dense number when
+ * it is created and its record never moves, so a number stays valid for the life of the records.
+ * Subclasses only decide where the records and the ids are stored.
+ *
+ * An open-addressing index in direct memory with linear probing maps the hash of an id to its
+ * number, it is the only structure rebuilt when the records grow. Lookups read the index under an
+ * optimistic stamp and fall back to a read lock if a creation intervened. Balance changes hold one
+ * of a fixed set of striped monitors instead of a lock per account and then bump the balance stamp,
+ * which balance reads load first instead of taking the monitor. The balance stamps of
+ * {@link com.db.awmd.challenge.domain.Account} need atomic updates that a direct buffer does not
+ * offer on Java 8, they are kept on the heap in segments.
+ */
+abstract class AccountRecords {
+
+	/**
+	 * step of a balance stamp leaving its count of updates in flight untouched, as an update begun
+	 * and ended on an {@link com.db.awmd.challenge.domain.Account} does. Every balance change adds it
+	 * after writing the balance, a reader reading the stamp before the balance sees that write
+	 */
+	static final long BALANCE_VERSION = 1L << 32;
+
+	private static final int STAMP_SEGMENT_BITS = 16;
+
+	private static final int STAMPS_PER_SEGMENT = 1 << STAMP_SEGMENT_BITS;
+
+	private static final int STRIPES = 1024;
+
+	private static final double MAX_LOAD = 0.6;
+
+	private final int maxIdBytes;
+
+	private final StampedLock structureLock = new StampedLock();
+
+	private final Object[] stripes = new Object[STRIPES];
+
+	private volatile AtomicLongArray[] stampSegments = new AtomicLongArray[0];
+
+	/**
+	 * slot i holds the number of an account plus one, 0 for a free slot
+	 */
+	private ByteBuffer index;
+
+	private int indexMask;
+
+	private int size;
+
+	/**
+	 * @param maxIdBytes longest id in UTF-8 the records can hold
+	 */
+	AccountRecords(int maxIdBytes) {
+		this.maxIdBytes = maxIdBytes;
+		for (int i = 0; i < STRIPES; i++) {
+			this.stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * @param expectedAccounts sizes the first index, the records grow past it
+	 * @param stored number of records stored already
+	 * indexes the records stored already, called once by the constructor of the subclass
+	 */
+	final void load(int expectedAccounts, int stored) {
+		int slots = Integer.highestOneBit((int) Math.min(1 << 29, Math.max(16, expectedAccounts / MAX_LOAD)));
+		allocateIndex(slots < expectedAccounts / MAX_LOAD ? slots << 1 : slots);
+		for (int number = 0; number < stored; number++) {
+			growStamps(number);
+			place(number, recordHash(number));
+		}
+		this.size = stored;
+	}
+
+	/**
+	 * @param accountId
+	 * @param units initial balance in minor units
+	 * @return number of the new account, -1 if an account with this id exists
+	 */
+	final int insert(String accountId, long units) {
+		byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+		if (id.length > this.maxIdBytes) {
+			throw new InvalidAccountIdException("Account id longer than " + this.maxIdBytes + " bytes in UTF-8.");
+		}
+		int hash = hash(id);
+		long stamp = this.structureLock.writeLock();
+		try {
+			if (probe(id, hash) >= 0) {
+				return -1;
+			}
+			if (this.size + 1 > (this.indexMask + 1) * MAX_LOAD) {
+				rehash((this.indexMask + 1) << 1);
+			}
+			int number = this.size;
+			growStamps(number);
+			appendRecord(number, id, hash, units);
+			place(number, hash);
+			this.size = number + 1;
+			return number;
+		} finally {
+			this.structureLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param accountId
+	 * @return number of the account, -1 if there is none with this id
+	 */
+	final int find(String accountId) {
+		byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(id);
+		long stamp = this.structureLock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int number = probe(id, hash);
+				if (this.structureLock.validate(stamp)) {
+					return number;
+				}
+			} catch (RuntimeException exception) {
+				// read a half-built index while it was being grown, read it again under the lock
+			}
+		}
+		stamp = this.structureLock.readLock();
+		try {
+			return probe(id, hash);
+		} finally {
+			this.structureLock.unlockRead(stamp);
+		}
+	}
+
+	final int size() {
+		long stamp = this.structureLock.readLock();
+		try {
+			return this.size;
+		} finally {
+			this.structureLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param number
+	 * @return balance of the account in minor units
+	 */
+	final long units(int number) {
+		// no monitor: the volatile read of the stamp orders this read after the change that last
+		// bumped it, and an aligned 8-byte read of a direct buffer is never torn on a 64-bit JVM
+		balanceStamp(number);
+		return readUnits(number);
+	}
+
+	/**
+	 * @param number
+	 * @param delta added to the balance of the account, in minor units
+	 */
+	final void addUnits(int number, long delta) {
+		synchronized (stripe(number)) {
+			writeUnits(number, readUnits(number) + delta);
+		}
+		addToBalanceStamp(number, BALANCE_VERSION);
+	}
+
+	/**
+	 * @param number
+	 * @param amount in minor units
+	 * @return false, leaving the balance untouched, if the balance is lower than the amount
+	 */
+	final boolean tryDebitUnits(int number, long amount) {
+		synchronized (stripe(number)) {
+			long units = readUnits(number);
+			if (units < amount) {
+				return false;
+			}
+			writeUnits(number, units - amount);
+		}
+		addToBalanceStamp(number, BALANCE_VERSION);
+		return true;
+	}
+
+	/**
+	 * @param number
+	 * @return balance stamp of the account
+	 */
+	final long balanceStamp(int number) {
+		return this.stampSegments[number >>> STAMP_SEGMENT_BITS].get(number & (STAMPS_PER_SEGMENT - 1));
+	}
+
+	/**
+	 * @param number
+	 * @param delta added to the balance stamp of the account
+	 */
+	final void addToBalanceStamp(int number, long delta) {
+		this.stampSegments[number >>> STAMP_SEGMENT_BITS].getAndAdd(number & (STAMPS_PER_SEGMENT - 1), delta);
+	}
+
+	/**
+	 * @return bytes of direct memory held by the index
+	 */
+	final long indexBytes() {
+		long stamp = this.structureLock.readLock();
+		try {
+			return this.index.capacity();
+		} finally {
+			this.structureLock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param number lower than a size read before
+	 * @return id of the account
+	 */
+	abstract String accountId(int number);
+
+	/**
+	 * @param number the size of the records, the record is stored at it
+	 * @param id at most the longest id the records hold, in UTF-8
+	 * @param hash of the id
+	 * @param units initial balance in minor units
+	 * called under the write lock, the record is complete once it returns
+	 */
+	abstract void appendRecord(int number, byte[] id, int hash, long units);
+
+	/**
+	 * @param number
+	 * @return hash of the id of the account, as stored in its record
+	 */
+	abstract int recordHash(int number);
+
+	/**
+	 * @param number
+	 * @param id in UTF-8
+	 * @return true if the account has this id
+	 */
+	abstract boolean idEquals(int number, byte[] id);
+
+	/**
+	 * @param number
+	 * @return balance of the account in minor units, as last written
+	 */
+	abstract long readUnits(int number);
+
+	/**
+	 * @param number
+	 * @param units balance of the account in minor units, written under its stripe monitor
+	 */
+	abstract void writeUnits(int number, long units);
+
+	/**
+	 * @return number of the account with the given id, -1 if absent, must be called under a stamp
+	 */
+	private int probe(byte[] id, int hash) {
+		ByteBuffer index = this.index;
+		int mask = this.indexMask;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int entry = index.getInt(slot << 2);
+			if (entry == 0) {
+				return -1;
+			}
+			int number = entry - 1;
+			if (recordHash(number) == hash && idEquals(number, id)) {
+				return number;
+			}
+		}
+	}
+
+	private void place(int number, int hash) {
+		for (int slot = hash & this.indexMask;; slot = (slot + 1) & this.indexMask) {
+			if (this.index.getInt(slot << 2) == 0) {
+				this.index.putInt(slot << 2, number + 1);
+				return;
+			}
+		}
+	}
+
+	private void rehash(int slots) {
+		allocateIndex(slots);
+		for (int number = 0; number < this.size; number++) {
+			place(number, recordHash(number));
+		}
+	}
+
+	private void allocateIndex(int slots) {
+		this.index = ByteBuffer.allocateDirect(slots << 2);
+		this.indexMask = slots - 1;
+	}
+
+	/**
+	 * @param number of the next account, a stamp segment is added when it starts one
+	 */
+	private void growStamps(int number) {
+		if ((number & (STAMPS_PER_SEGMENT - 1)) == 0 && number >>> STAMP_SEGMENT_BITS == this.stampSegments.length) {
+			AtomicLongArray[] stamps = Arrays.copyOf(this.stampSegments, this.stampSegments.length + 1);
+			stamps[stamps.length - 1] = new AtomicLongArray(STAMPS_PER_SEGMENT);
+			this.stampSegments = stamps;
+		}
+	}
+
+	private Object stripe(int number) {
+		return this.stripes[number & (STRIPES - 1)];
+	}
+
+	private static int hash(byte[] id) {
+		int hash = Arrays.hashCode(id);
+		return hash ^ (hash >>> 16);
+	}
+}
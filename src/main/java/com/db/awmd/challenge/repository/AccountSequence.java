@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+
+import com.db.awmd.challenge.domain.Account;
+
+/**
+ * Accounts of the in-memory repository in the order they were created or restored. Accounts are
+ * appended and never removed one by one, so the position of an account never changes and
+ * listings can resume from a position while accounts are being created. Readers do not lock,
+ * they see every account appended before the size they read.
+ */
+final class AccountSequence {
+
+	private static final int CHUNK_BITS = 14;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private volatile Account[][] chunks = new Account[0][];
+
+	private volatile int size;
+
+	/**
+	 * @param account
+	 */
+	synchronized void append(Account account) {
+		int position = this.size;
+		int chunk = position >>> CHUNK_BITS;
+		Account[][] chunks = this.chunks;
+		if (chunk == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunk + 1);
+			chunks[chunk] = new Account[CHUNK_SIZE];
+			this.chunks = chunks;
+		}
+		chunks[chunk][position & (CHUNK_SIZE - 1)] = account;
+		this.size = position + 1;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param position lower than a size read before
+	 * @return account at the given position
+	 */
+	Account get(int position) {
+		return this.chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+	}
+}
@@ -1,5 +1,8 @@
 package com.db.awmd.challenge.repository;
 
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
@@ -23,6 +26,19 @@ public interface AccountsRepository {
 	 */
 	void clearAccounts();
 
+	/**
+	 * @param position 0 to start with the first account, then the position returned by the
+	 *                 previous scan
+	 * @param limit    maximum number of accounts handed to the consumer
+	 * @param consumer called without holding any lock, with the accounts in a stable order where
+	 *                 new accounts come last
+	 * @return position the next scan resumes from, fewer than limit accounts were visited once
+	 *         the scan has caught up with the accounts created so far
+	 * balances are read when their account is visited, an export running alongside transfers is
+	 * weakly consistent
+	 */
+	long scanAccounts(long position, int limit, Consumer<Account> consumer);
+
 	
 	/**
 	 * @param account
@@ -30,6 +46,47 @@ public interface AccountsRepository {
 	 */
 	Account updateAccount(Account account);
 
+	/**
+	 * @param account
+	 * @param amount  records an amount already withdrawn from the given account
+	 */
+	default void recordWithdrawal(Account account, BigDecimal amount) {
+	}
+
+	/**
+	 * @param account
+	 * @param amount  records an amount already deposited to the given account
+	 */
+	default void recordDeposit(Account account, BigDecimal amount) {
+	}
+
+	/**
+	 * @param account
+	 * @param amount  records an amount already withdrawn from the given account by a transfer
+	 * @return id of the withdrawal, to pass to the deposit of the same transfer
+	 */
+	default long recordTransferWithdrawal(Account account, BigDecimal amount) {
+		recordWithdrawal(account, amount);
+		return 0;
+	}
+
+	/**
+	 * @param account
+	 * @param amount     records an amount already deposited to the given account by a transfer
+	 * @param withdrawal id of the withdrawal of the same transfer, the withdrawal is undone on
+	 *                   restart if its deposit was not recorded
+	 */
+	default void recordTransferDeposit(Account account, BigDecimal amount, long withdrawal) {
+		recordDeposit(account, amount);
+	}
+
+	/**
+	 * waits until every change recorded so far is durable, must not be called while
+	 * holding account locks
+	 */
+	default void sync() {
+	}
+
 	/**
 	 * @param accountFrom
 	 * @param amount      method to withdraw the given amount from the given account
@@ -1,25 +1,129 @@
 
 package com.db.awmd.challenge.repository;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import com.db.awmd.challenge.config.AccountsProperties;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.TransferJournal.RecordType;
+
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
+	/**
+	 * marks an account that did not exist yet at the sequence of a running snapshot
+	 */
+	private static final BigDecimal ABSENT_AT_SNAPSHOT = new BigDecimal(-1);
+
 	private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
+	/**
+	 * the accounts in creation order, replaced when the accounts are cleared
+	 */
+	private volatile AccountSequence accountSequence = new AccountSequence();
+
+	private final AccountsProperties accountsProperties;
+
+	/**
+	 * null unless accounts.journal.enabled is set
+	 */
+	private final TransferJournal journal;
+
+	/**
+	 * held shared by creations and clears, exclusively while a snapshot picks its sequence so that
+	 * every account created up to that sequence is visible to the snapshot
+	 */
+	private final ReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+	/**
+	 * null unless accounts.snapshot.enabled is set
+	 */
+	private final ScheduledExecutorService snapshotScheduler;
+
+	private volatile SnapshotEpoch snapshotEpoch;
+
+	@Autowired
+	public AccountsRepositoryInMemory(AccountsProperties accountsProperties) throws IOException {
+		this.accountsProperties = accountsProperties;
+		AccountsProperties.Journal journalProperties = accountsProperties.getJournal();
+		AccountsProperties.Snapshot snapshotProperties = accountsProperties.getSnapshot();
+		if (!journalProperties.isEnabled()) {
+			if (snapshotProperties.isEnabled()) {
+				log.warn("Account snapshots need accounts.journal.enabled, snapshots are disabled");
+			}
+			this.journal = null;
+			this.snapshotScheduler = null;
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		long snapshotSequence = 0;
+		if (snapshotProperties.isEnabled()) {
+			snapshotSequence = AccountsSnapshot.loadLatest(Paths.get(snapshotProperties.getDirectory()),
+					(accountId, balance) -> restore(adopt(new Account(accountId, balance))));
+		}
+		int restoredAccounts = this.accounts.size();
+		this.journal = TransferJournal.open(Paths.get(journalProperties.getPath()), snapshotSequence,
+				TimeUnit.MICROSECONDS.toNanos(journalProperties.getFlushWindowMicros()),
+				journalProperties.getMaxBatchSize(), this::replay);
+		log.info("Restored {} accounts from snapshot {} and replayed the journal up to {} in {} ms",
+				restoredAccounts, snapshotSequence, this.journal.getLastSequence(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+		if (snapshotProperties.isEnabled() && snapshotProperties.getIntervalSeconds() > 0) {
+			this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "accounts-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+					snapshotProperties.getIntervalSeconds(), snapshotProperties.getIntervalSeconds(), TimeUnit.SECONDS);
+		} else {
+			this.snapshotScheduler = null;
+		}
+	}
+
 	@Override
 	public void createAccount(Account account) throws DuplicateAccountIdException {
-		Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-		if (previousAccount != null) {
+		AtomicBoolean created = new AtomicBoolean();
+		this.structureLock.readLock().lock();
+		try {
+			this.accounts.computeIfAbsent(account.getAccountId(), accountId -> {
+				// journaled before the account becomes visible, so no debit or credit can precede it
+				append(RecordType.CREATE, account, account.getBalance(), null);
+				this.accountSequence.append(account);
+				created.set(true);
+				return account;
+			});
+		} finally {
+			this.structureLock.readLock().unlock();
+		}
+		if (!created.get()) {
 			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
 		}
 	}
@@ -28,14 +132,31 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 	public Account getAccount(String accountId) {
 		Account account = accounts.get(accountId);
 		if (Objects.isNull(account)) {
-			throw new AccountInfoNotFoundException("This Account does not exist");
+			throw AccountInfoNotFoundException.NOT_FOUND;
 		}
 		return account;
 	}
 
 	@Override
 	public void clearAccounts() {
-		accounts.clear();
+		this.structureLock.readLock().lock();
+		try {
+			append(RecordType.CLEAR, null, null, null);
+			accounts.clear();
+			this.accountSequence = new AccountSequence();
+		} finally {
+			this.structureLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public long scanAccounts(long position, int limit, Consumer<Account> consumer) {
+		AccountSequence accountSequence = this.accountSequence;
+		long end = Math.min(accountSequence.size(), position + limit);
+		for (long next = position; next < end; next++) {
+			consumer.accept(accountSequence.get((int) next));
+		}
+		return Math.max(position, end);
 	}
 
 	@Override
@@ -43,6 +164,203 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 		return accounts.replace(account.getAccountId(), account);
 	}
 
+	@Override
+	public void recordWithdrawal(Account account, BigDecimal amount) {
+		append(RecordType.DEBIT, account, amount, amount);
+	}
+
+	@Override
+	public void recordDeposit(Account account, BigDecimal amount) {
+		append(RecordType.CREDIT, account, amount, amount.negate());
+	}
+
+	@Override
+	public long recordTransferWithdrawal(Account account, BigDecimal amount) {
+		return append(RecordType.TRANSFER_DEBIT, account, amount, amount);
+	}
+
+	@Override
+	public void recordTransferDeposit(Account account, BigDecimal amount, long withdrawal) {
+		if (withdrawal == 0) {
+			recordDeposit(account, amount);
+		} else {
+			append(RecordType.TRANSFER_CREDIT, account, amount, amount.negate(), withdrawal);
+		}
+	}
+
+	@Override
+	public void sync() {
+		if (this.journal != null) {
+			this.journal.sync();
+		}
+	}
+
+	/**
+	 * @param type
+	 * @param account
+	 * @param amount
+	 * @param undo amount to add to the current balance to get the balance before this record
+	 * @return sequence of the record, 0 without journal
+	 */
+	private long append(RecordType type, Account account, BigDecimal amount, BigDecimal undo) {
+		return append(type, account, amount, undo, 0);
+	}
+
+	/**
+	 * @param type
+	 * @param account
+	 * @param amount
+	 * @param undo amount to add to the current balance to get the balance before this record
+	 * @param transfer sequence of the withdrawal a transfer deposit completes
+	 * @return sequence of the record, 0 without journal
+	 */
+	private long append(RecordType type, Account account, BigDecimal amount, BigDecimal undo, long transfer) {
+		if (this.journal == null) {
+			return 0;
+		}
+		long sequence = this.journal.append(type, account == null ? null : account.getAccountId(), amount,
+				transfer);
+		SnapshotEpoch epoch = this.snapshotEpoch;
+		if (epoch == null || sequence <= epoch.sequence) {
+			return sequence;
+		}
+		// first change after the sequence of a running snapshot: keep the balance the snapshot has to see.
+		// Debits and credits are recorded under the account monitor, which the snapshot also holds
+		// while it reads the account
+		if (type == RecordType.CREATE) {
+			epoch.balances.putIfAbsent(account.getAccountId(), ABSENT_AT_SNAPSHOT);
+		} else if (type == RecordType.CLEAR) {
+			epoch.aborted = true;
+		} else {
+			epoch.balances.putIfAbsent(account.getAccountId(), account.getBalance().add(undo));
+		}
+		return sequence;
+	}
+
+	/**
+	 * applies a journal record found on startup
+	 */
+	private void replay(long sequence, RecordType type, String accountId, BigDecimal amount) {
+		Account account = accountId == null ? null : this.accounts.get(accountId);
+		if ((type == RecordType.DEBIT || type == RecordType.CREDIT) && account == null) {
+			// left by a transfer that raced a clear of the accounts
+			log.warn("Journal record {} is a {} of the unknown account {} and is skipped", sequence, type, accountId);
+			return;
+		}
+		switch (type) {
+		case CREATE:
+			restore(adopt(new Account(accountId, amount)));
+			break;
+		case DEBIT:
+			account.withdraw(amount);
+			break;
+		case CREDIT:
+			account.deposit(amount);
+			break;
+		case CLEAR:
+			this.accounts.clear();
+			this.accountSequence = new AccountSequence();
+			break;
+		default:
+			// transfer records are handed over as debits and credits
+			break;
+		}
+	}
+
+	/**
+	 * puts back an account read from a snapshot or the journal
+	 */
+	private void restore(Account account) {
+		this.accounts.put(account.getAccountId(), account);
+		this.accountSequence.append(account);
+	}
+
+	private Account adopt(Account account) {
+		return this.accountsProperties.getBalanceEngine().adopt(account, this.accountsProperties.getBalanceScale());
+	}
+
+	/**
+	 * @return journal sequence reflected by the written snapshot
+	 * @throws IOException
+	 * writes a point-in-time snapshot of every account without stopping transfers, the journal
+	 * segments it covers are deleted once it is durable
+	 */
+	public synchronized long writeSnapshot() throws IOException {
+		if (this.journal == null) {
+			throw new IllegalStateException("Account snapshots need the journal");
+		}
+		AccountsProperties.Snapshot snapshotProperties = this.accountsProperties.getSnapshot();
+		long startTime = System.nanoTime();
+		long rollSequence;
+		this.structureLock.writeLock().lock();
+		try {
+			// published under the journal lock, every record appended after the sequence sees the epoch
+			rollSequence = this.journal.requestRoll(sequence -> this.snapshotEpoch = new SnapshotEpoch(sequence));
+		} finally {
+			this.structureLock.writeLock().unlock();
+		}
+		// creations and clears go on while the closed segment is forced
+		this.journal.awaitRoll(rollSequence);
+		SnapshotEpoch epoch = this.snapshotEpoch;
+
+		Path directory = Paths.get(snapshotProperties.getDirectory());
+		try (AccountsSnapshot.Writer writer = AccountsSnapshot.create(directory, epoch.sequence)) {
+			for (Account account : this.accounts.values()) {
+				BigDecimal balance;
+				synchronized (account) {
+					BigDecimal balanceAtSnapshot = epoch.balances.get(account.getAccountId());
+					if (balanceAtSnapshot == ABSENT_AT_SNAPSHOT) {
+						continue;
+					}
+					balance = balanceAtSnapshot != null ? balanceAtSnapshot : account.getBalance();
+				}
+				writer.write(account.getAccountId(), balance);
+			}
+			if (epoch.aborted) {
+				throw new IOException("Accounts were cleared while the snapshot was written");
+			}
+			writer.commit();
+			log.info("Snapshot of {} accounts at sequence {} written in {} ms", writer.getAccountCount(),
+					epoch.sequence, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+		} finally {
+			this.snapshotEpoch = null;
+		}
+		// the journal after the oldest snapshot kept is kept too, so that it can still be restored
+		this.journal.deleteSegmentsThrough(AccountsSnapshot.deleteOlder(directory, snapshotProperties.getRetained()));
+		return epoch.sequence;
+	}
+
+	private void scheduledSnapshot() {
+		try {
+			writeSnapshot();
+		} catch (IOException | RuntimeException exception) {
+			log.error("Account snapshot failed", exception);
+		}
+	}
+
+	@PreDestroy
+	public void closeJournal() throws IOException {
+		if (this.snapshotScheduler != null) {
+			this.snapshotScheduler.shutdownNow();
+		}
+		if (this.journal != null) {
+			this.journal.close();
+		}
+	}
+
+	/**
+	 * balances of a running snapshot that changed after its sequence
+	 */
+	private static final class SnapshotEpoch {
+		private final long sequence;
+		private final Map<String, BigDecimal> balances = new ConcurrentHashMap<>();
+		private volatile boolean aborted;
+
+		private SnapshotEpoch(long sequence) {
+			this.sequence = sequence;
+		}
+	}
+
 	/*
 	 * @Override public void withdrawAmount(String accountId, BigDecimal amount) {
 	 * Account accountFrom = getAccount(accountId); //To ensure that multiple
@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScaledBalanceAccount;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts kept in a {@link MappedAccountFile}, selected with accounts.repository set to mapped,
+ * which the mapped Spring profile does. The file is the primary store: debits and credits write
+ * the balance in place, and a restart maps the file back in with every balance as it was. The
+ * accounts may outgrow the heap, which only holds an 8-byte balance stamp per account and the views
+ * handed out by lookups.
+ *
+ * Like the off-heap repository it needs the scaled-long balance engine and does not journal. A
+ * transfer is two separate in-place writes: a crash of the machine between its debit and its
+ * credit is not undone on restart.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+	private final Path path;
+
+	private final int scale;
+
+	private final boolean forceOnSync;
+
+	private volatile MappedAccountFile file;
+
+	@Autowired
+	public AccountsRepositoryMapped(AccountsProperties accountsProperties) throws IOException {
+		if (!accountsProperties.getBalanceEngine().isLockFree()) {
+			throw new IllegalStateException("The mapped accounts repository needs the scaled-long balance engine");
+		}
+		if (accountsProperties.getJournal().isEnabled() || accountsProperties.getSnapshot().isEnabled()) {
+			log.warn("The mapped accounts repository is persistent itself, journal and snapshots are disabled");
+		}
+		AccountsProperties.Mapped mapped = accountsProperties.getMapped();
+		this.path = Paths.get(mapped.getPath());
+		this.scale = accountsProperties.getBalanceScale();
+		this.forceOnSync = mapped.isForceOnSync();
+		this.file = MappedAccountFile.open(this.path, this.scale);
+		log.info("Mapped {} accounts from {}", this.file.size(), this.path);
+	}
+
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		BigDecimal balance = account.getBalance();
+		long units = ScaledBalanceAccount.toUnits(balance == null ? BigDecimal.ZERO : balance, this.scale);
+		if (this.file.insert(account.getAccountId(), units) < 0) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+	}
+
+	@Override
+	public Account getAccount(String accountId) {
+		MappedAccountFile file = this.file;
+		int number = file.find(accountId);
+		if (number < 0) {
+			throw AccountInfoNotFoundException.NOT_FOUND;
+		}
+		return new OffHeapAccount(file, accountId, number, this.scale);
+	}
+
+	/**
+	 * replaces the file with an empty one, views of the discarded file keep writing to its
+	 * unlinked records
+	 */
+	@Override
+	public synchronized void clearAccounts() {
+		try {
+			this.file.close();
+			Files.delete(this.path);
+			this.file = MappedAccountFile.open(this.path, this.scale);
+		} catch (IOException exception) {
+			throw new UncheckedIOException("Clearing the accounts file failed", exception);
+		}
+	}
+
+	/**
+	 * accounts are numbered in creation order, the position of a scan is an account number
+	 */
+	@Override
+	public long scanAccounts(long position, int limit, Consumer<Account> consumer) {
+		MappedAccountFile file = this.file;
+		long end = Math.min(file.size(), position + limit);
+		for (long next = position; next < end; next++) {
+			int number = (int) next;
+			consumer.accept(new OffHeapAccount(file, file.accountId(number), number, this.scale));
+		}
+		return Math.max(position, end);
+	}
+
+	/**
+	 * @param account
+	 * @return the account, views write their changes through to the file
+	 */
+	@Override
+	public Account updateAccount(Account account) {
+		return account;
+	}
+
+	/**
+	 * changes reach the file through the page cache and survive the process, with
+	 * accounts.mapped.force-on-sync they also survive the machine once sync returns
+	 */
+	@Override
+	public void sync() {
+		if (this.forceOnSync) {
+			this.file.force();
+		}
+	}
+
+	/**
+	 * @return number of accounts in the file
+	 */
+	public int size() {
+		return this.file.size();
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		this.file.close();
+	}
+}
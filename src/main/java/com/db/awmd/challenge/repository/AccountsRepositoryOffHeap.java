@@ -0,0 +1,112 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScaledBalanceAccount;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts kept in an {@link OffHeapAccountTable} instead of one heap object per account, selected
+ * with accounts.repository set to off-heap. The heap only holds an 8-byte balance stamp per account
+ * and the accounts handed out by lookups, which the collector reclaims as soon as the request using
+ * them is done.
+ *
+ * Views of an account are not unique, so the repository needs the scaled-long balance engine,
+ * whose transfers never rely on account monitors. Accounts are not journaled.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+	private final int expectedAccounts;
+
+	private final int scale;
+
+	private volatile OffHeapAccountTable table;
+
+	@Autowired
+	public AccountsRepositoryOffHeap(AccountsProperties accountsProperties) {
+		if (!accountsProperties.getBalanceEngine().isLockFree()) {
+			throw new IllegalStateException("The off-heap accounts repository needs the scaled-long balance engine");
+		}
+		if (accountsProperties.getJournal().isEnabled() || accountsProperties.getSnapshot().isEnabled()) {
+			log.warn("The off-heap accounts repository does not journal accounts, journal and snapshots are disabled");
+		}
+		this.expectedAccounts = accountsProperties.getOffHeap().getExpectedAccounts();
+		this.table = new OffHeapAccountTable(this.expectedAccounts);
+		this.scale = accountsProperties.getBalanceScale();
+	}
+
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		BigDecimal balance = account.getBalance();
+		long units = ScaledBalanceAccount.toUnits(balance == null ? BigDecimal.ZERO : balance, this.scale);
+		if (this.table.insert(account.getAccountId(), units) < 0) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+	}
+
+	@Override
+	public Account getAccount(String accountId) {
+		OffHeapAccountTable table = this.table;
+		int number = table.find(accountId);
+		if (number < 0) {
+			throw AccountInfoNotFoundException.NOT_FOUND;
+		}
+		return new OffHeapAccount(table, accountId, number, this.scale);
+	}
+
+	@Override
+	public void clearAccounts() {
+		// the old table is released by the collector once no view refers to it any more
+		this.table = new OffHeapAccountTable(this.expectedAccounts);
+	}
+
+	/**
+	 * accounts are numbered in creation order, the position of a scan is an account number
+	 */
+	@Override
+	public long scanAccounts(long position, int limit, Consumer<Account> consumer) {
+		OffHeapAccountTable table = this.table;
+		long end = Math.min(table.size(), position + limit);
+		for (long next = position; next < end; next++) {
+			int number = (int) next;
+			consumer.accept(new OffHeapAccount(table, table.accountId(number), number, this.scale));
+		}
+		return Math.max(position, end);
+	}
+
+	/**
+	 * @param account
+	 * @return the account, views write their changes through to the table
+	 */
+	@Override
+	public Account updateAccount(Account account) {
+		return account;
+	}
+
+	/**
+	 * @return number of accounts in the table
+	 */
+	public int size() {
+		return this.table.size();
+	}
+
+	/**
+	 * @return bytes of direct memory held by the accounts
+	 */
+	public long offHeapBytes() {
+		return this.table.offHeapBytes();
+	}
+}
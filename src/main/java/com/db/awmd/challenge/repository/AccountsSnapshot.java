@@ -0,0 +1,274 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary point-in-time image of the account balances, named after the journal sequence it reflects.
+ *
+ * A snapshot is a header (magic, version, sequence) followed by blocks of at most
+ * {@value #BLOCK_BYTES} bytes, each with its length, record count and CRC32, and a zero length
+ * terminator. A record is the UTF-8 account id and the scale and unscaled bytes of the balance.
+ * Blocks are memory-mapped one at a time when the snapshot is loaded.
+ */
+public final class AccountsSnapshot {
+
+	private static final int MAGIC = 0x41434353;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 16;
+
+	private static final int BLOCK_HEADER_BYTES = 12;
+
+	private static final int BLOCK_BYTES = 4 * 1024 * 1024;
+
+	private static final String PREFIX = "accounts-";
+
+	private static final String SUFFIX = ".snapshot";
+
+	private AccountsSnapshot() {
+	}
+
+	/**
+	 * @param directory
+	 * @param sequence journal sequence reflected by the snapshot
+	 * @return writer of a new snapshot, only visible once committed
+	 * @throws IOException
+	 */
+	public static Writer create(Path directory, long sequence) throws IOException {
+		Files.createDirectories(directory);
+		return new Writer(directory, sequence);
+	}
+
+	/**
+	 * @param directory
+	 * @param consumer receives the accountId and balance of every account of the snapshot
+	 * @return journal sequence reflected by the loaded snapshot, 0 if there is none
+	 * @throws IOException if the newest snapshot is corrupt, part of it may have been consumed
+	 */
+	public static long loadLatest(Path directory, BiConsumer<String, BigDecimal> consumer) throws IOException {
+		List<Long> sequences = sequences(directory);
+		if (sequences.isEmpty()) {
+			return 0;
+		}
+		long sequence = sequences.get(sequences.size() - 1);
+		load(path(directory, sequence), sequence, consumer);
+		return sequence;
+	}
+
+	/**
+	 * @param directory
+	 * @param retained number of newest snapshots to keep
+	 * @return journal sequence reflected by the oldest snapshot kept, 0 if none is kept
+	 * @throws IOException
+	 */
+	public static long deleteOlder(Path directory, int retained) throws IOException {
+		List<Long> sequences = sequences(directory);
+		int deleted = Math.max(0, sequences.size() - retained);
+		for (int i = 0; i < deleted; i++) {
+			Files.deleteIfExists(path(directory, sequences.get(i)));
+		}
+		return deleted < sequences.size() ? sequences.get(deleted) : 0;
+	}
+
+	private static Path path(Path directory, long sequence) {
+		return directory.resolve(PREFIX + String.format("%020d", sequence) + SUFFIX);
+	}
+
+	private static List<Long> sequences(Path directory) throws IOException {
+		List<Long> sequences = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return sequences;
+		}
+		try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path snapshot : snapshots) {
+				String name = snapshot.getFileName().toString();
+				try {
+					sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+				} catch (NumberFormatException exception) {
+					// not a snapshot
+				}
+			}
+		}
+		Collections.sort(sequences);
+		return sequences;
+	}
+
+	private static void load(Path path, long sequence, BiConsumer<String, BigDecimal> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(Math.max(HEADER_BYTES, BLOCK_HEADER_BYTES));
+			readFully(channel, header, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != sequence) {
+				throw new IOException("Not a snapshot of sequence " + sequence + ": " + path);
+			}
+			long position = HEADER_BYTES;
+			CRC32 crc = new CRC32();
+			byte[] accountId = new byte[256];
+			while (true) {
+				readFully(channel, header, position, 4);
+				int length = header.getInt();
+				if (length == 0) {
+					return;
+				}
+				readFully(channel, header, position + 4, BLOCK_HEADER_BYTES - 4);
+				int count = header.getInt();
+				int checksum = header.getInt();
+				MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position + BLOCK_HEADER_BYTES,
+						length);
+				crc.reset();
+				crc.update(block.duplicate());
+				if ((int) crc.getValue() != checksum) {
+					throw new IOException("Corrupt block at " + position + " in " + path);
+				}
+				for (int i = 0; i < count; i++) {
+					int idLength = block.getShort() & 0xFFFF;
+					if (accountId.length < idLength) {
+						accountId = new byte[idLength];
+					}
+					block.get(accountId, 0, idLength);
+					int scale = block.getShort();
+					byte[] unscaled = new byte[block.get() & 0xFF];
+					block.get(unscaled);
+					consumer.accept(new String(accountId, 0, idLength, StandardCharsets.UTF_8),
+							new BigDecimal(new BigInteger(unscaled), scale));
+				}
+				position += BLOCK_HEADER_BYTES + length;
+			}
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+			throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Truncated snapshot");
+			}
+		}
+		buffer.flip();
+	}
+
+	public static final class Writer implements Closeable {
+
+		private final Path directory;
+
+		private final long sequence;
+
+		private final Path temporary;
+
+		private final FileChannel channel;
+
+		private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES);
+
+		private final CRC32 crc = new CRC32();
+
+		private int blockCount;
+
+		private long accountCount;
+
+		private boolean committed;
+
+		private Writer(Path directory, long sequence) throws IOException {
+			this.directory = directory;
+			this.sequence = sequence;
+			this.temporary = directory.resolve(PREFIX + String.format("%020d", sequence) + ".tmp");
+			this.channel = FileChannel.open(this.temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putLong(sequence).flip();
+			write(header);
+		}
+
+		/**
+		 * @param accountId
+		 * @param balance
+		 * @throws IOException
+		 */
+		public void write(String accountId, BigDecimal balance) throws IOException {
+			byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+			byte[] unscaled = balance.unscaledValue().toByteArray();
+			if (id.length > 0xFFFF || unscaled.length > 0xFF || balance.scale() != (short) balance.scale()) {
+				throw new IOException("Account " + accountId + " can not be written to a snapshot");
+			}
+			if (this.block.remaining() < 2 + id.length + 2 + 1 + unscaled.length) {
+				flushBlock();
+			}
+			this.block.putShort((short) id.length).put(id);
+			this.block.putShort((short) balance.scale()).put((byte) unscaled.length).put(unscaled);
+			this.blockCount++;
+			this.accountCount++;
+		}
+
+		/**
+		 * @return number of accounts written so far
+		 */
+		public long getAccountCount() {
+			return this.accountCount;
+		}
+
+		/**
+		 * makes the snapshot durable and visible under its final name
+		 * @throws IOException
+		 */
+		public void commit() throws IOException {
+			flushBlock();
+			ByteBuffer terminator = ByteBuffer.allocate(4);
+			terminator.putInt(0).flip();
+			write(terminator);
+			this.channel.force(true);
+			this.channel.close();
+			Files.move(this.temporary, path(this.directory, this.sequence), StandardCopyOption.ATOMIC_MOVE);
+			this.committed = true;
+		}
+
+		private void flushBlock() throws IOException {
+			if (this.blockCount == 0) {
+				return;
+			}
+			this.block.flip();
+			this.crc.reset();
+			this.crc.update(this.block.duplicate());
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+			header.putInt(this.block.remaining()).putInt(this.blockCount).putInt((int) this.crc.getValue()).flip();
+			write(header);
+			write(this.block);
+			this.block.clear();
+			this.blockCount = 0;
+		}
+
+		private void write(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+		}
+
+		/**
+		 * discards the snapshot unless it has been committed
+		 */
+		@Override
+		public void close() throws IOException {
+			if (!this.committed) {
+				this.channel.close();
+				Files.deleteIfExists(this.temporary);
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Accounts stored in a memory-mapped file of fixed-size records, one per account at the dense
+ * number it got when it was created. A record holds the balance in minor units and the id itself,
+ * so the file alone is the state of the accounts: reopening it maps the records back in place,
+ * there is nothing to replay. Balance changes are plain writes to the mapped records, the
+ * operating system writes them back to the file, {@link #force()} makes them durable.
+ *
+ * A header page holds the layout of the records and the number of accounts, updated only once the
+ * record of a new account is complete, so a creation interrupted by a crash leaves no partial
+ * account behind. Records are mapped in segments as the file grows and never move. Ids are stored
+ * in the record, an id longer than {@link #MAX_ID_BYTES} bytes in UTF-8 is rejected.
+ *
+ * The index, rebuilt from the records on opening, the striped monitors and the heap-held balance
+ * stamps are those of {@link AccountRecords}.
+ */
+final class MappedAccountFile extends AccountRecords implements Closeable {
+
+	private static final long MAGIC = 0x4143434F554E5453L;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 4096;
+
+	private static final int MAGIC_OFFSET = 0;
+
+	private static final int VERSION_OFFSET = 8;
+
+	private static final int RECORD_BYTES_OFFSET = 12;
+
+	private static final int SCALE_OFFSET = 16;
+
+	private static final int COUNT_OFFSET = 20;
+
+	private static final int RECORD_BYTES = 64;
+
+	private static final int UNITS_OFFSET = 0;
+
+	private static final int HASH_OFFSET = 8;
+
+	private static final int ID_LENGTH_OFFSET = 12;
+
+	private static final int ID_OFFSET = 16;
+
+	static final int MAX_ID_BYTES = RECORD_BYTES - ID_OFFSET;
+
+	private static final int RECORD_SEGMENT_BITS = 16;
+
+	private static final int RECORDS_PER_SEGMENT = 1 << RECORD_SEGMENT_BITS;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer header;
+
+	private volatile MappedByteBuffer[] recordSegments = new MappedByteBuffer[0];
+
+	/**
+	 * @param path created with an empty header if it does not exist
+	 * @param scale decimal places of the balances, must match the scale the file was created with
+	 * @return the file with every account it holds
+	 * @throws IOException
+	 */
+	static MappedAccountFile open(Path path, int scale) throws IOException {
+		Path directory = path.toAbsolutePath().getParent();
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			return new MappedAccountFile(channel, scale);
+		} catch (IOException | RuntimeException exception) {
+			channel.close();
+			throw exception;
+		}
+	}
+
+	private MappedAccountFile(FileChannel channel, int scale) throws IOException {
+		super(MAX_ID_BYTES);
+		this.channel = channel;
+		boolean created = channel.size() == 0;
+		this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		if (created) {
+			this.header.putLong(MAGIC_OFFSET, MAGIC);
+			this.header.putInt(VERSION_OFFSET, VERSION);
+			this.header.putInt(RECORD_BYTES_OFFSET, RECORD_BYTES);
+			this.header.putInt(SCALE_OFFSET, scale);
+			this.header.putInt(COUNT_OFFSET, 0);
+		} else if (this.header.getLong(MAGIC_OFFSET) != MAGIC || this.header.getInt(VERSION_OFFSET) != VERSION
+				|| this.header.getInt(RECORD_BYTES_OFFSET) != RECORD_BYTES) {
+			throw new IllegalStateException("Not an accounts file of version " + VERSION);
+		} else if (this.header.getInt(SCALE_OFFSET) != scale) {
+			throw new IllegalStateException("Accounts file kept with balance scale "
+					+ this.header.getInt(SCALE_OFFSET) + ", the configured scale is " + scale);
+		}
+		int count = this.header.getInt(COUNT_OFFSET);
+		for (int segment = 0; segment << RECORD_SEGMENT_BITS < count; segment++) {
+			mapSegment(segment);
+		}
+		load(count, count);
+	}
+
+	@Override
+	String accountId(int number) {
+		ByteBuffer segment = recordSegment(number).duplicate();
+		int record = recordPosition(number);
+		byte[] id = new byte[segment.getInt(record + ID_LENGTH_OFFSET)];
+		segment.position(record + ID_OFFSET);
+		segment.get(id);
+		return new String(id, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	void appendRecord(int number, byte[] id, int hash, long units) {
+		if (number >>> RECORD_SEGMENT_BITS == this.recordSegments.length) {
+			try {
+				mapSegment(this.recordSegments.length);
+			} catch (IOException exception) {
+				throw new UncheckedIOException("Growing the accounts file failed", exception);
+			}
+		}
+		ByteBuffer segment = recordSegment(number);
+		int record = recordPosition(number);
+		segment.putLong(record + UNITS_OFFSET, units);
+		segment.putInt(record + HASH_OFFSET, hash);
+		segment.putInt(record + ID_LENGTH_OFFSET, id.length);
+		ByteBuffer idField = segment.duplicate();
+		idField.position(record + ID_OFFSET);
+		idField.put(id);
+		// the account only exists in the file once its record is complete
+		this.header.putInt(COUNT_OFFSET, number + 1);
+	}
+
+	@Override
+	int recordHash(int number) {
+		return recordSegment(number).getInt(recordPosition(number) + HASH_OFFSET);
+	}
+
+	@Override
+	boolean idEquals(int number, byte[] id) {
+		ByteBuffer segment = recordSegment(number);
+		int record = recordPosition(number);
+		if (segment.getInt(record + ID_LENGTH_OFFSET) != id.length) {
+			return false;
+		}
+		for (int i = 0; i < id.length; i++) {
+			if (segment.get(record + ID_OFFSET + i) != id[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	long readUnits(int number) {
+		return recordSegment(number).getLong(recordPosition(number) + UNITS_OFFSET);
+	}
+
+	@Override
+	void writeUnits(int number, long units) {
+		recordSegment(number).putLong(recordPosition(number) + UNITS_OFFSET, units);
+	}
+
+	/**
+	 * writes the changed records and the header back to the file and waits until they are on disk
+	 */
+	void force() {
+		for (MappedByteBuffer segment : this.recordSegments) {
+			segment.force();
+		}
+		this.header.force();
+	}
+
+	/**
+	 * makes every change durable and closes the file, mapped records stay readable until collected
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+		this.channel.close();
+	}
+
+	/**
+	 * @param segment number of the next segment, the file is extended to hold it
+	 */
+	private void mapSegment(int segment) throws IOException {
+		long position = HEADER_BYTES + ((long) segment << RECORD_SEGMENT_BITS) * RECORD_BYTES;
+		MappedByteBuffer mapped = this.channel.map(FileChannel.MapMode.READ_WRITE, position,
+				(long) RECORDS_PER_SEGMENT * RECORD_BYTES);
+		MappedByteBuffer[] segments = Arrays.copyOf(this.recordSegments, segment + 1);
+		segments[segment] = mapped;
+		this.recordSegments = segments;
+	}
+
+	private ByteBuffer recordSegment(int number) {
+		return this.recordSegments[number >>> RECORD_SEGMENT_BITS];
+	}
+
+	private static int recordPosition(int number) {
+		return (number & (RECORDS_PER_SEGMENT - 1)) * RECORD_BYTES;
+	}
+}
@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScaledBalanceAccount;
+
+/**
+ * View of an account kept in an {@link OffHeapAccountTable} or a {@link MappedAccountFile}. A view
+ * is created on every lookup and carries no balance itself, reads and changes go straight to the
+ * record of the account, so two views of the same account always agree, balance stamps included. A
+ * view taken before the accounts were cleared keeps pointing at the discarded records.
+ */
+public final class OffHeapAccount extends Account {
+
+	private final AccountRecords table;
+
+	private final int number;
+
+	private final int scale;
+
+	OffHeapAccount(AccountRecords table, String accountId, int number, int scale) {
+		super(accountId);
+		this.table = table;
+		this.number = number;
+		this.scale = scale;
+	}
+
+	@Override
+	public BigDecimal getBalance() {
+		return BigDecimal.valueOf(this.table.units(this.number), this.scale);
+	}
+
+	@Override
+	public void withdraw(BigDecimal amount) {
+		long units = ScaledBalanceAccount.toUnits(amount, this.scale);
+		this.table.addUnits(this.number, -units);
+	}
+
+	@Override
+	public void deposit(BigDecimal amount) {
+		long units = ScaledBalanceAccount.toUnits(amount, this.scale);
+		this.table.addUnits(this.number, units);
+	}
+
+	@Override
+	public boolean tryWithdraw(BigDecimal amount) {
+		long units = ScaledBalanceAccount.toUnits(amount, this.scale);
+		return this.table.tryDebitUnits(this.number, units);
+	}
+
+	/**
+	 * credits of off-heap accounts are not striped, a view can not hold stripes for the record
+	 */
+	@Override
+	public void stripeCredits(int stripes) {
+	}
+
+	@Override
+	public Account snapshot() {
+		return new ScaledBalanceAccount(getAccountId(), readBalance(), this.scale);
+	}
+
+	@Override
+	protected long loadBalanceStamp() {
+		return this.table.balanceStamp(this.number);
+	}
+
+	@Override
+	protected void addToBalanceStamp(long delta) {
+		this.table.addToBalanceStamp(this.number, delta);
+	}
+}
@@ -0,0 +1,149 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Accounts stored outside the Java heap. The fixed-size record of an account holds its balance in
+ * minor units and where its id lies in an id arena. Records and ids are appended to direct buffers
+ * allocated in segments and never move. Accounts are never removed one by one, clearing the
+ * accounts replaces the whole table. The index, the striped monitors and the balance stamps are
+ * those of {@link AccountRecords}.
+ */
+final class OffHeapAccountTable extends AccountRecords {
+
+	private static final int RECORD_BYTES = 24;
+
+	private static final int UNITS_OFFSET = 0;
+
+	private static final int ID_OFFSET_OFFSET = 8;
+
+	private static final int ID_LENGTH_OFFSET = 16;
+
+	private static final int HASH_OFFSET = 20;
+
+	private static final int RECORD_SEGMENT_BITS = 20;
+
+	private static final int RECORDS_PER_SEGMENT = 1 << RECORD_SEGMENT_BITS;
+
+	private static final int ARENA_CHUNK_BITS = 24;
+
+	private static final int ARENA_CHUNK_BYTES = 1 << ARENA_CHUNK_BITS;
+
+	private static final int MAX_ID_BYTES = 0xFFFF;
+
+	private volatile ByteBuffer[] recordSegments = new ByteBuffer[0];
+
+	private volatile ByteBuffer[] arenaChunks = new ByteBuffer[0];
+
+	private long arenaPosition;
+
+	/**
+	 * @param expectedAccounts sizes the first index, the table grows past it
+	 */
+	OffHeapAccountTable(int expectedAccounts) {
+		super(MAX_ID_BYTES);
+		load(expectedAccounts, 0);
+	}
+
+	@Override
+	String accountId(int number) {
+		ByteBuffer segment = recordSegment(number);
+		int record = recordPosition(number);
+		long idOffset = segment.getLong(record + ID_OFFSET_OFFSET);
+		byte[] id = new byte[segment.getInt(record + ID_LENGTH_OFFSET)];
+		ByteBuffer chunk = this.arenaChunks[(int) (idOffset >>> ARENA_CHUNK_BITS)].duplicate();
+		chunk.position((int) (idOffset & (ARENA_CHUNK_BYTES - 1)));
+		chunk.get(id);
+		return new String(id, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	void appendRecord(int number, byte[] id, int hash, long units) {
+		long idOffset = appendId(id);
+		if ((number & (RECORDS_PER_SEGMENT - 1)) == 0) {
+			ByteBuffer[] segments = Arrays.copyOf(this.recordSegments, (number >>> RECORD_SEGMENT_BITS) + 1);
+			segments[segments.length - 1] = ByteBuffer.allocateDirect(RECORDS_PER_SEGMENT * RECORD_BYTES);
+			this.recordSegments = segments;
+		}
+		ByteBuffer segment = recordSegment(number);
+		int record = recordPosition(number);
+		segment.putLong(record + UNITS_OFFSET, units);
+		segment.putLong(record + ID_OFFSET_OFFSET, idOffset);
+		segment.putInt(record + ID_LENGTH_OFFSET, id.length);
+		segment.putInt(record + HASH_OFFSET, hash);
+	}
+
+	@Override
+	int recordHash(int number) {
+		return recordSegment(number).getInt(recordPosition(number) + HASH_OFFSET);
+	}
+
+	@Override
+	boolean idEquals(int number, byte[] id) {
+		ByteBuffer segment = recordSegment(number);
+		int record = recordPosition(number);
+		if (segment.getInt(record + ID_LENGTH_OFFSET) != id.length) {
+			return false;
+		}
+		long idOffset = segment.getLong(record + ID_OFFSET_OFFSET);
+		ByteBuffer chunk = this.arenaChunks[(int) (idOffset >>> ARENA_CHUNK_BITS)];
+		int start = (int) (idOffset & (ARENA_CHUNK_BYTES - 1));
+		for (int i = 0; i < id.length; i++) {
+			if (chunk.get(start + i) != id[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	long readUnits(int number) {
+		return recordSegment(number).getLong(recordPosition(number) + UNITS_OFFSET);
+	}
+
+	@Override
+	void writeUnits(int number, long units) {
+		recordSegment(number).putLong(recordPosition(number) + UNITS_OFFSET, units);
+	}
+
+	/**
+	 * @return bytes of direct memory held by the table
+	 */
+	long offHeapBytes() {
+		return (long) this.recordSegments.length * RECORDS_PER_SEGMENT * RECORD_BYTES
+				+ (long) this.arenaChunks.length * ARENA_CHUNK_BYTES + indexBytes();
+	}
+
+	/**
+	 * @return offset of the id in the arena, an id never spans two chunks
+	 */
+	private long appendId(byte[] id) {
+		int chunkNumber = (int) (this.arenaPosition >>> ARENA_CHUNK_BITS);
+		int position = (int) (this.arenaPosition & (ARENA_CHUNK_BYTES - 1));
+		if (chunkNumber < this.arenaChunks.length && position + id.length > ARENA_CHUNK_BYTES) {
+			chunkNumber++;
+			position = 0;
+		}
+		if (chunkNumber == this.arenaChunks.length) {
+			ByteBuffer[] chunks = Arrays.copyOf(this.arenaChunks, chunkNumber + 1);
+			chunks[chunkNumber] = ByteBuffer.allocateDirect(ARENA_CHUNK_BYTES);
+			this.arenaChunks = chunks;
+		}
+		ByteBuffer chunk = this.arenaChunks[chunkNumber].duplicate();
+		chunk.position(position);
+		chunk.put(id);
+		long offset = ((long) chunkNumber << ARENA_CHUNK_BITS) + position;
+		this.arenaPosition = offset + id.length;
+		return offset;
+	}
+
+	private ByteBuffer recordSegment(int number) {
+		return this.recordSegments[number >>> RECORD_SEGMENT_BITS];
+	}
+
+	private static int recordPosition(int number) {
+		return (number & (RECORDS_PER_SEGMENT - 1)) * RECORD_BYTES;
+	}
+}
@@ -0,0 +1,741 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of account changes with group commit. Appending only queues the record, a
+ * single flusher thread writes everything queued so far to the file and makes it durable with one
+ * force, so concurrent transfers waiting on {@link #awaitDurable(long)} share the same fsync.
+ *
+ * The journal is a series of segment files named after the base path and the sequence of their
+ * first record. {@link #roll()} starts a new segment so that the segments covered by a snapshot can
+ * be deleted and skipped on replay. Every record is framed as its payload length and CRC32 followed
+ * by the payload, a torn record at the end of the journal is detected and cut off when it is opened
+ * again.
+ *
+ * The debit and the credit of a transfer are framed as one unit: the credit names the sequence of
+ * its debit, and a debit whose credit is not in the journal when it is opened again is refunded to
+ * its payer, so a crash between the two never loses the amount. A roll carries the transfers
+ * debited but not credited yet into the new segment, so that they are still known once the
+ * segments covered by a snapshot are gone.
+ */
+@Slf4j
+public class TransferJournal implements Closeable {
+
+	public enum RecordType {
+		CREATE, DEBIT, CREDIT, CLEAR,
+		/**
+		 * debit of the payer opening a transfer
+		 */
+		TRANSFER_DEBIT,
+		/**
+		 * credit completing the transfer opened by the debit it names
+		 */
+		TRANSFER_CREDIT,
+		/**
+		 * transfer debited before the start of the segment and not credited yet, no balance change
+		 */
+		OPEN_TRANSFER
+	}
+
+	/**
+	 * receives the debits and credits of transfers as DEBIT and CREDIT records
+	 */
+	@FunctionalInterface
+	public interface RecordHandler {
+		void onRecord(long sequence, RecordType type, String accountId, BigDecimal amount);
+	}
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private static final RecordType[] RECORD_TYPES = RecordType.values();
+
+	private static final int FRAME_HEADER_BYTES = 8;
+
+	/**
+	 * longest account id in UTF-8 and longest unscaled amount a record holds, their lengths are
+	 * written on two bytes
+	 */
+	private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+	private final Path basePath;
+
+	private final long flushWindowNanos;
+
+	private final int maxBatchSize;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition pendingCondition = this.lock.newCondition();
+
+	private final Condition durableCondition = this.lock.newCondition();
+
+	private final ArrayDeque<Record> pending = new ArrayDeque<>();
+
+	/**
+	 * debits of the transfers not credited yet, by their sequence
+	 */
+	private final Map<Long, Record> openTransfers = new LinkedHashMap<>();
+
+	private final Thread flusher;
+
+	private final CRC32 crc = new CRC32();
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+	/**
+	 * segment currently appended to, only replaced by the flusher
+	 */
+	private FileChannel channel;
+
+	private long activeSegmentStart;
+
+	private long rollSequence = -1;
+
+	/**
+	 * sequence of the last OPEN_TRANSFER record written by a roll
+	 */
+	private long openTransfersSequence;
+
+	private volatile long lastSequence;
+
+	private long durableSequence;
+
+	private long syncCount;
+
+	private IOException failure;
+
+	private boolean closed;
+
+	private TransferJournal(Path basePath, FileChannel channel, long activeSegmentStart, long lastSequence,
+			long flushWindowNanos, int maxBatchSize) {
+		this.basePath = basePath;
+		this.channel = channel;
+		this.activeSegmentStart = activeSegmentStart;
+		this.lastSequence = lastSequence;
+		this.durableSequence = lastSequence;
+		this.flushWindowNanos = flushWindowNanos;
+		this.maxBatchSize = maxBatchSize;
+		this.flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * @param basePath
+	 * @param flushWindowNanos time the flusher waits for more records before forcing a batch
+	 * @param maxBatchSize maximum number of records made durable by a single force
+	 * @param replayHandler receives every intact record already in the journal, in order
+	 * @return journal positioned after its last intact record
+	 * @throws IOException
+	 */
+	public static TransferJournal open(Path basePath, long flushWindowNanos, int maxBatchSize,
+			RecordHandler replayHandler) throws IOException {
+		return open(basePath, 0, flushWindowNanos, maxBatchSize, replayHandler);
+	}
+
+	/**
+	 * @param basePath
+	 * @param afterSequence records up to this sequence are already restored, segments holding only
+	 *        such records are not read at all
+	 * @param flushWindowNanos time the flusher waits for more records before forcing a batch
+	 * @param maxBatchSize maximum number of records made durable by a single force
+	 * @param replayHandler receives every intact record after the given sequence, in order
+	 * @return journal positioned after its last intact record
+	 * @throws IOException
+	 */
+	public static TransferJournal open(Path basePath, long afterSequence, long flushWindowNanos, int maxBatchSize,
+			RecordHandler replayHandler) throws IOException {
+		Map<Long, Record> openTransfers = new LinkedHashMap<>();
+		TransferJournal journal = openSegments(basePath, afterSequence, flushWindowNanos, maxBatchSize,
+				replayHandler, openTransfers);
+		if (!openTransfers.isEmpty()) {
+			// the credit of these transfers never became durable, the amount goes back to the payer
+			for (Record debit : openTransfers.values()) {
+				long sequence = journal.append(RecordType.TRANSFER_CREDIT, debit.accountId, debit.amount,
+						debit.sequence);
+				replayHandler.onRecord(sequence, RecordType.CREDIT, debit.accountId, debit.amount);
+			}
+			journal.sync();
+		}
+		return journal;
+	}
+
+	private static TransferJournal openSegments(Path basePath, long afterSequence, long flushWindowNanos,
+			int maxBatchSize, RecordHandler replayHandler, Map<Long, Record> openTransfers) throws IOException {
+		Path directory = basePath.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		List<Long> segmentStarts = segmentStarts(basePath);
+		if (segmentStarts.isEmpty()) {
+			long start = afterSequence + 1;
+			FileChannel channel = FileChannel.open(segmentPath(basePath, start), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new TransferJournal(basePath, channel, start, afterSequence, flushWindowNanos, maxBatchSize);
+		}
+
+		long lastSequence = afterSequence;
+		for (int i = 0; i < segmentStarts.size() - 1; i++) {
+			if (segmentStarts.get(i + 1) - 1 <= afterSequence) {
+				continue;
+			}
+			try (FileChannel channel = FileChannel.open(segmentPath(basePath, segmentStarts.get(i)),
+					StandardOpenOption.READ)) {
+				lastSequence = Math.max(lastSequence,
+						replay(channel, afterSequence, replayHandler, openTransfers)[1]);
+			}
+		}
+
+		long activeStart = segmentStarts.get(segmentStarts.size() - 1);
+		FileChannel channel = FileChannel.open(segmentPath(basePath, activeStart), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long[] replayed = replay(channel, afterSequence, replayHandler, openTransfers);
+		long validLength = replayed[0];
+		lastSequence = Math.max(Math.max(lastSequence, replayed[1]), activeStart - 1);
+		if (channel.size() > validLength) {
+			// cut off a record torn by a crash so that new records follow the last intact one
+			channel.truncate(validLength);
+			channel.force(true);
+		}
+		channel.position(validLength);
+		return new TransferJournal(basePath, channel, activeStart, lastSequence, flushWindowNanos, maxBatchSize);
+	}
+
+	private static Path segmentPath(Path basePath, long start) {
+		return basePath.resolveSibling(basePath.getFileName() + "." + String.format("%020d", start));
+	}
+
+	/**
+	 * @return first sequence of every segment of the journal, in ascending order
+	 */
+	private static List<Long> segmentStarts(Path basePath) throws IOException {
+		String prefix = basePath.getFileName() + ".";
+		List<Long> starts = new ArrayList<>();
+		try (DirectoryStream<Path> segments = Files.newDirectoryStream(basePath.toAbsolutePath().getParent(),
+				prefix + "*")) {
+			for (Path segment : segments) {
+				String suffix = segment.getFileName().toString().substring(prefix.length());
+				try {
+					starts.add(Long.parseLong(suffix));
+				} catch (NumberFormatException exception) {
+					// not a segment of this journal
+				}
+			}
+		}
+		Collections.sort(starts);
+		return starts;
+	}
+
+	/**
+	 * @param openTransfers debits of the transfers not credited so far, updated by every record of
+	 *        the segment including those up to afterSequence
+	 * @return length of the intact part of the segment and sequence of its last record
+	 */
+	private static long[] replay(FileChannel channel, long afterSequence, RecordHandler replayHandler,
+			Map<Long, Record> openTransfers) throws IOException {
+		channel.position(0);
+		DataInputStream input = new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+		CRC32 crc = new CRC32();
+		long validLength = 0;
+		long lastSequence = 0;
+		byte[] payload = new byte[256];
+		while (true) {
+			int length;
+			int checksum;
+			try {
+				length = input.readInt();
+				checksum = input.readInt();
+				if (length <= 0 || length > channel.size() - validLength - FRAME_HEADER_BYTES) {
+					break;
+				}
+				if (payload.length < length) {
+					payload = new byte[Math.max(length, payload.length * 2)];
+				}
+				input.readFully(payload, 0, length);
+			} catch (EOFException exception) {
+				break;
+			}
+			crc.reset();
+			crc.update(payload, 0, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			validLength += FRAME_HEADER_BYTES + length;
+			ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+			long sequence;
+			RecordType type;
+			String accountId;
+			BigDecimal amount;
+			long transfer;
+			try {
+				sequence = record.getLong();
+				int ordinal = record.get() & 0xFF;
+				lastSequence = sequence;
+				if (ordinal >= RECORD_TYPES.length) {
+					throw new IllegalArgumentException("unknown type " + ordinal);
+				}
+				type = RECORD_TYPES[ordinal];
+				accountId = readString(record);
+				amount = readAmount(record);
+				transfer = hasTransfer(type) ? record.getLong() : 0;
+			} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException exception) {
+				// intact but not understood, the records after it are still replayed
+				log.warn("Journal record following sequence {} can not be read and is skipped: {}", lastSequence,
+						exception.toString());
+				continue;
+			}
+			trackTransfers(openTransfers, new Record(sequence, type, accountId, amount, transfer));
+			if (sequence > afterSequence) {
+				if (type == RecordType.TRANSFER_DEBIT) {
+					replayHandler.onRecord(sequence, RecordType.DEBIT, accountId, amount);
+				} else if (type == RecordType.TRANSFER_CREDIT) {
+					replayHandler.onRecord(sequence, RecordType.CREDIT, accountId, amount);
+				} else if (type != RecordType.OPEN_TRANSFER) {
+					replayHandler.onRecord(sequence, type, accountId, amount);
+				}
+			}
+		}
+		return new long[] { validLength, lastSequence };
+	}
+
+	/**
+	 * @return true for the records naming the debit of their transfer
+	 */
+	private static boolean hasTransfer(RecordType type) {
+		return type == RecordType.TRANSFER_CREDIT || type == RecordType.OPEN_TRANSFER;
+	}
+
+	private static void trackTransfers(Map<Long, Record> openTransfers, Record record) {
+		switch (record.type) {
+		case TRANSFER_DEBIT:
+			openTransfers.put(record.sequence, record);
+			break;
+		case OPEN_TRANSFER:
+			openTransfers.put(record.transfer,
+					new Record(record.transfer, RecordType.TRANSFER_DEBIT, record.accountId, record.amount, 0));
+			break;
+		case TRANSFER_CREDIT:
+			openTransfers.remove(record.transfer);
+			break;
+		case CLEAR:
+			openTransfers.clear();
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static String readString(ByteBuffer record) {
+		int length = record.getShort() & 0xFFFF;
+		if (length == 0) {
+			return null;
+		}
+		String value = new String(record.array(), record.arrayOffset() + record.position(), length,
+				StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return value;
+	}
+
+	private static BigDecimal readAmount(ByteBuffer record) {
+		int scale = record.getInt();
+		int length = record.getShort() & 0xFFFF;
+		if (length == 0) {
+			return null;
+		}
+		byte[] unscaled = new byte[length];
+		record.get(unscaled);
+		return new BigDecimal(new BigInteger(unscaled), scale);
+	}
+
+	/**
+	 * @param type
+	 * @param accountId
+	 * @param amount
+	 * @return sequence of the record, to be passed to {@link #awaitDurable(long)}
+	 */
+	public long append(RecordType type, String accountId, BigDecimal amount) {
+		return append(type, accountId, amount, 0);
+	}
+
+	/**
+	 * @param type
+	 * @param accountId
+	 * @param amount
+	 * @param transfer sequence of the TRANSFER_DEBIT a TRANSFER_CREDIT completes, ignored for the
+	 *        other types
+	 * @return sequence of the record, to be passed to {@link #awaitDurable(long)}
+	 * throws InvalidAccountIdException or InvalidAmountException, appending nothing, if a CREATE
+	 * does not fit a record. The other records name accounts created before
+	 */
+	public long append(RecordType type, String accountId, BigDecimal amount, long transfer) {
+		if (type == RecordType.CREATE) {
+			if (accountId.getBytes(StandardCharsets.UTF_8).length > MAX_FIELD_BYTES) {
+				throw new InvalidAccountIdException("Account id longer than " + MAX_FIELD_BYTES + " bytes in UTF-8.");
+			}
+			if (amount != null && amount.unscaledValue().bitLength() / 8 + 1 > MAX_FIELD_BYTES) {
+				throw new InvalidAmountException("Balance longer than " + MAX_FIELD_BYTES + " bytes.");
+			}
+		}
+		this.lock.lock();
+		try {
+			checkWritable();
+			return enqueue(new Record(this.lastSequence + 1, type, accountId, amount, hasTransfer(type) ? transfer : 0));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * must be called holding the lock
+	 */
+	private long enqueue(Record record) {
+		this.lastSequence = record.sequence;
+		trackTransfers(this.openTransfers, record);
+		this.pending.add(record);
+		if (this.pending.size() == 1 || this.pending.size() >= this.maxBatchSize) {
+			this.pendingCondition.signal();
+		}
+		return record.sequence;
+	}
+
+	/**
+	 * @param sequence
+	 * blocks until the record with the given sequence, and every record before it, is on disk
+	 */
+	public void awaitDurable(long sequence) {
+		this.lock.lock();
+		try {
+			while (this.durableSequence < sequence) {
+				if (this.failure != null) {
+					throw new UncheckedIOException("Journal write failed", this.failure);
+				}
+				this.durableCondition.awaitUninterruptibly();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * blocks until every record appended so far is on disk
+	 */
+	public void sync() {
+		awaitDurable(this.lastSequence);
+	}
+
+	/**
+	 * @return sequence of the last appended record
+	 */
+	public long getLastSequence() {
+		return this.lastSequence;
+	}
+
+	/**
+	 * @return number of forces issued since the journal was opened
+	 */
+	public long getSyncCount() {
+		this.lock.lock();
+		try {
+			return this.syncCount;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return sequence of the last record of the closed segment, every later record goes to a new
+	 *         segment. Blocks until the closed segment is durable.
+	 */
+	public long roll() {
+		return roll(sequence -> {
+		});
+	}
+
+	/**
+	 * @param atRollPoint called with the sequence of the roll before any later record is appended
+	 * @return sequence of the last record of the closed segment, every later record goes to a new
+	 *         segment. Blocks until the closed segment, and the transfers it leaves open as the first
+	 *         records of the new segment, are durable.
+	 */
+	public long roll(LongConsumer atRollPoint) {
+		return awaitRoll(requestRoll(atRollPoint));
+	}
+
+	/**
+	 * @param atRollPoint called with the sequence of the roll before any later record is appended
+	 * @return sequence of the last record of the segment to close, to pass to {@link #awaitRoll(long)}.
+	 *         Does not wait for the flusher.
+	 */
+	public long requestRoll(LongConsumer atRollPoint) {
+		this.lock.lock();
+		try {
+			checkWritable();
+			long sequence = this.lastSequence;
+			atRollPoint.accept(sequence);
+			if (sequence < this.activeSegmentStart) {
+				// nothing has been appended to the active segment yet
+				return sequence;
+			}
+			this.rollSequence = Math.max(this.rollSequence, sequence);
+			for (Record debit : new ArrayList<>(this.openTransfers.values())) {
+				enqueue(new Record(this.lastSequence + 1, RecordType.OPEN_TRANSFER, debit.accountId, debit.amount,
+						debit.sequence));
+			}
+			this.openTransfersSequence = this.lastSequence;
+			this.pendingCondition.signal();
+			return sequence;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @param sequence returned by {@link #requestRoll(LongConsumer)}
+	 * @return the given sequence, once the segment it closes and the transfers it leaves open are
+	 *         durable
+	 */
+	public long awaitRoll(long sequence) {
+		this.lock.lock();
+		try {
+			while (this.activeSegmentStart <= sequence || this.durableSequence < this.openTransfersSequence) {
+				if (this.failure != null) {
+					throw new UncheckedIOException("Journal write failed", this.failure);
+				}
+				this.durableCondition.awaitUninterruptibly();
+			}
+			return sequence;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @param sequence
+	 * deletes every closed segment holding only records up to the given sequence
+	 * @throws IOException
+	 */
+	public void deleteSegmentsThrough(long sequence) throws IOException {
+		long activeStart;
+		this.lock.lock();
+		try {
+			activeStart = this.activeSegmentStart;
+		} finally {
+			this.lock.unlock();
+		}
+		List<Long> segmentStarts = segmentStarts(this.basePath);
+		for (int i = 0; i < segmentStarts.size() - 1; i++) {
+			long start = segmentStarts.get(i);
+			if (start < activeStart && segmentStarts.get(i + 1) - 1 <= sequence) {
+				Files.deleteIfExists(segmentPath(this.basePath, start));
+			}
+		}
+	}
+
+	private void checkWritable() {
+		if (this.failure != null) {
+			throw new UncheckedIOException("Journal write failed", this.failure);
+		}
+		if (this.closed) {
+			throw new IllegalStateException("Journal is closed");
+		}
+	}
+
+	private boolean isRollDue() {
+		return this.rollSequence >= 0 && this.durableSequence >= this.rollSequence;
+	}
+
+	private void flushLoop() {
+		List<Record> batch = new ArrayList<>(this.maxBatchSize);
+		while (true) {
+			boolean roll;
+			this.lock.lock();
+			try {
+				while (this.pending.isEmpty() && !this.closed && !isRollDue()) {
+					this.pendingCondition.awaitUninterruptibly();
+				}
+				roll = isRollDue();
+				if (!roll) {
+					if (this.pending.isEmpty()) {
+						return;
+					}
+					// group commit: give concurrent transfers a short window to join this force
+					long remaining = this.flushWindowNanos;
+					while (this.pending.size() < this.maxBatchSize && remaining > 0 && !this.closed) {
+						try {
+							remaining = this.pendingCondition.awaitNanos(remaining);
+						} catch (InterruptedException exception) {
+							Thread.currentThread().interrupt();
+							break;
+						}
+					}
+					// records after a requested roll belong to the next segment
+					while (batch.size() < this.maxBatchSize && !this.pending.isEmpty()
+							&& (this.rollSequence < 0 || this.pending.peek().sequence <= this.rollSequence)) {
+						batch.add(this.pending.poll());
+					}
+				}
+			} finally {
+				this.lock.unlock();
+			}
+
+			IOException error = null;
+			try {
+				if (roll) {
+					rollSegment();
+				} else if (!batch.isEmpty()) {
+					write(batch);
+					this.channel.force(false);
+				}
+			} catch (IOException exception) {
+				error = exception;
+			}
+
+			this.lock.lock();
+			try {
+				if (error != null) {
+					this.failure = error;
+				} else if (roll) {
+					this.activeSegmentStart = this.rollSequence + 1;
+					this.rollSequence = -1;
+				} else if (!batch.isEmpty()) {
+					this.durableSequence = batch.get(batch.size() - 1).sequence;
+					this.syncCount++;
+				}
+				this.durableCondition.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+			batch.clear();
+			if (error != null) {
+				return;
+			}
+		}
+	}
+
+	private void rollSegment() throws IOException {
+		long start;
+		this.lock.lock();
+		try {
+			start = this.rollSequence + 1;
+		} finally {
+			this.lock.unlock();
+		}
+		FileChannel next = FileChannel.open(segmentPath(this.basePath, start), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.channel.close();
+		this.channel = next;
+	}
+
+	private void write(List<Record> batch) throws IOException {
+		this.buffer.clear();
+		for (Record record : batch) {
+			byte[] accountId = record.accountId == null ? EMPTY : record.accountId.getBytes(StandardCharsets.UTF_8);
+			byte[] unscaled = record.amount == null ? EMPTY : record.amount.unscaledValue().toByteArray();
+			int payloadLength = 8 + 1 + 2 + accountId.length + 4 + 2 + unscaled.length
+					+ (hasTransfer(record.type) ? 8 : 0);
+			if (this.buffer.remaining() < FRAME_HEADER_BYTES + payloadLength) {
+				drain();
+				if (this.buffer.capacity() < FRAME_HEADER_BYTES + payloadLength) {
+					this.buffer = ByteBuffer.allocateDirect(FRAME_HEADER_BYTES + payloadLength);
+				}
+			}
+			int frameStart = this.buffer.position();
+			this.buffer.putInt(payloadLength);
+			this.buffer.putInt(0);
+			this.buffer.putLong(record.sequence);
+			this.buffer.put((byte) record.type.ordinal());
+			this.buffer.putShort((short) accountId.length);
+			this.buffer.put(accountId);
+			this.buffer.putInt(record.amount == null ? 0 : record.amount.scale());
+			this.buffer.putShort((short) unscaled.length);
+			this.buffer.put(unscaled);
+			if (hasTransfer(record.type)) {
+				this.buffer.putLong(record.transfer);
+			}
+
+			ByteBuffer payload = this.buffer.duplicate();
+			payload.limit(this.buffer.position());
+			payload.position(frameStart + FRAME_HEADER_BYTES);
+			this.crc.reset();
+			this.crc.update(payload);
+			this.buffer.putInt(frameStart + 4, (int) this.crc.getValue());
+		}
+		drain();
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * makes every appended record durable and stops the flusher
+	 */
+	@Override
+	public void close() throws IOException {
+		this.lock.lock();
+		try {
+			this.closed = true;
+			this.pendingCondition.signal();
+		} finally {
+			this.lock.unlock();
+		}
+		try {
+			this.flusher.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+		this.channel.close();
+	}
+
+	private static final class Record {
+		private final long sequence;
+		private final RecordType type;
+		private final String accountId;
+		private final BigDecimal amount;
+		private final long transfer;
+
+		private Record(long sequence, RecordType type, String accountId, BigDecimal amount, long transfer) {
+			this.sequence = sequence;
+			this.type = type;
+			this.accountId = accountId;
+			this.amount = amount;
+			this.transfer = transfer;
+		}
+	}
+}
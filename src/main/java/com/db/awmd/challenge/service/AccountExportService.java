@@ -0,0 +1,109 @@
+package com.db.awmd.challenge.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportFormat;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes every account to a stream in the line formats of the bulk import. Accounts are scanned
+ * from the repository a chunk at a time and each chunk is flushed before the next is read, so
+ * only one chunk is held in memory and transfers are never blocked by the export.
+ */
+@Slf4j
+@Service
+public class AccountExportService {
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private final AccountsRepository accountsRepository;
+
+	private final int chunkSize;
+
+	@Autowired
+	public AccountExportService(AccountsRepository accountsRepository, AccountsProperties accountsProperties) {
+		this.accountsRepository = accountsRepository;
+		this.chunkSize = Math.max(1, accountsProperties.getListing().getExportChunkSize());
+	}
+
+	/**
+	 * @param outputStream
+	 * @param format
+	 * @return number of accounts written
+	 * @throws IOException
+	 */
+	public long exportAccounts(OutputStream outputStream, ImportFormat format) throws IOException {
+		long startTime = System.currentTimeMillis();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		JsonGenerator json = JSON.createGenerator(writer);
+		json.setRootValueSeparator(null);
+		LineWriter lineWriter = format == ImportFormat.CSV ? account -> writeCsv(writer, account)
+				: account -> writeNdjson(json, account);
+		if (format == ImportFormat.CSV) {
+			writer.write("accountId,balance\n");
+		}
+		long exported = 0;
+		long position = 0;
+		int written;
+		do {
+			long[] chunkWritten = new long[1];
+			try {
+				position = this.accountsRepository.scanAccounts(position, this.chunkSize, account -> {
+					try {
+						lineWriter.write(account);
+					} catch (IOException exception) {
+						throw new UncheckedIOException(exception);
+					}
+					chunkWritten[0]++;
+				});
+			} catch (UncheckedIOException exception) {
+				throw exception.getCause();
+			}
+			json.flush();
+			writer.flush();
+			written = (int) chunkWritten[0];
+			exported += written;
+		} while (written == this.chunkSize);
+		log.info("Exported {} accounts in {} ms", exported, System.currentTimeMillis() - startTime);
+		return exported;
+	}
+
+	private static void writeNdjson(JsonGenerator json, Account account) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("accountId", account.getAccountId());
+		json.writeNumberField("balance", account.getBalance());
+		json.writeEndObject();
+		json.writeRaw('\n');
+	}
+
+	private static void writeCsv(Writer writer, Account account) throws IOException {
+		String accountId = account.getAccountId();
+		if (accountId.indexOf(',') >= 0 || accountId.indexOf('"') >= 0 || !accountId.equals(accountId.trim())) {
+			accountId = '"' + accountId.replace("\"", "\"\"") + '"';
+		}
+		writer.write(accountId);
+		writer.write(',');
+		writer.write(account.getBalance().toPlainString());
+		writer.write('\n');
+	}
+
+	@FunctionalInterface
+	private interface LineWriter {
+		void write(Account account) throws IOException;
+	}
+}
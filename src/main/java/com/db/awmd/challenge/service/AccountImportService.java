@@ -0,0 +1,291 @@
+package com.db.awmd.challenge.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportFormat;
+import com.db.awmd.challenge.domain.ImportLineError;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.exception.InvalidImportLineException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates accounts from a stream of NDJSON or CSV lines. Lines are parsed one at a time into
+ * chunks, and chunks are inserted by a pool of inserter threads while the next chunk is parsed.
+ * At most parallelism chunks are held at once, so the memory used does not depend on the size of
+ * the stream. A line that can not be parsed or whose account can not be created is reported in
+ * the summary and the import goes on with the next line. With the cluster enabled a line whose
+ * account belongs to another node is rejected, it is to be imported on that node.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private static final String CSV_HEADER = "accountId,balance";
+
+	private final AccountsService accountsService;
+
+	private final ClusterRing clusterRing;
+
+	private final int chunkSize;
+
+	private final int parallelism;
+
+	private final int maxErrors;
+
+	private final ExecutorService inserters;
+
+	@Autowired
+	public AccountImportService(AccountsService accountsService, ClusterRing clusterRing,
+			AccountsProperties accountsProperties) {
+		AccountsProperties.BulkImport bulkImport = accountsProperties.getBulkImport();
+		this.accountsService = accountsService;
+		this.clusterRing = clusterRing;
+		this.chunkSize = Math.max(1, bulkImport.getChunkSize());
+		this.parallelism = bulkImport.getParallelism() > 0 ? bulkImport.getParallelism()
+				: Runtime.getRuntime().availableProcessors();
+		this.maxErrors = Math.max(0, bulkImport.getMaxErrors());
+		AtomicInteger inserterNumber = new AtomicInteger();
+		this.inserters = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+			Thread inserter = new Thread(runnable, "account-import-" + inserterNumber.getAndIncrement());
+			inserter.setDaemon(true);
+			return inserter;
+		});
+	}
+
+	/**
+	 * @param reader
+	 * @param format
+	 * @return number of lines read, accounts created and lines rejected, with the first rejections
+	 * @throws IOException
+	 */
+	public ImportSummary importAccounts(Reader reader, ImportFormat format) throws IOException {
+		long startTime = System.nanoTime();
+		ImportRun run = new ImportRun();
+		BufferedReader lines = new BufferedReader(reader);
+		long lineNumber = 0;
+		List<Account> chunk = new ArrayList<>(this.chunkSize);
+		long[] chunkLines = new long[this.chunkSize];
+		try {
+			for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+				lineNumber++;
+				if (line.trim().isEmpty() || format == ImportFormat.CSV && lineNumber == 1
+						&& CSV_HEADER.equalsIgnoreCase(line.replace(" ", "").replace("\"", ""))) {
+					continue;
+				}
+				run.lines.incrementAndGet();
+				try {
+					Account account = format == ImportFormat.CSV ? parseCsv(line) : parseNdjson(line);
+					if (!this.clusterRing.isLocal(account.getAccountId())) {
+						throw new InvalidImportLineException("Account " + account.getAccountId() + " belongs to node "
+								+ this.clusterRing.ownerOf(account.getAccountId()));
+					}
+					chunk.add(account);
+					chunkLines[chunk.size() - 1] = lineNumber;
+				} catch (InvalidImportLineException exception) {
+					run.reject(lineNumber, null, exception);
+				}
+				if (chunk.size() == this.chunkSize) {
+					insert(run, chunk, chunkLines);
+					chunk = new ArrayList<>(this.chunkSize);
+					chunkLines = new long[this.chunkSize];
+				}
+			}
+			if (!chunk.isEmpty()) {
+				insert(run, chunk, chunkLines);
+			}
+		} finally {
+			// every chunk still being inserted holds a permit
+			run.chunksInFlight.acquireUninterruptibly(this.parallelism);
+		}
+		if (run.failure.get() != null) {
+			throw run.failure.get();
+		}
+
+		List<ImportLineError> errors = new ArrayList<>(run.errors);
+		errors.sort(Comparator.comparingLong(ImportLineError::getLine));
+		long failed = run.failed.get();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		log.info("Imported {} accounts from {} lines, {} rejected, in {} ms", run.lines.get() - failed,
+				run.lines.get(), failed, elapsedMillis);
+		return new ImportSummary(run.lines.get(), run.lines.get() - failed, failed, elapsedMillis, errors,
+				failed > errors.size());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.inserters.shutdown();
+	}
+
+	/**
+	 * waits for an inserter to be free and hands it the chunk
+	 */
+	private void insert(ImportRun run, List<Account> chunk, long[] chunkLines) {
+		run.chunksInFlight.acquireUninterruptibly();
+		try {
+			this.inserters.execute(() -> {
+				try {
+					this.accountsService.createAccounts(chunk,
+							(index, exception) -> run.reject(chunkLines[index], chunk.get(index).getAccountId(), exception));
+				} catch (RuntimeException exception) {
+					run.failure.compareAndSet(null, exception);
+				} finally {
+					run.chunksInFlight.release();
+				}
+			});
+		} catch (RuntimeException exception) {
+			run.chunksInFlight.release();
+			throw exception;
+		}
+	}
+
+	/**
+	 * @param line
+	 * @return account described by an NDJSON line
+	 */
+	static Account parseNdjson(String line) {
+		String accountId = null;
+		BigDecimal balance = null;
+		try (JsonParser parser = JSON.createParser(line)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new InvalidImportLineException("Expected a JSON object");
+			}
+			for (JsonToken token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("accountId".equals(field)) {
+					if (value != JsonToken.VALUE_STRING) {
+						throw new InvalidImportLineException("accountId must be a string");
+					}
+					accountId = parser.getText();
+				} else if ("balance".equals(field)) {
+					if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+						balance = parser.getDecimalValue();
+					} else if (value == JsonToken.VALUE_STRING) {
+						balance = decimal(parser.getText());
+					} else if (value != JsonToken.VALUE_NULL) {
+						throw new InvalidImportLineException("balance must be a number");
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (parser.nextToken() != null) {
+				throw new InvalidImportLineException("Unexpected content after the JSON object");
+			}
+		} catch (JsonProcessingException exception) {
+			throw new InvalidImportLineException("Malformed JSON: " + exception.getOriginalMessage());
+		} catch (IOException exception) {
+			throw new InvalidImportLineException("Malformed JSON: " + exception.getMessage());
+		}
+		return account(accountId, balance);
+	}
+
+	/**
+	 * @param line
+	 * @return account described by a CSV line
+	 */
+	static Account parseCsv(String line) {
+		int comma = line.indexOf(',', line.trim().startsWith("\"") ? closingQuote(line) : 0);
+		if (comma < 0) {
+			throw new InvalidImportLineException("Expected accountId,balance");
+		}
+		String balance = unquote(line.substring(comma + 1));
+		return account(unquote(line.substring(0, comma)), balance.isEmpty() ? null : decimal(balance));
+	}
+
+	/**
+	 * applies the constraints of a created {@link Account}
+	 */
+	private static Account account(String accountId, BigDecimal balance) {
+		if (accountId == null || accountId.trim().isEmpty()) {
+			throw new InvalidImportLineException("Account id must not be blank.");
+		}
+		if (balance == null) {
+			throw new InvalidImportLineException("Initial balance must not be null.");
+		}
+		if (balance.signum() < 0) {
+			throw new InvalidImportLineException("Initial balance must be positive.");
+		}
+		return new Account(accountId, balance);
+	}
+
+	private static BigDecimal decimal(String value) {
+		try {
+			return new BigDecimal(value);
+		} catch (NumberFormatException exception) {
+			throw new InvalidImportLineException("Invalid balance " + value);
+		}
+	}
+
+	/**
+	 * @return position of the quote closing the quoted field the line starts with
+	 */
+	private static int closingQuote(String line) {
+		for (int i = line.indexOf('"') + 1; i < line.length(); i++) {
+			if (line.charAt(i) == '"') {
+				if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					i++;
+				} else {
+					return i;
+				}
+			}
+		}
+		throw new InvalidImportLineException("Unterminated quoted account id");
+	}
+
+	private static String unquote(String value) {
+		String trimmed = value.trim();
+		if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+			return trimmed.substring(1, trimmed.length() - 1).replace("\"\"", "\"");
+		}
+		return trimmed;
+	}
+
+	/**
+	 * progress of one import, shared by the parsing thread and the inserters
+	 */
+	private final class ImportRun {
+		final AtomicLong lines = new AtomicLong();
+		final AtomicLong failed = new AtomicLong();
+		final List<ImportLineError> errors = new ArrayList<>();
+		final Semaphore chunksInFlight = new Semaphore(AccountImportService.this.parallelism);
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+		void reject(long line, String accountId, RuntimeException exception) {
+			this.failed.incrementAndGet();
+			synchronized (this.errors) {
+				if (this.errors.size() < AccountImportService.this.maxErrors) {
+					this.errors.add(new ImportLineError(line, accountId, exception.getClass().getSimpleName(),
+							exception.getMessage()));
+				}
+			}
+		}
+	}
+}
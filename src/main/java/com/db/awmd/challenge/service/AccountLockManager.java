@@ -0,0 +1,199 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+
+import lombok.Getter;
+
+/**
+ * Locks held by transfers on the accounts they move amounts between. The account ids are spread
+ * over a fixed set of reentrant locks by their hash, so the locks take the same memory however many
+ * accounts were ever locked, and the locks of a transfer are always acquired in the order of their
+ * stripes. Two accounts sharing a stripe are held together by one lock, ids differing only in case
+ * are still two distinct ids that may or may not share it.
+ *
+ * A lock free on the first attempt costs no timer reading, only contended acquisitions are timed
+ * and counted per stripe, along with the account last waited for on it, which is what
+ * {@link #getContention(int)} reports.
+ */
+@Component
+public class AccountLockManager {
+
+	private final AccountLock[] stripes;
+
+	@Getter
+	private final long timeoutMillis;
+
+	@Getter
+	private final boolean failFast;
+
+	private final long timeoutNanos;
+
+	@Autowired
+	public AccountLockManager(AccountsProperties accountsProperties) {
+		AccountsProperties.Locking locking = accountsProperties.getLocking();
+		this.timeoutMillis = Math.max(0, locking.getTimeoutMillis());
+		this.failFast = locking.isFailFast();
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+		int stripes = Integer.highestOneBit(Math.max(1, locking.getStripes() - 1)) << 1;
+		this.stripes = new AccountLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new AccountLock();
+		}
+	}
+
+	/**
+	 * @param accountIdFrom
+	 * @param accountIdTo
+	 * @param action run once the locks of both accounts are held
+	 */
+	public void lockBoth(String accountIdFrom, String accountIdTo, Runnable action) {
+		int stripeFrom = stripeOf(accountIdFrom);
+		int stripeTo = stripeOf(accountIdTo);
+		if (stripeFrom <= stripeTo) {
+			lockInOrder(new int[] { stripeFrom, stripeTo }, new String[] { accountIdFrom, accountIdTo }, action);
+		} else {
+			lockInOrder(new int[] { stripeTo, stripeFrom }, new String[] { accountIdTo, accountIdFrom }, action);
+		}
+	}
+
+	/**
+	 * @param accountIds
+	 * @param action run once the locks of all the accounts are held
+	 */
+	public void lockAll(Collection<String> accountIds, Runnable action) {
+		String[] ordered = accountIds.toArray(new String[0]);
+		Arrays.sort(ordered, Comparator.comparingInt(this::stripeOf));
+		int[] stripes = new int[ordered.length];
+		for (int i = 0; i < ordered.length; i++) {
+			stripes[i] = stripeOf(ordered[i]);
+		}
+		lockInOrder(stripes, ordered, action);
+	}
+
+	/**
+	 * @param limit
+	 * @return stripes threads had to wait for, by the account last waited for on each, the longest
+	 *         total wait first
+	 */
+	public List<LockContention> getContention(int limit) {
+		List<LockContention> contention = new ArrayList<>();
+		for (int i = 0; i < this.stripes.length; i++) {
+			AccountLock lock = this.stripes[i];
+			long contended = lock.contended.sum();
+			if (contended > 0) {
+				contention.add(new LockContention(i, lock.lastContendedId, contended, lock.timeouts.sum(),
+						lock.waitNanos.sum() / 1_000_000.0, lock.maxWaitNanos.get() / 1_000_000.0));
+			}
+		}
+		contention.sort(Comparator.comparingDouble(LockContention::getTotalWaitMillis).reversed());
+		return contention.size() > limit ? new ArrayList<>(contention.subList(0, Math.max(0, limit))) : contention;
+	}
+
+	/**
+	 * @param stripes in ascending order, a stripe may be repeated
+	 * @param accountIds account of each stripe
+	 * @param action
+	 */
+	private void lockInOrder(int[] stripes, String[] accountIds, Runnable action) {
+		AccountLock[] held = new AccountLock[stripes.length];
+		int count = 0;
+		try {
+			for (int i = 0; i < stripes.length; i++) {
+				if (i > 0 && stripes[i] == stripes[i - 1]) {
+					continue;
+				}
+				AccountLock lock = this.stripes[stripes[i]];
+				acquire(accountIds[i], lock);
+				held[count++] = lock;
+			}
+			action.run();
+		} finally {
+			while (count > 0) {
+				held[--count].unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return number of lock stripes
+	 */
+	public int getStripeCount() {
+		return this.stripes.length;
+	}
+
+	/**
+	 * @param accountId
+	 * @return stripe whose lock holds the account, below {@link #getStripeCount()}
+	 */
+	public int stripeOf(String accountId) {
+		int hash = accountId.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (this.stripes.length - 1);
+	}
+
+	/**
+	 * @param accountId
+	 * @param lock
+	 * waits for the lock as configured, throws AccountLockTimeoutException if it is not acquired
+	 */
+	private void acquire(String accountId, AccountLock lock) {
+		if (lock.tryLock()) {
+			return;
+		}
+		lock.lastContendedId = accountId;
+		lock.contended.increment();
+		if (this.failFast) {
+			lock.timeouts.increment();
+			throw new AccountLockTimeoutException("Account " + accountId + " is locked by another transfer");
+		}
+		long startNanos = System.nanoTime();
+		boolean acquired = true;
+		if (this.timeoutNanos == 0) {
+			lock.lock();
+		} else {
+			try {
+				acquired = lock.tryLock(this.timeoutNanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				acquired = false;
+			}
+		}
+		long waitNanos = System.nanoTime() - startNanos;
+		lock.waitNanos.add(waitNanos);
+		lock.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		if (!acquired) {
+			lock.timeouts.increment();
+			throw new AccountLockTimeoutException(
+					"Account " + accountId + " stayed locked by another transfer for " + this.timeoutMillis + " ms");
+		}
+	}
+
+	private static final class AccountLock extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		final LongAdder contended = new LongAdder();
+
+		final LongAdder timeouts = new LongAdder();
+
+		final LongAdder waitNanos = new LongAdder();
+
+		final AtomicLong maxWaitNanos = new AtomicLong();
+
+		volatile String lastContendedId;
+	}
+}
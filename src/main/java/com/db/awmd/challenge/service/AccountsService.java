@@ -1,14 +1,36 @@
 package com.db.awmd.challenge.service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.db.awmd.challenge.config.AccountsProperties;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountStatement;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.TransferAuditEvent;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStage;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.InvalidCursorException;
+import com.db.awmd.challenge.exception.InvalidTransferBatchException;
 import com.db.awmd.challenge.repository.AccountsRepository;
 
 import lombok.Getter;
@@ -20,96 +42,707 @@ public class AccountsService {
 
 	@Getter
 	private final AccountsRepository accountsRepository;
+
+	private final AccountsProperties accountsProperties;
+
+	private final ShardedTransferExecutor shardedTransferExecutor;
+
+	private final TransferMetrics transferMetrics;
+
+	private final TransferAuditLog transferAuditLog;
+
+	private final IdempotencyCache idempotencyCache;
+
+	private final ConflictAwareTransferScheduler transferScheduler;
+
+	private final AccountLockManager accountLockManager;
+
+	private final HotAccounts hotAccounts;
+
+	private final TransferCoalescer transferCoalescer;
+
+	private final TransferLedger transferLedger;
 	
 	@Autowired
-	public AccountsService(AccountsRepository accountsRepository) {
+	public AccountsService(AccountsRepository accountsRepository, AccountsProperties accountsProperties,
+			ShardedTransferExecutor shardedTransferExecutor, TransferMetrics transferMetrics,
+			TransferAuditLog transferAuditLog, IdempotencyCache idempotencyCache,
+			ConflictAwareTransferScheduler transferScheduler, AccountLockManager accountLockManager,
+			HotAccounts hotAccounts, TransferCoalescer transferCoalescer, TransferLedger transferLedger) {
 		this.accountsRepository = accountsRepository;
+		this.accountsProperties = accountsProperties;
+		this.shardedTransferExecutor = shardedTransferExecutor;
+		this.transferMetrics = transferMetrics;
+		this.transferAuditLog = transferAuditLog;
+		this.idempotencyCache = idempotencyCache;
+		this.transferScheduler = transferScheduler;
+		this.accountLockManager = accountLockManager;
+		this.hotAccounts = hotAccounts;
+		this.transferCoalescer = transferCoalescer;
+		this.transferLedger = transferLedger;
 	}
 
 	/**
 	 * @param account method to create an account using given account detail
 	 */
 	public void createAccount(Account account) {
-		this.accountsRepository.createAccount(account);
+		Account adopted = this.accountsProperties.getBalanceEngine().adopt(account,
+				this.accountsProperties.getBalanceScale());
+		this.accountsRepository.createAccount(adopted);
+		this.hotAccounts.admit(adopted);
+		this.accountsRepository.sync();
+	}
+
+	/**
+	 * @param accounts
+	 * @param rejected told the index of each account that could not be created and why, the other
+	 *        accounts are created regardless
+	 * the accounts created are durable once the method returns
+	 */
+	public void createAccounts(List<Account> accounts, BiConsumer<Integer, RuntimeException> rejected) {
+		for (int i = 0; i < accounts.size(); i++) {
+			try {
+				Account adopted = this.accountsProperties.getBalanceEngine().adopt(accounts.get(i),
+						this.accountsProperties.getBalanceScale());
+				this.accountsRepository.createAccount(adopted);
+				this.hotAccounts.admit(adopted);
+			} catch (RuntimeException exception) {
+				rejected.accept(i, exception);
+			}
+		}
+		this.accountsRepository.sync();
 	}
 
 	/**
 	 * @param accountId
-	 * @return Account method to fetch account detail by accountId
+	 * @return Account method to fetch account detail by accountId, a copy whose balance is read
+	 *         optimistically: never half way through a transfer and without waiting on its locks
 	 */
 	public Account getAccount(String accountId) {
-		return this.accountsRepository.getAccount(accountId);
+		return this.accountsRepository.getAccount(accountId).snapshot();
+	}
+
+	/**
+	 * @param cursor nextCursor of the previous page, null for the first page
+	 * @param limit
+	 * @return at most limit accounts, capped by accounts.listing.max-page-size, following the cursor
+	 */
+	public AccountPage listAccounts(String cursor, int limit) {
+		long position = Math.max(0, parseCursor(cursor));
+		int pageSize = Math.max(1, Math.min(limit, this.accountsProperties.getListing().getMaxPageSize()));
+		List<Account> accounts = new ArrayList<>(pageSize);
+		long next = this.accountsRepository.scanAccounts(position, pageSize, accounts::add);
+		return new AccountPage(accounts, accounts.size() < pageSize ? null : Long.toString(next));
+	}
+
+	/**
+	 * @param accountId
+	 * @param cursor nextCursor of the previous page, null for the latest transfers
+	 * @param limit
+	 * @return at most limit transfers of the account, capped by accounts.ledger.max-page-size, the
+	 *         latest first
+	 */
+	public AccountStatement getStatement(String accountId, String cursor, int limit) {
+		// an unknown account has no statement, rather than an empty one
+		this.accountsRepository.getAccount(accountId);
+		int pageSize = Math.max(1, Math.min(limit, this.accountsProperties.getLedger().getMaxPageSize()));
+		return this.transferLedger.statement(accountId, parseCursor(cursor), pageSize);
+	}
+
+	/**
+	 * @param cursor
+	 * @return position the cursor stands for, -1 without a cursor
+	 */
+	static long parseCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty()) {
+			return -1;
+		}
+		long position;
+		try {
+			position = Long.parseLong(cursor);
+		} catch (NumberFormatException exception) {
+			position = -1;
+		}
+		if (position < 0) {
+			throw new InvalidCursorException("Invalid cursor " + cursor);
+		}
+		return position;
 	}
 
 	/**
 	 * @param transferRequest 
+	 * @return false if the request is a retry of an earlier transfer with the same idempotency key,
+	 *         answered with the outcome of that transfer without moving the amount again
 	 * method to transfer the amount from payer to payee account
 	 */
-	public void transferAmount(AmountTransferRequest transferRequest) {
+	public boolean transferAmount(AmountTransferRequest transferRequest) {
+		return transferOnce(transferRequest, () -> applyTransfer(transferRequest));
+	}
+
+	/**
+	 * @param transferRequest
+	 * @param transfer makes the transfer, wherever its accounts are
+	 * @return false if the request is a retry of an earlier transfer with the same idempotency key,
+	 *         answered with the outcome of that transfer without running it again
+	 */
+	public boolean transferOnce(AmountTransferRequest transferRequest, Runnable transfer) {
+		String idempotencyKey = transferRequest.getIdempotencyKey();
+		if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+			transfer.run();
+			return true;
+		}
+		String fingerprint = transferRequest.getAccountFrom() + '\n' + transferRequest.getAccountTo() + '\n'
+				+ (transferRequest.getAmount() == null ? null : transferRequest.getAmount().stripTrailingZeros());
+		return this.idempotencyCache.execute(idempotencyKey, fingerprint, transfer);
+	}
+
+	/**
+	 * @param transferRequest
+	 */
+	private void applyTransfer(AmountTransferRequest transferRequest) {
 		String accountFromId = transferRequest.getAccountFrom();
 		String accountToId = transferRequest.getAccountTo();
 		BigDecimal amount = transferRequest.getAmount();
-		
-		Account accountFrom = getAccount(accountFromId);
-		Account accountTo = getAccount(accountToId);
-		Account first, second;
-		if(accountFromId.compareToIgnoreCase(accountToId) < 0) {
-			first = accountFrom;
-			second = accountTo;
-		}else {
-			first = accountTo;
-			second = accountFrom;
+		long startNanos = this.transferMetrics.startTimer();
+		try {
+			if (this.transferCoalescer.isEnabled() && amount != null && !accountFromId.equals(accountToId)) {
+				this.transferCoalescer.submit(transferRequest, this::settleCoalesced);
+			} else {
+				transferBetween(this.accountsRepository.getAccount(accountFromId),
+						this.accountsRepository.getAccount(accountToId), amount);
+				// wait for the group commit of the journal only once the accounts are released
+				long syncStart = this.transferMetrics.startTimer();
+				this.accountsRepository.sync();
+				this.transferMetrics.recordStage(TransferStage.JOURNAL_SYNC, syncStart);
+			}
+			this.transferLedger.append(accountFromId, accountToId, amount);
+			this.transferMetrics.countOutcome(TransferStatus.COMPLETED);
+		} catch (InsufficientFundsException exception) {
+			this.transferMetrics.countOutcome(TransferStatus.INSUFFICIENT_FUNDS);
+			throw exception;
+		} catch (AccountInfoNotFoundException exception) {
+			this.transferMetrics.countOutcome(TransferStatus.ACCOUNT_NOT_FOUND);
+			throw exception;
+		} catch (AccountLockTimeoutException exception) {
+			this.transferMetrics.countOutcome(TransferStatus.LOCK_TIMEOUT);
+			throw exception;
+		} finally {
+			this.transferMetrics.recordStage(TransferStage.TRANSFER, startNanos);
 		}
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @param amount
+	 * moves the amount the way the configuration asks for, without waiting for the journal
+	 */
+	private void transferBetween(Account accountFrom, Account accountTo, BigDecimal amount) {
+		if (this.shardedTransferExecutor.isEnabled()) {
+			// the payer is debited by the worker owning its shard and the payee credited by the
+			// worker owning its own, each account only ever being written by a single thread
+			// readers of both balances wait from the debit until the transfer has completed
+			boolean[] begun = new boolean[2];
+			long[] withdrawal = new long[1];
+			try {
+				this.shardedTransferExecutor.transfer(accountFrom, accountTo, account -> {
+					begun[1] = beginBalanceUpdates(accountFrom, accountTo);
+					begun[0] = true;
+					withdrawAmount(account, amount, withdrawal);
+				}, account -> depositAmount(account, amount, withdrawal[0]));
+			} finally {
+				if (begun[0]) {
+					endBalanceUpdates(accountFrom, accountTo, begun[1]);
+				}
+			}
+		} else if (this.accountsProperties.getBalanceEngine().isLockFree()) {
+			// the payer is debited with a compare-and-set that never goes below zero and the payee
+			// credited the same way, so no monitor is needed to keep the balances consistent
+			long criticalSectionStart = this.transferMetrics.startTimer();
+			moveAmount(accountFrom, accountTo, amount);
+			this.transferMetrics.recordStage(TransferStage.CRITICAL_SECTION, criticalSectionStart);
+		} else {
+			transferLocked(accountFrom, accountTo, amount);
+		}
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @param amount
+	 */
+	private void transferLocked(Account accountFrom, Account accountTo, BigDecimal amount) {
+		String accountFromId = accountFrom.getAccountId();
+		String accountToId = accountTo.getAccountId();
 		// To ensure that multiple threads can not withdraw from the same account
 		// simultaneously and that the accounts state are consistent,
-		// a lock is acquired on the payer and payee account based on accountId lexicographical order
-		synchronized (first) {
-			log.debug("1st lock acquired by "+ Thread.currentThread().getName());
-			synchronized (second) {
-				log.debug("2nd lock acquired by "+ Thread.currentThread().getName());
-				log.info("Initiating trasfer from account- "+accountFromId+" to account- "+accountToId);
-				withdrawAmount(accountFrom, amount);
-				try {
-					depositAmount(accountTo, amount);
-				} catch (Exception exception) {
-					// If amount is withdrawn from payer account but deposit to payee account fails,
-					// the given amount should be deposited back to the payer account
-					depositAmount(accountFrom, amount);
-					throw new AccountInfoNotFoundException(exception.getMessage());
+		// the locks of the payer and payee account are acquired in the order of the lock manager
+		long lockStart = this.transferMetrics.startTimer();
+		Runnable transfer = () -> {
+			long criticalSectionStart = this.transferMetrics.recordStage(TransferStage.LOCK_WAIT, lockStart);
+			log.debug("Locks acquired by {}", Thread.currentThread().getName());
+			if (this.transferAuditLog.isEnabled()) {
+				this.transferAuditLog.record(TransferAuditEvent.TRANSFER_STARTED, accountFromId, accountToId, amount);
+			} else {
+				log.info("Initiating trasfer from account- {} to account- {}", accountFromId, accountToId);
+			}
+			try {
+				moveAmount(accountFrom, accountTo, amount);
+			} finally {
+				this.transferMetrics.recordStage(TransferStage.CRITICAL_SECTION, criticalSectionStart);
+			}
+		};
+		if (accountTo.hasStripedCredits()) {
+			// credits of a hot account go to its stripes, only the payer has to be held
+			this.accountLockManager.lockAll(Collections.singletonList(accountFromId), transfer);
+		} else {
+			this.accountLockManager.lockBoth(accountFromId, accountToId, transfer);
+		}
+	}
+
+	/**
+	 * @param transferRequests gathered by the coalescer, each between two distinct accounts
+	 * @return failure of every transfer, null for the transfers made
+	 * the transfers between the same two accounts are decided in arrival order against the
+	 * balances they leave, as if made one by one, and only their net amount is moved
+	 */
+	private RuntimeException[] settleCoalesced(List<AmountTransferRequest> transferRequests) {
+		RuntimeException[] failures = new RuntimeException[transferRequests.size()];
+		Map<String, List<Integer>> pairs = new LinkedHashMap<>();
+		for (int i = 0; i < failures.length; i++) {
+			String accountFromId = transferRequests.get(i).getAccountFrom();
+			String accountToId = transferRequests.get(i).getAccountTo();
+			String pair = accountFromId.compareTo(accountToId) < 0 ? accountFromId + '\n' + accountToId
+					: accountToId + '\n' + accountFromId;
+			pairs.computeIfAbsent(pair, key -> new ArrayList<>()).add(i);
+		}
+		for (List<Integer> pairTransfers : pairs.values()) {
+			AmountTransferRequest first = transferRequests.get(pairTransfers.get(0));
+			try {
+				Account accountA = this.accountsRepository.getAccount(first.getAccountFrom());
+				Account accountB = this.accountsRepository.getAccount(first.getAccountTo());
+				long lockStart = this.transferMetrics.startTimer();
+				this.accountLockManager.lockBoth(accountA.getAccountId(), accountB.getAccountId(), () -> {
+					long criticalSectionStart = this.transferMetrics.recordStage(TransferStage.LOCK_WAIT, lockStart);
+					try {
+						settlePair(accountA, accountB, transferRequests, pairTransfers, failures);
+					} finally {
+						this.transferMetrics.recordStage(TransferStage.CRITICAL_SECTION, criticalSectionStart);
+					}
+				});
+			} catch (AccountInfoNotFoundException | AccountLockTimeoutException exception) {
+				for (int i : pairTransfers) {
+					failures[i] = exception;
 				}
 			}
 		}
+		long syncStart = this.transferMetrics.startTimer();
+		this.accountsRepository.sync();
+		this.transferMetrics.recordStage(TransferStage.JOURNAL_SYNC, syncStart);
+		return failures;
+	}
+
+	/**
+	 * @param accountA
+	 * @param accountB
+	 * @param transferRequests
+	 * @param pairTransfers indexes of the transfers between accountA and accountB, in arrival order
+	 * @param failures receives the failure of the transfers not made
+	 * must be called with both accounts locked
+	 */
+	private void settlePair(Account accountA, Account accountB, List<AmountTransferRequest> transferRequests,
+			List<Integer> pairTransfers, RuntimeException[] failures) {
+		BigDecimal balanceA = accountA.getBalance();
+		BigDecimal balanceB = accountB.getBalance();
+		// amount moved from accountA to accountB by the transfers made, negative the other way
+		BigDecimal net = BigDecimal.ZERO;
+		List<Integer> made = new ArrayList<>(pairTransfers.size());
+		for (int i : pairTransfers) {
+			AmountTransferRequest transferRequest = transferRequests.get(i);
+			BigDecimal amount = transferRequest.getAmount();
+			boolean fromA = transferRequest.getAccountFrom().equals(accountA.getAccountId());
+			if ((fromA ? balanceA : balanceB).compareTo(amount) < 0) {
+				failures[i] = InsufficientFundsException.INSUFFICIENT_BALANCE;
+				continue;
+			}
+			if (fromA) {
+				balanceA = balanceA.subtract(amount);
+				balanceB = balanceB.add(amount);
+				net = net.add(amount);
+			} else {
+				balanceB = balanceB.subtract(amount);
+				balanceA = balanceA.add(amount);
+				net = net.subtract(amount);
+			}
+			made.add(i);
+		}
+		log.debug("{} of {} coalesced transfers between account- {} and account- {} netted to {}", made.size(),
+				pairTransfers.size(), accountA.getAccountId(), accountB.getAccountId(), net);
+		if (net.signum() == 0) {
+			return;
+		}
+		Account accountFrom = net.signum() > 0 ? accountA : accountB;
+		Account accountTo = net.signum() > 0 ? accountB : accountA;
+		if (this.transferAuditLog.isEnabled()) {
+			this.transferAuditLog.record(TransferAuditEvent.TRANSFER_STARTED, accountFrom.getAccountId(),
+					accountTo.getAccountId(), net.abs());
+		}
+		try {
+			moveAmount(accountFrom, accountTo, net.abs());
+		} catch (InsufficientFundsException | AccountInfoNotFoundException exception) {
+			for (int i : made) {
+				failures[i] = exception;
+			}
+		}
 	}
 
 	/**
+	 * @param accountFrom
+	 * @param accountTo
 	 * @param amount
-	 * @param account
 	 */
-	private void checkBalance(BigDecimal amount, Account account) {
-		if (account.getBalance().compareTo(amount) < 0) {
-			throw new InsufficientFundsException("Insufficient balance in the account!!");
+	private void moveAmount(Account accountFrom, Account accountTo, BigDecimal amount) {
+		boolean payeeMarked = beginBalanceUpdates(accountFrom, accountTo);
+		try {
+			long[] withdrawal = new long[1];
+			withdrawAmount(accountFrom, amount, withdrawal);
+			try {
+				depositAmount(accountTo, amount, withdrawal[0]);
+			} catch (Exception exception) {
+				// If amount is withdrawn from payer account but deposit to payee account fails,
+				// the given amount should be deposited back to the payer account
+				depositAmount(accountFrom, amount, withdrawal[0]);
+				throw new AccountInfoNotFoundException(exception.getMessage(), exception);
+			}
+		} finally {
+			endBalanceUpdates(accountFrom, accountTo, payeeMarked);
+		}
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @return true if the payee was marked as well, to pass to endBalanceUpdates
+	 * readers of either balance wait until the matching endBalanceUpdates, so a debit is never seen
+	 * without its credit. A hot payee is not marked: a credit is never undone, and readers of a hot
+	 * account would otherwise contend on its stamp as much as the credits did on its balance
+	 */
+	private static boolean beginBalanceUpdates(Account accountFrom, Account accountTo) {
+		accountFrom.beginBalanceUpdate();
+		if (accountTo.hasStripedCredits()) {
+			return false;
+		}
+		accountTo.beginBalanceUpdate();
+		return true;
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @param payeeMarked returned by beginBalanceUpdates
+	 */
+	private static void endBalanceUpdates(Account accountFrom, Account accountTo, boolean payeeMarked) {
+		if (payeeMarked) {
+			accountTo.endBalanceUpdate();
+		}
+		accountFrom.endBalanceUpdate();
+	}
+
+	/**
+	 * @param transferRequests
+	 * @return TransferResult for every leg, in the order of the given requests
+	 * method to apply a batch of transfers, every account touched by the batch is looked up
+	 * and locked only once and the legs are then applied in order. A failing leg is reported
+	 * in its result and does not stop the remaining legs
+	 */
+	public List<TransferResult> transferBatch(List<AmountTransferRequest> transferRequests) {
+		int maxSize = this.accountsProperties.getTransferBatch().getMaxSize();
+		if (transferRequests.size() > maxSize) {
+			throw new InvalidTransferBatchException("A transfer batch can not have more than " + maxSize + " legs");
+		}
+		Map<String, Account> accounts = new HashMap<>();
+		TransferResult[] results = screenLegs(transferRequests, accounts);
+
+		Runnable applyLegs = () -> {
+			Set<String> updatedAccountIds = new HashSet<>();
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					results[i] = applyLeg(transferRequests.get(i), accounts, updatedAccountIds);
+				}
+			}
+			updatedAccountIds.forEach(accountId -> this.accountsRepository.updateAccount(accounts.get(accountId)));
+		};
+		if (this.accountsProperties.getBalanceEngine().isLockFree()) {
+			// lock-free balances apply each leg atomically on their own, nothing to lock upfront
+			applyLegs.run();
+		} else {
+			this.accountLockManager.lockAll(accounts.keySet(), applyLegs);
+		}
+		this.accountsRepository.sync();
+		for (TransferResult result : results) {
+			if (result.getStatus() == TransferStatus.COMPLETED) {
+				this.transferLedger.append(result.getAccountFrom(), result.getAccountTo(), result.getAmount());
+			}
+			this.transferMetrics.countOutcome(result.getStatus());
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * @param transferRequests
+	 * @return TransferResult for every leg, in the order of the given requests
+	 * applies the legs of a batch concurrently, legs touching disjoint accounts run in parallel
+	 * while legs sharing an account are applied in the order of the batch, which leaves every
+	 * account with the balance a serial run of the batch would give it. Unlike transferBatch the
+	 * accounts are locked one leg at a time, so other transfers may interleave with the batch
+	 */
+	public List<TransferResult> transferBatchParallel(List<AmountTransferRequest> transferRequests) {
+		int maxSize = this.accountsProperties.getTransferBatch().getMaxSize();
+		if (transferRequests.size() > maxSize) {
+			throw new InvalidTransferBatchException("A transfer batch can not have more than " + maxSize + " legs");
+		}
+		Map<String, Account> accounts = new HashMap<>();
+		TransferResult[] results = screenLegs(transferRequests, accounts);
+		this.transferScheduler.schedule(transferRequests, results, transferRequest -> {
+			try {
+				transferBetween(accounts.get(transferRequest.getAccountFrom()),
+						accounts.get(transferRequest.getAccountTo()), transferRequest.getAmount());
+				return TransferResult.of(transferRequest, TransferStatus.COMPLETED, null);
+			} catch (InsufficientFundsException exception) {
+				return TransferResult.of(transferRequest, TransferStatus.INSUFFICIENT_FUNDS, exception.getMessage());
+			} catch (AccountInfoNotFoundException exception) {
+				return TransferResult.of(transferRequest, TransferStatus.ACCOUNT_NOT_FOUND, exception.getMessage());
+			} catch (InvalidAmountException exception) {
+				return TransferResult.of(transferRequest, TransferStatus.REJECTED, exception.getMessage());
+			} catch (AccountLockTimeoutException exception) {
+				return TransferResult.of(transferRequest, TransferStatus.LOCK_TIMEOUT, exception.getMessage());
+			} catch (RuntimeException exception) {
+				// kept in the leg, the legs after it on the same accounts still run
+				log.error("Batch leg from account- {} to account- {} failed", transferRequest.getAccountFrom(),
+						transferRequest.getAccountTo(), exception);
+				return TransferResult.of(transferRequest, TransferStatus.FAILED, exception.getMessage());
+			}
+		});
+		this.accountsRepository.sync();
+		for (TransferResult result : results) {
+			if (result.getStatus() == TransferStatus.COMPLETED) {
+				this.transferLedger.append(result.getAccountFrom(), result.getAccountTo(), result.getAmount());
+			}
+			this.transferMetrics.countOutcome(result.getStatus());
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * @param accountId
+	 * @param amount
+	 * debits an account of this node alone, the payer leg of a transfer across nodes
+	 */
+	public void debitAccount(String accountId, BigDecimal amount) {
+		Account account = this.accountsRepository.getAccount(accountId);
+		updateAccount(accountId, () -> withdrawAmount(account, amount, null));
+		this.accountsRepository.sync();
+	}
+
+	/**
+	 * @param accountId
+	 * @param amount
+	 * credits an account of this node alone, the payee leg of a transfer across nodes or the refund
+	 * of an aborted payer leg
+	 */
+	public void creditAccount(String accountId, BigDecimal amount) {
+		Account account = this.accountsRepository.getAccount(accountId);
+		updateAccount(accountId, () -> depositAmount(account, amount, 0));
+		this.accountsRepository.sync();
+	}
+
+	/**
+	 * @param accountId
+	 * @param update
+	 * runs the update of a single account under its lock, unless the balance engine needs none
+	 */
+	private void updateAccount(String accountId, Runnable update) {
+		if (this.accountsProperties.getBalanceEngine().isLockFree()) {
+			update.run();
+		} else {
+			this.accountLockManager.lockAll(Collections.singletonList(accountId), update);
+		}
+	}
+
+	/**
+	 * @param transferRequests
+	 * @param accounts receives every account the well formed legs touch
+	 * @return outcome of the legs that can not be applied, null for the others
+	 */
+	private TransferResult[] screenLegs(List<AmountTransferRequest> transferRequests, Map<String, Account> accounts) {
+		TransferResult[] results = new TransferResult[transferRequests.size()];
+		Set<String> missingAccountIds = new HashSet<>();
+		for (int i = 0; i < results.length; i++) {
+			AmountTransferRequest transferRequest = transferRequests.get(i);
+			String rejection = validateLeg(transferRequest);
+			if (rejection != null) {
+				results[i] = TransferResult.of(transferRequest, TransferStatus.REJECTED, rejection);
+				continue;
+			}
+			boolean payerFound = resolveAccount(transferRequest.getAccountFrom(), accounts, missingAccountIds);
+			boolean payeeFound = resolveAccount(transferRequest.getAccountTo(), accounts, missingAccountIds);
+			if (!payerFound || !payeeFound) {
+				results[i] = TransferResult.of(transferRequest, TransferStatus.ACCOUNT_NOT_FOUND,
+						"This Account does not exist");
+			}
 		}
+		return results;
+	}
+
+	/**
+	 * @param transferRequest
+	 * @return reason the leg can not be applied, null for a well formed leg
+	 */
+	String validateLeg(AmountTransferRequest transferRequest) {
+		if (transferRequest.getAccountFrom() == null || transferRequest.getAccountFrom().trim().isEmpty()) {
+			return "please mention the Payer account";
+		}
+		if (transferRequest.getAccountTo() == null || transferRequest.getAccountTo().trim().isEmpty()) {
+			return "please mention the Payee account";
+		}
+		if (transferRequest.getAmount() == null || transferRequest.getAmount().signum() < 0) {
+			return "Transfer amount must be positive.";
+		}
+		return null;
+	}
+
+	/**
+	 * @param accountId
+	 * @param accounts
+	 * @param missingAccountIds
+	 * @return true if the account exists, each account id is looked up at most once per batch
+	 */
+	private boolean resolveAccount(String accountId, Map<String, Account> accounts, Set<String> missingAccountIds) {
+		if (accounts.containsKey(accountId)) {
+			return true;
+		}
+		if (missingAccountIds.contains(accountId)) {
+			return false;
+		}
+		try {
+			accounts.put(accountId, this.accountsRepository.getAccount(accountId));
+			return true;
+		} catch (AccountInfoNotFoundException exception) {
+			missingAccountIds.add(accountId);
+			return false;
+		}
+	}
+
+	/**
+	 * @param transferRequest
+	 * @param accounts
+	 * @param updatedAccountIds
+	 * @return outcome of the leg, must be called with both accounts locked unless the balance
+	 *         engine is lock-free
+	 */
+	private TransferResult applyLeg(AmountTransferRequest transferRequest, Map<String, Account> accounts,
+			Set<String> updatedAccountIds) {
+		Account accountFrom = accounts.get(transferRequest.getAccountFrom());
+		Account accountTo = accounts.get(transferRequest.getAccountTo());
+		BigDecimal amount = transferRequest.getAmount();
+		boolean payeeMarked = beginBalanceUpdates(accountFrom, accountTo);
+		try {
+			long[] withdrawal = new long[1];
+			if (!debit(accountFrom, amount, withdrawal)) {
+				return TransferResult.of(transferRequest, TransferStatus.INSUFFICIENT_FUNDS,
+						"Insufficient balance in the account!!");
+			}
+			credit(accountTo, amount, withdrawal[0]);
+		} finally {
+			endBalanceUpdates(accountFrom, accountTo, payeeMarked);
+		}
+		updatedAccountIds.add(accountFrom.getAccountId());
+		updatedAccountIds.add(accountTo.getAccountId());
+		log.debug("Batch leg of {} applied from account- {} to account- {}", amount, accountFrom.getAccountId(),
+				accountTo.getAccountId());
+		return TransferResult.of(transferRequest, TransferStatus.COMPLETED, null);
 	}
 
 	/**
 	 * @param accountFrom
 	 * @param amount
+	 * @param withdrawal receives the id of the withdrawal of a transfer, null for a debit of its own
 	 */
-	private void withdrawAmount(Account accountFrom, BigDecimal amount) {
-		checkBalance(amount, accountFrom);
-		accountFrom.withdraw(amount);
+	private void withdrawAmount(Account accountFrom, BigDecimal amount, long[] withdrawal) {
+		if (!debit(accountFrom, amount, withdrawal)) {
+			throw InsufficientFundsException.INSUFFICIENT_BALANCE;
+		}
 		this.accountsRepository.updateAccount(accountFrom);
-		log.info("An amount of "+amount+" successfully withdrawn from account - "+accountFrom.getAccountId());
+		if (this.transferAuditLog.isEnabled()) {
+			this.transferAuditLog.record(TransferAuditEvent.WITHDRAWN, accountFrom.getAccountId(), null, amount);
+		} else {
+			log.info("An amount of {} successfully withdrawn from account - {}", amount, accountFrom.getAccountId());
+		}
 	}
 
 	/**
 	 * @param accountTo
 	 * @param amount
+	 * @param withdrawal id of the withdrawal of the same transfer, 0 for a credit of its own
 	 */
-	private void depositAmount(Account accountTo, BigDecimal amount) {
-		accountTo.deposit(amount);
+	private void depositAmount(Account accountTo, BigDecimal amount, long withdrawal) {
+		credit(accountTo, amount, withdrawal);
 		this.accountsRepository.updateAccount(accountTo);
-		log.info("An amount of "+amount+" successfully deposited to account - "+accountTo.getAccountId());
+		if (this.transferAuditLog.isEnabled()) {
+			this.transferAuditLog.record(TransferAuditEvent.DEPOSITED, accountTo.getAccountId(), null, amount);
+		} else {
+			log.info("An amount of {} successfully deposited to account - {}", amount, accountTo.getAccountId());
+		}
+	}
+
+	/**
+	 * @param account
+	 * @param amount
+	 * @param withdrawal receives the id of the withdrawal of a transfer, null for a debit of its own
+	 * @return false, leaving the account untouched, if its balance is lower than the amount
+	 */
+	private boolean debit(Account account, BigDecimal amount, long[] withdrawal) {
+		return recorded(account, () -> {
+			if (!account.tryWithdraw(amount)) {
+				return false;
+			}
+			if (withdrawal == null) {
+				this.accountsRepository.recordWithdrawal(account, amount);
+			} else {
+				withdrawal[0] = this.accountsRepository.recordTransferWithdrawal(account, amount);
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * @param account
+	 * @param amount
+	 * @param withdrawal id of the withdrawal of the same transfer, 0 for a credit of its own
+	 */
+	private void credit(Account account, BigDecimal amount, long withdrawal) {
+		recorded(account, () -> {
+			account.deposit(amount);
+			// a journal makes the withdrawal and this deposit one unit, undone on restart without it
+			this.accountsRepository.recordTransferDeposit(account, amount, withdrawal);
+			return true;
+		});
+	}
+
+	/**
+	 * @param account
+	 * @param change balance change of the account followed by its journal record
+	 * @return result of the change
+	 * snapshots read an account under its monitor and have to see a balance change together with its
+	 * journal record
+	 */
+	private boolean recorded(Account account, BooleanSupplier change) {
+		if (!this.accountsProperties.getSnapshot().isEnabled()) {
+			return change.getAsBoolean();
+		}
+		synchronized (account) {
+			return change.getAsBoolean();
+		}
 	}
 
 	/*
@@ -0,0 +1,269 @@
+package com.db.awmd.challenge.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.NotificationOverflowPolicy;
+import com.db.awmd.challenge.domain.NotificationStats;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.NotificationSpillFile.SpilledNotification;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends transfer notifications off the request thread. Notifications are queued in a bounded
+ * lock-free ring buffer and handed in batches to the email notification service by dispatcher
+ * threads. When the buffer is full the configured overflow policy applies.
+ *
+ * With the spill-to-disk policy the spill file is the tail of the queue: while it holds
+ * notifications, new ones are appended to it as well, and it is only read once the buffer is
+ * empty, so a notification made after another is never sent before it by a single dispatcher.
+ * Several dispatchers send their batches concurrently and keep no order between them. A spilled
+ * notification keeps the account id and is sent with the account the repository holds under that
+ * id when it is read back, as a queued one is sent with the live account.
+ */
+@Slf4j
+@Primary
+@Service
+public class AsyncNotificationService implements NotificationService {
+
+	private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+	private final NotificationService delegate;
+
+	private final AccountsRepository accountsRepository;
+
+	@Getter
+	private final boolean async;
+
+	private final NotificationOverflowPolicy overflowPolicy;
+
+	private final int batchSize;
+
+	private final long idleWaitNanos;
+
+	private final BoundedRingBuffer<Notification> buffer;
+
+	private final NotificationSpillFile spillFile;
+
+	private final Thread[] dispatchers;
+
+	private volatile boolean running = true;
+
+	private final LongAdder enqueued = new LongAdder();
+
+	private final LongAdder dispatched = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final LongAdder spilled = new LongAdder();
+
+	private final LongAdder blocked = new LongAdder();
+
+	private final LongAdder totalLagMillis = new LongAdder();
+
+	private final AtomicLong maxLagMillis = new AtomicLong();
+
+	private volatile long lastLagMillis;
+
+	@Autowired
+	public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService delegate,
+			AccountsRepository accountsRepository, AccountsProperties accountsProperties) throws IOException {
+		AccountsProperties.Notifications notifications = accountsProperties.getNotifications();
+		this.delegate = delegate;
+		this.accountsRepository = accountsRepository;
+		this.async = notifications.isAsync();
+		this.overflowPolicy = notifications.getOverflowPolicy();
+		this.batchSize = Math.max(1, notifications.getBatchSize());
+		this.idleWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, notifications.getIdleWaitMicros()));
+		this.buffer = new BoundedRingBuffer<>(notifications.getBufferCapacity());
+		this.spillFile = this.async && this.overflowPolicy == NotificationOverflowPolicy.SPILL_TO_DISK
+				? new NotificationSpillFile(Paths.get(notifications.getSpillPath()))
+				: null;
+		this.dispatchers = new Thread[this.async ? Math.max(1, notifications.getDispatchers()) : 0];
+		for (int i = 0; i < this.dispatchers.length; i++) {
+			this.dispatchers[i] = new Thread(this::dispatchLoop, "notification-dispatcher-" + i);
+			this.dispatchers[i].setDaemon(true);
+			this.dispatchers[i].start();
+		}
+		if (this.async) {
+			log.info("Asynchronous notifications enabled with {} dispatchers, buffer of {} and {} overflow policy",
+					this.dispatchers.length, this.buffer.capacity(), this.overflowPolicy);
+		}
+	}
+
+	@Override
+	public void notifyAboutTransfer(Account account, String transferDescription) {
+		if (!this.async || !this.running) {
+			this.delegate.notifyAboutTransfer(account, transferDescription);
+			return;
+		}
+		Notification notification = new Notification(account, transferDescription, System.currentTimeMillis());
+		this.enqueued.increment();
+		if ((this.spillFile == null || this.spillFile.size() == 0) && this.buffer.offer(notification)) {
+			return;
+		}
+		switch (this.overflowPolicy) {
+		case DROP_OLDEST:
+			while (!this.buffer.offer(notification)) {
+				if (this.buffer.poll() != null) {
+					this.dropped.increment();
+				}
+			}
+			break;
+		case SPILL_TO_DISK:
+			try {
+				this.spillFile.append(account.getAccountId(), transferDescription, notification.enqueuedAtMillis);
+				this.spilled.increment();
+			} catch (IOException exception) {
+				log.warn("Notification spill failed, sending it on the request thread", exception);
+				dispatch(notification);
+			}
+			break;
+		default:
+			this.blocked.increment();
+			while (!this.buffer.offer(notification)) {
+				if (!this.running) {
+					dispatch(notification);
+					return;
+				}
+				LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * @return queue depth, dispatch lag and outcome counters of the notifications
+	 */
+	public NotificationStats getStats() {
+		long dispatchedCount = this.dispatched.sum();
+		long failedCount = this.failed.sum();
+		long attempts = dispatchedCount + failedCount;
+		return new NotificationStats(this.buffer.size(), this.spillFile == null ? 0 : this.spillFile.size(),
+				this.enqueued.sum(), dispatchedCount, failedCount, this.dropped.sum(), this.spilled.sum(),
+				this.blocked.sum(), this.lastLagMillis, this.maxLagMillis.get(),
+				attempts == 0 ? 0 : (double) this.totalLagMillis.sum() / attempts);
+	}
+
+	private void dispatchLoop() {
+		List<Notification> batch = new ArrayList<>(this.batchSize);
+		List<SpilledNotification> spilledBatch = new ArrayList<>(this.batchSize);
+		while (true) {
+			this.buffer.drainTo(batch, this.batchSize);
+			if (batch.size() < this.batchSize && this.spillFile != null && this.running) {
+				// the spilled notifications are newer than the queued ones, they are read once the buffer
+				// is empty, checked under the monitor notifications are spilled under
+				synchronized (this.spillFile) {
+					try {
+						if (this.buffer.isEmpty()) {
+							this.spillFile.drainTo(spilledBatch, this.batchSize - batch.size());
+						}
+					} catch (IOException exception) {
+						log.warn("Reading spilled notifications failed", exception);
+					}
+				}
+				for (SpilledNotification spilledNotification : spilledBatch) {
+					batch.add(new Notification(resolveAccount(spilledNotification.accountId),
+							spilledNotification.transferDescription, spilledNotification.enqueuedAtMillis));
+				}
+				spilledBatch.clear();
+			}
+			if (batch.isEmpty()) {
+				if (!this.running) {
+					return;
+				}
+				LockSupport.parkNanos(this, this.idleWaitNanos);
+				continue;
+			}
+			for (Notification notification : batch) {
+				dispatch(notification);
+			}
+			batch.clear();
+		}
+	}
+
+	private void dispatch(Notification notification) {
+		try {
+			this.delegate.notifyAboutTransfer(notification.account, notification.transferDescription);
+			this.dispatched.increment();
+		} catch (RuntimeException exception) {
+			this.failed.increment();
+			log.warn("Notification to owner of {} failed", notification.account.getAccountId(), exception);
+		}
+		long lag = Math.max(0, System.currentTimeMillis() - notification.enqueuedAtMillis);
+		this.lastLagMillis = lag;
+		this.totalLagMillis.add(lag);
+		this.maxLagMillis.accumulateAndGet(lag, Math::max);
+	}
+
+	/**
+	 * @param accountId
+	 * @return account of a notification read back from the spill file
+	 */
+	private Account resolveAccount(String accountId) {
+		try {
+			return this.accountsRepository.getAccount(accountId);
+		} catch (AccountInfoNotFoundException exception) {
+			// removed since the notification was spilled, the owner is still told about the transfer
+			return new Account(accountId);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws IOException {
+		this.running = false;
+		long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+		for (Thread dispatcher : this.dispatchers) {
+			LockSupport.unpark(dispatcher);
+			try {
+				dispatcher.join(Math.max(1, deadline - System.currentTimeMillis()));
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// a notification queued while the dispatchers were stopping
+		for (Notification notification = this.buffer.poll(); notification != null; notification = this.buffer.poll()) {
+			dispatch(notification);
+		}
+		if (this.spillFile != null) {
+			if (this.spillFile.size() > 0) {
+				log.info("{} spilled notifications left for the next start", this.spillFile.size());
+			}
+			this.spillFile.close();
+		}
+	}
+
+	private static final class Notification {
+		final Account account;
+		final String transferDescription;
+		final long enqueuedAtMillis;
+
+		Notification(Account account, String transferDescription, long enqueuedAtMillis) {
+			this.account = account;
+			this.transferDescription = transferDescription;
+			this.enqueuedAtMillis = enqueuedAtMillis;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer multi-consumer queue on a power-of-two ring. Every slot carries a
+ * sequence number telling whether it is free for the producer at a given position or filled for
+ * the consumer at that position, so producers and consumers only contend on a compare-and-set of
+ * their own cursor and never take a lock.
+ *
+ * @param <E> type of the queued elements
+ */
+public final class BoundedRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> elements;
+
+	private final AtomicLongArray sequences;
+
+	private final int mask;
+
+	private final AtomicLong enqueuePosition = new AtomicLong();
+
+	private final AtomicLong dequeuePosition = new AtomicLong();
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 */
+	public BoundedRingBuffer(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid ring buffer capacity " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.elements = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @param element
+	 * @return false, leaving the buffer untouched, if the buffer is full
+	 */
+	public boolean offer(E element) {
+		long position = this.enqueuePosition.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long distance = this.sequences.get(index) - position;
+			if (distance == 0) {
+				if (this.enqueuePosition.compareAndSet(position, position + 1)) {
+					this.elements.lazySet(index, element);
+					// publishes the element to the consumer of this position
+					this.sequences.lazySet(index, position + 1);
+					return true;
+				}
+				position = this.enqueuePosition.get();
+			} else if (distance < 0) {
+				return false;
+			} else {
+				position = this.enqueuePosition.get();
+			}
+		}
+	}
+
+	/**
+	 * @return oldest element, or null if the buffer is empty
+	 */
+	public E poll() {
+		long position = this.dequeuePosition.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long distance = this.sequences.get(index) - (position + 1);
+			if (distance == 0) {
+				if (this.dequeuePosition.compareAndSet(position, position + 1)) {
+					E element = this.elements.get(index);
+					this.elements.lazySet(index, null);
+					// hands the slot back to the producer one lap ahead
+					this.sequences.lazySet(index, position + this.mask + 1);
+					return element;
+				}
+				position = this.dequeuePosition.get();
+			} else if (distance < 0) {
+				return null;
+			} else {
+				position = this.dequeuePosition.get();
+			}
+		}
+	}
+
+	/**
+	 * @param target
+	 * @param maxElements
+	 * @return number of elements moved from the buffer to the target
+	 */
+	public int drainTo(Collection<? super E> target, int maxElements) {
+		int drained = 0;
+		while (drained < maxElements) {
+			E element = poll();
+			if (element == null) {
+				break;
+			}
+			target.add(element);
+			drained++;
+		}
+		return drained;
+	}
+
+	/**
+	 * @return number of queued elements, approximate while producers or consumers are running
+	 */
+	public int size() {
+		long size = this.enqueuePosition.get() - this.dequeuePosition.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int capacity() {
+		return this.mask + 1;
+	}
+}
@@ -0,0 +1,210 @@
+package com.db.awmd.challenge.service;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.ClusterPrepareRequest;
+import com.db.awmd.challenge.domain.ClusterTransferOutcome;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.ClusterNodeUnavailableException;
+import com.db.awmd.challenge.exception.ClusterTransferConflictException;
+import com.db.awmd.challenge.exception.ClusterTransferRejectedException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Requests to the other nodes of the cluster: requests forwarded to the owner of their account and
+ * the prepare, commit, abort, outcome and forgetting of the legs of transfers across nodes. A node
+ * that can not be reached within accounts.cluster.request-timeout-millis is reported as
+ * unavailable.
+ */
+@Component
+@Slf4j
+public class ClusterClient {
+
+	/**
+	 * marks a request forwarded by another node, served by the node it reaches whatever its ring
+	 * says so that nodes disagreeing on the ring can not forward a request around forever
+	 */
+	public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+	/**
+	 * carries accounts.cluster.secret on every request to another node
+	 */
+	public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+	private static final String TRANSFER_PATH = "/v1/cluster/transfers/{transferId}/";
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private final RestTemplate restTemplate;
+
+	private final String secret;
+
+	@Autowired
+	public ClusterClient(AccountsProperties accountsProperties) {
+		this.secret = accountsProperties.getCluster().getSecret();
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(accountsProperties.getCluster().getRequestTimeoutMillis());
+		requestFactory.setReadTimeout(accountsProperties.getCluster().getRequestTimeoutMillis());
+		this.restTemplate = new RestTemplate(requestFactory);
+	}
+
+	/**
+	 * @param node
+	 * @param method
+	 * @param path with uri variables, expanded and encoded from the given values
+	 * @param body JSON body, null for none
+	 * @param uriVariables
+	 * @return the answer of the node, status, content type and body, error answers included
+	 */
+	public ResponseEntity<Object> forward(String node, HttpMethod method, String path, Object body,
+			Object... uriVariables) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+		headers.set(FORWARDED_HEADER, "true");
+		headers.set(SECRET_HEADER, this.secret);
+		try {
+			ResponseEntity<byte[]> response = this.restTemplate.exchange(node + path, method,
+					new HttpEntity<>(body, headers), byte[].class, uriVariables);
+			return relay(response.getStatusCode(), response.getHeaders(), response.getBody());
+		} catch (HttpStatusCodeException exception) {
+			return relay(exception.getStatusCode(), exception.getResponseHeaders(),
+					exception.getResponseBodyAsByteArray());
+		} catch (RestClientException exception) {
+			throw unavailable(node, exception);
+		}
+	}
+
+	/**
+	 * @param node
+	 * @param transferId
+	 * @param prepareRequest
+	 * prepares a leg on the node, throws the exception the node answered with
+	 */
+	public void prepare(String node, String transferId, ClusterPrepareRequest prepareRequest) {
+		call(node, HttpMethod.POST, "prepare", transferId, prepareRequest, Void.class);
+	}
+
+	/**
+	 * @param node
+	 * @param transferId
+	 * @return false if the node no longer holds the prepared leg, it was aborted or expired
+	 */
+	public boolean commit(String node, String transferId) {
+		try {
+			call(node, HttpMethod.POST, "commit", transferId, null, Void.class);
+			return true;
+		} catch (ClusterTransferConflictException exception) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param node
+	 * @param transferId
+	 */
+	public void abort(String node, String transferId) {
+		call(node, HttpMethod.POST, "abort", transferId, null, Void.class);
+	}
+
+	/**
+	 * @param node
+	 * @param transferId
+	 * @return what became of the leg of the transfer on the node
+	 */
+	public ClusterTransferOutcome outcome(String node, String transferId) {
+		return call(node, HttpMethod.GET, "outcome", transferId, null, ClusterTransferOutcome.class);
+	}
+
+	/**
+	 * @param node
+	 * @param transferId
+	 * lets the node forget the commit of its leg, once the other leg is committed as well
+	 */
+	public void forget(String node, String transferId) {
+		call(node, HttpMethod.POST, "forget", transferId, null, Void.class);
+	}
+
+	/**
+	 * maps the ErrorMessage the node answered with back to the exception it was made of, an answer
+	 * that is not one, such as the 404 of a node with the cluster disabled, makes the node unavailable
+	 */
+	private <T> T call(String node, HttpMethod method, String step, String transferId, Object body,
+			Class<T> responseType) {
+		try {
+			HttpHeaders headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_JSON);
+			headers.set(SECRET_HEADER, this.secret);
+			return this.restTemplate.exchange(node + TRANSFER_PATH + step, method, new HttpEntity<>(body, headers),
+					responseType, transferId).getBody();
+		} catch (HttpStatusCodeException exception) {
+			HttpStatus status = exception.getStatusCode();
+			String message = errorMessage(exception);
+			if (status == HttpStatus.BAD_REQUEST) {
+				if (InsufficientFundsException.INSUFFICIENT_BALANCE.getMessage().equals(message)) {
+					throw InsufficientFundsException.INSUFFICIENT_BALANCE;
+				}
+				throw new ClusterTransferRejectedException("Node " + node + " refused to " + step + " transfer " + transferId
+						+ (message == null ? "" : ": " + message));
+			}
+			if (status == HttpStatus.NOT_FOUND && message != null) {
+				throw AccountInfoNotFoundException.NOT_FOUND.getMessage().equals(message) ? AccountInfoNotFoundException.NOT_FOUND
+						: new AccountInfoNotFoundException(message, exception);
+			}
+			if (status == HttpStatus.CONFLICT) {
+				throw new ClusterTransferConflictException("Transfer " + transferId + " can not " + step + " on " + node);
+			}
+			throw unavailable(node, exception);
+		} catch (RestClientException exception) {
+			throw unavailable(node, exception);
+		}
+	}
+
+	/**
+	 * @return message of the ErrorMessage the node answered with, null if the answer is not one, as
+	 *         for an endpoint the node does not map
+	 */
+	private static String errorMessage(HttpStatusCodeException exception) {
+		try {
+			JsonNode body = OBJECT_MAPPER.readTree(exception.getResponseBodyAsByteArray());
+			if (body == null || !body.path("status").isTextual() || !body.path("message").isTextual()) {
+				return null;
+			}
+			return body.get("message").asText();
+		} catch (IOException unreadable) {
+			return null;
+		}
+	}
+
+	private static ResponseEntity<Object> relay(HttpStatus status, HttpHeaders headers, byte[] body) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+		if (headers != null && headers.getContentType() != null) {
+			response.contentType(headers.getContentType());
+		}
+		return response.body(body == null || body.length == 0 ? null : (Object) body);
+	}
+
+	private static ClusterNodeUnavailableException unavailable(String node, RestClientException exception) {
+		log.warn("Node {} is unavailable: {}", node, exception.getMessage());
+		return new ClusterNodeUnavailableException("Node " + node + " is unavailable");
+	}
+}
@@ -0,0 +1,320 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.ClusterPrepareRequest;
+import com.db.awmd.challenge.domain.ClusterTransferOutcome;
+import com.db.awmd.challenge.domain.ClusterTransferRole;
+import com.db.awmd.challenge.exception.ClusterAccessDeniedException;
+import com.db.awmd.challenge.exception.ClusterTransferConflictException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Leg of a transfer across nodes on the node owning one of its accounts, the participant side of a
+ * two-phase commit. Preparing the payer leg debits the payer right away, so the amount is reserved
+ * and a later transfer can not spend it, preparing the payee leg only checks the payee exists.
+ * Committing the payer leg makes the debit final, committing the payee leg credits the payee, and
+ * aborting the payer leg refunds the payer.
+ *
+ * Prepared legs are kept by transfer id, removing one claims it for its commit, abort or expiry. A
+ * payer leg neither committed nor aborted within reservation-timeout-seconds is refunded and a
+ * later commit of it fails, which the coordinator takes as the abort of the transfer. A payee leg is
+ * never dropped on its own: once it waited as long, its node asks the node of the payer for the
+ * outcome of the payer leg, credits the payee if it was committed and then lets the payer node
+ * forget it, drops the leg if it was aborted, and asks again at the next sweep otherwise. The
+ * commits are kept until forgotten, so a commit repeated after a lost answer is answered alike
+ * however late it comes, and an unknown transfer is an aborted one.
+ *
+ * The legs and outcomes are kept in memory only, a node restarting loses them along with the
+ * debits it holds and the credits it owes, so the cluster can not be enabled together with the
+ * journal, the snapshots or the mapped repository, whose balances would outlive them. With the
+ * cluster disabled every leg is refused.
+ */
+@Component
+@Slf4j
+public class ClusterParticipant {
+
+	private final AccountsService accountsService;
+
+	private final TransferLedger transferLedger;
+
+	private final NotificationService notificationService;
+
+	private final ClusterRing clusterRing;
+
+	private final ClusterClient clusterClient;
+
+	private final boolean enabled;
+
+	private final long reservationTimeoutMillis;
+
+	private final Map<String, Reservation> prepared = new ConcurrentHashMap<>();
+
+	/**
+	 * transfer ids of the legs committed, kept until forgotten
+	 */
+	private final Set<String> committed = ConcurrentHashMap.newKeySet();
+
+	private ScheduledExecutorService sweeper;
+
+	@Autowired
+	public ClusterParticipant(AccountsService accountsService, TransferLedger transferLedger,
+			NotificationService notificationService, ClusterRing clusterRing, ClusterClient clusterClient,
+			AccountsProperties accountsProperties) {
+		this.accountsService = accountsService;
+		this.transferLedger = transferLedger;
+		this.notificationService = notificationService;
+		this.clusterRing = clusterRing;
+		this.clusterClient = clusterClient;
+		this.enabled = accountsProperties.getCluster().isEnabled();
+		if (this.enabled && (accountsProperties.getJournal().isEnabled() || accountsProperties.getSnapshot().isEnabled()
+				|| "mapped".equals(accountsProperties.getRepository()))) {
+			throw new IllegalStateException("accounts.cluster.enabled can not be combined with the journal, the snapshots"
+					+ " or the mapped repository, the legs of transfers across nodes are kept in memory only");
+		}
+		this.reservationTimeoutMillis = TimeUnit.SECONDS
+				.toMillis(Math.max(1, accountsProperties.getCluster().getReservationTimeoutSeconds()));
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!this.enabled) {
+			return;
+		}
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cluster-reservations");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, this.reservationTimeoutMillis / 10);
+		this.sweeper.scheduleWithFixedDelay(() -> expire(System.currentTimeMillis()), period, period,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (this.sweeper != null) {
+			this.sweeper.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param transferId
+	 * @param prepareRequest
+	 * reserves the amount of a payer leg or checks the payee of a payee leg, throws
+	 * InsufficientFundsException or AccountInfoNotFoundException when the leg can not be made
+	 */
+	public void prepare(String transferId, ClusterPrepareRequest prepareRequest) {
+		checkEnabled();
+		if (prepareRequest.getRole() == null) {
+			throw new ClusterTransferConflictException("Transfer " + transferId + " is prepared without a role");
+		}
+		if (prepareRequest.getAmount() == null || prepareRequest.getAmount().signum() < 0) {
+			throw new InvalidAmountException("Transfer amount must be positive.");
+		}
+		boolean debit = prepareRequest.getRole() == ClusterTransferRole.DEBIT;
+		if (debit) {
+			this.accountsService.debitAccount(prepareRequest.getAccountFrom(), prepareRequest.getAmount());
+		} else {
+			this.accountsService.getAccount(prepareRequest.getAccountTo());
+		}
+		if (this.prepared.putIfAbsent(transferId,
+				new Reservation(prepareRequest, System.currentTimeMillis())) != null) {
+			if (debit) {
+				this.accountsService.creditAccount(prepareRequest.getAccountFrom(), prepareRequest.getAmount());
+			}
+			throw new ClusterTransferConflictException("Transfer " + transferId + " is already prepared");
+		}
+		log.debug("Transfer {} prepared for the {} of {}", transferId, prepareRequest.getRole(),
+				prepareRequest.getAmount());
+	}
+
+	/**
+	 * @param transferId
+	 * @return false if the transfer is not prepared, never was, was aborted or expired
+	 */
+	public boolean commit(String transferId) {
+		checkEnabled();
+		Reservation reservation = this.prepared.remove(transferId);
+		if (reservation == null) {
+			return this.committed.contains(transferId);
+		}
+		complete(transferId, reservation);
+		return true;
+	}
+
+	/**
+	 * @param transferId
+	 * @return what became of the leg of the transfer on this node
+	 */
+	public ClusterTransferOutcome outcome(String transferId) {
+		checkEnabled();
+		if (this.prepared.containsKey(transferId)) {
+			return ClusterTransferOutcome.PREPARED;
+		}
+		return this.committed.contains(transferId) ? ClusterTransferOutcome.COMMITTED : ClusterTransferOutcome.ABORTED;
+	}
+
+	/**
+	 * @param transferId
+	 * forgets the commit of the transfer once no node will ask about it again
+	 */
+	public void forget(String transferId) {
+		checkEnabled();
+		this.committed.remove(transferId);
+	}
+
+	/**
+	 * makes the claimed leg final, committed before the payee is credited so that a commit repeated
+	 * meanwhile is answered alike
+	 */
+	private void complete(String transferId, Reservation reservation) {
+		ClusterPrepareRequest leg = reservation.leg;
+		this.committed.add(transferId);
+		if (leg.getRole() == ClusterTransferRole.CREDIT) {
+			try {
+				this.accountsService.creditAccount(leg.getAccountTo(), leg.getAmount());
+			} catch (RuntimeException exception) {
+				// the payee stays prepared to be committed again
+				this.committed.remove(transferId);
+				this.prepared.put(transferId, reservation);
+				throw exception;
+			}
+		}
+		this.transferLedger.append(leg.getAccountFrom(), leg.getAccountTo(), leg.getAmount());
+		if (leg.getRole() == ClusterTransferRole.DEBIT) {
+			this.notificationService.notifyAboutTransfer(this.accountsService.getAccount(leg.getAccountFrom()),
+					"Amount Debited - " + leg.getAmount());
+		} else {
+			this.notificationService.notifyAboutTransfer(this.accountsService.getAccount(leg.getAccountTo()),
+					"Amount Credited - " + leg.getAmount());
+		}
+	}
+
+	/**
+	 * @param transferId
+	 * drops the prepared leg of the transfer, refunding a payer, nothing happens for an unknown
+	 * transfer
+	 */
+	public void abort(String transferId) {
+		checkEnabled();
+		Reservation reservation = this.prepared.remove(transferId);
+		if (reservation != null) {
+			release(transferId, reservation);
+		}
+	}
+
+	/**
+	 * @return number of legs prepared and neither committed nor aborted yet
+	 */
+	public int getPreparedCount() {
+		return this.prepared.size();
+	}
+
+	/**
+	 * @return number of commits not forgotten yet
+	 */
+	public int getCommittedCount() {
+		return this.committed.size();
+	}
+
+	/**
+	 * @param nowMillis
+	 * refunds the payer legs prepared more than the reservation timeout before now, and resolves the
+	 * payee legs prepared as long by the outcome of their payer leg
+	 */
+	public void expire(long nowMillis) {
+		for (Map.Entry<String, Reservation> entry : this.prepared.entrySet()) {
+			Reservation reservation = entry.getValue();
+			if (nowMillis - reservation.preparedAtMillis <= this.reservationTimeoutMillis) {
+				continue;
+			}
+			if (reservation.leg.getRole() == ClusterTransferRole.CREDIT) {
+				resolve(entry.getKey(), reservation);
+			} else if (this.prepared.remove(entry.getKey(), reservation)) {
+				log.warn("Transfer {} expired before its commit, its payer is refunded", entry.getKey());
+				release(entry.getKey(), reservation);
+			}
+		}
+	}
+
+	/**
+	 * commits or drops a payee leg left prepared as its payer leg was, keeping it while the node of
+	 * the payer does not answer or still holds the payer leg prepared
+	 */
+	private void resolve(String transferId, Reservation reservation) {
+		String payerNode = this.clusterRing.ownerOf(reservation.leg.getAccountFrom());
+		ClusterTransferOutcome payerOutcome;
+		try {
+			payerOutcome = this.clusterRing.isSelf(payerNode) ? outcome(transferId)
+					: this.clusterClient.outcome(payerNode, transferId);
+		} catch (RuntimeException exception) {
+			log.warn("Transfer {} waits for its payer node {}: {}", transferId, payerNode, exception.getMessage());
+			return;
+		}
+		if (payerOutcome == ClusterTransferOutcome.PREPARED || !this.prepared.remove(transferId, reservation)) {
+			return;
+		}
+		if (payerOutcome == ClusterTransferOutcome.ABORTED) {
+			log.warn("Transfer {} was aborted by its payer node {}, its payee leg is dropped", transferId, payerNode);
+			release(transferId, reservation);
+			return;
+		}
+		log.warn("Transfer {} was debited by its payer node {}, its payee is credited", transferId, payerNode);
+		try {
+			complete(transferId, reservation);
+		} catch (RuntimeException exception) {
+			log.error("Transfer {} could not credit its payee, it is retried: {}", transferId, exception.getMessage());
+			return;
+		}
+		try {
+			if (this.clusterRing.isSelf(payerNode)) {
+				forget(transferId);
+			} else {
+				this.clusterClient.forget(payerNode, transferId);
+			}
+		} catch (RuntimeException exception) {
+			log.warn("Transfer {} could not be forgotten on {}: {}", transferId, payerNode, exception.getMessage());
+		}
+	}
+
+	private void checkEnabled() {
+		if (!this.enabled) {
+			throw new ClusterAccessDeniedException("Cluster is not enabled on this node");
+		}
+	}
+
+	private void release(String transferId, Reservation reservation) {
+		ClusterPrepareRequest leg = reservation.leg;
+		if (leg.getRole() == ClusterTransferRole.DEBIT) {
+			this.accountsService.creditAccount(leg.getAccountFrom(), leg.getAmount());
+		}
+		log.debug("Transfer {} aborted, its {} leg is released", transferId, leg.getRole());
+	}
+
+	private static final class Reservation {
+
+		private final ClusterPrepareRequest leg;
+
+		private final long preparedAtMillis;
+
+		private Reservation(ClusterPrepareRequest leg, long preparedAtMillis) {
+			this.leg = leg;
+			this.preparedAtMillis = preparedAtMillis;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.db.awmd.challenge.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consistent hash ring assigning every account to the node owning it. Each node is put on the ring
+ * at virtual-nodes points and an account belongs to the node of the first point at or after the
+ * hash of its id, so adding or removing a node only moves the accounts of the points it takes or
+ * leaves, about one account in the number of nodes.
+ *
+ * The points are a sorted array searched by bisection, every node computing the same ring from the
+ * same list of nodes. With the cluster disabled every account is local.
+ *
+ * The nodes trust each other through the secret they share: a request carrying it comes from a
+ * node of the cluster, it is compared in constant time so its bytes can not be guessed one by one.
+ */
+@Component
+@Slf4j
+public class ClusterRing {
+
+	@Getter
+	private final boolean enabled;
+
+	@Getter
+	private final String self;
+
+	@Getter
+	private final List<String> nodes;
+
+	/**
+	 * hashes of the points of the nodes, ascending
+	 */
+	private final long[] points;
+
+	/**
+	 * node of every point
+	 */
+	private final String[] owners;
+
+	private final byte[] secret;
+
+	@Autowired
+	public ClusterRing(AccountsProperties accountsProperties) {
+		AccountsProperties.Cluster cluster = accountsProperties.getCluster();
+		this.enabled = cluster.isEnabled();
+		this.self = cluster.getSelf();
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(cluster.getNodes())));
+		this.secret = cluster.getSecret() == null ? new byte[0] : cluster.getSecret().getBytes(StandardCharsets.UTF_8);
+		if (!this.enabled) {
+			this.points = new long[0];
+			this.owners = new String[0];
+			return;
+		}
+		if (!this.nodes.contains(this.self)) {
+			throw new IllegalStateException(
+					"accounts.cluster.self " + this.self + " is not one of accounts.cluster.nodes " + this.nodes);
+		}
+		if (cluster.getSecret() == null || cluster.getSecret().trim().isEmpty()) {
+			throw new IllegalStateException("accounts.cluster.secret must be set when the cluster is enabled");
+		}
+		int virtualNodes = Math.max(1, cluster.getVirtualNodes());
+		long[][] entries = new long[this.nodes.size() * virtualNodes][];
+		for (int node = 0; node < this.nodes.size(); node++) {
+			for (int point = 0; point < virtualNodes; point++) {
+				entries[node * virtualNodes + point] = new long[] { hash(this.nodes.get(node) + '#' + point), node };
+			}
+		}
+		// ties are broken by the node index, the same on every node as the list is
+		Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		this.points = new long[entries.length];
+		this.owners = new String[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			this.points[i] = entries[i][0];
+			this.owners[i] = this.nodes.get((int) entries[i][1]);
+		}
+		log.info("Cluster of {} nodes, this node is {}", this.nodes.size(), this.self);
+	}
+
+	/**
+	 * @param accountId
+	 * @return base URL of the node owning the account
+	 */
+	public String ownerOf(String accountId) {
+		if (!this.enabled) {
+			return this.self;
+		}
+		int point = Arrays.binarySearch(this.points, hash(accountId));
+		if (point < 0) {
+			point = -point - 1;
+		}
+		return this.owners[point == this.points.length ? 0 : point];
+	}
+
+	/**
+	 * @param accountId
+	 * @return true if the account belongs to this node
+	 */
+	public boolean isLocal(String accountId) {
+		return !this.enabled || this.self.equals(ownerOf(accountId));
+	}
+
+	/**
+	 * @param node
+	 * @return true if the node is this node
+	 */
+	public boolean isSelf(String node) {
+		return this.self.equals(node);
+	}
+
+	/**
+	 * @param secret sent with a request, null if it carries none
+	 * @return true if the cluster is enabled and the secret is the one the nodes share
+	 */
+	public boolean isTrustedPeer(String secret) {
+		return this.enabled && secret != null
+				&& MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param key
+	 * @return 64-bit FNV-1a of the UTF-8 bytes of the key, mixed by the finalizer of murmur3 as
+	 *         FNV alone leaves keys differing in their last characters close on the ring
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,243 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ClusterPrepareRequest;
+import com.db.awmd.challenge.domain.ClusterTransferOutcome;
+import com.db.awmd.challenge.domain.ClusterTransferRole;
+import com.db.awmd.challenge.exception.ClusterTransferConflictException;
+import com.db.awmd.challenge.exception.ClusterTransferInDoubtException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coordinator of a transfer between accounts of two nodes, run by the node the request reached.
+ * The payer leg is prepared first, which reserves the amount, then the payee leg; a leg failing to
+ * prepare aborts the transfer. The commit of the payer leg decides the transfer: once it succeeds
+ * the payee leg is committed, retried in the background until the payee node answers, and if the
+ * payer leg expired in the meantime the payee leg is aborted. Once both legs are committed their
+ * nodes are told to forget the commits, which they keep until then to answer a repeated commit.
+ *
+ * A payer commit left without an answer leaves the transfer in doubt: the client is answered
+ * with an error and the commit is retried in the background until the payer node tells whether it
+ * holds the debit, the payee leg then following its outcome. A payee node left waiting resolves
+ * its leg itself from the outcome of the payer leg, see ClusterParticipant. Legs on this node are
+ * run by the local participant without a request.
+ */
+@Component
+@Slf4j
+public class ClusterTransferCoordinator {
+
+	private static final long RETRY_MILLIS = 1000;
+
+	private final ClusterRing clusterRing;
+
+	private final ClusterClient clusterClient;
+
+	private final ClusterParticipant clusterParticipant;
+
+	/**
+	 * unique to this node and this run of it, so ids given by different nodes or runs never collide
+	 */
+	private final String transferIdPrefix;
+
+	private final AtomicLong lastTransferId = new AtomicLong();
+
+	private ScheduledExecutorService retrier;
+
+	@Autowired
+	public ClusterTransferCoordinator(ClusterRing clusterRing, ClusterClient clusterClient,
+			ClusterParticipant clusterParticipant) {
+		this.clusterRing = clusterRing;
+		this.clusterClient = clusterClient;
+		this.clusterParticipant = clusterParticipant;
+		this.transferIdPrefix = clusterRing.getNodes().indexOf(clusterRing.getSelf()) + "-"
+				+ Long.toString(System.currentTimeMillis(), 36) + "-";
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!this.clusterRing.isEnabled()) {
+			return;
+		}
+		this.retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cluster-commits");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (this.retrier != null) {
+			this.retrier.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param transferRequest between accounts of different nodes
+	 * makes the transfer or throws the exception of the leg that failed,
+	 * ClusterNodeUnavailableException if a node did not answer before the payer commit and
+	 * ClusterTransferInDoubtException if the payer commit got no answer
+	 */
+	public void transfer(AmountTransferRequest transferRequest) {
+		String accountFrom = transferRequest.getAccountFrom();
+		String accountTo = transferRequest.getAccountTo();
+		if (transferRequest.getAmount() == null || transferRequest.getAmount().signum() < 0) {
+			throw new InvalidAmountException("Transfer amount must be positive.");
+		}
+		String payerNode = this.clusterRing.ownerOf(accountFrom);
+		String payeeNode = this.clusterRing.ownerOf(accountTo);
+		String transferId = this.transferIdPrefix + this.lastTransferId.incrementAndGet();
+		prepare(payerNode, transferId,
+				new ClusterPrepareRequest(ClusterTransferRole.DEBIT, accountFrom, accountTo, transferRequest.getAmount()));
+		try {
+			prepare(payeeNode, transferId,
+					new ClusterPrepareRequest(ClusterTransferRole.CREDIT, accountFrom, accountTo, transferRequest.getAmount()));
+		} catch (RuntimeException exception) {
+			abortQuietly(payerNode, transferId);
+			throw exception;
+		}
+		boolean debited;
+		try {
+			debited = commit(payerNode, transferId);
+		} catch (RuntimeException exception) {
+			log.warn("Transfer {} is in doubt, the commit of its payer on {} failed", transferId, payerNode);
+			retry(new InDoubtTransfer(transferId, payerNode, payeeNode, false));
+			throw new ClusterTransferInDoubtException("Transfer " + transferId
+					+ " is in doubt, it completes or is refunded once node " + payerNode + " answers");
+		}
+		if (!debited) {
+			abortQuietly(payeeNode, transferId);
+			throw new ClusterTransferConflictException("Transfer " + transferId + " expired before its commit");
+		}
+		InDoubtTransfer debitedTransfer = new InDoubtTransfer(transferId, payerNode, payeeNode, true);
+		if (!debitedTransfer.complete()) {
+			log.warn("Transfer {} is debited, its credit on {} is retried", transferId, payeeNode);
+			retry(debitedTransfer);
+		}
+	}
+
+	private void prepare(String node, String transferId, ClusterPrepareRequest prepareRequest) {
+		if (this.clusterRing.isSelf(node)) {
+			this.clusterParticipant.prepare(transferId, prepareRequest);
+		} else {
+			this.clusterClient.prepare(node, transferId, prepareRequest);
+		}
+	}
+
+	private boolean commit(String node, String transferId) {
+		return this.clusterRing.isSelf(node) ? this.clusterParticipant.commit(transferId)
+				: this.clusterClient.commit(node, transferId);
+	}
+
+	private ClusterTransferOutcome outcome(String node, String transferId) {
+		return this.clusterRing.isSelf(node) ? this.clusterParticipant.outcome(transferId)
+				: this.clusterClient.outcome(node, transferId);
+	}
+
+	private void forget(String node, String transferId) {
+		if (this.clusterRing.isSelf(node)) {
+			this.clusterParticipant.forget(transferId);
+		} else {
+			this.clusterClient.forget(node, transferId);
+		}
+	}
+
+	private void abortQuietly(String node, String transferId) {
+		try {
+			if (this.clusterRing.isSelf(node)) {
+				this.clusterParticipant.abort(transferId);
+			} else {
+				this.clusterClient.abort(node, transferId);
+			}
+		} catch (RuntimeException exception) {
+			// a payer leg left prepared is refunded once it expires, a payee leg is dropped once its node
+			// learns the payer leg was
+			log.warn("Transfer {} could not be aborted on {}: {}", transferId, node, exception.getMessage());
+		}
+	}
+
+	private void retry(InDoubtTransfer transfer) {
+		if (this.retrier != null) {
+			this.retrier.schedule(transfer, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * transfer whose commits did not all get an answer, retried until its nodes answer and have
+	 * forgotten the commits
+	 */
+	private final class InDoubtTransfer implements Runnable {
+
+		private final String transferId;
+
+		private final String payerNode;
+
+		private final String payeeNode;
+
+		private boolean debited;
+
+		private boolean credited;
+
+		private InDoubtTransfer(String transferId, String payerNode, String payeeNode, boolean debited) {
+			this.transferId = transferId;
+			this.payerNode = payerNode;
+			this.payeeNode = payeeNode;
+			this.debited = debited;
+		}
+
+		@Override
+		public void run() {
+			if (complete()) {
+				log.info("Transfer {} in doubt is completed", this.transferId);
+			} else {
+				retry(this);
+			}
+		}
+
+		/**
+		 * @return false if a node did not answer, the transfer is then to be retried
+		 */
+		private boolean complete() {
+			try {
+				if (!this.debited) {
+					if (!commit(this.payerNode, this.transferId)) {
+						if (outcome(this.payeeNode, this.transferId) == ClusterTransferOutcome.COMMITTED) {
+							// the payee node learnt the outcome first, the payer commit is forgotten already
+							forget(this.payeeNode, this.transferId);
+							return true;
+						}
+						log.warn("Transfer {} was refunded by {}, its payee leg is aborted", this.transferId, this.payerNode);
+						abortQuietly(this.payeeNode, this.transferId);
+						return true;
+					}
+					this.debited = true;
+				}
+				if (!this.credited) {
+					if (!commit(this.payeeNode, this.transferId)) {
+						log.error("Transfer {} was debited but its payee leg on {} is gone", this.transferId, this.payeeNode);
+						return true;
+					}
+					this.credited = true;
+				}
+				forget(this.payerNode, this.transferId);
+				forget(this.payeeNode, this.transferId);
+				return true;
+			} catch (RuntimeException exception) {
+				return false;
+			}
+		}
+	}
+}
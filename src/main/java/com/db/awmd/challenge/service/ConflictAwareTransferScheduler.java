@@ -0,0 +1,177 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.TransferResult;
+
+import lombok.Getter;
+
+/**
+ * Runs the legs of a transfer batch in parallel on a fork-join pool, keeping the submission order
+ * between legs that share an account. Each leg waits for the last earlier leg touching its payer
+ * and the last earlier leg touching its payee, so every account sees its legs in the order of the
+ * batch and ends with the balance a serial run would give it, while legs on disjoint accounts run
+ * side by side.
+ */
+@Component
+public class ConflictAwareTransferScheduler {
+
+	@Getter
+	private final int parallelism;
+
+	private final ForkJoinPool pool;
+
+	@Autowired
+	public ConflictAwareTransferScheduler(AccountsProperties accountsProperties) {
+		int parallelism = accountsProperties.getTransferBatch().getParallelism();
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.pool = new ForkJoinPool(this.parallelism, pool -> {
+			ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+					.newThread(pool);
+			worker.setName("transfer-batch-" + worker.getPoolIndex());
+			worker.setDaemon(true);
+			return worker;
+		}, null, false);
+	}
+
+	/**
+	 * @param transferRequests legs of the batch
+	 * @param results outcome of the legs settled beforehand, null for the legs to apply
+	 * @param leg applies one leg, called concurrently for legs sharing no account
+	 * returns once every leg has been applied, the outcome of each applied leg is stored in results
+	 */
+	public void schedule(List<AmountTransferRequest> transferRequests, TransferResult[] results,
+			Function<AmountTransferRequest, TransferResult> leg) {
+		int legs = transferRequests.size();
+		// conflict graph: at most two predecessors per leg, so at most two edges per leg
+		int[] firstSuccessor = new int[legs];
+		int[] edgeTarget = new int[2 * legs];
+		int[] nextEdge = new int[2 * legs];
+		Arrays.fill(firstSuccessor, -1);
+		AtomicIntegerArray waitingFor = new AtomicIntegerArray(legs);
+		Map<String, Integer> lastLegOfAccount = new HashMap<>();
+		int edges = 0;
+		for (int i = 0; i < legs; i++) {
+			if (results[i] != null) {
+				continue;
+			}
+			AmountTransferRequest transferRequest = transferRequests.get(i);
+			Integer payerPredecessor = lastLegOfAccount.put(transferRequest.getAccountFrom(), i);
+			Integer payeePredecessor = lastLegOfAccount.put(transferRequest.getAccountTo(), i);
+			int dependencies = 0;
+			if (payerPredecessor != null) {
+				edges = addEdge(payerPredecessor, i, edges, firstSuccessor, edgeTarget, nextEdge);
+				dependencies++;
+			}
+			// the payee may have no earlier leg, share it with the payer, or be the payer itself
+			if (payeePredecessor != null && payeePredecessor != i && !payeePredecessor.equals(payerPredecessor)) {
+				edges = addEdge(payeePredecessor, i, edges, firstSuccessor, edgeTarget, nextEdge);
+				dependencies++;
+			}
+			waitingFor.set(i, dependencies);
+		}
+		this.pool.invoke(new Batch(transferRequests, results, leg, firstSuccessor, edgeTarget, nextEdge, waitingFor));
+	}
+
+	/**
+	 * @return number of edges once the edge from predecessor to successor is added
+	 */
+	private static int addEdge(int predecessor, int successor, int edges, int[] firstSuccessor, int[] edgeTarget,
+			int[] nextEdge) {
+		edgeTarget[edges] = successor;
+		nextEdge[edges] = firstSuccessor[predecessor];
+		firstSuccessor[predecessor] = edges;
+		return edges + 1;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	/**
+	 * root of the batch, completes once every leg it forked, directly or through a predecessor,
+	 * has completed
+	 */
+	private static final class Batch extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		final List<AmountTransferRequest> transferRequests;
+		final TransferResult[] results;
+		final Function<AmountTransferRequest, TransferResult> leg;
+		final int[] firstSuccessor;
+		final int[] edgeTarget;
+		final int[] nextEdge;
+		final AtomicIntegerArray waitingFor;
+
+		Batch(List<AmountTransferRequest> transferRequests, TransferResult[] results,
+				Function<AmountTransferRequest, TransferResult> leg, int[] firstSuccessor, int[] edgeTarget,
+				int[] nextEdge, AtomicIntegerArray waitingFor) {
+			this.transferRequests = transferRequests;
+			this.results = results;
+			this.leg = leg;
+			this.firstSuccessor = firstSuccessor;
+			this.edgeTarget = edgeTarget;
+			this.nextEdge = nextEdge;
+			this.waitingFor = waitingFor;
+		}
+
+		@Override
+		public void compute() {
+			for (int i = 0; i < this.results.length; i++) {
+				if (this.results[i] == null && this.waitingFor.get(i) == 0) {
+					fork(i);
+				}
+			}
+			tryComplete();
+		}
+
+		void fork(int index) {
+			addToPendingCount(1);
+			new Leg(this, index).fork();
+		}
+	}
+
+	private static final class Leg extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Batch batch;
+
+		private final int index;
+
+		Leg(Batch batch, int index) {
+			super(batch);
+			this.batch = batch;
+			this.index = index;
+		}
+
+		@Override
+		public void compute() {
+			this.batch.results[this.index] = this.batch.leg.apply(this.batch.transferRequests.get(this.index));
+			for (int edge = this.batch.firstSuccessor[this.index]; edge >= 0; edge = this.batch.nextEdge[edge]) {
+				int successor = this.batch.edgeTarget[edge];
+				if (this.batch.waitingFor.decrementAndGet(successor) == 0) {
+					this.batch.fork(successor);
+				}
+			}
+			tryComplete();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts many payers credit at once, such as merchant accounts. Their credits are spread over
+ * striped sub-balances, see {@link Account#stripeCredits(int)}, and transfers to them lock the
+ * payer only. The configured accounts are hot from the start; with adaptive promotion enabled, an
+ * account transfers kept waiting to lock during a check becomes hot as well and stays hot.
+ */
+@Slf4j
+@Component
+public class HotAccounts {
+
+	private final AccountsRepository accountsRepository;
+
+	private final AccountLockManager accountLockManager;
+
+	private final int stripes;
+
+	private final long promoteAfterWaits;
+
+	private final Set<String> hotAccountIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * contended lock acquisitions of every lock stripe at the previous check, read by the check only
+	 */
+	private final long[] previousWaits;
+
+	private final ScheduledExecutorService contentionMonitor;
+
+	@Autowired
+	public HotAccounts(AccountsRepository accountsRepository, AccountsProperties accountsProperties,
+			AccountLockManager accountLockManager) {
+		AccountsProperties.HotAccounts hotAccounts = accountsProperties.getHotAccounts();
+		this.accountsRepository = accountsRepository;
+		this.accountLockManager = accountLockManager;
+		this.stripes = Math.max(2, hotAccounts.getStripes());
+		this.promoteAfterWaits = Math.max(1, hotAccounts.getPromoteAfterWaits());
+		this.previousWaits = new long[accountLockManager.getStripeCount()];
+		for (String accountId : hotAccounts.getIds()) {
+			promote(accountId);
+		}
+		if (hotAccounts.isAdaptive()) {
+			if (accountsProperties.getBalanceEngine().isLockFree()) {
+				log.warn("Hot accounts are promoted from lock waits, the lock-free balance engine has none");
+			}
+			this.contentionMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "hot-account-monitor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.contentionMonitor.scheduleWithFixedDelay(this::checkContention, hotAccounts.getCheckIntervalMillis(),
+					hotAccounts.getCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+		} else {
+			this.contentionMonitor = null;
+		}
+	}
+
+	/**
+	 * @param account just created, its credits are striped if its id is hot
+	 */
+	public void admit(Account account) {
+		if (this.hotAccountIds.contains(account.getAccountId())) {
+			account.stripeCredits(this.stripes);
+		}
+	}
+
+	/**
+	 * @param accountId
+	 * makes the account hot, now if it exists or else when it is created
+	 */
+	public void promote(String accountId) {
+		if (!this.hotAccountIds.add(accountId)) {
+			return;
+		}
+		try {
+			this.accountsRepository.getAccount(accountId).stripeCredits(this.stripes);
+		} catch (AccountInfoNotFoundException exception) {
+			// striped by admit once created
+		}
+	}
+
+	/**
+	 * @return ids of the hot accounts, in order
+	 */
+	public Set<String> getHotAccountIds() {
+		return new TreeSet<>(this.hotAccountIds);
+	}
+
+	private void checkContention() {
+		try {
+			for (LockContention contention : this.accountLockManager.getContention(Integer.MAX_VALUE)) {
+				// waits are counted by stripe, those since the last check are charged to the account
+				// last waited for on it
+				String accountId = contention.getAccountId();
+				long waits = contention.getContended() - this.previousWaits[contention.getStripe()];
+				this.previousWaits[contention.getStripe()] = contention.getContended();
+				if (waits >= this.promoteAfterWaits && !this.hotAccountIds.contains(accountId)) {
+					promote(accountId);
+					log.info("Account {} made hot after {} lock waits", accountId, waits);
+				}
+			}
+		} catch (RuntimeException exception) {
+			log.warn("Checking the lock contention of the accounts failed", exception);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (this.contentionMonitor != null) {
+			this.contentionMonitor.shutdownNow();
+		}
+	}
+}
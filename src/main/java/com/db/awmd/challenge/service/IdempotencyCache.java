@@ -0,0 +1,138 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.ClusterTransferInDoubtException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+/**
+ * Recent idempotency keys and the outcome of their transfer. Keys are also kept in a ring in
+ * insertion order, the key a new one replaces in the ring is forgotten, so the cache never holds
+ * more than the configured number of keys. A key older than its time to live is forgotten when it
+ * is next looked up.
+ */
+@Component
+public class IdempotencyCache {
+
+	private final ConcurrentHashMap<String, Entry> entries;
+
+	private final AtomicReferenceArray<Entry> insertionOrder;
+
+	private final AtomicLong insertions = new AtomicLong();
+
+	private final long ttlNanos;
+
+	private final LongAdder replays = new LongAdder();
+
+	@Autowired
+	public IdempotencyCache(AccountsProperties accountsProperties) {
+		AccountsProperties.Idempotency idempotency = accountsProperties.getIdempotency();
+		int maxKeys = Math.max(1, idempotency.getMaxKeys());
+		this.entries = new ConcurrentHashMap<>(Math.min(maxKeys, 1 << 16));
+		this.insertionOrder = new AtomicReferenceArray<>(maxKeys);
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(idempotency.getTtlSeconds());
+	}
+
+	/**
+	 * @param key
+	 * @param fingerprint identifies the transfer the key was first sent with
+	 * @param transfer
+	 * @return true if the transfer ran, false if it is a retry answered with the outcome of the
+	 *         earlier transfer, waiting for it if it is still running
+	 * @throws IdempotencyKeyReusedException if the key was sent with another transfer
+	 */
+	public boolean execute(String key, String fingerprint, Runnable transfer) {
+		long now = System.nanoTime();
+		Entry entry = new Entry(key, fingerprint, now + this.ttlNanos);
+		Entry existing;
+		while ((existing = this.entries.putIfAbsent(key, entry)) != null) {
+			if (existing.expiresAtNanos - now > 0) {
+				if (!existing.fingerprint.equals(fingerprint)) {
+					throw new IdempotencyKeyReusedException(
+							"Idempotency key " + key + " was already used for another transfer");
+				}
+				this.replays.increment();
+				awaitOutcome(existing);
+				return false;
+			}
+			this.entries.remove(key, existing);
+		}
+		Entry replaced = this.insertionOrder.getAndSet(
+				(int) Math.floorMod(this.insertions.getAndIncrement(), (long) this.insertionOrder.length()), entry);
+		if (replaced != null) {
+			this.entries.remove(replaced.key, replaced);
+		}
+
+		try {
+			transfer.run();
+			entry.outcome.complete(null);
+			return true;
+		} catch (InsufficientFundsException | AccountInfoNotFoundException | InvalidAmountException
+				| ClusterTransferInDoubtException exception) {
+			// a rejected transfer stays rejected and a transfer in doubt must not run twice, the retry
+			// gets the same answer
+			entry.outcome.completeExceptionally(exception);
+			throw exception;
+		} catch (RuntimeException | Error exception) {
+			// an unexpected failure is not remembered so that a retry can run the transfer, and the
+			// retries already waiting are released with it whatever it is
+			this.entries.remove(key, entry);
+			entry.outcome.completeExceptionally(exception);
+			throw exception;
+		}
+	}
+
+	/**
+	 * @return number of keys currently remembered
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return number of retries answered from the cache
+	 */
+	public long getReplays() {
+		return this.replays.sum();
+	}
+
+	private static void awaitOutcome(Entry entry) {
+		try {
+			entry.outcome.join();
+		} catch (CompletionException exception) {
+			if (exception.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exception.getCause();
+			}
+			if (exception.getCause() instanceof Error) {
+				throw (Error) exception.getCause();
+			}
+			throw exception;
+		}
+	}
+
+	private static final class Entry {
+		final String key;
+		final String fingerprint;
+		final long expiresAtNanos;
+		final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+		Entry(String key, String fingerprint, long expiresAtNanos) {
+			this.key = key;
+			this.fingerprint = fingerprint;
+			this.expiresAtNanos = expiresAtNanos;
+		}
+	}
+}
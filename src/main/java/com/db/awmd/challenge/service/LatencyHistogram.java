@@ -0,0 +1,103 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.db.awmd.challenge.domain.LatencySummary;
+
+/**
+ * Log-linear latency histogram in the manner of HdrHistogram: every power of two of nanoseconds is
+ * split into 32 linear sub-buckets, so a recorded value is known within about 3%. Recording is a
+ * few shifts and one atomic increment, without allocation, from any number of threads.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * values from 2^40 ns, about 18 minutes, go to the last bucket
+	 */
+	private static final int MAX_VALUE_BITS = 40;
+
+	private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		this.counts.incrementAndGet(bucketOf(value));
+		this.totalNanos.add(value);
+		if (value > this.maxNanos.get()) {
+			this.maxNanos.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * @return count, mean, percentiles and maximum of the recorded values, approximate while values
+	 *         are being recorded
+	 */
+	public LatencySummary summarize() {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return new LatencySummary(0, 0, 0, 0, 0, 0, 0);
+		}
+		long max = this.maxNanos.get();
+		return new LatencySummary(count, this.totalNanos.sum() / 1000.0 / count,
+				percentile(snapshot, count, 0.50, max), percentile(snapshot, count, 0.90, max),
+				percentile(snapshot, count, 0.99, max), percentile(snapshot, count, 0.999, max), max / 1000.0);
+	}
+
+	/**
+	 * @return microseconds below which the given fraction of the values lies, never above the maximum
+	 */
+	private static double percentile(long[] snapshot, long count, double fraction, long max) {
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		int bucket = BUCKET_COUNT - 1;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				bucket = i;
+				break;
+			}
+		}
+		return Math.min(highestValueOf(bucket), max) / 1000.0;
+	}
+
+	/**
+	 * values below 32 have a bucket each, above that a value falls in the sub-bucket given by its
+	 * five bits following the highest one bit
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int bucket = (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
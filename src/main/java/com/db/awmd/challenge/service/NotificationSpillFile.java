@@ -0,0 +1,152 @@
+package com.db.awmd.challenge.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Overflow of the notification buffer. Notifications are appended at the end of the file and
+ * read back from a cursor, the file is emptied whenever the cursor reaches its end. The cursor is
+ * kept in a header at the start of the file and moved past every notification drained, so only
+ * the notifications a previous run left undrained are dispatched after a restart. Appends and
+ * drains hold the monitor of the file.
+ */
+class NotificationSpillFile implements Closeable {
+
+	/**
+	 * notification read back from the file
+	 */
+	static final class SpilledNotification {
+		final String accountId;
+		final String transferDescription;
+		final long enqueuedAtMillis;
+
+		SpilledNotification(String accountId, String transferDescription, long enqueuedAtMillis) {
+			this.accountId = accountId;
+			this.transferDescription = transferDescription;
+			this.enqueuedAtMillis = enqueuedAtMillis;
+		}
+	}
+
+	/**
+	 * position of the first notification not drained yet
+	 */
+	private static final int HEADER_BYTES = Long.BYTES;
+
+	private final RandomAccessFile file;
+
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+
+	private final DataOutputStream record = new DataOutputStream(this.recordBytes);
+
+	private long readPosition;
+
+	/**
+	 * changed under the monitor, read without it
+	 */
+	private volatile long pending;
+
+	/**
+	 * @param path
+	 * @throws IOException
+	 */
+	NotificationSpillFile(Path path) throws IOException {
+		Path parent = path.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		this.file = new RandomAccessFile(path.toFile(), "rw");
+		long position = HEADER_BYTES;
+		if (this.file.length() >= HEADER_BYTES) {
+			this.file.seek(0);
+			position = Math.max(HEADER_BYTES, Math.min(this.file.readLong(), this.file.length()));
+		}
+		this.readPosition = position;
+		// count what a previous run left behind and cut off a record torn by a crash
+		while (position + Integer.BYTES <= this.file.length()) {
+			this.file.seek(position);
+			int length = this.file.readInt();
+			if (length <= 0 || position + Integer.BYTES + length > this.file.length()) {
+				break;
+			}
+			position += Integer.BYTES + length;
+			this.pending++;
+		}
+		this.file.setLength(position);
+		writeReadPosition();
+	}
+
+	/**
+	 * @param accountId
+	 * @param transferDescription
+	 * @param enqueuedAtMillis
+	 * @throws IOException
+	 */
+	synchronized void append(String accountId, String transferDescription, long enqueuedAtMillis) throws IOException {
+		this.recordBytes.reset();
+		this.record.writeInt(0);
+		this.record.writeUTF(accountId);
+		this.record.writeUTF(transferDescription);
+		this.record.writeLong(enqueuedAtMillis);
+		byte[] bytes = this.recordBytes.toByteArray();
+		int length = bytes.length - Integer.BYTES;
+		bytes[0] = (byte) (length >>> 24);
+		bytes[1] = (byte) (length >>> 16);
+		bytes[2] = (byte) (length >>> 8);
+		bytes[3] = (byte) length;
+		this.file.seek(this.file.length());
+		this.file.write(bytes);
+		this.pending++;
+	}
+
+	/**
+	 * @param target
+	 * @param maxNotifications
+	 * @return number of notifications moved from the file to the target
+	 * @throws IOException
+	 */
+	synchronized int drainTo(List<SpilledNotification> target, int maxNotifications) throws IOException {
+		int drained = 0;
+		this.file.seek(this.readPosition);
+		while (drained < maxNotifications && this.pending > 0) {
+			int length = this.file.readInt();
+			String accountId = this.file.readUTF();
+			String transferDescription = this.file.readUTF();
+			long enqueuedAtMillis = this.file.readLong();
+			target.add(new SpilledNotification(accountId, transferDescription, enqueuedAtMillis));
+			this.readPosition += Integer.BYTES + length;
+			this.pending--;
+			drained++;
+		}
+		if (this.pending == 0) {
+			this.file.setLength(HEADER_BYTES);
+			this.readPosition = HEADER_BYTES;
+		}
+		if (drained > 0) {
+			writeReadPosition();
+		}
+		return drained;
+	}
+
+	private void writeReadPosition() throws IOException {
+		this.file.seek(0);
+		this.file.writeLong(this.readPosition);
+	}
+
+	/**
+	 * @return number of notifications waiting in the file
+	 */
+	long size() {
+		return this.pending;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.file.close();
+	}
+}
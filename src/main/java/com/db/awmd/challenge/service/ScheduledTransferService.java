@@ -0,0 +1,294 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransferPage;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.InvalidScheduledTransferException;
+import com.db.awmd.challenge.exception.ScheduledTransferNotFoundException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds transfers until their execution time in a timer wheel and releases the due ones into
+ * transfer batches. A ticker advances the wheel every accounts.scheduled-transfers.tick-millis and
+ * releases what became due within a budget refilled at max-release-per-second, so a burst of
+ * transfers due at the same time is spread over the following ticks instead of contending with
+ * the live transfers all at once. A transfer is released no earlier than its execution time.
+ *
+ * Pending transfers are kept in memory only, they are lost with a restart of the application. With
+ * the cluster enabled both accounts of a transfer must belong to this node, a transfer across nodes
+ * is refused when it is scheduled.
+ */
+@Component
+@Slf4j
+public class ScheduledTransferService {
+
+	private final AccountsService accountsService;
+
+	private final NotificationService notificationService;
+
+	private final ClusterRing clusterRing;
+
+	private final long tickMillis;
+
+	private final int maxPageSize;
+
+	private final int maxBatchSize;
+
+	/**
+	 * release budget earned per millisecond
+	 */
+	private final double releasesPerMilli;
+
+	/**
+	 * budget kept at most between releases, one tick worth and at least one transfer
+	 */
+	private final double maxBudget;
+
+	/**
+	 * time of tick 0
+	 */
+	private final long originMillis;
+
+	private final ReentrantLock wheelLock = new ReentrantLock();
+
+	private final TimerWheel<ScheduledTransfer> timerWheel = new TimerWheel<>(0);
+
+	/**
+	 * pending transfers by id, removing a transfer claims it for its release or its cancellation
+	 */
+	private final ConcurrentSkipListMap<Long, TimerWheel.Timer<ScheduledTransfer>> pending = new ConcurrentSkipListMap<>();
+
+	private final AtomicLong lastId = new AtomicLong();
+
+	private final ReentrantLock releaseLock = new ReentrantLock();
+
+	/**
+	 * expired transfers waiting for release budget, guarded by the release lock
+	 */
+	private final ArrayDeque<ScheduledTransfer> due = new ArrayDeque<>();
+
+	private double budget;
+
+	private long lastReleaseMillis;
+
+	private ScheduledExecutorService ticker;
+
+	@Autowired
+	public ScheduledTransferService(AccountsService accountsService, NotificationService notificationService,
+			ClusterRing clusterRing, AccountsProperties accountsProperties) {
+		AccountsProperties.ScheduledTransfers properties = accountsProperties.getScheduledTransfers();
+		this.accountsService = accountsService;
+		this.notificationService = notificationService;
+		this.clusterRing = clusterRing;
+		this.tickMillis = Math.max(1, properties.getTickMillis());
+		this.maxPageSize = properties.getMaxPageSize();
+		this.maxBatchSize = accountsProperties.getTransferBatch().getMaxSize();
+		this.releasesPerMilli = properties.getMaxReleasePerSecond() / 1000.0;
+		this.maxBudget = Math.max(1, this.releasesPerMilli * this.tickMillis);
+		this.originMillis = System.currentTimeMillis();
+		this.budget = this.maxBudget;
+		this.lastReleaseMillis = this.originMillis;
+	}
+
+	@PostConstruct
+	public void start() {
+		this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "scheduled-transfers");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.ticker.scheduleWithFixedDelay(this::tick, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (this.ticker != null) {
+			this.ticker.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param transferRequest
+	 * @param executeAt time the transfer is due, in milliseconds since the epoch, a past time makes
+	 *        it due with the next tick
+	 * @return the scheduled transfer
+	 */
+	public ScheduledTransfer schedule(AmountTransferRequest transferRequest, long executeAt) {
+		String rejection = this.accountsService.validateLeg(transferRequest);
+		if (rejection != null) {
+			throw new InvalidScheduledTransferException(rejection);
+		}
+		for (String accountId : new String[] { transferRequest.getAccountFrom(), transferRequest.getAccountTo() }) {
+			if (!this.clusterRing.isLocal(accountId)) {
+				throw new InvalidScheduledTransferException(
+						"Account " + accountId + " belongs to node " + this.clusterRing.ownerOf(accountId));
+			}
+		}
+		// both accounts must exist when the transfer is scheduled, not only when it is due
+		this.accountsService.getAccount(transferRequest.getAccountFrom());
+		this.accountsService.getAccount(transferRequest.getAccountTo());
+		long horizonMillis = (TimerWheel.HORIZON_TICKS - 1) * this.tickMillis;
+		long now = System.currentTimeMillis();
+		if (executeAt > now && executeAt - now >= horizonMillis) {
+			throw new InvalidScheduledTransferException(
+					"A transfer can not be scheduled more than " + TimeUnit.MILLISECONDS.toDays(horizonMillis) + " days ahead");
+		}
+		long deadlineTick = Math.floorDiv(Math.max(executeAt, this.originMillis) - this.originMillis + this.tickMillis - 1,
+				this.tickMillis);
+		ScheduledTransfer scheduledTransfer = new ScheduledTransfer(this.lastId.incrementAndGet(),
+				transferRequest.getAccountFrom(), transferRequest.getAccountTo(), transferRequest.getAmount(), executeAt);
+		this.wheelLock.lock();
+		try {
+			TimerWheel.Timer<ScheduledTransfer> timer;
+			try {
+				timer = this.timerWheel.schedule(scheduledTransfer, deadlineTick);
+			} catch (IllegalArgumentException exception) {
+				// the wheel lags behind the clock by a few ticks at most
+				throw new InvalidScheduledTransferException("Execution time " + executeAt + " is too far ahead");
+			}
+			this.pending.put(scheduledTransfer.getId(), timer);
+		} finally {
+			this.wheelLock.unlock();
+		}
+		return scheduledTransfer;
+	}
+
+	/**
+	 * @param id
+	 * @return the cancelled transfer
+	 */
+	public ScheduledTransfer cancel(long id) {
+		TimerWheel.Timer<ScheduledTransfer> timer = this.pending.remove(id);
+		if (timer == null) {
+			throw new ScheduledTransferNotFoundException("Scheduled transfer " + id + " is not pending");
+		}
+		this.wheelLock.lock();
+		try {
+			// a transfer already expired into the due queue is skipped on its release
+			this.timerWheel.cancel(timer);
+		} finally {
+			this.wheelLock.unlock();
+		}
+		return timer.getElement();
+	}
+
+	/**
+	 * @param cursor nextCursor of the previous page, null for the first page
+	 * @param limit
+	 * @return at most limit pending transfers, capped by accounts.scheduled-transfers.max-page-size,
+	 *         following the cursor
+	 */
+	public ScheduledTransferPage listPending(String cursor, int limit) {
+		long after = AccountsService.parseCursor(cursor);
+		int pageSize = Math.max(1, Math.min(limit, this.maxPageSize));
+		NavigableMap<Long, TimerWheel.Timer<ScheduledTransfer>> transfers = after < 0 ? this.pending
+				: this.pending.tailMap(after, false);
+		List<ScheduledTransfer> page = new ArrayList<>(Math.min(pageSize, 64));
+		for (TimerWheel.Timer<ScheduledTransfer> timer : transfers.values()) {
+			if (page.size() == pageSize) {
+				break;
+			}
+			page.add(timer.getElement());
+		}
+		return new ScheduledTransferPage(page,
+				page.size() < pageSize ? null : Long.toString(page.get(page.size() - 1).getId()));
+	}
+
+	/**
+	 * @return number of transfers waiting for their release
+	 */
+	public int pendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * @param nowMillis
+	 * @return number of transfers released, those due by the given time as far as the release
+	 *         budget allows, in the order of their execution times
+	 */
+	public int releaseDue(long nowMillis) {
+		long tick = Math.floorDiv(nowMillis - this.originMillis, this.tickMillis);
+		this.releaseLock.lock();
+		try {
+			this.wheelLock.lock();
+			try {
+				this.timerWheel.advance(tick + 1, this.due::add);
+			} finally {
+				this.wheelLock.unlock();
+			}
+			if (nowMillis > this.lastReleaseMillis) {
+				this.budget = Math.min(this.maxBudget,
+						this.budget + (nowMillis - this.lastReleaseMillis) * this.releasesPerMilli);
+				this.lastReleaseMillis = nowMillis;
+			}
+			int released = 0;
+			while (!this.due.isEmpty() && this.budget >= 1) {
+				int batchSize = (int) Math.min(this.budget, this.maxBatchSize);
+				List<AmountTransferRequest> batch = new ArrayList<>(batchSize);
+				while (batch.size() < batchSize && !this.due.isEmpty()) {
+					ScheduledTransfer scheduledTransfer = this.due.poll();
+					if (this.pending.remove(scheduledTransfer.getId()) != null) {
+						batch.add(new AmountTransferRequest(scheduledTransfer.getAccountFrom(),
+								scheduledTransfer.getAccountTo(), scheduledTransfer.getAmount()));
+					}
+				}
+				if (!batch.isEmpty()) {
+					this.budget -= batch.size();
+					released += batch.size();
+					release(batch);
+				}
+			}
+			return released;
+		} finally {
+			this.releaseLock.unlock();
+		}
+	}
+
+	private void tick() {
+		try {
+			releaseDue(System.currentTimeMillis());
+		} catch (RuntimeException exception) {
+			log.error("Releasing scheduled transfers failed", exception);
+		}
+	}
+
+	private void release(List<AmountTransferRequest> batch) {
+		List<TransferResult> results = this.accountsService.transferBatch(batch);
+		Map<String, Account> notifiedAccounts = new HashMap<>();
+		for (TransferResult result : results) {
+			if (result.getStatus() == TransferStatus.COMPLETED) {
+				Account fromAccount = notifiedAccounts.computeIfAbsent(result.getAccountFrom(), this.accountsService::getAccount);
+				Account toAccount = notifiedAccounts.computeIfAbsent(result.getAccountTo(), this.accountsService::getAccount);
+				this.notificationService.notifyAboutTransfer(fromAccount, "Amount Debited - " + result.getAmount());
+				this.notificationService.notifyAboutTransfer(toAccount, "Amount Credited - " + result.getAmount());
+			} else {
+				log.warn("Scheduled transfer of {} from {} to {} failed: {} {}", result.getAmount(),
+						result.getAccountFrom(), result.getAccountTo(), result.getStatus(), result.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs transfers on single-threaded shard workers. Accounts are partitioned by the hash of their
+ * accountId and every balance change of an account is made by the worker owning its shard, so
+ * request threads never queue on the monitor of a hot account. A transfer between two shards is
+ * a debit message to the payer's shard followed by a credit message to the payee's shard.
+ */
+@Slf4j
+@Component
+public class ShardedTransferExecutor {
+
+	@Getter
+	private final boolean enabled;
+
+	private final ExecutorService[] shards;
+
+	private final Semaphore pendingTransfers;
+
+	@Autowired
+	public ShardedTransferExecutor(AccountsProperties accountsProperties) {
+		AccountsProperties.Sharding sharding = accountsProperties.getSharding();
+		this.enabled = sharding.isEnabled();
+		int shardCount = sharding.getShards() > 0 ? sharding.getShards() : Runtime.getRuntime().availableProcessors();
+		this.shards = new ExecutorService[this.enabled ? shardCount : 0];
+		for (int i = 0; i < this.shards.length; i++) {
+			String name = "transfer-shard-" + i;
+			this.shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+				Thread worker = new Thread(runnable, name);
+				worker.setDaemon(true);
+				return worker;
+			});
+		}
+		this.pendingTransfers = new Semaphore(sharding.getMaxPendingTransfers());
+		if (this.enabled) {
+			log.info("Sharded transfer execution enabled with {} shards", this.shards.length);
+		}
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @param debit applied to the payer on the payer's shard, throws to reject the transfer
+	 * @param credit applied to the payee on the payee's shard, and to the payer again if the
+	 *        payee could not be credited
+	 * waits until the transfer is complete and rethrows the exception that rejected it
+	 */
+	public void transfer(Account accountFrom, Account accountTo, Consumer<Account> debit, Consumer<Account> credit) {
+		ExecutorService payerShard = shardOf(accountFrom.getAccountId());
+		ExecutorService payeeShard = shardOf(accountTo.getAccountId());
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+
+		this.pendingTransfers.acquireUninterruptibly();
+		try {
+			payerShard.execute(() -> {
+				try {
+					debit.accept(accountFrom);
+				} catch (Throwable failure) {
+					completion.completeExceptionally(failure);
+					return;
+				}
+				if (payeeShard == payerShard) {
+					credit(accountFrom, accountTo, credit, payerShard, completion);
+					return;
+				}
+				try {
+					payeeShard.execute(() -> credit(accountFrom, accountTo, credit, payerShard, completion));
+				} catch (RejectedExecutionException exception) {
+					// the payee's shard is shut down, the payer is refunded right here on its own shard
+					refund(accountFrom, credit, completion, exception);
+				}
+			});
+			completion.join();
+		} catch (CompletionException exception) {
+			if (exception.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exception.getCause();
+			}
+			if (exception.getCause() instanceof Error) {
+				throw (Error) exception.getCause();
+			}
+			throw exception;
+		} finally {
+			this.pendingTransfers.release();
+		}
+	}
+
+	/**
+	 * second step of a transfer, runs on the payee's shard
+	 */
+	private void credit(Account accountFrom, Account accountTo, Consumer<Account> credit, ExecutorService payerShard,
+			CompletableFuture<Void> completion) {
+		try {
+			credit.accept(accountTo);
+			completion.complete(null);
+		} catch (Throwable failure) {
+			// the payer has already been debited, hand the amount back on the payer's shard
+			try {
+				payerShard.execute(() -> refund(accountFrom, credit, completion, failure));
+			} catch (RejectedExecutionException exception) {
+				// the payer's shard is shut down, refunding from here is better than losing the amount
+				refund(accountFrom, credit, completion, failure);
+			}
+		}
+	}
+
+	/**
+	 * hands the amount back to a debited payer, completing the transfer with the failure whether or
+	 * not the refund succeeds so the request thread never waits forever
+	 */
+	private static void refund(Account accountFrom, Consumer<Account> credit, CompletableFuture<Void> completion,
+			Throwable failure) {
+		try {
+			credit.accept(accountFrom);
+		} finally {
+			completion.completeExceptionally(failure);
+		}
+	}
+
+	/**
+	 * @param accountId
+	 * @return worker owning the given account
+	 */
+	private ExecutorService shardOf(String accountId) {
+		int hash = accountId.hashCode();
+		return this.shards[Math.floorMod(hash ^ (hash >>> 16), this.shards.length)];
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (ExecutorService shard : this.shards) {
+			shard.shutdown();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package com.db.awmd.challenge.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel. Four levels of 256 slots each cover 2^32 ticks: a timer goes into the
+ * level whose slots are as wide as the distance to its deadline allows, and each time the level
+ * below completes a revolution the next slot of a level is emptied into the levels below it. A
+ * timer is thus scheduled and cancelled in constant time and moved at most three times before it
+ * expires, however many timers are pending.
+ *
+ * Slots are intrusive doubly-linked lists of the timers themselves, so a pending timer costs one
+ * small object and no other allocation. The wheel is not thread-safe, callers guard it.
+ *
+ * @param <E> type of the elements timers are set for
+ */
+public final class TimerWheel<E> {
+
+	private static final int SLOT_BITS = 8;
+
+	private static final int SLOTS = 1 << SLOT_BITS;
+
+	private static final int SLOT_MASK = SLOTS - 1;
+
+	private static final int LEVELS = 4;
+
+	/**
+	 * number of ticks ahead of the current tick a deadline may lie
+	 */
+	public static final long HORIZON_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+	private final Timer<?>[] slots = new Timer<?>[LEVELS * SLOTS];
+
+	/**
+	 * next tick to expire
+	 */
+	private long currentTick;
+
+	private int size;
+
+	/**
+	 * @param startTick first tick to expire
+	 */
+	public TimerWheel(long startTick) {
+		this.currentTick = startTick;
+	}
+
+	/**
+	 * @param element
+	 * @param deadlineTick tick the timer expires at, a past tick expires with the current tick
+	 * @return the timer, to cancel it
+	 */
+	public Timer<E> schedule(E element, long deadlineTick) {
+		if (deadlineTick - this.currentTick >= HORIZON_TICKS) {
+			throw new IllegalArgumentException("Deadline " + deadlineTick + " beyond the horizon of the timer wheel");
+		}
+		Timer<E> timer = new Timer<>(element, deadlineTick);
+		place(timer);
+		this.size++;
+		return timer;
+	}
+
+	/**
+	 * @param timer
+	 * @return false if the timer has already expired or been cancelled
+	 */
+	public boolean cancel(Timer<E> timer) {
+		if (timer.slot < 0) {
+			return false;
+		}
+		unlink(timer);
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * @param toTick
+	 * @param expired given the element of every timer with a deadline before toTick, in the order
+	 *        of the deadlines
+	 */
+	@SuppressWarnings("unchecked")
+	public void advance(long toTick, Consumer<E> expired) {
+		while (this.currentTick < toTick) {
+			if (this.size == 0) {
+				this.currentTick = toTick;
+				return;
+			}
+			long tick = this.currentTick;
+			// a completed revolution of a level moves the next slot of the level above down, from the
+			// highest level on as its timers may land in the slot the level below is about to move
+			int top = 0;
+			while (top < LEVELS - 1 && (tick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) {
+				top++;
+			}
+			for (int level = top; level >= 1; level--) {
+				int slot = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+				Timer<?> timer = this.slots[slot];
+				this.slots[slot] = null;
+				while (timer != null) {
+					Timer<?> next = timer.next;
+					place(timer);
+					timer = next;
+				}
+			}
+			int slot = (int) (tick & SLOT_MASK);
+			Timer<?> timer = this.slots[slot];
+			this.slots[slot] = null;
+			while (timer != null) {
+				Timer<?> next = timer.next;
+				timer.slot = -1;
+				timer.previous = null;
+				timer.next = null;
+				this.size--;
+				expired.accept((E) timer.element);
+				timer = next;
+			}
+			this.currentTick = tick + 1;
+		}
+	}
+
+	/**
+	 * @return number of pending timers
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private void place(Timer<?> timer) {
+		long key = Math.max(timer.deadlineTick, this.currentTick);
+		long distance = key - this.currentTick;
+		int level = 0;
+		while (level < LEVELS - 1 && distance >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		int slot = level * SLOTS + (int) ((key >>> (SLOT_BITS * level)) & SLOT_MASK);
+		Timer<?> head = this.slots[slot];
+		timer.slot = slot;
+		timer.previous = null;
+		timer.next = head;
+		if (head != null) {
+			head.previous = timer;
+		}
+		this.slots[slot] = timer;
+	}
+
+	private void unlink(Timer<?> timer) {
+		if (timer.previous == null) {
+			this.slots[timer.slot] = timer.next;
+		} else {
+			timer.previous.next = timer.next;
+		}
+		if (timer.next != null) {
+			timer.next.previous = timer.previous;
+		}
+		timer.slot = -1;
+		timer.previous = null;
+		timer.next = null;
+	}
+
+	/**
+	 * @param <E> type of the element the timer is set for
+	 */
+	public static final class Timer<E> {
+
+		private final E element;
+
+		private final long deadlineTick;
+
+		private Timer<?> previous;
+
+		private Timer<?> next;
+
+		/**
+		 * slot holding the timer, -1 once expired or cancelled
+		 */
+		private int slot;
+
+		private Timer(E element, long deadlineTick) {
+			this.element = element;
+			this.deadlineTick = deadlineTick;
+		}
+
+		public E getElement() {
+			return this.element;
+		}
+
+		public long getDeadlineTick() {
+			return this.deadlineTick;
+		}
+	}
+}
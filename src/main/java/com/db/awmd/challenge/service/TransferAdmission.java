@@ -0,0 +1,288 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AdmissionStats;
+import com.db.awmd.challenge.exception.TransferRateLimitedException;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control in front of the transfer path. A transfer request takes a token from the
+ * bucket of its client and, for a single transfer, from the buckets of both its accounts, then a
+ * slot under the concurrency limit. A request over any of these limits is rejected right away
+ * instead of queueing on the monitors of the accounts it wants, so one client hammering an account
+ * pair can not hold every request thread. The tokens a rejected request took are given back.
+ *
+ * A bucket is kept as its theoretical arrival time, the generic cell rate algorithm: a token moves
+ * the time one interval ahead and a bucket whose time runs more than its burst ahead of now is
+ * empty. Buckets are the longs of an array updated by CAS, keys hash onto a fixed number of them so
+ * the memory stays bounded however many clients and accounts come and go, at the price of two keys
+ * sharing a limit now and then.
+ *
+ * The concurrency limit follows the latency of the admitted requests by additive increase and
+ * multiplicative decrease: while the average latency of the latest requests exceeds
+ * latency-tolerance times the baseline the limit is lowered by a tenth, once at most every limit
+ * completed requests so that it does not collapse before the requests admitted under the higher
+ * limit are done, otherwise the limit rises by one about once every limit requests as long as it is
+ * in use. The baseline is the tenth percentile of the latest LATENCY_SAMPLES latencies, taken each
+ * time they are all replaced, and creeps up towards it when it is higher, so a single request
+ * faster than the others does not hold the limit down.
+ */
+@Component
+@Slf4j
+public class TransferAdmission {
+
+	/**
+	 * number of latest latencies the baseline is taken from, a power of two
+	 */
+	public static final int LATENCY_SAMPLES = 64;
+
+	/**
+	 * percentile of the latest latencies taken for the baseline
+	 */
+	private static final int BASELINE_PERCENTILE = 10;
+
+	@Getter
+	private final boolean enabled;
+
+	/**
+	 * nanoseconds per token, 0 for no limit
+	 */
+	private final long clientInterval;
+
+	private final long clientBurstNanos;
+
+	private final long accountInterval;
+
+	private final long accountBurstNanos;
+
+	private final int bucketMask;
+
+	/**
+	 * theoretical arrival times, in nanoseconds since originNanos
+	 */
+	private final AtomicLongArray clientBuckets;
+
+	private final AtomicLongArray accountBuckets;
+
+	private final long originNanos = System.nanoTime();
+
+	private final int minConcurrency;
+
+	private final int maxConcurrency;
+
+	private final double latencyTolerance;
+
+	private final AtomicInteger concurrencyLimit;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * lowest percentile of the latest latencies seen, creeping towards the later ones so that old
+	 * lows are forgotten
+	 */
+	private final AtomicLong baselineNanos = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+
+	private final AtomicLong completed = new AtomicLong();
+
+	/**
+	 * number of completed requests from which the limit may be lowered again
+	 */
+	private final AtomicLong nextDecrease = new AtomicLong();
+
+	/**
+	 * moving average of the latest latencies, 0 before the first request
+	 */
+	private final AtomicLong averageNanos = new AtomicLong();
+
+	private final LongAdder admitted = new LongAdder();
+
+	private final LongAdder rejectedByClient = new LongAdder();
+
+	private final LongAdder rejectedByAccount = new LongAdder();
+
+	private final LongAdder rejectedByConcurrency = new LongAdder();
+
+	@Autowired
+	public TransferAdmission(AccountsProperties accountsProperties) {
+		AccountsProperties.Admission admission = accountsProperties.getAdmission();
+		this.enabled = admission.isEnabled();
+		this.clientInterval = interval(admission.getClientRatePerSecond());
+		this.clientBurstNanos = this.clientInterval * Math.max(1, admission.getClientBurst());
+		this.accountInterval = interval(admission.getAccountRatePerSecond());
+		this.accountBurstNanos = this.accountInterval * Math.max(1, admission.getAccountBurst());
+		int buckets = Integer.highestOneBit(Math.max(1, admission.getBuckets()));
+		if (buckets < admission.getBuckets()) {
+			buckets <<= 1;
+		}
+		this.bucketMask = buckets - 1;
+		this.clientBuckets = new AtomicLongArray(this.enabled ? buckets : 1);
+		this.accountBuckets = new AtomicLongArray(this.enabled ? buckets : 1);
+		this.minConcurrency = Math.max(1, admission.getMinConcurrency());
+		this.maxConcurrency = Math.max(this.minConcurrency, admission.getMaxConcurrency());
+		this.latencyTolerance = admission.getLatencyTolerance();
+		this.concurrencyLimit = new AtomicInteger(
+				Math.min(this.maxConcurrency, Math.max(this.minConcurrency, admission.getInitialConcurrency())));
+		if (this.enabled) {
+			log.info("Transfer admission control enabled, {} concurrent transfer requests at first",
+					this.concurrencyLimit.get());
+		}
+	}
+
+	/**
+	 * @param clientId
+	 * @param accountFrom null for a batch, whose accounts are not limited
+	 * @param accountTo
+	 * @param transfers number of transfers the request makes, a client is charged for each, up to its
+	 *        burst
+	 * @return time the request was admitted, to be given back to complete once it is done
+	 */
+	public long admit(String clientId, String accountFrom, String accountTo, int transfers) {
+		if (!this.enabled) {
+			return 0;
+		}
+		long now = System.nanoTime() - this.originNanos;
+		String client = String.valueOf(clientId);
+		long clientCost = this.clientInterval > 0 ? Math.min(this.clientInterval * transfers, this.clientBurstNanos) : 0;
+		if (clientCost > 0 && !tryTake(this.clientBuckets, client, now, clientCost, this.clientBurstNanos)) {
+			this.rejectedByClient.increment();
+			throw new TransferRateLimitedException("Too many transfer requests from client " + clientId);
+		}
+		boolean accountsCharged = this.accountInterval > 0 && accountFrom != null;
+		boolean payeeCharged = accountsCharged && !accountFrom.equals(accountTo);
+		if (accountsCharged) {
+			if (!tryTake(this.accountBuckets, accountFrom, now, this.accountInterval, this.accountBurstNanos)) {
+				giveBack(this.clientBuckets, client, clientCost);
+				this.rejectedByAccount.increment();
+				throw new TransferRateLimitedException("Too many transfers of account " + accountFrom);
+			}
+			if (payeeCharged
+					&& !tryTake(this.accountBuckets, accountTo, now, this.accountInterval, this.accountBurstNanos)) {
+				giveBack(this.clientBuckets, client, clientCost);
+				giveBack(this.accountBuckets, accountFrom, this.accountInterval);
+				this.rejectedByAccount.increment();
+				throw new TransferRateLimitedException("Too many transfers of account " + accountTo);
+			}
+		}
+		for (;;) {
+			int inFlight = this.inFlight.get();
+			if (inFlight >= this.concurrencyLimit.get()) {
+				giveBack(this.clientBuckets, client, clientCost);
+				if (accountsCharged) {
+					giveBack(this.accountBuckets, accountFrom, this.accountInterval);
+				}
+				if (payeeCharged) {
+					giveBack(this.accountBuckets, accountTo, this.accountInterval);
+				}
+				this.rejectedByConcurrency.increment();
+				throw new TransferRateLimitedException("Too many transfers in flight, try again later");
+			}
+			if (this.inFlight.compareAndSet(inFlight, inFlight + 1)) {
+				break;
+			}
+		}
+		this.admitted.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * @param admittedAt returned by admit
+	 * frees the slot of an admitted request and adapts the concurrency limit to its latency
+	 */
+	public void complete(long admittedAt) {
+		if (!this.enabled) {
+			return;
+		}
+		int inFlight = this.inFlight.getAndDecrement();
+		long latency = System.nanoTime() - admittedAt;
+		long count = this.completed.incrementAndGet();
+		int sample = (int) (count & (LATENCY_SAMPLES - 1));
+		this.latencies.set(sample, latency);
+		long baseline = sample == 0
+				? this.baselineNanos.accumulateAndGet(lowLatency(),
+						(lowest, latest) -> latest < lowest ? latest : lowest + ((latest - lowest) >> 4))
+				: this.baselineNanos.get();
+		long average = this.averageNanos.accumulateAndGet(latency,
+				(previous, latest) -> previous == 0 ? latest : previous + ((latest - previous) >> 4));
+		int limit = this.concurrencyLimit.get();
+		if (average > baseline * this.latencyTolerance) {
+			long next = this.nextDecrease.get();
+			if (count >= next && this.nextDecrease.compareAndSet(next, count + limit)) {
+				this.concurrencyLimit
+						.updateAndGet(current -> Math.max(this.minConcurrency, current - Math.max(1, current / 10)));
+			}
+			return;
+		}
+		if (inFlight * 2 >= limit && limit < this.maxConcurrency && ThreadLocalRandom.current().nextInt(limit) == 0) {
+			this.concurrencyLimit.compareAndSet(limit, limit + 1);
+		}
+	}
+
+	public AdmissionStats getStats() {
+		long baseline = this.baselineNanos.get();
+		return new AdmissionStats(this.enabled, this.concurrencyLimit.get(), this.inFlight.get(),
+				baseline == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMicros(baseline), this.admitted.sum(),
+				this.rejectedByClient.sum(), this.rejectedByAccount.sum(), this.rejectedByConcurrency.sum());
+	}
+
+	/**
+	 * @return BASELINE_PERCENTILE percentile of the latest latencies
+	 */
+	private long lowLatency() {
+		long[] latest = new long[LATENCY_SAMPLES];
+		for (int i = 0; i < LATENCY_SAMPLES; i++) {
+			latest[i] = this.latencies.get(i);
+		}
+		Arrays.sort(latest);
+		return latest[LATENCY_SAMPLES * BASELINE_PERCENTILE / 100];
+	}
+
+	/**
+	 * gives the cost taken by tryTake back to the bucket of the key
+	 */
+	private void giveBack(AtomicLongArray buckets, String key, long cost) {
+		if (cost > 0) {
+			buckets.addAndGet(bucket(key), -cost);
+		}
+	}
+
+	private int bucket(String key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & this.bucketMask;
+	}
+
+	/**
+	 * @return true if the bucket of the key had the cost left, which is then taken
+	 */
+	private boolean tryTake(AtomicLongArray buckets, String key, long now, long cost, long burstNanos) {
+		int bucket = bucket(key);
+		for (;;) {
+			long arrival = buckets.get(bucket);
+			long next = Math.max(arrival, now) + cost;
+			if (next - now > burstNanos) {
+				return false;
+			}
+			if (buckets.compareAndSet(bucket, arrival, next)) {
+				return true;
+			}
+		}
+	}
+
+	private static long interval(int ratePerSecond) {
+		return ratePerSecond <= 0 ? 0 : Math.max(1, TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+	}
+}
@@ -0,0 +1,179 @@
+package com.db.awmd.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.TransferAuditEvent;
+
+import lombok.Getter;
+
+/**
+ * Structured audit log of the transfer path. A record is a fixed set of fields copied into a slot
+ * of a ring allocated up front, so the request thread neither builds a string nor allocates: it
+ * keeps a reference to its thread, whose name the appender reads. A single appender thread drains
+ * the ring in order and writes one line per record to the transfer-audit logger. A request thread
+ * finding the ring full waits for the appender, no record is ever dropped.
+ */
+@Component
+public class TransferAuditLog {
+
+	private static final Logger AUDIT = LoggerFactory.getLogger("transfer-audit");
+
+	private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+	@Getter
+	private final boolean enabled;
+
+	private final Slot[] slots;
+
+	/**
+	 * slot i holds the record of position p once its sequence is p + 1, and is free for position p
+	 * while its sequence is p
+	 */
+	private final AtomicLongArray sequences;
+
+	private final int mask;
+
+	private final AtomicLong claimPosition = new AtomicLong();
+
+	private volatile long appendedPosition;
+
+	private final long idleWaitNanos;
+
+	private final Thread appender;
+
+	private volatile boolean running = true;
+
+	@Autowired
+	public TransferAuditLog(AccountsProperties accountsProperties) {
+		AccountsProperties.Audit audit = accountsProperties.getAudit();
+		this.enabled = audit.isEnabled();
+		int capacity = Integer.highestOneBit(Math.max(2, audit.getBufferCapacity()));
+		this.slots = new Slot[this.enabled ? capacity : 0];
+		this.sequences = new AtomicLongArray(this.slots.length);
+		for (int i = 0; i < this.slots.length; i++) {
+			this.slots[i] = new Slot();
+			this.sequences.set(i, i);
+		}
+		this.mask = this.slots.length - 1;
+		this.idleWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, audit.getIdleWaitMicros()));
+		if (this.enabled) {
+			this.appender = new Thread(this::appendLoop, "transfer-audit-appender");
+			this.appender.setDaemon(true);
+			this.appender.start();
+		} else {
+			this.appender = null;
+		}
+	}
+
+	/**
+	 * @param event
+	 * @param accountFromId payer, or the account of a withdrawal or deposit
+	 * @param accountToId payee, null for a withdrawal or deposit
+	 * @param amount
+	 */
+	public void record(TransferAuditEvent event, String accountFromId, String accountToId, BigDecimal amount) {
+		if (!this.running) {
+			// the appender is stopping with the application
+			AUDIT.info("{} from={} to={} amount={}", event, accountFromId, accountToId, amount);
+			return;
+		}
+		long position = this.claimPosition.getAndIncrement();
+		int index = (int) position & this.mask;
+		while (this.sequences.get(index) != position) {
+			// the appender has not yet written the record one lap behind
+			LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+		}
+		Slot slot = this.slots[index];
+		slot.timestampMillis = System.currentTimeMillis();
+		slot.event = event;
+		slot.accountFromId = accountFromId;
+		slot.accountToId = accountToId;
+		slot.amount = amount;
+		slot.thread = Thread.currentThread();
+		this.sequences.lazySet(index, position + 1);
+	}
+
+	/**
+	 * @return number of records waiting for the appender
+	 */
+	public long getPending() {
+		return Math.max(0, this.claimPosition.get() - this.appendedPosition);
+	}
+
+	private void appendLoop() {
+		StringBuilder line = new StringBuilder(160);
+		long position = 0;
+		while (true) {
+			int index = (int) position & this.mask;
+			if (this.sequences.get(index) != position + 1) {
+				if (!this.running && this.claimPosition.get() == position) {
+					return;
+				}
+				LockSupport.parkNanos(this, this.idleWaitNanos);
+				continue;
+			}
+			Slot slot = this.slots[index];
+			line.setLength(0);
+			line.append(Instant.ofEpochMilli(slot.timestampMillis)).append(' ').append(slot.event)
+					.append(" from=").append(slot.accountFromId);
+			if (slot.accountToId != null) {
+				line.append(" to=").append(slot.accountToId);
+			}
+			line.append(" amount=").append(slot.amount).append(" thread=").append(slot.thread.getName());
+			slot.clear();
+			this.sequences.lazySet(index, position + this.slots.length);
+			position++;
+			this.appendedPosition = position;
+			AUDIT.info(line.toString());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (this.appender == null) {
+			return;
+		}
+		this.running = false;
+		LockSupport.unpark(this.appender);
+		try {
+			this.appender.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * pre-allocated record, its fields are published by the release of its sequence
+	 */
+	private static final class Slot {
+		long timestampMillis;
+		TransferAuditEvent event;
+		String accountFromId;
+		String accountToId;
+		BigDecimal amount;
+		Thread thread;
+
+		void clear() {
+			this.event = null;
+			this.accountFromId = null;
+			this.accountToId = null;
+			this.amount = null;
+			this.thread = null;
+		}
+	}
+}
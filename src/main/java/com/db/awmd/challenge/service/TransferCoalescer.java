@@ -0,0 +1,160 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gathers single transfers arriving together into micro-batches. The first transfer of a batch
+ * leads it: it waits up to the latency budget, or until the batch is full, for other transfers to
+ * join, then settles the whole batch on its own thread while the others wait for their outcome.
+ * A batch closed by its leader no longer takes transfers, the next one to arrive leads a new batch.
+ */
+@Slf4j
+@Component
+public class TransferCoalescer {
+
+	@Getter
+	private final boolean enabled;
+
+	private final long maxDelayNanos;
+
+	private final int maxBatchSize;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * batch still taking transfers, null until the next transfer arrives
+	 */
+	private Batch open;
+
+	@Autowired
+	public TransferCoalescer(AccountsProperties accountsProperties) {
+		AccountsProperties.Coalescing coalescing = accountsProperties.getCoalescing();
+		boolean enabled = coalescing.isEnabled();
+		if (enabled && (accountsProperties.getSharding().isEnabled()
+				|| accountsProperties.getBalanceEngine().isLockFree())) {
+			// net movements are decided against balances held steady by the account locks
+			log.warn("Transfer coalescing needs the locking balance engine without sharding, it is disabled");
+			enabled = false;
+		}
+		this.enabled = enabled;
+		this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, coalescing.getMaxDelayMicros()));
+		this.maxBatchSize = Math.max(1, coalescing.getMaxBatchSize());
+		if (this.enabled) {
+			log.info("Transfers coalesced in batches of up to {} within {} us", this.maxBatchSize,
+					coalescing.getMaxDelayMicros());
+		}
+	}
+
+	/**
+	 * @param transferRequest
+	 * @param settle applies a batch of transfers and returns the failure of each, null for the
+	 *        transfers made, called by the leader of the batch
+	 * returns once the transfer is made, or throws the exception it failed with
+	 */
+	public void submit(AmountTransferRequest transferRequest,
+			Function<List<AmountTransferRequest>, RuntimeException[]> settle) {
+		Batch batch;
+		int index;
+		boolean leader;
+		this.lock.lock();
+		try {
+			batch = this.open;
+			leader = batch == null;
+			if (leader) {
+				batch = new Batch(this.lock.newCondition());
+				this.open = batch;
+			}
+			index = batch.transferRequests.size();
+			batch.transferRequests.add(transferRequest);
+			if (batch.transferRequests.size() >= this.maxBatchSize) {
+				this.open = null;
+				batch.changed.signalAll();
+			}
+			if (leader) {
+				long remaining = this.maxDelayNanos;
+				while (this.open == batch && remaining > 0) {
+					try {
+						remaining = batch.changed.awaitNanos(remaining);
+					} catch (InterruptedException exception) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				if (this.open == batch) {
+					this.open = null;
+				}
+			} else {
+				while (batch.failures == null) {
+					batch.changed.awaitUninterruptibly();
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+
+		if (leader) {
+			RuntimeException[] failures = null;
+			try {
+				failures = settle.apply(batch.transferRequests);
+			} catch (RuntimeException exception) {
+				failures = failAll(batch, exception);
+			} finally {
+				// the other transfers of the batch must never be left waiting
+				if (failures == null) {
+					failures = failAll(batch, new IllegalStateException("Settling a batch of transfers failed"));
+				}
+				this.lock.lock();
+				try {
+					batch.failures = failures;
+					batch.changed.signalAll();
+				} finally {
+					this.lock.unlock();
+				}
+			}
+		}
+		if (batch.failures[index] != null) {
+			throw batch.failures[index];
+		}
+	}
+
+	private static RuntimeException[] failAll(Batch batch, RuntimeException exception) {
+		RuntimeException[] failures = new RuntimeException[batch.transferRequests.size()];
+		for (int i = 0; i < failures.length; i++) {
+			failures[i] = exception;
+		}
+		return failures;
+	}
+
+	private static final class Batch {
+
+		final List<AmountTransferRequest> transferRequests = new ArrayList<>();
+
+		/**
+		 * signalled when the batch is closed full and once it is settled
+		 */
+		final Condition changed;
+
+		/**
+		 * set by the leader once the batch is settled, guarded by the lock
+		 */
+		RuntimeException[] failures;
+
+		Batch(Condition changed) {
+			this.changed = changed;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.db.awmd.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AccountStatement;
+import com.db.awmd.challenge.domain.StatementEntry;
+import com.db.awmd.challenge.exception.InvalidCursorException;
+
+import lombok.Getter;
+
+/**
+ * Append-only ledger of the transfers made, kept in chunks of packed longs instead of one object
+ * per entry. An entry takes 32 bytes: its time and amount scale, the numbers of its two accounts,
+ * the unscaled amount, and the distance back to the previous entry of each of its accounts. The
+ * distances chain the entries of every account from its latest one, so a statement page reads the
+ * entries of its own account only, newest first, however large the ledger has grown.
+ *
+ * Entries are appended under a short lock once their transfer is made and never change after,
+ * statements only take the lock to find where the chain of their account starts. Two transfers of
+ * an account made at the same time may be listed in either order. The ledger is kept in memory,
+ * it starts empty with every start of the application.
+ *
+ * The ledger keeps the latest max-entries transfers at most, rounded up to whole chunks of 65536
+ * entries, 32 bytes each, so 128 MB by default. Once it is full the oldest chunk is dropped as a
+ * new one is started, the statements of an account end at its oldest entry kept.
+ */
+@Component
+public class TransferLedger {
+
+	private static final int CHUNK_BITS = 16;
+
+	private static final int ENTRIES_PER_CHUNK = 1 << CHUNK_BITS;
+
+	private static final int STRIDE = 4;
+
+	private static final int TIME_SLOT = 0;
+
+	private static final int ACCOUNTS_SLOT = 1;
+
+	private static final int AMOUNT_SLOT = 2;
+
+	private static final int PREVIOUS_SLOT = 3;
+
+	/**
+	 * scale marking an amount that does not pack in a long, kept in wideAmounts
+	 */
+	private static final int WIDE_AMOUNT = 0xFF;
+
+	/**
+	 * distance to a previous entry too far back to pack, kept in farPrevious
+	 */
+	private static final long FAR = 0xFFFFFFFFL;
+
+	@Getter
+	private final boolean enabled;
+
+	/**
+	 * number of chunks kept, the one being filled included
+	 */
+	private final int retainedChunks;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * replaced when a chunk is added, entries below the size are never written again, dropped
+	 * chunks are null
+	 */
+	private volatile long[][] chunks = new long[0][];
+
+	/**
+	 * oldest entry kept, raised before the entries below it are dropped
+	 */
+	private volatile long first;
+
+	/**
+	 * account ids by account number, replaced when it grows
+	 */
+	private volatile String[] accountIds = new String[16];
+
+	private final Map<String, Integer> accountNumbers = new HashMap<>();
+
+	/**
+	 * latest entry plus one of every account number, 0 before its first entry
+	 */
+	private long[] latestEntries = new long[16];
+
+	private long size;
+
+	private final Map<Long, BigDecimal> wideAmounts = new ConcurrentHashMap<>();
+
+	/**
+	 * previous entry by twice the entry, plus one for the payee
+	 */
+	private final Map<Long, Long> farPrevious = new ConcurrentHashMap<>();
+
+	@Autowired
+	public TransferLedger(AccountsProperties accountsProperties) {
+		this.enabled = accountsProperties.getLedger().isEnabled();
+		this.retainedChunks = (int) Math.max(2,
+				(accountsProperties.getLedger().getMaxEntries() + ENTRIES_PER_CHUNK - 1) >>> CHUNK_BITS);
+	}
+
+	/**
+	 * @param accountFrom
+	 * @param accountTo
+	 * @param amount
+	 * records a transfer made
+	 */
+	public void append(String accountFrom, String accountTo, BigDecimal amount) {
+		if (!this.enabled) {
+			return;
+		}
+		long millis = System.currentTimeMillis();
+		int scale = amount.scale();
+		boolean wide = scale < 0 || scale >= WIDE_AMOUNT || amount.unscaledValue().bitLength() > 63;
+		long unscaled = wide ? 0 : amount.unscaledValue().longValue();
+		this.lock.lock();
+		try {
+			long entry = this.size;
+			int payer = accountNumber(accountFrom);
+			int payee = accountNumber(accountTo);
+			int chunk = (int) (entry >>> CHUNK_BITS);
+			if (chunk == this.chunks.length) {
+				long[][] chunks = Arrays.copyOf(this.chunks, chunk + 1);
+				chunks[chunk] = new long[ENTRIES_PER_CHUNK * STRIDE];
+				if (chunk >= this.retainedChunks) {
+					dropChunk(chunks, chunk - this.retainedChunks);
+				}
+				this.chunks = chunks;
+			}
+			long[] slots = this.chunks[chunk];
+			int base = (int) (entry & (ENTRIES_PER_CHUNK - 1)) * STRIDE;
+			slots[base + TIME_SLOT] = millis << 8 | (wide ? WIDE_AMOUNT : scale);
+			slots[base + ACCOUNTS_SLOT] = (long) payer << 32 | payee;
+			slots[base + AMOUNT_SLOT] = unscaled;
+			slots[base + PREVIOUS_SLOT] = distanceBack(entry, payer, 0) << 32 | distanceBack(entry, payee, 1);
+			if (wide) {
+				this.wideAmounts.put(entry, amount);
+			}
+			this.latestEntries[payer] = entry + 1;
+			this.latestEntries[payee] = entry + 1;
+			this.size = entry + 1;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @param accountId
+	 * @param position sequence of the latest entry to list, -1 for the latest entry of the account
+	 * @param limit
+	 * @return at most limit entries of the account, the latest first, none if the ledger is disabled or
+	 *         the position was dropped already
+	 */
+	public AccountStatement statement(String accountId, long position, int limit) {
+		long latest;
+		long size;
+		int number;
+		this.lock.lock();
+		try {
+			Integer accountNumber = this.accountNumbers.get(accountId);
+			number = accountNumber == null ? -1 : accountNumber;
+			latest = accountNumber == null ? -1 : this.latestEntries[number] - 1;
+			size = this.size;
+		} finally {
+			this.lock.unlock();
+		}
+		long entry = latest;
+		if (position >= 0) {
+			if (position >= size) {
+				throw new InvalidCursorException("Invalid cursor " + position);
+			}
+			long[] slots = slots(position);
+			if (slots != null) {
+				long accounts = slots[slot(position, ACCOUNTS_SLOT)];
+				if ((int) (accounts >>> 32) != number && (int) accounts != number) {
+					throw new InvalidCursorException("Invalid cursor " + position);
+				}
+			}
+			entry = position;
+		}
+		String[] accountIds = this.accountIds;
+		List<StatementEntry> entries = new ArrayList<>(Math.min(limit, 64));
+		while (entry >= this.first && entries.size() < limit) {
+			long[] slots = slots(entry);
+			if (slots == null) {
+				break;
+			}
+			long time = slots[slot(entry, TIME_SLOT)];
+			long accounts = slots[slot(entry, ACCOUNTS_SLOT)];
+			int scale = (int) (time & 0xFF);
+			BigDecimal amount = scale == WIDE_AMOUNT ? this.wideAmounts.get(entry)
+					: BigDecimal.valueOf(slots[slot(entry, AMOUNT_SLOT)], scale);
+			long previous = previous(entry, slots, (int) (accounts >>> 32) == number ? 0 : 1);
+			if (entry < this.first) {
+				// dropped while it was read
+				break;
+			}
+			entries.add(new StatementEntry(entry, time >>> 8, accountIds[(int) (accounts >>> 32)],
+					accountIds[(int) accounts], amount));
+			entry = previous;
+		}
+		return new AccountStatement(accountId, entries, entry >= this.first ? Long.toString(entry) : null);
+	}
+
+	/**
+	 * @return number of entries appended to the ledger, the dropped ones included
+	 */
+	public long size() {
+		this.lock.lock();
+		try {
+			return this.size;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of the account, given one on its first entry, must be called under the lock
+	 */
+	private int accountNumber(String accountId) {
+		Integer number = this.accountNumbers.get(accountId);
+		if (number != null) {
+			return number;
+		}
+		int added = this.accountNumbers.size();
+		this.accountNumbers.put(accountId, added);
+		if (added == this.latestEntries.length) {
+			this.latestEntries = Arrays.copyOf(this.latestEntries, added << 1);
+		}
+		String[] accountIds = this.accountIds;
+		if (added == accountIds.length) {
+			accountIds = Arrays.copyOf(accountIds, added << 1);
+		}
+		accountIds[added] = accountId;
+		this.accountIds = accountIds;
+		return added;
+	}
+
+	/**
+	 * @return distance from the previous entry of the account to the entry, 0 for its first entry,
+	 *         must be called under the lock
+	 */
+	private long distanceBack(long entry, int number, int side) {
+		long latest = this.latestEntries[number];
+		if (latest == 0) {
+			return 0;
+		}
+		long distance = entry - (latest - 1);
+		if (distance >= FAR) {
+			this.farPrevious.put(entry * 2 + side, latest - 1);
+			return FAR;
+		}
+		return distance;
+	}
+
+	/**
+	 * drops the entries of the chunk, raising the first entry kept before their amounts and
+	 * distances kept aside are removed, must be called under the lock
+	 */
+	private void dropChunk(long[][] chunks, int chunk) {
+		chunks[chunk] = null;
+		long first = (long) (chunk + 1) << CHUNK_BITS;
+		this.first = first;
+		this.wideAmounts.keySet().removeIf(entry -> entry < first);
+		this.farPrevious.keySet().removeIf(key -> key < first * 2);
+	}
+
+	/**
+	 * @return previous entry of the account on the side of the entry, -1 if the entry is its first
+	 *         or the previous one was dropped
+	 */
+	private long previous(long entry, long[] slots, int side) {
+		long previous = slots[slot(entry, PREVIOUS_SLOT)];
+		long distance = side == 0 ? previous >>> 32 : previous & FAR;
+		if (distance == 0) {
+			return -1;
+		}
+		if (distance == FAR) {
+			Long far = this.farPrevious.get(entry * 2 + side);
+			return far == null ? -1 : far;
+		}
+		return entry - distance;
+	}
+
+	/**
+	 * @return chunk holding the entry, null if it was dropped
+	 */
+	private long[] slots(long entry) {
+		return this.chunks[(int) (entry >>> CHUNK_BITS)];
+	}
+
+	private static int slot(long entry, int slot) {
+		return (int) (entry & (ENTRIES_PER_CHUNK - 1)) * STRIDE + slot;
+	}
+}
@@ -0,0 +1,93 @@
+package com.db.awmd.challenge.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.LatencySummary;
+import com.db.awmd.challenge.domain.TransferStage;
+import com.db.awmd.challenge.domain.TransferStatus;
+
+import lombok.Getter;
+
+/**
+ * Latency histogram of every {@link TransferStage} and count of every transfer outcome. Timers are
+ * plain System.nanoTime readings, skipped altogether when metrics are disabled.
+ */
+@Component
+public class TransferMetrics {
+
+	@Getter
+	private final boolean enabled;
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[TransferStage.values().length];
+
+	private final LongAdder[] outcomes = new LongAdder[TransferStatus.values().length];
+
+	@Autowired
+	public TransferMetrics(AccountsProperties accountsProperties) {
+		this.enabled = accountsProperties.getMetrics().isEnabled();
+		for (int i = 0; i < this.histograms.length; i++) {
+			this.histograms[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < this.outcomes.length; i++) {
+			this.outcomes[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return start time to pass to {@link #recordStage(TransferStage, long)}
+	 */
+	public long startTimer() {
+		return this.enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * @param stage
+	 * @param startNanos
+	 * @return end time of the stage, usable as the start time of the next one
+	 */
+	public long recordStage(TransferStage stage, long startNanos) {
+		if (!this.enabled) {
+			return 0;
+		}
+		long endNanos = System.nanoTime();
+		this.histograms[stage.ordinal()].record(endNanos - startNanos);
+		return endNanos;
+	}
+
+	/**
+	 * @param status
+	 */
+	public void countOutcome(TransferStatus status) {
+		if (this.enabled) {
+			this.outcomes[status.ordinal()].increment();
+		}
+	}
+
+	/**
+	 * @return latency summary of every stage
+	 */
+	public Map<TransferStage, LatencySummary> getStages() {
+		Map<TransferStage, LatencySummary> stages = new EnumMap<>(TransferStage.class);
+		for (TransferStage stage : TransferStage.values()) {
+			stages.put(stage, this.histograms[stage.ordinal()].summarize());
+		}
+		return stages;
+	}
+
+	/**
+	 * @return number of transfers per outcome
+	 */
+	public Map<TransferStatus, Long> getOutcomes() {
+		Map<TransferStatus, Long> counts = new EnumMap<>(TransferStatus.class);
+		for (TransferStatus status : TransferStatus.values()) {
+			counts.put(status, this.outcomes[status.ordinal()].sum());
+		}
+		return counts;
+	}
+}
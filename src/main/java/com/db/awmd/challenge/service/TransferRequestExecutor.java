@@ -0,0 +1,118 @@
+package com.db.awmd.challenge.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.RequestHandlingMode;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Request workers running the transfers handed off by the controller in the async request
+ * handling mode. Virtual threads are used when the JVM provides them, looked up reflectively
+ * since the application is built for Java 8, otherwise a fixed pool of platform threads.
+ */
+@Slf4j
+@Component
+public class TransferRequestExecutor {
+
+	@Getter
+	private final boolean async;
+
+	@Getter
+	private final boolean virtualThreads;
+
+	@Getter
+	private final long timeoutMillis;
+
+	/**
+	 * null in the blocking mode
+	 */
+	private final ExecutorService workers;
+
+	private final Semaphore inFlight;
+
+	@Autowired
+	public TransferRequestExecutor(AccountsProperties accountsProperties) {
+		AccountsProperties.RequestHandling requestHandling = accountsProperties.getRequestHandling();
+		this.async = requestHandling.getMode() == RequestHandlingMode.ASYNC;
+		this.timeoutMillis = requestHandling.getTimeoutMillis();
+		this.inFlight = new Semaphore(Math.max(1, requestHandling.getMaxInFlight()));
+		ExecutorService virtualThreadWorkers = this.async && requestHandling.isVirtualThreads()
+				? newVirtualThreadPerTaskExecutor()
+				: null;
+		this.virtualThreads = virtualThreadWorkers != null;
+		if (!this.async) {
+			this.workers = null;
+		} else if (this.virtualThreads) {
+			this.workers = virtualThreadWorkers;
+		} else {
+			AtomicInteger workerNumber = new AtomicInteger();
+			this.workers = Executors.newFixedThreadPool(Math.max(1, requestHandling.getWorkerThreads()), runnable -> {
+				Thread worker = new Thread(runnable, "transfer-request-" + workerNumber.getAndIncrement());
+				worker.setDaemon(true);
+				return worker;
+			});
+		}
+		if (this.async) {
+			log.info("Asynchronous transfer requests enabled on {}",
+					this.virtualThreads ? "virtual threads" : requestHandling.getWorkerThreads() + " worker threads");
+		}
+	}
+
+	/**
+	 * @param task
+	 * @return false if the task was not handed off, because the mode is blocking or too many
+	 *         transfers are in flight, the caller runs it itself
+	 */
+	public boolean tryExecute(Runnable task) {
+		if (!this.async || !this.inFlight.tryAcquire()) {
+			return false;
+		}
+		try {
+			this.workers.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					this.inFlight.release();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException exception) {
+			this.inFlight.release();
+			return false;
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (this.workers != null) {
+			this.workers.shutdown();
+		}
+	}
+
+	/**
+	 * @return Executors.newVirtualThreadPerTaskExecutor() of the running JVM, null before Java 21
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException exception) {
+			log.info("Virtual threads are not available on Java {}, using platform request workers",
+					System.getProperty("java.version"));
+			return null;
+		}
+	}
+}
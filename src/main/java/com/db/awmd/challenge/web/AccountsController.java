@@ -1,8 +1,21 @@
 package com.db.awmd.challenge.web;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,16 +23,40 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ImportFormat;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.domain.TransferAuditEvent;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStage;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidTransferBatchException;
+import com.db.awmd.challenge.exception.TransferRateLimitedException;
+import com.db.awmd.challenge.service.AccountExportService;
+import com.db.awmd.challenge.service.AccountImportService;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.ClusterClient;
+import com.db.awmd.challenge.service.ClusterRing;
+import com.db.awmd.challenge.service.ClusterTransferCoordinator;
 import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.TransferAdmission;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import com.db.awmd.challenge.service.TransferMetrics;
+import com.db.awmd.challenge.service.TransferRequestExecutor;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,17 +66,52 @@ import lombok.extern.slf4j.Slf4j;
 public class AccountsController {
 
   private final AccountsService accountsService;
+
+  private final TransferMetrics transferMetrics;
+
+  private final TransferAuditLog transferAuditLog;
+
+  private final TransferRequestExecutor transferRequestExecutor;
+
+  private final AccountImportService accountImportService;
+
+  private final AccountExportService accountExportService;
+
+  private final TransferAdmission transferAdmission;
+
+  private final ClusterRing clusterRing;
+
+  private final ClusterClient clusterClient;
+
+  private final ClusterTransferCoordinator clusterTransferCoordinator;
   
   @Autowired
   public NotificationService notificationService;
 
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, TransferMetrics transferMetrics,
+      TransferAuditLog transferAuditLog, TransferRequestExecutor transferRequestExecutor,
+      AccountImportService accountImportService, AccountExportService accountExportService,
+      TransferAdmission transferAdmission, ClusterRing clusterRing, ClusterClient clusterClient,
+      ClusterTransferCoordinator clusterTransferCoordinator) {
     this.accountsService = accountsService;
+    this.transferMetrics = transferMetrics;
+    this.transferAuditLog = transferAuditLog;
+    this.transferRequestExecutor = transferRequestExecutor;
+    this.accountImportService = accountImportService;
+    this.accountExportService = accountExportService;
+    this.transferAdmission = transferAdmission;
+    this.clusterRing = clusterRing;
+    this.clusterClient = clusterClient;
+    this.clusterTransferCoordinator = clusterTransferCoordinator;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account, NativeWebRequest webRequest) {
+    if (!isLocal(webRequest, account.getAccountId())) {
+      return this.clusterClient.forward(this.clusterRing.ownerOf(account.getAccountId()), HttpMethod.POST,
+          "/v1/accounts", account);
+    }
     log.info("Creating account {}", account);
 
     try {
@@ -51,21 +123,241 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  @PostMapping(path = "/import", consumes = { "application/x-ndjson", "text/csv" })
+  public ImportSummary importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+      InputStream body) throws IOException {
+    MediaType mediaType = MediaType.parseMediaType(contentType);
+    ImportFormat format = "csv".equalsIgnoreCase(mediaType.getSubtype()) ? ImportFormat.CSV : ImportFormat.NDJSON;
+    Charset charset = mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8;
+    return this.accountImportService.importAccounts(new InputStreamReader(body, charset), format);
+  }
+
+  @GetMapping
+  public AccountPage listAccounts(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "100") int limit) {
+    return this.accountsService.listAccounts(cursor, limit);
+  }
+
+  @GetMapping(path = "/export")
+  public ResponseEntity<StreamingResponseBody> exportAccounts(@RequestParam(defaultValue = "ndjson") String format) {
+    ImportFormat exportFormat = "csv".equalsIgnoreCase(format) ? ImportFormat.CSV : ImportFormat.NDJSON;
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(exportFormat == ImportFormat.CSV ? "text/csv" : "application/x-ndjson"))
+        .body(outputStream -> this.accountExportService.exportAccounts(outputStream, exportFormat));
+  }
+
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) throws AccountInfoNotFoundException{
+  public ResponseEntity<Object> getAccount(@PathVariable String accountId, NativeWebRequest webRequest)
+      throws AccountInfoNotFoundException{
+    if (!isLocal(webRequest, accountId)) {
+      return this.clusterClient.forward(this.clusterRing.ownerOf(accountId), HttpMethod.GET, "/v1/accounts/{accountId}",
+          null, accountId);
+    }
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    return new ResponseEntity<>(this.accountsService.getAccount(accountId), HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/{accountId}/statement")
+  public ResponseEntity<Object> getStatement(@PathVariable String accountId,
+      @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "100") int limit,
+      NativeWebRequest webRequest) {
+    if (!isLocal(webRequest, accountId)) {
+      return this.clusterClient.forward(this.clusterRing.ownerOf(accountId), HttpMethod.GET,
+          "/v1/accounts/{accountId}/statement?cursor={cursor}&limit={limit}", null, accountId,
+          cursor == null ? "" : cursor, limit);
+    }
+    return new ResponseEntity<>(this.accountsService.getStatement(accountId, cursor, limit), HttpStatus.OK);
   }
   
   @PostMapping(path = "/transferAmount", consumes =  MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> transferAmount(@RequestBody @Valid AmountTransferRequest transferRequest) throws InsufficientFundsException, AccountInfoNotFoundException{
-	  log.info("transfer request of amount-"+transferRequest.getAmount()+" from "+transferRequest.getAccountFrom()+" to "+transferRequest.getAccountTo());
-	  this.accountsService.transferAmount(transferRequest);
-	  Account fromAccount = this.accountsService.getAccount(transferRequest.getAccountFrom());
-	  Account toAccount = this.accountsService.getAccount(transferRequest.getAccountTo());
-	  notificationService.notifyAboutTransfer(fromAccount, "Amount Debited - "+transferRequest.getAmount());
-	  notificationService.notifyAboutTransfer(toAccount, "Amount Credited - "+transferRequest.getAmount());
-	  return new ResponseEntity<>(HttpStatus.OK);
+  public ResponseEntity<Object> transferAmount(@RequestBody @Valid AmountTransferRequest transferRequest,
+      NativeWebRequest webRequest) throws Exception {
+    String accountFrom = transferRequest.getAccountFrom();
+    String accountTo = transferRequest.getAccountTo();
+    Supplier<ResponseEntity<Object>> handler;
+    if (!this.clusterRing.isEnabled() || this.clusterRing.isLocal(accountFrom) && this.clusterRing.isLocal(accountTo)) {
+      handler = () -> transfer(transferRequest);
+    } else if (this.clusterRing.isLocal(accountFrom)) {
+      handler = () -> transferAcrossNodes(transferRequest);
+    } else if (isForwarded(webRequest)) {
+      // the forwarding node takes this node for the owner of the payer, the rings disagree
+      handler = () -> transfer(transferRequest);
+    } else {
+      // the node of the payer makes the transfer, so that its idempotency key is looked up there
+      handler = () -> this.clusterClient.forward(this.clusterRing.ownerOf(accountFrom), HttpMethod.POST,
+          "/v1/accounts/transferAmount", transferRequest);
+    }
+    return handOff(webRequest, admitted(webRequest, accountFrom, accountTo, 1, handler));
+  }
+
+  @PostMapping(path = "/transferBatch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<TransferResult>> transferBatch(@RequestBody List<AmountTransferRequest> transferRequests,
+      @RequestParam(defaultValue = "false") boolean parallel, NativeWebRequest webRequest) throws Exception {
+    checkLocal(transferRequests);
+    return handOff(webRequest, admitted(webRequest, null, null, transferRequests.size(),
+        () -> transferLegs(transferRequests, parallel)));
+  }
+
+  private ResponseEntity<Object> transfer(AmountTransferRequest transferRequest) throws InsufficientFundsException, AccountInfoNotFoundException{
+	  long requestStart = this.transferMetrics.startTimer();
+	  try {
+	    if (this.transferAuditLog.isEnabled()) {
+	      this.transferAuditLog.record(TransferAuditEvent.TRANSFER_REQUESTED, transferRequest.getAccountFrom(),
+	          transferRequest.getAccountTo(), transferRequest.getAmount());
+	    } else {
+	      log.info("transfer request of amount-{} from {} to {}", transferRequest.getAmount(),
+	          transferRequest.getAccountFrom(), transferRequest.getAccountTo());
+	    }
+	    if (!this.accountsService.transferAmount(transferRequest)) {
+	      // a retry of a transfer already made, its owners have been notified the first time
+	      return ResponseEntity.ok().header("Idempotent-Replayed", "true").build();
+	    }
+	    Account fromAccount = this.accountsService.getAccount(transferRequest.getAccountFrom());
+	    Account toAccount = this.accountsService.getAccount(transferRequest.getAccountTo());
+	    long notificationStart = this.transferMetrics.startTimer();
+	    notificationService.notifyAboutTransfer(fromAccount, "Amount Debited - "+transferRequest.getAmount());
+	    notificationService.notifyAboutTransfer(toAccount, "Amount Credited - "+transferRequest.getAmount());
+	    this.transferMetrics.recordStage(TransferStage.NOTIFICATION, notificationStart);
+	    return new ResponseEntity<>(HttpStatus.OK);
+	  } finally {
+	    this.transferMetrics.recordStage(TransferStage.REQUEST, requestStart);
+	  }
   }  
 
+  /**
+   * @param transferRequest from an account of this node to an account of another node
+   * @return OK once the transfer has been made in two phases by the nodes of its accounts, each
+   * notifying the owner of its own, or once a retry with the idempotency key of an earlier transfer
+   * got the outcome of that transfer
+   */
+  private ResponseEntity<Object> transferAcrossNodes(AmountTransferRequest transferRequest) {
+    log.info("transfer request of amount-{} from {} to {} across nodes", transferRequest.getAmount(),
+        transferRequest.getAccountFrom(), transferRequest.getAccountTo());
+    if (!this.accountsService.transferOnce(transferRequest,
+        () -> this.clusterTransferCoordinator.transfer(transferRequest))) {
+      return ResponseEntity.ok().header("Idempotent-Replayed", "true").build();
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  /**
+   * @param transferRequests
+   * @throws InvalidTransferBatchException if a leg has an account of another node, a batch is applied
+   * by the node it is sent to only
+   */
+  private void checkLocal(List<AmountTransferRequest> transferRequests) {
+    if (!this.clusterRing.isEnabled()) {
+      return;
+    }
+    for (AmountTransferRequest transferRequest : transferRequests) {
+      for (String accountId : new String[] { transferRequest.getAccountFrom(), transferRequest.getAccountTo() }) {
+        if (accountId != null && !this.clusterRing.isLocal(accountId)) {
+          throw new InvalidTransferBatchException("Account " + accountId + " belongs to node "
+              + this.clusterRing.ownerOf(accountId) + ", a batch can only move amounts between accounts of its node");
+        }
+      }
+    }
+  }
+
+  private ResponseEntity<List<TransferResult>> transferLegs(List<AmountTransferRequest> transferRequests,
+      boolean parallel) {
+    log.info("{} batch transfer request of {} legs", parallel ? "parallel" : "locked", transferRequests.size());
+    List<TransferResult> results = parallel ? this.accountsService.transferBatchParallel(transferRequests)
+        : this.accountsService.transferBatch(transferRequests);
+    Map<String, Account> notifiedAccounts = new HashMap<>();
+    for (TransferResult result : results) {
+      if (result.getStatus() == TransferStatus.COMPLETED) {
+        Account fromAccount = notifiedAccounts.computeIfAbsent(result.getAccountFrom(), this.accountsService::getAccount);
+        Account toAccount = notifiedAccounts.computeIfAbsent(result.getAccountTo(), this.accountsService::getAccount);
+        notificationService.notifyAboutTransfer(fromAccount, "Amount Debited - " + result.getAmount());
+        notificationService.notifyAboutTransfer(toAccount, "Amount Credited - " + result.getAmount());
+      }
+    }
+    return new ResponseEntity<>(results, HttpStatus.OK);
+  }
+
+  /**
+   * @param webRequest
+   * @param accountFrom null for a batch
+   * @param accountTo
+   * @param transfers
+   * @param handler
+   * @return the handler, holding its slot of the admission control until it returns, as it is for a
+   * request forwarded by another node, which admitted it already
+   * @throws TransferRateLimitedException right away if the request is over a limit
+   */
+  private <T> Supplier<T> admitted(NativeWebRequest webRequest, String accountFrom, String accountTo, int transfers,
+      Supplier<T> handler) {
+    if (isForwarded(webRequest)) {
+      return handler;
+    }
+    String clientId = webRequest.getHeader("X-Client-Id");
+    if (clientId == null || clientId.isEmpty()) {
+      HttpServletRequest servletRequest = webRequest.getNativeRequest(HttpServletRequest.class);
+      clientId = servletRequest != null ? servletRequest.getRemoteAddr() : null;
+    }
+    long admittedAt = this.transferAdmission.admit(clientId, accountFrom, accountTo, transfers);
+    return () -> {
+      try {
+        return handler.get();
+      } finally {
+        this.transferAdmission.complete(admittedAt);
+      }
+    };
+  }
+
+  /**
+   * @param webRequest
+   * @param accountIds
+   * @return true if every account belongs to this node, or the request was forwarded by the node
+   * the client reached, which is served wherever it lands
+   */
+  private boolean isLocal(NativeWebRequest webRequest, String... accountIds) {
+    if (!this.clusterRing.isEnabled() || isForwarded(webRequest)) {
+      return true;
+    }
+    for (String accountId : accountIds) {
+      if (accountId != null && !this.clusterRing.isLocal(accountId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param webRequest
+   * @return true if the request was forwarded by another node of the cluster, carrying the secret
+   * the nodes share
+   */
+  private boolean isForwarded(NativeWebRequest webRequest) {
+    return webRequest.getHeader(ClusterClient.FORWARDED_HEADER) != null
+        && this.clusterRing.isTrustedPeer(webRequest.getHeader(ClusterClient.SECRET_HEADER));
+  }
+
+  /**
+   * @param webRequest
+   * @param handler
+   * @return response of the handler in the blocking mode, null once the handler is handed to a
+   * request worker, its response or exception is then written by an async dispatch of the request
+   */
+  private <T> T handOff(NativeWebRequest webRequest, Supplier<T> handler) throws Exception {
+    if (!this.transferRequestExecutor.isAsync()) {
+      return handler.get();
+    }
+    DeferredResult<T> deferredResult = new DeferredResult<>(this.transferRequestExecutor.getTimeoutMillis());
+    WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferredResult);
+    Runnable task = () -> {
+      try {
+        deferredResult.setResult(handler.get());
+      } catch (RuntimeException | Error exception) {
+        deferredResult.setErrorResult(exception);
+      }
+    };
+    if (!this.transferRequestExecutor.tryExecute(task)) {
+      // every worker slot is taken, the container thread makes the transfer itself
+      task.run();
+    }
+    return null;
+  }
+
 }
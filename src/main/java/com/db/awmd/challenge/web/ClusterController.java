@@ -0,0 +1,110 @@
+package com.db.awmd.challenge.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.ClusterPrepareRequest;
+import com.db.awmd.challenge.domain.ClusterTransferOutcome;
+import com.db.awmd.challenge.exception.ClusterAccessDeniedException;
+import com.db.awmd.challenge.exception.ClusterTransferConflictException;
+import com.db.awmd.challenge.service.ClusterClient;
+import com.db.awmd.challenge.service.ClusterParticipant;
+import com.db.awmd.challenge.service.ClusterRing;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Endpoints the nodes of a cluster call on each other for the legs of transfers across nodes, only
+ * mapped with the cluster enabled and only serving requests carrying the secret the nodes share
+ */
+@RestController
+@RequestMapping("/v1/cluster")
+@ConditionalOnProperty(prefix = "accounts.cluster", name = "enabled", havingValue = "true")
+@Slf4j
+public class ClusterController {
+
+  private final ClusterRing clusterRing;
+
+  private final ClusterParticipant clusterParticipant;
+
+  @Autowired
+  public ClusterController(ClusterRing clusterRing, ClusterParticipant clusterParticipant) {
+    this.clusterRing = clusterRing;
+    this.clusterParticipant = clusterParticipant;
+  }
+
+  @PostMapping(path = "/transfers/{transferId}/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> prepare(@PathVariable String transferId,
+      @RequestBody ClusterPrepareRequest prepareRequest,
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    this.clusterParticipant.prepare(transferId, prepareRequest);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping(path = "/transfers/{transferId}/commit")
+  public ResponseEntity<Object> commit(@PathVariable String transferId,
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    if (!this.clusterParticipant.commit(transferId)) {
+      throw new ClusterTransferConflictException("Transfer " + transferId + " is not prepared");
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping(path = "/transfers/{transferId}/abort")
+  public ResponseEntity<Object> abort(@PathVariable String transferId,
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    log.info("aborting transfer {}", transferId);
+    this.clusterParticipant.abort(transferId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/transfers/{transferId}/outcome")
+  public ClusterTransferOutcome outcome(@PathVariable String transferId,
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    return this.clusterParticipant.outcome(transferId);
+  }
+
+  @PostMapping(path = "/transfers/{transferId}/forget")
+  public ResponseEntity<Object> forget(@PathVariable String transferId,
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    this.clusterParticipant.forget(transferId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/nodes")
+  public Map<String, Object> getNodes(
+      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    checkPeer(secret);
+    Map<String, Object> nodes = new LinkedHashMap<>();
+    nodes.put("enabled", this.clusterRing.isEnabled());
+    nodes.put("self", this.clusterRing.getSelf());
+    nodes.put("nodes", this.clusterRing.getNodes());
+    nodes.put("preparedTransfers", this.clusterParticipant.getPreparedCount());
+    nodes.put("committedTransfers", this.clusterParticipant.getCommittedCount());
+    return nodes;
+  }
+
+  private void checkPeer(String secret) {
+    if (!this.clusterRing.isTrustedPeer(secret)) {
+      throw new ClusterAccessDeniedException("Request is not from a node of the cluster");
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.db.awmd.challenge.web;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.LatencySummary;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.domain.NotificationStats;
+import com.db.awmd.challenge.domain.TransferStage;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.AccountLockManager;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.HotAccounts;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.ScheduledTransferService;
+import com.db.awmd.challenge.service.TransferAdmission;
+import com.db.awmd.challenge.service.TransferLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+  private final TransferMetrics transferMetrics;
+
+  private final AsyncNotificationService notificationService;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final AccountLockManager accountLockManager;
+
+  private final HotAccounts hotAccounts;
+
+  private final TransferLedger transferLedger;
+
+  private final ScheduledTransferService scheduledTransferService;
+
+  private final TransferAdmission transferAdmission;
+
+  @Autowired
+  public MetricsController(TransferMetrics transferMetrics, AsyncNotificationService notificationService,
+      IdempotencyCache idempotencyCache, AccountLockManager accountLockManager, HotAccounts hotAccounts,
+      TransferLedger transferLedger, ScheduledTransferService scheduledTransferService,
+      TransferAdmission transferAdmission) {
+    this.transferMetrics = transferMetrics;
+    this.notificationService = notificationService;
+    this.idempotencyCache = idempotencyCache;
+    this.accountLockManager = accountLockManager;
+    this.hotAccounts = hotAccounts;
+    this.transferLedger = transferLedger;
+    this.scheduledTransferService = scheduledTransferService;
+    this.transferAdmission = transferAdmission;
+  }
+
+  @GetMapping
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("stages", this.transferMetrics.getStages());
+    metrics.put("outcomes", this.transferMetrics.getOutcomes());
+    metrics.put("notifications", this.notificationService.getStats());
+    metrics.put("idempotentReplays", this.idempotencyCache.getReplays());
+    metrics.put("lockContention", this.accountLockManager.getContention(10));
+    metrics.put("hotAccounts", this.hotAccounts.getHotAccountIds());
+    metrics.put("ledgerEntries", this.transferLedger.size());
+    metrics.put("scheduledTransfersPending", this.scheduledTransferService.pendingCount());
+    metrics.put("admission", this.transferAdmission.getStats());
+    return metrics;
+  }
+
+  /**
+   * @param limit
+   * @return accounts transfers waited for the longest to lock
+   */
+  @GetMapping("/locks")
+  public List<LockContention> getLockContention(@RequestParam(defaultValue = "10") int limit) {
+    return this.accountLockManager.getContention(limit);
+  }
+
+  /**
+   * @return the same metrics in the Prometheus text exposition format, for scrapers
+   */
+  @GetMapping(path = "/prometheus", produces = MediaType.TEXT_PLAIN_VALUE)
+  public String getPrometheusMetrics() {
+    StringBuilder text = new StringBuilder(4096);
+    text.append("# TYPE transfer_stage_latency_microseconds summary\n");
+    for (Map.Entry<TransferStage, LatencySummary> stage : this.transferMetrics.getStages().entrySet()) {
+      String name = stage.getKey().name().toLowerCase(Locale.ROOT);
+      LatencySummary summary = stage.getValue();
+      quantile(text, name, "0.5", summary.getP50Micros());
+      quantile(text, name, "0.9", summary.getP90Micros());
+      quantile(text, name, "0.99", summary.getP99Micros());
+      quantile(text, name, "0.999", summary.getP999Micros());
+      text.append("transfer_stage_latency_microseconds_sum{stage=\"").append(name).append("\"} ")
+          .append(summary.getMeanMicros() * summary.getCount()).append('\n');
+      text.append("transfer_stage_latency_microseconds_count{stage=\"").append(name).append("\"} ")
+          .append(summary.getCount()).append('\n');
+    }
+    text.append("# TYPE transfer_outcomes_total counter\n");
+    for (Map.Entry<TransferStatus, Long> outcome : this.transferMetrics.getOutcomes().entrySet()) {
+      text.append("transfer_outcomes_total{status=\"").append(outcome.getKey().name().toLowerCase(Locale.ROOT))
+          .append("\"} ").append(outcome.getValue()).append('\n');
+    }
+    NotificationStats notifications = this.notificationService.getStats();
+    text.append("# TYPE notification_queue_depth gauge\n")
+        .append("notification_queue_depth ").append(notifications.getQueueDepth()).append('\n')
+        .append("# TYPE notification_spill_depth gauge\n")
+        .append("notification_spill_depth ").append(notifications.getSpillDepth()).append('\n')
+        .append("# TYPE notification_dispatch_lag_milliseconds gauge\n")
+        .append("notification_dispatch_lag_milliseconds ").append(notifications.getLastLagMillis()).append('\n')
+        .append("# TYPE notifications_dispatched_total counter\n")
+        .append("notifications_dispatched_total ").append(notifications.getDispatched()).append('\n')
+        .append("# TYPE notifications_dropped_total counter\n")
+        .append("notifications_dropped_total ").append(notifications.getDropped()).append('\n')
+        .append("# TYPE idempotent_replays_total counter\n")
+        .append("idempotent_replays_total ").append(this.idempotencyCache.getReplays()).append('\n');
+    return text.toString();
+  }
+
+  private static void quantile(StringBuilder text, String stage, String quantile, double micros) {
+    text.append("transfer_stage_latency_microseconds{stage=\"").append(stage).append("\",quantile=\"")
+        .append(quantile).append("\"} ").append(micros).append('\n');
+  }
+
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.NotificationStats;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+
+@RestController
+@RequestMapping("/v1/notifications")
+public class NotificationsController {
+
+  private final AsyncNotificationService notificationService;
+
+  @Autowired
+  public NotificationsController(AsyncNotificationService notificationService) {
+    this.notificationService = notificationService;
+  }
+
+  @GetMapping(path = "/stats")
+  public NotificationStats getStats() {
+    return this.notificationService.getStats();
+  }
+
+}
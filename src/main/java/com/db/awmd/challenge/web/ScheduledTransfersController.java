@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.web;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransferPage;
+import com.db.awmd.challenge.service.ScheduledTransferService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/v1/scheduledTransfers")
+@Slf4j
+public class ScheduledTransfersController {
+
+  private final ScheduledTransferService scheduledTransferService;
+
+  @Autowired
+  public ScheduledTransfersController(ScheduledTransferService scheduledTransferService) {
+    this.scheduledTransferService = scheduledTransferService;
+  }
+
+  /**
+   * @param transferRequest
+   * @param executeAt time the transfer is due, in milliseconds since the epoch
+   * @return the scheduled transfer, its id cancels it
+   */
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ScheduledTransfer> scheduleTransfer(@RequestBody @Valid AmountTransferRequest transferRequest,
+      @RequestParam long executeAt) {
+    log.info("scheduling transfer of amount-{} from {} to {} at {}", transferRequest.getAmount(),
+        transferRequest.getAccountFrom(), transferRequest.getAccountTo(), executeAt);
+    return new ResponseEntity<>(this.scheduledTransferService.schedule(transferRequest, executeAt), HttpStatus.CREATED);
+  }
+
+  @GetMapping
+  public ScheduledTransferPage listScheduledTransfers(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "100") int limit) {
+    return this.scheduledTransferService.listPending(cursor, limit);
+  }
+
+  @DeleteMapping(path = "/{id}")
+  public ScheduledTransfer cancelScheduledTransfer(@PathVariable long id) {
+    log.info("cancelling scheduled transfer {}", id);
+    return this.scheduledTransferService.cancel(id);
+  }
+}
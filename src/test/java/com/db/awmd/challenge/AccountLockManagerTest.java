@@ -0,0 +1,74 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.service.AccountLockManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class AccountLockManagerTest {
+
+	@Test
+	public void idsDifferingInCaseNeverDeadlock() throws Exception {
+		AccountLockManager lockManager = new AccountLockManager(new AccountsProperties());
+		AtomicInteger moves = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			boolean forward = t % 2 == 0;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					lockManager.lockBoth(forward ? "abc" : "ABC", forward ? "ABC" : "abc", moves::incrementAndGet);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join(30_000);
+			assertThat(thread.isAlive()).isFalse();
+		}
+		assertThat(moves.get()).isEqualTo(40000);
+	}
+
+	@Test
+	public void timesOutAndReportsTheWait() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getLocking().setTimeoutMillis(50);
+		AccountLockManager lockManager = new AccountLockManager(accountsProperties);
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> lockManager.lockBoth("Id-1", "Id-2", () -> {
+			held.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		holder.start();
+		held.await();
+		try {
+			lockManager.lockAll(Arrays.asList("Id-0", "Id-2"), () -> fail("Id-2 is held by another thread"));
+			fail("Should have timed out waiting for Id-2");
+		} catch (AccountLockTimeoutException exception) {
+			assertThat(exception.getMessage()).contains("Id-2");
+		} finally {
+			release.countDown();
+			holder.join();
+		}
+
+		List<LockContention> contention = lockManager.getContention(10);
+		assertThat(contention).extracting(LockContention::getAccountId).containsExactly("Id-2");
+		assertThat(contention.get(0).getTimeouts()).isEqualTo(1);
+		assertThat(contention.get(0).getMaxWaitMillis()).isGreaterThanOrEqualTo(40);
+		AtomicInteger runs = new AtomicInteger();
+		lockManager.lockAll(Arrays.asList("Id-0", "Id-2"), runs::incrementAndGet);
+		assertThat(runs.get()).isEqualTo(1);
+	}
+}
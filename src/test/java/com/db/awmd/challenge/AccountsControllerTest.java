@@ -1,13 +1,18 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
 import com.db.awmd.challenge.service.AccountsService;
 import java.math.BigDecimal;
 import org.junit.Before;
@@ -19,6 +24,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @RunWith(SpringRunner.class)
@@ -102,6 +108,14 @@ public class AccountsControllerTest {
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
   
+  @Test
+  public void getUnknownAccountAnswersThePreSerializedError() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-unknown"))
+      .andExpect(status().isNotFound())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(content().string("{\"status\":\"NOT_FOUND\",\"message\":\"This Account does not exist\"}"));
+  }
+
   @Test
   public void transferAmountEmptyPayerAccount() throws Exception{
 	  this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
@@ -135,4 +149,131 @@ public class AccountsControllerTest {
 	  this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
 		      .content("{\"accountFrom\":\"Id-124\",\"accountTo\":\"Id-123\",\"amount\":1000}")).andExpect(status().is2xxSuccessful());
   }
+
+  @Test
+  public void transferBatch() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":1000}"));
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-124\",\"balance\":0}"));
+    this.mockMvc.perform(post("/v1/accounts/transferBatch").contentType(MediaType.APPLICATION_JSON)
+      .content("[{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-124\",\"amount\":700},"
+        + "{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-124\",\"amount\":700}]"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+      .andExpect(jsonPath("$[1].status").value("INSUFFICIENT_FUNDS"));
+
+    assertThat(accountsService.getAccount("Id-124").getBalance()).isEqualByComparingTo("700");
+  }
+
+  @Test
+  public void transferBatchNoBody() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferBatch").contentType(MediaType.APPLICATION_JSON))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void transferMetrics() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":1000}"));
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-124\",\"balance\":0}"));
+    this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-124\",\"amount\":100}"));
+    this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-124\",\"accountTo\":\"Id-123\",\"amount\":500}"));
+
+    this.mockMvc.perform(get("/v1/metrics"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.stages.REQUEST.count").value(greaterThan(1)))
+      .andExpect(jsonPath("$.stages.LOCK_WAIT.count").value(greaterThan(0)))
+      .andExpect(jsonPath("$.stages.NOTIFICATION.count").value(greaterThan(0)))
+      .andExpect(jsonPath("$.outcomes.COMPLETED").value(greaterThan(0)))
+      .andExpect(jsonPath("$.outcomes.INSUFFICIENT_FUNDS").value(greaterThan(0)));
+    this.mockMvc.perform(get("/v1/metrics/prometheus"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("transfer_stage_latency_microseconds_count{stage=\"request\"}")));
+  }
+
+  @Test
+  public void importAccountsReportsRejectedLines() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":1000}"));
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson")
+      .content("{\"accountId\":\"Id-200\",\"balance\":10}\n"
+        + "{\"accountId\":\"Id-123\",\"balance\":5}\n"
+        + "{\"accountId\":\"Id-201\",\"balance\":-1}\n"
+        + "{\"accountId\":\"Id-202\",\"balance\":20.5}\n"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.lines").value(4))
+      .andExpect(jsonPath("$.created").value(2))
+      .andExpect(jsonPath("$.errors[0].line").value(2))
+      .andExpect(jsonPath("$.errors[0].error").value("DuplicateAccountIdException"))
+      .andExpect(jsonPath("$.errors[1].line").value(3));
+
+    assertThat(accountsService.getAccount("Id-202").getBalance()).isEqualByComparingTo("20.5");
+  }
+
+  @Test
+  public void importAccountsFromCsv() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+      .content("accountId,balance\nId-300,10\n\"Id,301\",0.25\n"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.created").value(2));
+
+    assertThat(accountsService.getAccount("Id,301").getBalance()).isEqualByComparingTo("0.25");
+  }
+
+  @Test
+  public void listAccountsFollowsTheCursor() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+    this.mockMvc.perform(get("/v1/accounts?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts[0].accountId").value("Id-0"))
+      .andExpect(jsonPath("$.accounts[1].accountId").value("Id-1"))
+      .andExpect(jsonPath("$.nextCursor").value("2"));
+    this.mockMvc.perform(get("/v1/accounts?limit=2&cursor=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts[0].accountId").value("Id-2"))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    this.mockMvc.perform(get("/v1/accounts?cursor=abc")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void statementListsTheLatestTransfersFirst() throws Exception {
+    // the ledger outlives clearAccounts, ids of other tests would bring their transfers along
+    accountsService.createAccount(new Account("Id-statement-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-statement-2", new BigDecimal(100)));
+    accountsService.transferAmount(new AmountTransferRequest("Id-statement-1", "Id-statement-2", new BigDecimal("10.50")));
+    accountsService.transferAmount(new AmountTransferRequest("Id-statement-2", "Id-statement-1", new BigDecimal(3)));
+    String cursor = accountsService.getStatement("Id-statement-1", null, 1).getNextCursor();
+
+    this.mockMvc.perform(get("/v1/accounts/Id-statement-1/statement?limit=1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries[0].accountFrom").value("Id-statement-2"))
+      .andExpect(jsonPath("$.entries[0].amount").value(3))
+      .andExpect(jsonPath("$.nextCursor").value(cursor));
+    this.mockMvc.perform(get("/v1/accounts/Id-statement-1/statement?limit=1&cursor=" + cursor))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries[0].accountTo").value("Id-statement-2"))
+      .andExpect(jsonPath("$.entries[0].amount").value(10.5))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    this.mockMvc.perform(get("/v1/accounts/Id-unknown/statement")).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/accounts/Id-statement-1/statement?cursor=abc")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void exportAccountsStreamsNdjson() throws Exception {
+    accountsService.createAccount(new Account("Id-123", new BigDecimal("10.5")));
+    accountsService.createAccount(new Account("Id-124", BigDecimal.ZERO));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/export")).andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":10.5}\n"
+        + "{\"accountId\":\"Id-124\",\"balance\":0}\n"));
+  }
 }
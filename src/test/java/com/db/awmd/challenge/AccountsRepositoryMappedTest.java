@@ -0,0 +1,90 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceEngine;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountsRepositoryMappedTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reopensWithTheBalancesInPlace() throws IOException {
+		AccountsProperties accountsProperties = properties(2);
+		AccountsRepositoryMapped repository = new AccountsRepositoryMapped(accountsProperties);
+		// more accounts than a mapped segment holds
+		for (int i = 0; i < 70000; i++) {
+			repository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+		}
+		repository.getAccount("Id-1").withdraw(new BigDecimal("0.25"));
+		repository.createAccount(new Account("Id-\u00e9", new BigDecimal("10.50")));
+		repository.getAccount("Id-\u00e9").deposit(new BigDecimal("0.25"));
+		repository.close();
+
+		AccountsRepositoryMapped reopened = new AccountsRepositoryMapped(accountsProperties);
+
+		assertThat(reopened.size()).isEqualTo(70001);
+		assertThat(reopened.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal("0.75"));
+		assertThat(reopened.getAccount("Id-69999").getBalance()).isEqualByComparingTo("69999");
+		assertThat(reopened.getAccount("Id-\u00e9").getBalance()).isEqualTo(new BigDecimal("10.75"));
+		List<Account> last = new ArrayList<>();
+		reopened.scanAccounts(69999, 10, last::add);
+		assertThat(last).extracting(Account::getAccountId).containsExactly("Id-69999", "Id-\u00e9");
+		try {
+			reopened.createAccount(new Account("Id-0"));
+			fail("Id-0 should still exist");
+		} catch (DuplicateAccountIdException exception) {
+			assertThat(exception.getMessage()).contains("Id-0");
+		}
+		reopened.close();
+	}
+
+	@Test
+	public void rejectsIdsLongerThanTheRecordHolds() throws IOException {
+		AccountsRepositoryMapped repository = new AccountsRepositoryMapped(properties(2));
+		// 46 bytes and a two-byte character fill the 48 bytes of the record
+		String longest = new String(new char[46]).replace('\0', 'x') + "\u00e9";
+		repository.createAccount(new Account(longest, BigDecimal.TEN));
+		assertThat(repository.getAccount(longest).getBalance()).isEqualByComparingTo("10");
+		try {
+			repository.createAccount(new Account(longest + "x", BigDecimal.TEN));
+			fail("An id of 49 bytes should be rejected");
+		} catch (InvalidAccountIdException exception) {
+			assertThat(repository.size()).isEqualTo(1);
+		}
+		repository.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsAFileKeptWithAnotherScale() throws IOException {
+		new AccountsRepositoryMapped(properties(2)).close();
+		new AccountsRepositoryMapped(properties(4));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void needsTheScaledLongEngine() throws IOException {
+		new AccountsRepositoryMapped(new AccountsProperties());
+	}
+
+	private AccountsProperties properties(int balanceScale) {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.setBalanceEngine(BalanceEngine.SCALED_LONG);
+		accountsProperties.setBalanceScale(balanceScale);
+		accountsProperties.getMapped().setPath(this.folder.getRoot().toPath().resolve("accounts.mapped").toString());
+		return accountsProperties;
+	}
+}
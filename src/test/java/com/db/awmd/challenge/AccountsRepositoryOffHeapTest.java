@@ -0,0 +1,106 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceEngine;
+import com.db.awmd.challenge.exception.AccountInfoNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Test;
+
+public class AccountsRepositoryOffHeapTest {
+
+	@Test
+	public void growsPastTheExpectedAccounts() {
+		AccountsRepositoryOffHeap repository = repository(16);
+		for (int i = 0; i < 5000; i++) {
+			repository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+		}
+
+		assertThat(repository.size()).isEqualTo(5000);
+		for (int i = 0; i < 5000; i++) {
+			assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(new BigDecimal(i));
+		}
+	}
+
+	@Test
+	public void viewsOfAnAccountShareItsBalance() {
+		AccountsRepositoryOffHeap repository = repository(16);
+		repository.createAccount(new Account("Id-\u00e9", new BigDecimal("10.50")));
+
+		repository.getAccount("Id-\u00e9").withdraw(new BigDecimal("0.25"));
+
+		assertThat(repository.getAccount("Id-\u00e9").getBalance()).isEqualTo(new BigDecimal("10.25"));
+		assertThat(repository.getAccount("Id-\u00e9").tryWithdraw(new BigDecimal("11"))).isFalse();
+	}
+
+	@Test(expected = DuplicateAccountIdException.class)
+	public void rejectsDuplicateIds() {
+		AccountsRepositoryOffHeap repository = repository(16);
+		repository.createAccount(new Account("Id-1"));
+		repository.createAccount(new Account("Id-1"));
+	}
+
+	@Test(expected = AccountInfoNotFoundException.class)
+	public void clearRemovesEveryAccount() {
+		AccountsRepositoryOffHeap repository = repository(16);
+		repository.createAccount(new Account("Id-1"));
+		repository.clearAccounts();
+		repository.getAccount("Id-1");
+	}
+
+	@Test
+	public void concurrentCreationsAndTransfersKeepTheTotal() throws Exception {
+		AccountsRepositoryOffHeap repository = repository(16);
+		for (int i = 0; i < 100; i++) {
+			repository.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+		}
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int thread = t;
+			threads.add(new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < 20000; i++) {
+					if (i % 20 == 0) {
+						// grows the index while the other threads look accounts up
+						repository.createAccount(new Account("Extra-" + thread + "-" + i));
+					}
+					Account from = repository.getAccount("Id-" + random.nextInt(100));
+					Account to = repository.getAccount("Id-" + random.nextInt(100));
+					if (from.tryWithdraw(BigDecimal.ONE)) {
+						to.deposit(BigDecimal.ONE);
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < 100; i++) {
+			total = total.add(repository.getAccount("Id-" + i).getBalance());
+		}
+		assertThat(total).isEqualByComparingTo(new BigDecimal(10000));
+		assertThat(repository.size()).isEqualTo(100 + 4 * 1000);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void needsTheScaledLongEngine() {
+		new AccountsRepositoryOffHeap(new AccountsProperties());
+	}
+
+	private static AccountsRepositoryOffHeap repository(int expectedAccounts) {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.setBalanceEngine(BalanceEngine.SCALED_LONG);
+		accountsProperties.getOffHeap().setExpectedAccounts(expectedAccounts);
+		return new AccountsRepositoryOffHeap(accountsProperties);
+	}
+}
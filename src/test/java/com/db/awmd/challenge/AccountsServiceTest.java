@@ -5,10 +5,19 @@ import static org.junit.Assert.fail;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.db.awmd.challenge.service.AccountsService;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,6 +90,30 @@ public class AccountsServiceTest {
 
 	}
 
+	@Test
+	public void transferAmount_retryWithIdempotencyKeyMovesAmountOnce() throws Exception {
+		String idFrom = "Id5-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idFrom, new BigDecimal(1000)));
+		String idTo = "Id6-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idTo));
+		String idempotencyKey = "key-" + idFrom;
+
+		assertThat(this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(300),
+				idempotencyKey))).isTrue();
+		assertThat(this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(300),
+				idempotencyKey))).isFalse();
+
+		assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualByComparingTo("700");
+		assertThat(this.accountsService.getAccount(idTo).getBalance()).isEqualByComparingTo("300");
+		try {
+			this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(400),
+					idempotencyKey));
+			fail("Should have failed when an idempotency key is reused for another transfer");
+		} catch (IdempotencyKeyReusedException ex) {
+			assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualByComparingTo("700");
+		}
+	}
+
 	@Test
 	public void transferAmount_concurrencyCheck() throws Exception {
 		
@@ -170,5 +203,94 @@ public class AccountsServiceTest {
 		this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(1000)));
 		assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualTo(new BigDecimal(1000));
 	}
+
+	@Test
+	public void getAccount_neverSeesAnUpdateInFlight() throws Exception {
+		this.accountsService.createAccount(new Account("Id-030", new BigDecimal(1000)));
+		Account account = this.accountsService.getAccountsRepository().getAccount("Id-030");
+		account.beginBalanceUpdate();
+		account.withdraw(new BigDecimal(100));
+		AtomicReference<BigDecimal> read = new AtomicReference<>();
+		Thread reader = new Thread(() -> read.set(this.accountsService.getAccount("Id-030").getBalance()));
+		reader.start();
+		reader.join(100);
+		assertThat(reader.isAlive()).isTrue();
+
+		// the debit is handed back, as when the payee can not be credited
+		account.deposit(new BigDecimal(100));
+		account.endBalanceUpdate();
+		reader.join(10_000);
+		assertThat(read.get()).isEqualTo(new BigDecimal(1000));
+	}
+
+	@Test
+	public void transferBatch() throws Exception {
+		String suffix = "-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account("IdB1" + suffix, new BigDecimal(1000)));
+		this.accountsService.createAccount(new Account("IdB2" + suffix));
+		this.accountsService.createAccount(new Account("IdB3" + suffix));
+
+		List<TransferResult> results = this.accountsService.transferBatch(Arrays.asList(
+				new AmountTransferRequest("IdB1" + suffix, "IdB2" + suffix, new BigDecimal(600)),
+				new AmountTransferRequest("IdB1" + suffix, "IdB3" + suffix, new BigDecimal(600)),
+				new AmountTransferRequest("IdB2" + suffix, "IdB3" + suffix, new BigDecimal(100)),
+				new AmountTransferRequest("IdB1" + suffix, "IdB9" + suffix, new BigDecimal(1)),
+				new AmountTransferRequest("IdB1" + suffix, "IdB2" + suffix, new BigDecimal(-1))));
+
+		assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferStatus.COMPLETED,
+				TransferStatus.INSUFFICIENT_FUNDS, TransferStatus.COMPLETED, TransferStatus.ACCOUNT_NOT_FOUND,
+				TransferStatus.REJECTED);
+		assertThat(this.accountsService.getAccount("IdB1" + suffix).getBalance()).isEqualTo(new BigDecimal(400));
+		assertThat(this.accountsService.getAccount("IdB2" + suffix).getBalance()).isEqualTo(new BigDecimal(500));
+		assertThat(this.accountsService.getAccount("IdB3" + suffix).getBalance()).isEqualTo(new BigDecimal(100));
+	}
+
+	@Test
+	public void transferBatchParallel_matchesSerialBatch() throws Exception {
+		String suffix = "-" + System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			this.accountsService.createAccount(new Account("IdS" + i + suffix, new BigDecimal(100)));
+			this.accountsService.createAccount(new Account("IdP" + i + suffix, new BigDecimal(100)));
+		}
+		Random random = new Random(42);
+		List<AmountTransferRequest> serialLegs = new ArrayList<>();
+		List<AmountTransferRequest> parallelLegs = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			int from = random.nextInt(10);
+			int to = random.nextInt(10);
+			BigDecimal amount = new BigDecimal(1 + random.nextInt(60));
+			serialLegs.add(new AmountTransferRequest("IdS" + from + suffix, "IdS" + to + suffix, amount));
+			parallelLegs.add(new AmountTransferRequest("IdP" + from + suffix, "IdP" + to + suffix, amount));
+		}
+
+		List<TransferResult> serialResults = this.accountsService.transferBatch(serialLegs);
+		List<TransferResult> parallelResults = this.accountsService.transferBatchParallel(parallelLegs);
+
+		assertThat(parallelResults).extracting(TransferResult::getStatus)
+				.containsExactlyElementsOf(serialResults.stream().map(TransferResult::getStatus).collect(Collectors.toList()));
+		for (int i = 0; i < 10; i++) {
+			assertThat(this.accountsService.getAccount("IdP" + i + suffix).getBalance())
+					.isEqualTo(this.accountsService.getAccount("IdS" + i + suffix).getBalance());
+		}
+	}
+
+	@Test
+	public void transferBatch_concurrentWithOppositeTransfers() throws Exception {
+		this.accountsService.createAccount(new Account("Id-020", new BigDecimal(1000)));
+		this.accountsService.createAccount(new Account("Id-021", new BigDecimal(1000)));
+
+		Runnable batch = () -> this.accountsService.transferBatch(Arrays.asList(
+				new AmountTransferRequest("Id-020", "Id-021", new BigDecimal(100)),
+				new AmountTransferRequest("Id-020", "Id-021", new BigDecimal(100))));
+		Runnable single = () -> this.accountsService
+				.transferAmount(new AmountTransferRequest("Id-021", "Id-020", new BigDecimal(300)));
+
+		Thread t1 = new Thread(batch);
+		Thread t2 = new Thread(single);
+		t1.start(); t2.start();
+		t1.join(); t2.join();
+		assertThat(this.accountsService.getAccount("Id-020").getBalance()).isEqualTo(new BigDecimal(1100));
+		assertThat(this.accountsService.getAccount("Id-021").getBalance()).isEqualTo(new BigDecimal(900));
+	}
 	
 }
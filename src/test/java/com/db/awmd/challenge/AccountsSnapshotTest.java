@@ -0,0 +1,135 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountsSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AccountsProperties accountsProperties;
+
+	@Before
+	public void prepareProperties() {
+		this.accountsProperties = new AccountsProperties();
+		this.accountsProperties.getJournal().setEnabled(true);
+		this.accountsProperties.getJournal().setPath(new File(this.folder.getRoot(), "accounts.journal").getPath());
+		this.accountsProperties.getSnapshot().setEnabled(true);
+		this.accountsProperties.getSnapshot().setDirectory(new File(this.folder.getRoot(), "snapshots").getPath());
+		this.accountsProperties.getSnapshot().setIntervalSeconds(0);
+	}
+
+	@Test
+	public void restoresSnapshotAndJournalTail() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(this.accountsProperties);
+		repository.createAccount(new Account("Id-1", new BigDecimal(1000)));
+		repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+		move(repository, "Id-1", "Id-2", new BigDecimal(300));
+		repository.writeSnapshot();
+		move(repository, "Id-2", "Id-1", new BigDecimal(100));
+		repository.createAccount(new Account("Id-3", new BigDecimal(50)));
+		repository.sync();
+		repository.closeJournal();
+
+		AccountsRepositoryInMemory restarted = new AccountsRepositoryInMemory(this.accountsProperties);
+		assertThat(restarted.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(800));
+		assertThat(restarted.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(200));
+		assertThat(restarted.getAccount("Id-3").getBalance()).isEqualTo(new BigDecimal(50));
+		restarted.closeJournal();
+	}
+
+	@Test
+	public void olderRetainedSnapshotKeepsItsJournal() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(this.accountsProperties);
+		repository.createAccount(new Account("Id-1", new BigDecimal(1000)));
+		repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+		for (int i = 0; i < 3; i++) {
+			move(repository, "Id-1", "Id-2", new BigDecimal(100));
+			repository.writeSnapshot();
+		}
+		move(repository, "Id-1", "Id-2", new BigDecimal(100));
+		repository.closeJournal();
+		// the newest snapshot is lost, the older one kept is restored with the journal after it
+		File[] snapshots = new File(this.folder.getRoot(), "snapshots").listFiles();
+		assertThat(snapshots).hasSize(2);
+		Arrays.sort(snapshots);
+		assertThat(snapshots[1].delete()).isTrue();
+
+		AccountsRepositoryInMemory restarted = new AccountsRepositoryInMemory(this.accountsProperties);
+		assertThat(restarted.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(600));
+		assertThat(restarted.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(400));
+		restarted.closeJournal();
+	}
+
+	@Test
+	public void snapshotTakenDuringTransfersIsConsistent() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(this.accountsProperties);
+		int accounts = 50;
+		for (int i = 0; i < accounts; i++) {
+			repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int offset = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; running.get(); i++) {
+					move(repository, "Id-" + ((offset + i) % accounts), "Id-" + ((offset + 7 * i + 1) % accounts),
+							BigDecimal.ONE);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (int i = 0; i < 5; i++) {
+			repository.writeSnapshot();
+		}
+		running.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		repository.sync();
+		repository.closeJournal();
+
+		AccountsRepositoryInMemory restarted = new AccountsRepositoryInMemory(this.accountsProperties);
+		for (int i = 0; i < accounts; i++) {
+			assertThat(restarted.getAccount("Id-" + i).getBalance())
+					.isEqualByComparingTo(repository.getAccount("Id-" + i).getBalance());
+		}
+		restarted.closeJournal();
+	}
+
+	/**
+	 * moves an amount the way AccountsService does with snapshots enabled: every balance change is
+	 * recorded while the account monitor is held
+	 */
+	private static void move(AccountsRepositoryInMemory repository, String accountFromId, String accountToId,
+			BigDecimal amount) {
+		Account accountFrom = repository.getAccount(accountFromId);
+		Account accountTo = repository.getAccount(accountToId);
+		synchronized (accountFrom) {
+			if (!accountFrom.tryWithdraw(amount)) {
+				return;
+			}
+			repository.recordWithdrawal(accountFrom, amount);
+		}
+		synchronized (accountTo) {
+			accountTo.deposit(amount);
+			repository.recordDeposit(accountTo, amount);
+		}
+		repository.sync();
+	}
+}
@@ -0,0 +1,131 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.NotificationOverflowPolicy;
+import com.db.awmd.challenge.domain.NotificationStats;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.NotificationService;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncNotificationServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+	private final CountDownLatch gate = new CountDownLatch(1);
+
+	@Test
+	public void dispatchesOffTheRequestThread() throws Exception {
+		List<String> threads = new CopyOnWriteArrayList<>();
+		AsyncNotificationService service = service(NotificationOverflowPolicy.BLOCK, 64, (account, description) -> {
+			threads.add(Thread.currentThread().getName());
+			this.delivered.add(description);
+		});
+		for (int i = 0; i < 100; i++) {
+			service.notifyAboutTransfer(new Account("Id-1"), "Amount Debited - " + i);
+		}
+		awaitStats(service, stats -> stats.getDispatched() == 100);
+		service.shutdown();
+
+		assertThat(this.delivered).hasSize(100);
+		assertThat(threads).allMatch(name -> name.startsWith("notification-dispatcher-"));
+	}
+
+	@Test
+	public void dropOldestKeepsTheNewestNotifications() throws Exception {
+		AsyncNotificationService service = service(NotificationOverflowPolicy.DROP_OLDEST, 4, gated());
+		for (int i = 0; i < 20; i++) {
+			service.notifyAboutTransfer(new Account("Id-1"), "Amount Debited - " + i);
+		}
+		assertThat(service.getStats().getDropped()).isGreaterThan(0);
+		this.gate.countDown();
+		awaitStats(service, stats -> stats.getDispatched() + stats.getDropped() == 20);
+		service.shutdown();
+
+		assertThat(this.delivered).contains("Amount Debited - 16", "Amount Debited - 17", "Amount Debited - 18",
+				"Amount Debited - 19");
+	}
+
+	@Test
+	public void spillToDiskDeliversEveryNotification() throws Exception {
+		AsyncNotificationService service = service(NotificationOverflowPolicy.SPILL_TO_DISK, 4, gated());
+		for (int i = 0; i < 50; i++) {
+			service.notifyAboutTransfer(new Account("Id-1"), "Amount Credited - " + i);
+		}
+		assertThat(service.getStats().getSpilled()).isGreaterThan(0);
+		this.gate.countDown();
+		awaitStats(service, stats -> stats.getDispatched() == 50);
+		NotificationStats stats = service.getStats();
+		service.shutdown();
+
+		assertThat(this.delivered).hasSize(50).doesNotHaveDuplicates();
+		assertThat(stats.getQueueDepth()).isEqualTo(0);
+		assertThat(stats.getSpillDepth()).isEqualTo(0);
+		assertThat(stats.getMaxLagMillis()).isGreaterThanOrEqualTo(stats.getLastLagMillis());
+	}
+
+	@Test
+	public void spilledNotificationsKeepTheirOrder() throws Exception {
+		AsyncNotificationService service = service(NotificationOverflowPolicy.SPILL_TO_DISK, 4, gated());
+		List<String> made = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			if (i == 50) {
+				// the buffer gets room while older notifications still wait in the spill file
+				this.gate.countDown();
+			}
+			made.add("Amount Credited - " + i);
+			service.notifyAboutTransfer(new Account("Id-1"), "Amount Credited - " + i);
+		}
+		awaitStats(service, stats -> stats.getDispatched() == 200);
+		service.shutdown();
+
+		assertThat(this.delivered).containsExactlyElementsOf(made);
+	}
+
+	private NotificationService gated() {
+		return (account, description) -> {
+			try {
+				this.gate.await();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			this.delivered.add(description);
+		};
+	}
+
+	private AsyncNotificationService service(NotificationOverflowPolicy overflowPolicy, int bufferCapacity,
+			NotificationService delegate) throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		AccountsProperties.Notifications notifications = accountsProperties.getNotifications();
+		notifications.setOverflowPolicy(overflowPolicy);
+		notifications.setBufferCapacity(bufferCapacity);
+		notifications.setDispatchers(1);
+		notifications.setBatchSize(2);
+		notifications.setSpillPath(new File(this.folder.getRoot(), "notifications.spill").getPath());
+		return new AsyncNotificationService(delegate, new AccountsRepositoryInMemory(accountsProperties),
+				accountsProperties);
+	}
+
+	private static void awaitStats(AsyncNotificationService service, Predicate<NotificationStats> condition)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.test(service.getStats()) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(condition.test(service.getStats())).isTrue();
+	}
+}
@@ -0,0 +1,75 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.request-handling.mode=async")
+@WebAppConfiguration
+public class AsyncTransferRequestsTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    accountsService.createAccount(new Account("Id-124", BigDecimal.ZERO));
+  }
+
+  @Test
+  public void transferIsHandedToARequestWorker() throws Exception {
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-124\",\"amount\":300}"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    assertThat(accountsService.getAccount("Id-124").getBalance()).isEqualByComparingTo("300");
+  }
+
+  @Test
+  public void rejectedTransferIsAnsweredAfterTheHandOff() throws Exception {
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-124\",\"accountTo\":\"Id-123\",\"amount\":300}"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void readsStayOnTheContainerThread() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(request().asyncNotStarted())
+      .andExpect(status().isOk());
+  }
+}
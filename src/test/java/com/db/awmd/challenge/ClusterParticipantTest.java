@@ -0,0 +1,215 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ClusterPrepareRequest;
+import com.db.awmd.challenge.domain.ClusterTransferOutcome;
+import com.db.awmd.challenge.domain.ClusterTransferRole;
+import com.db.awmd.challenge.exception.ClusterAccessDeniedException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.ClusterClient;
+import com.db.awmd.challenge.service.ClusterParticipant;
+import com.db.awmd.challenge.service.ClusterRing;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.TransferLedger;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.DEFINED_PORT)
+public class ClusterParticipantTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferLedger transferLedger;
+
+	@Autowired
+	private NotificationService notificationService;
+
+	@Test
+	public void ringSpreadsAccountsAndMovesFewWhenANodeJoins() {
+		List<String> nodes = new ArrayList<>(Arrays.asList("http://localhost:8080", "http://localhost:8081",
+				"http://localhost:8082", "http://localhost:8083"));
+		ClusterRing ring = new ClusterRing(clusterProperties(nodes));
+		nodes.add("http://localhost:8084");
+		ClusterRing grownRing = new ClusterRing(clusterProperties(nodes));
+
+		Map<String, Integer> owned = new HashMap<>();
+		int moved = 0;
+		for (int i = 0; i < 100000; i++) {
+			String owner = ring.ownerOf("Id-" + i);
+			owned.merge(owner, 1, Integer::sum);
+			if (!owner.equals(grownRing.ownerOf("Id-" + i))) {
+				// an account only ever moves to the node that joined
+				assertThat(grownRing.ownerOf("Id-" + i)).isEqualTo("http://localhost:8084");
+				moved++;
+			}
+		}
+		assertThat(owned.values()).allMatch(count -> count > 20000 && count < 30000);
+		assertThat(moved).isBetween(15000, 25000);
+		assertThat(new ClusterRing(new AccountsProperties()).isLocal("Id-1")).isTrue();
+	}
+
+	@Test
+	public void payerLegIsHeldUntilCommittedAbortedOrExpired() {
+		AccountsProperties accountsProperties = clusterProperties(Arrays.asList("http://localhost:8080"));
+		accountsProperties.getCluster().setReservationTimeoutSeconds(1);
+		// not started, the test expires the legs itself
+		ClusterParticipant participant = new ClusterParticipant(this.accountsService, this.transferLedger,
+				this.notificationService, new ClusterRing(accountsProperties), new ClusterClient(accountsProperties),
+				accountsProperties);
+		String payer = "Id-cluster-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(payer, new BigDecimal("100")));
+		ClusterPrepareRequest debit = new ClusterPrepareRequest(ClusterTransferRole.DEBIT, payer, "Id-remote",
+				new BigDecimal("30"));
+
+		participant.prepare("t-1", debit);
+		assertThat(this.accountsService.getAccount(payer).getBalance()).isEqualByComparingTo("70");
+		participant.abort("t-1");
+		assertThat(this.accountsService.getAccount(payer).getBalance()).isEqualByComparingTo("100");
+		assertThat(participant.commit("t-1")).isFalse();
+
+		participant.prepare("t-2", debit);
+		participant.expire(System.currentTimeMillis() + 2000);
+		assertThat(this.accountsService.getAccount(payer).getBalance()).isEqualByComparingTo("100");
+		assertThat(participant.commit("t-2")).isFalse();
+
+		participant.prepare("t-3", debit);
+		assertThat(participant.outcome("t-3")).isEqualTo(ClusterTransferOutcome.PREPARED);
+		assertThat(participant.commit("t-3")).isTrue();
+		// a commit repeated after a lost answer is answered alike without debiting again, however late
+		participant.expire(System.currentTimeMillis() + 60000);
+		assertThat(participant.commit("t-3")).isTrue();
+		assertThat(participant.outcome("t-3")).isEqualTo(ClusterTransferOutcome.COMMITTED);
+		assertThat(this.accountsService.getAccount(payer).getBalance()).isEqualByComparingTo("70");
+		assertThat(participant.getPreparedCount()).isZero();
+		participant.forget("t-3");
+		assertThat(participant.outcome("t-3")).isEqualTo(ClusterTransferOutcome.ABORTED);
+		assertThat(participant.getCommittedCount()).isZero();
+
+		try {
+			participant.prepare("t-4", new ClusterPrepareRequest(ClusterTransferRole.DEBIT, payer, "Id-remote",
+					new BigDecimal("71")));
+			fail("A debit above the balance should be refused");
+		} catch (InsufficientFundsException exception) {
+			assertThat(this.accountsService.getAccount(payer).getBalance()).isEqualByComparingTo("70");
+		}
+	}
+
+	@Test
+	public void payeeLegFollowsTheOutcomeOfItsPayerLeg() {
+		AccountsProperties accountsProperties = clusterProperties(
+				Arrays.asList("http://localhost:8080", "http://localhost:8081"));
+		accountsProperties.getCluster().setReservationTimeoutSeconds(1);
+		ClusterRing ring = new ClusterRing(accountsProperties);
+		String remotePayer = "Id-remote-0";
+		for (int i = 1; ring.isLocal(remotePayer); i++) {
+			remotePayer = "Id-remote-" + i;
+		}
+		Map<String, ClusterTransferOutcome> payerOutcomes = new ConcurrentHashMap<>();
+		List<String> forgotten = new ArrayList<>();
+		ClusterClient payerNode = new ClusterClient(accountsProperties) {
+			@Override
+			public ClusterTransferOutcome outcome(String node, String transferId) {
+				assertThat(node).isEqualTo("http://localhost:8081");
+				return payerOutcomes.get(transferId);
+			}
+
+			@Override
+			public void forget(String node, String transferId) {
+				forgotten.add(transferId);
+			}
+		};
+		ClusterParticipant participant = new ClusterParticipant(this.accountsService, this.transferLedger,
+				this.notificationService, ring, payerNode, accountsProperties);
+		String payee = "Id-cluster-payee-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(payee, new BigDecimal("100")));
+		participant.prepare("t-5", new ClusterPrepareRequest(ClusterTransferRole.CREDIT, remotePayer, payee,
+				new BigDecimal("30")));
+		participant.prepare("t-6", new ClusterPrepareRequest(ClusterTransferRole.CREDIT, remotePayer, payee,
+				new BigDecimal("40")));
+
+		// the payee legs wait for their payer legs however long they are prepared
+		payerOutcomes.put("t-5", ClusterTransferOutcome.PREPARED);
+		payerOutcomes.put("t-6", ClusterTransferOutcome.PREPARED);
+		participant.expire(System.currentTimeMillis() + 60000);
+		assertThat(participant.getPreparedCount()).isEqualTo(2);
+		assertThat(this.accountsService.getAccount(payee).getBalance()).isEqualByComparingTo("100");
+
+		payerOutcomes.put("t-5", ClusterTransferOutcome.COMMITTED);
+		payerOutcomes.put("t-6", ClusterTransferOutcome.ABORTED);
+		participant.expire(System.currentTimeMillis() + 60000);
+		participant.expire(System.currentTimeMillis() + 60000);
+		assertThat(participant.getPreparedCount()).isZero();
+		assertThat(this.accountsService.getAccount(payee).getBalance()).isEqualByComparingTo("130");
+		assertThat(forgotten).containsExactly("t-5");
+		// the coordinator committing late is answered as if it had committed first
+		assertThat(participant.commit("t-5")).isTrue();
+		assertThat(participant.commit("t-6")).isFalse();
+	}
+
+	@Test
+	public void clusterCanNotOutliveItsLegs() {
+		AccountsProperties accountsProperties = clusterProperties(Arrays.asList("http://localhost:8080"));
+		accountsProperties.getJournal().setEnabled(true);
+		try {
+			new ClusterParticipant(this.accountsService, this.transferLedger, this.notificationService,
+					new ClusterRing(accountsProperties), new ClusterClient(accountsProperties), accountsProperties);
+			fail("A cluster with a journal should not start");
+		} catch (IllegalStateException exception) {
+			assertThat(exception.getMessage()).contains("kept in memory only");
+		}
+	}
+
+	@Test
+	public void onlyNodesSharingTheSecretAreTrusted() {
+		ClusterRing ring = new ClusterRing(clusterProperties(Arrays.asList("http://localhost:8080")));
+		assertThat(ring.isTrustedPeer("cluster-secret")).isTrue();
+		assertThat(ring.isTrustedPeer("cluster-secreT")).isFalse();
+		assertThat(ring.isTrustedPeer(null)).isFalse();
+		assertThat(new ClusterRing(new AccountsProperties()).isTrustedPeer("")).isFalse();
+
+		AccountsProperties withoutSecret = clusterProperties(Arrays.asList("http://localhost:8080"));
+		withoutSecret.getCluster().setSecret(" ");
+		try {
+			new ClusterRing(withoutSecret);
+			fail("A cluster without a secret should not start");
+		} catch (IllegalStateException exception) {
+			assertThat(exception.getMessage()).contains("accounts.cluster.secret");
+		}
+	}
+
+	@Test(expected = ClusterAccessDeniedException.class)
+	public void participantRefusesLegsWithTheClusterDisabled() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		new ClusterParticipant(this.accountsService, this.transferLedger, this.notificationService,
+				new ClusterRing(accountsProperties), new ClusterClient(accountsProperties), accountsProperties)
+						.commit("t-1");
+	}
+
+	private AccountsProperties clusterProperties(List<String> nodes) {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getCluster().setEnabled(true);
+		accountsProperties.getCluster().setSelf(nodes.get(0));
+		accountsProperties.getCluster().setNodes(new ArrayList<>(nodes));
+		accountsProperties.getCluster().setSecret("cluster-secret");
+		return accountsProperties;
+	}
+}
@@ -0,0 +1,132 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScaledBalanceAccount;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLockManager;
+import com.db.awmd.challenge.service.HotAccounts;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class HotAccountsTest {
+
+	@Test
+	public void stripedCreditsKeepTheExactBalance() throws Exception {
+		for (Account account : new Account[] { new Account("Id-1", BigDecimal.ZERO),
+				new ScaledBalanceAccount("Id-2", BigDecimal.ZERO, 2) }) {
+			account.stripeCredits(8);
+			Thread[] payers = new Thread[4];
+			for (int t = 0; t < payers.length; t++) {
+				payers[t] = new Thread(() -> {
+					for (int i = 0; i < 1000; i++) {
+						account.deposit(new BigDecimal("0.01"));
+					}
+				});
+				payers[t].start();
+			}
+			for (Thread payer : payers) {
+				payer.join();
+			}
+
+			assertThat(account.hasStripedCredits()).isTrue();
+			assertThat(account.getBalance()).isEqualByComparingTo("40");
+			assertThat(account.tryWithdraw(new BigDecimal("40.01"))).isFalse();
+			assertThat(account.tryWithdraw(new BigDecimal("40"))).isTrue();
+			assertThat(account.getBalance()).isEqualByComparingTo("0");
+		}
+	}
+
+	@Test
+	public void promotesAccountsTransfersWaitFor() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getHotAccounts().setAdaptive(true);
+		accountsProperties.getHotAccounts().setPromoteAfterWaits(1);
+		accountsProperties.getHotAccounts().setCheckIntervalMillis(10);
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(accountsProperties);
+		AccountLockManager lockManager = new AccountLockManager(accountsProperties);
+		HotAccounts hotAccounts = new HotAccounts(repository, accountsProperties, lockManager);
+		repository.createAccount(new Account("Id-1", BigDecimal.TEN));
+
+		CountDownLatch held = new CountDownLatch(1);
+		Thread holder = new Thread(() -> lockManager.lockBoth("Id-1", "Id-2", () -> {
+			held.countDown();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		holder.start();
+		held.await();
+		lockManager.lockBoth("Id-1", "Id-3", () -> {
+		});
+		holder.join();
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (hotAccounts.getHotAccountIds().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		hotAccounts.shutdown();
+
+		assertThat(hotAccounts.getHotAccountIds()).containsExactly("Id-1");
+		assertThat(repository.getAccount("Id-1").hasStripedCredits()).isTrue();
+	}
+
+	@Test
+	public void accountSharingTheStripeOfAHotOneStaysCold() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getHotAccounts().setAdaptive(true);
+		accountsProperties.getHotAccounts().setPromoteAfterWaits(5);
+		accountsProperties.getHotAccounts().setCheckIntervalMillis(10);
+		accountsProperties.getLocking().setFailFast(true);
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(accountsProperties);
+		AccountLockManager lockManager = new AccountLockManager(accountsProperties);
+		HotAccounts hotAccounts = new HotAccounts(repository, accountsProperties, lockManager);
+		String coldId = "Id-2";
+		for (int i = 3; lockManager.stripeOf(coldId) != lockManager.stripeOf("Id-1"); i++) {
+			coldId = "Id-" + i;
+		}
+
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> lockManager.lockAll(Collections.singleton("Id-1"), () -> {
+			held.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		holder.start();
+		held.await();
+		for (int i = 0; i < 20; i++) {
+			tryLock(lockManager, "Id-1");
+		}
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (hotAccounts.getHotAccountIds().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		// a single wait on the cold account, which the stripe's earlier waits must not make hot
+		tryLock(lockManager, coldId);
+		Thread.sleep(200);
+		release.countDown();
+		holder.join();
+		hotAccounts.shutdown();
+
+		assertThat(hotAccounts.getHotAccountIds()).containsExactly("Id-1");
+	}
+
+	private static void tryLock(AccountLockManager lockManager, String accountId) {
+		try {
+			lockManager.lockAll(Collections.singleton(accountId), () -> {
+			});
+		} catch (AccountLockTimeoutException exception) {
+			// counted as a wait
+		}
+	}
+}
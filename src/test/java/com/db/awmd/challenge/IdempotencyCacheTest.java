@@ -0,0 +1,106 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.ClusterNodeUnavailableException;
+import com.db.awmd.challenge.exception.ClusterTransferInDoubtException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+
+	@Test
+	public void keepsAtMostMaxKeys() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getIdempotency().setMaxKeys(100);
+		IdempotencyCache idempotencyCache = new IdempotencyCache(accountsProperties);
+
+		for (int i = 0; i < 10000; i++) {
+			idempotencyCache.execute("key-" + i, "transfer", () -> {
+			});
+		}
+
+		assertThat(idempotencyCache.size()).isEqualTo(100);
+	}
+
+	@Test
+	public void retryGetsTheRejectionOfTheFirstAttempt() {
+		IdempotencyCache idempotencyCache = new IdempotencyCache(new AccountsProperties());
+		AtomicInteger attempts = new AtomicInteger();
+		Runnable transfer = () -> {
+			attempts.incrementAndGet();
+			throw new InsufficientFundsException("Insufficient balance in the account!!");
+		};
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				idempotencyCache.execute("key-1", "transfer", transfer);
+			} catch (InsufficientFundsException ex) {
+				assertThat(ex.getMessage()).isEqualTo("Insufficient balance in the account!!");
+			}
+		}
+
+		assertThat(attempts.get()).isEqualTo(1);
+		assertThat(idempotencyCache.getReplays()).isEqualTo(1);
+	}
+
+	@Test
+	public void expiredKeyRunsTheTransferAgain() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getIdempotency().setTtlSeconds(0);
+		IdempotencyCache idempotencyCache = new IdempotencyCache(accountsProperties);
+
+		assertThat(idempotencyCache.execute("key-1", "transfer", () -> {
+		})).isTrue();
+		assertThat(idempotencyCache.execute("key-1", "transfer", () -> {
+		})).isTrue();
+	}
+
+	@Test
+	public void errorOfTheFirstAttemptLetsTheRetryRun() {
+		IdempotencyCache idempotencyCache = new IdempotencyCache(new AccountsProperties());
+		try {
+			idempotencyCache.execute("key-1", "transfer", () -> {
+				throw new AssertionError("first attempt");
+			});
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("first attempt");
+		}
+
+		assertThat(idempotencyCache.execute("key-1", "transfer", () -> {
+		})).isTrue();
+	}
+
+	@Test
+	public void transferInDoubtIsNotRunAgain() {
+		IdempotencyCache idempotencyCache = new IdempotencyCache(new AccountsProperties());
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				idempotencyCache.execute("key-1", "transfer", () -> {
+					attempts.incrementAndGet();
+					throw new ClusterTransferInDoubtException("in doubt");
+				});
+			} catch (ClusterTransferInDoubtException expected) {
+				assertThat(expected.getMessage()).isEqualTo("in doubt");
+			}
+		}
+		// a node unavailable before the payer was committed left nothing to complete
+		for (int i = 0; i < 2; i++) {
+			try {
+				idempotencyCache.execute("key-2", "transfer", () -> {
+					attempts.incrementAndGet();
+					throw new ClusterNodeUnavailableException("unavailable");
+				});
+			} catch (ClusterNodeUnavailableException expected) {
+				assertThat(expected.getMessage()).isEqualTo("unavailable");
+			}
+		}
+
+		assertThat(attempts.get()).isEqualTo(3);
+	}
+}
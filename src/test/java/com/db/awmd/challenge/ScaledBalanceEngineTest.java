@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ScaledBalanceAccount;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.service.AccountsService;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.balance-engine=scaled-long")
+public class ScaledBalanceEngineTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Test
+	public void createAccount_storesScaledBalance() throws Exception {
+		String id = "IdS1-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(id, new BigDecimal("123.45")));
+
+		Account account = this.accountsService.getAccount(id);
+		assertThat(account).isInstanceOf(ScaledBalanceAccount.class);
+		assertThat(((ScaledBalanceAccount) account).getUnits()).isEqualTo(12345L);
+		assertThat(account.getBalance()).isEqualTo(new BigDecimal("123.45"));
+	}
+
+	@Test
+	public void transferAmount() throws Exception {
+		String idFrom = "IdS2-" + System.currentTimeMillis();
+		String idTo = "IdS3-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idFrom, new BigDecimal("1000")));
+		this.accountsService.createAccount(new Account(idTo));
+
+		this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal("250.50")));
+
+		assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualByComparingTo("749.50");
+		assertThat(this.accountsService.getAccount(idTo).getBalance()).isEqualByComparingTo("250.50");
+	}
+
+	@Test
+	public void transferAmount_rejectsAmountFinerThanScale() throws Exception {
+		String idFrom = "IdS4-" + System.currentTimeMillis();
+		String idTo = "IdS5-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idFrom, new BigDecimal("1000")));
+		this.accountsService.createAccount(new Account(idTo));
+
+		try {
+			this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal("0.001")));
+			fail("Should have failed for an amount with more decimal places than the balance scale");
+		} catch (InvalidAmountException ex) {
+			assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualByComparingTo("1000");
+		}
+	}
+
+	@Test
+	public void transferAmount_concurrentDebitsNeverOverdraw() throws Exception {
+		this.accountsService.createAccount(new Account("IdS-100", new BigDecimal(1000)));
+		this.accountsService.createAccount(new Account("IdS-101"));
+		AtomicInteger rejected = new AtomicInteger();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			threads.add(new Thread(() -> {
+				try {
+					this.accountsService.transferAmount(new AmountTransferRequest("IdS-100", "IdS-101", new BigDecimal(100)));
+				} catch (InsufficientFundsException ex) {
+					rejected.incrementAndGet();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(rejected.get()).isEqualTo(10);
+		assertThat(this.accountsService.getAccount("IdS-100").getBalance()).isEqualByComparingTo("0");
+		assertThat(this.accountsService.getAccount("IdS-101").getBalance()).isEqualByComparingTo("1000");
+	}
+}
@@ -0,0 +1,86 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.ClusterRing;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.ScheduledTransferService;
+import com.db.awmd.challenge.service.TimerWheel;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.DEFINED_PORT)
+public class ScheduledTransferServiceTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private NotificationService notificationService;
+
+	@Test
+	public void timerWheelExpiresAcrossLevelsInDeadlineOrder() {
+		TimerWheel<Long> timerWheel = new TimerWheel<>(0);
+		long[] deadlines = { 20000000, 5, 70000, 300, 255, 256, 65536, 1 };
+		List<TimerWheel.Timer<Long>> timers = new ArrayList<>();
+		for (long deadline : deadlines) {
+			timers.add(timerWheel.schedule(deadline, deadline));
+		}
+		assertThat(timerWheel.cancel(timers.get(1))).isTrue();
+		List<Long> expired = new ArrayList<>();
+
+		timerWheel.advance(300, expired::add);
+		assertThat(expired).containsExactly(1L, 255L, 256L);
+		timerWheel.advance(1L << 25, expired::add);
+
+		assertThat(expired).containsExactly(1L, 255L, 256L, 300L, 65536L, 70000L, 20000000L);
+		assertThat(timerWheel.size()).isZero();
+		assertThat(timerWheel.cancel(timers.get(0))).isFalse();
+	}
+
+	@Test
+	public void releasesDueTransfersWithinTheReleaseRate() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getScheduledTransfers().setMaxReleasePerSecond(100);
+		// not started, the test releases the due transfers itself
+		ScheduledTransferService scheduledTransferService = new ScheduledTransferService(this.accountsService,
+				this.notificationService, new ClusterRing(accountsProperties), accountsProperties);
+		String idFrom = "Id-scheduled-" + System.currentTimeMillis();
+		String idTo = idFrom + "-to";
+		this.accountsService.createAccount(new Account(idFrom, new BigDecimal(100)));
+		this.accountsService.createAccount(new Account(idTo, new BigDecimal(0)));
+		long dueAt = System.currentTimeMillis() + 3600000;
+		for (int i = 0; i < 3; i++) {
+			scheduledTransferService.schedule(new AmountTransferRequest(idFrom, idTo, new BigDecimal(10)), dueAt);
+		}
+		ScheduledTransfer later = scheduledTransferService
+				.schedule(new AmountTransferRequest(idFrom, idTo, new BigDecimal(1)), dueAt + 3600000);
+		ScheduledTransfer cancelled = scheduledTransferService.listPending(null, 1).getScheduledTransfers().get(0);
+		scheduledTransferService.cancel(cancelled.getId());
+
+		// due with the first 10 ms tick at or after their execution time
+		assertThat(scheduledTransferService.releaseDue(dueAt - 10)).isZero();
+		// 100 per second leave room for one transfer every 10 ms
+		assertThat(scheduledTransferService.releaseDue(dueAt + 10)).isEqualTo(1);
+		assertThat(scheduledTransferService.releaseDue(dueAt + 10)).isZero();
+		assertThat(scheduledTransferService.releaseDue(dueAt + 20)).isEqualTo(1);
+		assertThat(scheduledTransferService.releaseDue(dueAt + 30)).isZero();
+
+		assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualByComparingTo("80");
+		assertThat(this.accountsService.getAccount(idTo).getBalance()).isEqualByComparingTo("20");
+		assertThat(scheduledTransferService.listPending(null, 10).getScheduledTransfers()).containsExactly(later);
+	}
+}
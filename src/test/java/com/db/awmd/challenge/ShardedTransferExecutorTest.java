@@ -0,0 +1,111 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.ShardedTransferExecutor;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "accounts.sharding.enabled=true", "accounts.sharding.shards=4" })
+public class ShardedTransferExecutorTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Test
+	public void transferAmount() throws Exception {
+		String idFrom = "IdH1-" + System.currentTimeMillis();
+		String idTo = "IdH2-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idFrom, new BigDecimal(1000)));
+		this.accountsService.createAccount(new Account(idTo));
+
+		this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(400)));
+
+		assertThat(this.accountsService.getAccount(idFrom).getBalance()).isEqualTo(new BigDecimal(600));
+		assertThat(this.accountsService.getAccount(idTo).getBalance()).isEqualTo(new BigDecimal(400));
+	}
+
+	@Test
+	public void transferAmount_insufficientFund() throws Exception {
+		String idFrom = "IdH3-" + System.currentTimeMillis();
+		String idTo = "IdH4-" + System.currentTimeMillis();
+		this.accountsService.createAccount(new Account(idFrom));
+		this.accountsService.createAccount(new Account(idTo));
+
+		try {
+			this.accountsService.transferAmount(new AmountTransferRequest(idFrom, idTo, new BigDecimal(1000)));
+			fail("Should have failed when payer has insuffiecient funds for the amount transfer");
+		} catch (InsufficientFundsException ex) {
+			assertThat(ex.getMessage()).isEqualTo("Insufficient balance in the account!!");
+		}
+	}
+
+	@Test
+	public void transferAmount_concurrentTransfersAcrossShards() throws Exception {
+		int accounts = 16;
+		for (int i = 0; i < accounts; i++) {
+			this.accountsService.createAccount(new Account("IdH-" + i, new BigDecimal(1000)));
+		}
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			int offset = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					String from = "IdH-" + ((offset + i) % accounts);
+					String to = "IdH-" + ((offset + i + 1) % accounts);
+					this.accountsService.transferAmount(new AmountTransferRequest(from, to, BigDecimal.ONE));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < accounts; i++) {
+			total = total.add(this.accountsService.getAccount("IdH-" + i).getBalance());
+		}
+		assertThat(total).isEqualTo(new BigDecimal(1000 * accounts));
+	}
+
+	@Test
+	public void transferAmount_errorOnTheCreditLegRefundsThePayerAndReturns() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getSharding().setEnabled(true);
+		accountsProperties.getSharding().setShards(4);
+		ShardedTransferExecutor executor = new ShardedTransferExecutor(accountsProperties);
+		Account payer = new Account("IdH5", new BigDecimal(100));
+		Account payee = new Account("IdH6");
+		try {
+			executor.transfer(payer, payee, account -> account.withdraw(BigDecimal.TEN),
+					account -> {
+						if (account == payee) {
+							throw new AssertionError("credit failed");
+						}
+						account.deposit(BigDecimal.TEN);
+					});
+			fail("Should have failed when the payee could not be credited");
+		} catch (AssertionError error) {
+			assertThat(error.getMessage()).isEqualTo("credit failed");
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(payer.getBalance()).isEqualTo(new BigDecimal(100));
+		assertThat(payee.getBalance()).isEqualTo(BigDecimal.ZERO);
+	}
+}
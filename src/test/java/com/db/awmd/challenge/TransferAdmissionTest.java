@@ -0,0 +1,107 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.TransferRateLimitedException;
+import com.db.awmd.challenge.service.TransferAdmission;
+import org.junit.Test;
+
+public class TransferAdmissionTest {
+
+	@Test
+	public void limitsEachClientAndAccountToItsBurst() {
+		AccountsProperties accountsProperties = properties();
+		accountsProperties.getAdmission().setClientRatePerSecond(1);
+		accountsProperties.getAdmission().setClientBurst(3);
+		accountsProperties.getAdmission().setAccountRatePerSecond(1);
+		accountsProperties.getAdmission().setAccountBurst(2);
+		TransferAdmission transferAdmission = new TransferAdmission(accountsProperties);
+
+		transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-2", 1));
+		transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-3", 1));
+		assertRejected(() -> transferAdmission.admit("client-2", "Id-4", "Id-1", 1), "account Id-1");
+		transferAdmission.complete(transferAdmission.admit("client-1", null, null, 1));
+		assertRejected(() -> transferAdmission.admit("client-1", "Id-5", "Id-6", 1), "client client-1");
+		// a batch larger than the burst empties the bucket of its client without being refused for good
+		transferAdmission.complete(transferAdmission.admit("client-3", null, null, 1000));
+		assertRejected(() -> transferAdmission.admit("client-3", null, null, 1), "client client-3");
+
+		assertThat(transferAdmission.getStats().getAdmitted()).isEqualTo(4);
+		assertThat(transferAdmission.getStats().getRejectedByClient()).isEqualTo(2);
+		assertThat(transferAdmission.getStats().getRejectedByAccount()).isEqualTo(1);
+	}
+
+	@Test
+	public void rejectedRequestGivesItsTokensBack() {
+		AccountsProperties accountsProperties = properties();
+		accountsProperties.getAdmission().setClientRatePerSecond(1);
+		accountsProperties.getAdmission().setClientBurst(1);
+		accountsProperties.getAdmission().setAccountRatePerSecond(1);
+		accountsProperties.getAdmission().setAccountBurst(1);
+		accountsProperties.getAdmission().setInitialConcurrency(1);
+		accountsProperties.getAdmission().setMinConcurrency(1);
+		accountsProperties.getAdmission().setMaxConcurrency(1);
+		TransferAdmission transferAdmission = new TransferAdmission(accountsProperties);
+
+		transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-2", 1));
+		assertRejected(() -> transferAdmission.admit("client-2", "Id-3", "Id-1", 1), "account Id-1");
+		long admittedAt = transferAdmission.admit("client-2", "Id-3", "Id-4", 1);
+		assertRejected(() -> transferAdmission.admit("client-3", "Id-5", "Id-6", 1), "in flight");
+		transferAdmission.complete(admittedAt);
+		transferAdmission.complete(transferAdmission.admit("client-3", "Id-5", "Id-6", 1));
+
+		assertThat(transferAdmission.getStats().getAdmitted()).isEqualTo(3);
+	}
+
+	@Test
+	public void concurrencyLimitFollowsTheLatency() {
+		AccountsProperties accountsProperties = properties();
+		accountsProperties.getAdmission().setInitialConcurrency(4);
+		accountsProperties.getAdmission().setMinConcurrency(1);
+		accountsProperties.getAdmission().setMaxConcurrency(4);
+		TransferAdmission transferAdmission = new TransferAdmission(accountsProperties);
+
+		long[] admitted = new long[4];
+		for (int i = 0; i < admitted.length; i++) {
+			admitted[i] = transferAdmission.admit("client-1", "Id-1", "Id-2", 1);
+		}
+		assertRejected(() -> transferAdmission.admit("client-1", "Id-5", "Id-6", 1), "in flight");
+		// requests taking 10 ms until the baseline is taken from the latest latencies
+		for (int i = 0; i < admitted.length; i++) {
+			transferAdmission.complete(admitted[i] - 10000000L);
+		}
+		for (int i = admitted.length; i < TransferAdmission.LATENCY_SAMPLES; i++) {
+			transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-2", 1) - 10000000L);
+		}
+		assertThat(transferAdmission.getStats().getConcurrencyLimit()).isEqualTo(4);
+
+		// requests slow enough to lift the average latency far above the baseline lower the limit once
+		// every limit requests
+		for (int i = 0; i < 4; i++) {
+			transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-2", 1) - 1000000000L);
+		}
+		assertThat(transferAdmission.getStats().getConcurrencyLimit()).isEqualTo(3);
+		transferAdmission.complete(transferAdmission.admit("client-1", "Id-1", "Id-2", 1) - 1000000000L);
+		assertThat(transferAdmission.getStats().getConcurrencyLimit()).isEqualTo(2);
+		assertThat(transferAdmission.getStats().getInFlight()).isZero();
+	}
+
+	private AccountsProperties properties() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getAdmission().setEnabled(true);
+		accountsProperties.getAdmission().setClientRatePerSecond(0);
+		accountsProperties.getAdmission().setAccountRatePerSecond(0);
+		return accountsProperties;
+	}
+
+	private void assertRejected(Runnable admission, String reason) {
+		try {
+			admission.run();
+			fail("Should have been rejected");
+		} catch (TransferRateLimitedException exception) {
+			assertThat(exception.getMessage()).contains(reason);
+		}
+	}
+}
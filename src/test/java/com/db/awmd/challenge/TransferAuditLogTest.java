@@ -0,0 +1,50 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.TransferAuditEvent;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TransferAuditLogTest {
+
+	@Test
+	public void appenderDrainsAFullRing() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getAudit().setEnabled(true);
+		accountsProperties.getAudit().setBufferCapacity(8);
+		TransferAuditLog transferAuditLog = new TransferAuditLog(accountsProperties);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					transferAuditLog.record(TransferAuditEvent.WITHDRAWN, "Id-1", null, BigDecimal.ONE);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (transferAuditLog.getPending() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		transferAuditLog.shutdown();
+
+		assertThat(transferAuditLog.getPending()).isEqualTo(0);
+	}
+
+	@Test
+	public void disabledLogHasNoAppender() {
+		TransferAuditLog transferAuditLog = new TransferAuditLog(new AccountsProperties());
+
+		assertThat(transferAuditLog.isEnabled()).isFalse();
+		assertThat(transferAuditLog.getPending()).isEqualTo(0);
+	}
+}
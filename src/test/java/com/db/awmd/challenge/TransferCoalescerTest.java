@@ -0,0 +1,57 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.service.TransferCoalescer;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TransferCoalescerTest {
+
+	@Test
+	public void settlesConcurrentTransfersTogetherAndAnswersEachCaller() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getCoalescing().setEnabled(true);
+		accountsProperties.getCoalescing().setMaxDelayMicros(1_000_000);
+		accountsProperties.getCoalescing().setMaxBatchSize(4);
+		TransferCoalescer transferCoalescer = new TransferCoalescer(accountsProperties);
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		AtomicInteger insufficientFunds = new AtomicInteger();
+
+		Thread[] callers = new Thread[4];
+		for (int t = 0; t < callers.length; t++) {
+			BigDecimal amount = new BigDecimal(t);
+			callers[t] = new Thread(() -> {
+				try {
+					transferCoalescer.submit(new AmountTransferRequest("Id-1", "Id-2", amount), transferRequests -> {
+						batchSizes.add(transferRequests.size());
+						RuntimeException[] failures = new RuntimeException[transferRequests.size()];
+						for (int i = 0; i < failures.length; i++) {
+							if (transferRequests.get(i).getAmount().signum() == 0) {
+								failures[i] = new InsufficientFundsException("Insufficient balance in the account!!");
+							}
+						}
+						return failures;
+					});
+				} catch (InsufficientFundsException exception) {
+					insufficientFunds.incrementAndGet();
+				}
+			});
+			callers[t].start();
+		}
+		for (Thread caller : callers) {
+			caller.join(30_000);
+			assertThat(caller.isAlive()).isFalse();
+		}
+
+		// a full batch is settled at once, without waiting out the delay
+		assertThat(batchSizes).containsExactly(4);
+		assertThat(insufficientFunds.get()).isEqualTo(1);
+	}
+}
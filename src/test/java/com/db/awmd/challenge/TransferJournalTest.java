@@ -0,0 +1,228 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.TransferJournal;
+import com.db.awmd.challenge.repository.TransferJournal.RecordType;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransferJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replaysRecordsAfterReopen() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> {
+		})) {
+			journal.append(RecordType.CREATE, "Id-1", new BigDecimal("100.50"));
+			journal.awaitDurable(journal.append(RecordType.DEBIT, "Id-1", new BigDecimal("0.50")));
+		}
+
+		List<String> replayed = new ArrayList<>();
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16,
+				(sequence, type, accountId, amount) -> replayed.add(sequence + " " + type + " " + accountId + " " + amount))) {
+			assertThat(journal.getLastSequence()).isEqualTo(2);
+		}
+		assertThat(replayed).containsExactly("1 CREATE Id-1 100.50", "2 DEBIT Id-1 0.50");
+	}
+
+	@Test
+	public void refusesAccountIdsLongerThanARecordHolds() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		char[] id = new char[0x10000];
+		Arrays.fill(id, 'x');
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> {
+		})) {
+			try {
+				journal.append(RecordType.CREATE, new String(id), BigDecimal.TEN);
+				fail("An id whose length does not fit two bytes should be refused");
+			} catch (InvalidAccountIdException exception) {
+				assertThat(journal.getLastSequence()).isZero();
+			}
+			journal.awaitDurable(journal.append(RecordType.CREATE, new String(id, 0, 0xFFFF), BigDecimal.TEN));
+		}
+
+		List<Integer> replayed = new ArrayList<>();
+		TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> replayed.add(accountId.length()))
+				.close();
+		assertThat(replayed).containsExactly(0xFFFF);
+	}
+
+	@Test
+	public void dropsTornRecordAtTheEnd() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> {
+		})) {
+			journal.append(RecordType.CREATE, "Id-1", BigDecimal.TEN);
+			journal.awaitDurable(journal.append(RecordType.CREDIT, "Id-1", BigDecimal.ONE));
+		}
+		Path segment = new File(this.folder.getRoot(), "accounts.journal.00000000000000000001").toPath();
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		List<RecordType> replayed = new ArrayList<>();
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16,
+				(sequence, type, accountId, amount) -> replayed.add(type))) {
+			journal.awaitDurable(journal.append(RecordType.DEBIT, "Id-1", BigDecimal.ONE));
+		}
+		assertThat(replayed).containsExactly(RecordType.CREATE);
+
+		replayed.clear();
+		TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> replayed.add(type)).close();
+		assertThat(replayed).containsExactly(RecordType.CREATE, RecordType.DEBIT);
+	}
+
+	@Test
+	public void skipsSegmentsCoveredByASnapshot() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		long rolledAt;
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> {
+		})) {
+			journal.append(RecordType.CREATE, "Id-1", BigDecimal.TEN);
+			journal.append(RecordType.DEBIT, "Id-1", BigDecimal.ONE);
+			rolledAt = journal.roll();
+			journal.awaitDurable(journal.append(RecordType.CREDIT, "Id-1", BigDecimal.ONE));
+			journal.deleteSegmentsThrough(rolledAt);
+		}
+		assertThat(rolledAt).isEqualTo(2);
+		assertThat(this.folder.getRoot().list()).containsExactly("accounts.journal.00000000000000000003");
+
+		List<String> replayed = new ArrayList<>();
+		try (TransferJournal journal = TransferJournal.open(path, rolledAt, 0, 16,
+				(sequence, type, accountId, amount) -> replayed.add(sequence + " " + type))) {
+			assertThat(journal.getLastSequence()).isEqualTo(3);
+		}
+		assertThat(replayed).containsExactly("3 CREDIT");
+	}
+
+	@Test
+	public void refundsTransferDebitedWithoutItsCredit() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		long rolledAt;
+		try (TransferJournal journal = TransferJournal.open(path, 0, 16, (sequence, type, accountId, amount) -> {
+		})) {
+			journal.append(RecordType.CREATE, "Id-1", BigDecimal.TEN);
+			journal.append(RecordType.CREATE, "Id-2", BigDecimal.TEN);
+			long completed = journal.append(RecordType.TRANSFER_DEBIT, "Id-1", BigDecimal.ONE);
+			long open = journal.append(RecordType.TRANSFER_DEBIT, "Id-1", new BigDecimal("2"));
+			journal.append(RecordType.TRANSFER_CREDIT, "Id-2", BigDecimal.ONE, completed);
+			// the debit still open is carried into the segment after the roll
+			rolledAt = journal.roll();
+			journal.deleteSegmentsThrough(rolledAt);
+			assertThat(open).isEqualTo(4);
+		}
+
+		List<String> replayed = new ArrayList<>();
+		try (TransferJournal journal = TransferJournal.open(path, rolledAt, 0, 16,
+				(sequence, type, accountId, amount) -> replayed.add(type + " " + accountId + " " + amount))) {
+			assertThat(journal.getLastSequence()).isEqualTo(7);
+		}
+		assertThat(replayed).containsExactly("CREDIT Id-1 2");
+
+		replayed.clear();
+		TransferJournal.open(path, rolledAt, 0, 16,
+				(sequence, type, accountId, amount) -> replayed.add(type + " " + accountId + " " + amount)).close();
+		assertThat(replayed).containsExactly("CREDIT Id-1 2");
+	}
+
+	@Test
+	public void skipsRecordsOfUnknownAccountsAndTypes() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getJournal().setEnabled(true);
+		accountsProperties.getJournal().setPath(new File(this.folder.getRoot(), "accounts.journal").getPath());
+		try (TransferJournal journal = TransferJournal.open(new File(this.folder.getRoot(), "accounts.journal").toPath(),
+				0, 16, (sequence, type, accountId, amount) -> {
+				})) {
+			journal.append(RecordType.CREATE, "Id-1", BigDecimal.TEN);
+			journal.append(RecordType.CLEAR, null, null);
+			journal.awaitDurable(journal.append(RecordType.DEBIT, "Id-1", BigDecimal.ONE));
+		}
+		// an intact record of a type this version does not know
+		Path segment = new File(this.folder.getRoot(), "accounts.journal.00000000000000000001").toPath();
+		ByteBuffer payload = ByteBuffer.allocate(17).putLong(4).put((byte) 99).putShort((short) 0).putInt(0)
+				.putShort((short) 0);
+		CRC32 crc = new CRC32();
+		crc.update(payload.array());
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write((ByteBuffer) ByteBuffer.allocate(8 + 17).putInt(17).putInt((int) crc.getValue())
+					.put(payload.array()).flip());
+		}
+
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(accountsProperties);
+		repository.createAccount(new Account("Id-2", BigDecimal.TEN));
+		repository.closeJournal();
+		AccountsRepositoryInMemory restarted = new AccountsRepositoryInMemory(accountsProperties);
+		assertThat(restarted.scanAccounts(0, 10, account -> {
+		})).isEqualTo(1);
+		assertThat(restarted.getAccount("Id-2").getBalance()).isEqualTo(BigDecimal.TEN);
+		restarted.closeJournal();
+	}
+
+	@Test
+	public void concurrentAppendsShareForces() throws Exception {
+		Path path = new File(this.folder.getRoot(), "accounts.journal").toPath();
+		try (TransferJournal journal = TransferJournal.open(path, TimeUnit.MILLISECONDS.toNanos(1), 512,
+				(sequence, type, accountId, amount) -> {
+				})) {
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				threads.add(new Thread(() -> {
+					for (int i = 0; i < 100; i++) {
+						journal.awaitDurable(journal.append(RecordType.CREDIT, "Id-1", BigDecimal.ONE));
+					}
+				}));
+			}
+			threads.forEach(Thread::start);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertThat(journal.getLastSequence()).isEqualTo(800);
+			assertThat(journal.getSyncCount()).isLessThan(800);
+		}
+	}
+
+	@Test
+	public void repositoryRestoresAccountsOnRestart() throws Exception {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getJournal().setEnabled(true);
+		accountsProperties.getJournal().setPath(new File(this.folder.getRoot(), "accounts.journal").getPath());
+
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(accountsProperties);
+		repository.createAccount(new Account("Id-1", new BigDecimal(1000)));
+		repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+		Account accountFrom = repository.getAccount("Id-1");
+		Account accountTo = repository.getAccount("Id-2");
+		accountFrom.withdraw(new BigDecimal(300));
+		repository.recordWithdrawal(accountFrom, new BigDecimal(300));
+		accountTo.deposit(new BigDecimal(300));
+		repository.recordDeposit(accountTo, new BigDecimal(300));
+		repository.sync();
+		repository.closeJournal();
+
+		AccountsRepositoryInMemory restarted = new AccountsRepositoryInMemory(accountsProperties);
+		assertThat(restarted.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(700));
+		assertThat(restarted.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(300));
+		restarted.closeJournal();
+	}
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.AccountStatement;
+import com.db.awmd.challenge.domain.StatementEntry;
+import com.db.awmd.challenge.exception.InvalidCursorException;
+import com.db.awmd.challenge.service.TransferLedger;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class TransferLedgerTest {
+
+	@Test
+	public void statementsFollowTheirAccountAcrossChunks() {
+		TransferLedger ledger = new TransferLedger(new AccountsProperties());
+		// spans a few chunks, Id-0 takes part in every tenth transfer only
+		for (int i = 0; i < 200000; i++) {
+			String payer = i % 10 == 0 ? "Id-0" : "Id-" + (1 + i % 7);
+			ledger.append(payer, "Id-" + (8 + i % 5), new BigDecimal(i).movePointLeft(2));
+		}
+		ledger.append("Id-9", "Id-0", new BigDecimal("1E+30"));
+
+		AccountStatement first = ledger.statement("Id-0", -1, 2);
+		assertThat(first.getEntries()).extracting(StatementEntry::getAmount)
+				.containsExactly(new BigDecimal("1E+30"), new BigDecimal("1999.90"));
+		long count = first.getEntries().size();
+		String cursor = first.getNextCursor();
+		BigDecimal expected = new BigDecimal("1999.80");
+		while (cursor != null) {
+			AccountStatement page = ledger.statement("Id-0", Long.parseLong(cursor), 1000);
+			for (StatementEntry entry : page.getEntries()) {
+				assertThat(entry.getAccountFrom()).isEqualTo("Id-0");
+				assertThat(entry.getAmount()).isEqualTo(expected);
+				expected = expected.subtract(new BigDecimal("0.10"));
+			}
+			count += page.getEntries().size();
+			cursor = page.getNextCursor();
+		}
+		assertThat(count).isEqualTo(20001);
+		assertThat(ledger.size()).isEqualTo(200001);
+	}
+
+	@Test
+	public void dropsTheOldestChunkBeyondTheLargestNumberOfEntries() {
+		AccountsProperties accountsProperties = new AccountsProperties();
+		accountsProperties.getLedger().setMaxEntries(2 * 65536);
+		TransferLedger ledger = new TransferLedger(accountsProperties);
+		for (int i = 0; i < 3 * 65536; i++) {
+			ledger.append("Id-" + i % 3, "Id-3", i % 1000 == 0 ? new BigDecimal("1E+30") : BigDecimal.ONE);
+		}
+		ledger.append("Id-4", "Id-3", BigDecimal.TEN);
+		assertThat(ledger.size()).isEqualTo(3 * 65536 + 1);
+
+		// two chunks are kept, the fourth one started and the third one before it
+		long count = 0;
+		String cursor = null;
+		do {
+			AccountStatement page = ledger.statement("Id-3", cursor == null ? -1 : Long.parseLong(cursor), 1000);
+			for (StatementEntry entry : page.getEntries()) {
+				assertThat(entry.getSequence()).isGreaterThanOrEqualTo(2 * 65536);
+				assertThat(entry.getAmount()).isNotNull();
+			}
+			count += page.getEntries().size();
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertThat(count).isEqualTo(65536 + 1);
+		assertThat(ledger.statement("Id-0", 3, 10).getEntries()).isEmpty();
+	}
+
+	@Test(expected = InvalidCursorException.class)
+	public void rejectsACursorOfAnotherAccount() {
+		TransferLedger ledger = new TransferLedger(new AccountsProperties());
+		ledger.append("Id-1", "Id-2", BigDecimal.ONE);
+		ledger.append("Id-3", "Id-4", BigDecimal.ONE);
+		ledger.statement("Id-1", 1, 10);
+	}
+}